@@ -87,6 +87,7 @@ public class ContainerModelBuilder extends ConfigModelBuilder<ContainerModel> {
 
     private static final String xmlRendererId = RendererRegistry.xmlRendererId.getName();
     private static final String jsonRendererId = RendererRegistry.jsonRendererId.getName();
+    private static final String slimeRendererId = RendererRegistry.slimeRendererId.getName();
 
     public ContainerModelBuilder(boolean standaloneBuilder, Networking networking) {
         super(ContainerModel.class);
@@ -684,12 +685,12 @@ public class ContainerModelBuilder extends ConfigModelBuilder<ContainerModel> {
     }
 
     /**
-     * Disallow renderers named "DefaultRenderer" or "JsonRenderer"
+     * Disallow renderers named "DefaultRenderer", "JsonRenderer" or "SlimeRenderer"
      */
     private static void validateRendererElement(Element element) {
         String idAttr = element.getAttribute("id");
 
-        if (idAttr.equals(xmlRendererId) || idAttr.equals(jsonRendererId)) {
+        if (idAttr.equals(xmlRendererId) || idAttr.equals(jsonRendererId) || idAttr.equals(slimeRendererId)) {
             throw new IllegalArgumentException(String.format("Renderer id %s is reserved for internal use", idAttr));
         }
     }
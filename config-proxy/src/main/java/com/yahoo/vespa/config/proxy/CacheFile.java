@@ -0,0 +1,200 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.config.proxy;
+
+import com.yahoo.log.LogLevel;
+import com.yahoo.text.Utf8Array;
+import com.yahoo.vespa.config.ConfigCacheKey;
+import com.yahoo.vespa.config.ConfigKey;
+import com.yahoo.vespa.config.RawConfig;
+import com.yahoo.vespa.config.protocol.CompressionInfo;
+import com.yahoo.vespa.config.protocol.CompressionType;
+import com.yahoo.vespa.config.protocol.Payload;
+import com.yahoo.vespa.config.protocol.VespaVersion;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * An append only file with the configs in a {@link MemoryCache}, which makes it possible to serve config
+ * from the cache right after the proxy is restarted. Each config put in the cache is appended as a record
+ * with a checksum, and later records replace earlier ones for the same key. A record which was not completely
+ * written (e.g. because the proxy died while writing it) ends the file, and is removed when the file is loaded.
+ * The file is compacted to the live configs when loaded, and when it has grown to hold mostly replaced records.
+ *
+ * @author agent
+ */
+class CacheFile {
+
+    private final static Logger log = Logger.getLogger(CacheFile.class.getName());
+
+    private static final int MAGIC = 0x56434331; // "VCC1"
+    private static final int MIN_RECORDS_BEFORE_COMPACTION = 1000;
+
+    private final File file;
+    private DataOutputStream out = null;
+    private int records = 0;
+
+    CacheFile(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Reads the configs in the file, and compacts it to contain only these
+     *
+     * @return the latest config for each key in the file, empty if the file does not exist or is empty
+     * @throws IOException if the file could not be read, or is not a config cache file, in which case it is left as is
+     */
+    synchronized List<RawConfig> load() throws IOException {
+        Map<ConfigCacheKey, RawConfig> configs = new LinkedHashMap<>();
+        if (file.exists() && file.length() > 0) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                if (file.length() < Integer.BYTES || in.readInt() != MAGIC)
+                    throw new IOException("'" + file + "' is not a config cache file");
+                for (RawConfig config = readRecord(in); config != null; config = readRecord(in)) {
+                    configs.put(new ConfigCacheKey(config.getKey(), config.getDefMd5()), config);
+                }
+            }
+        }
+        List<RawConfig> loaded = new ArrayList<>(configs.values());
+        compact(loaded);
+        return loaded;
+    }
+
+    /** Appends the given config to the file */
+    synchronized void append(RawConfig config) throws IOException {
+        if (out == null) {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+        }
+        writeRecord(out, config);
+        out.flush();
+        records++;
+    }
+
+    /** Returns whether the file has so many replaced records that it should be compacted */
+    synchronized boolean shouldCompact(int liveConfigs) {
+        return records > Math.max(MIN_RECORDS_BEFORE_COMPACTION, 2 * liveConfigs);
+    }
+
+    /** Replaces the file with one containing only the given configs */
+    synchronized void compact(Collection<RawConfig> configs) throws IOException {
+        close();
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null) {
+            Files.createDirectories(parent.toPath());
+        }
+        File tmp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream tmpOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            tmpOut.writeInt(MAGIC);
+            for (RawConfig config : configs) {
+                writeRecord(tmpOut, config);
+            }
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        records = configs.size();
+    }
+
+    synchronized void close() throws IOException {
+        if (out != null) {
+            out.close();
+            out = null;
+        }
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    private static void writeRecord(DataOutputStream out, RawConfig config) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream record = new DataOutputStream(bytes);
+        ConfigKey<?> key = config.getKey();
+        record.writeUTF(key.getName());
+        record.writeUTF(key.getConfigId());
+        record.writeUTF(key.getNamespace());
+        record.writeUTF(config.getDefMd5());
+        record.writeUTF(config.getConfigMd5());
+        record.writeLong(config.getGeneration());
+        record.writeUTF(config.getVespaVersion().map(VespaVersion::toString).orElse(""));
+        List<String> defContent = config.getDefContent();
+        record.writeInt(defContent.size());
+        for (String line : defContent) {
+            record.writeUTF(line);
+        }
+        Payload payload = config.getPayload();
+        CompressionInfo compressionInfo = payload.getCompressionInfo();
+        record.writeUTF(compressionInfo.getCompressionType().name());
+        record.writeInt(compressionInfo.getUncompressedSize());
+        record.writeInt(payload.getData().getByteLength());
+        record.write(payload.getData().getBytes(), 0, payload.getData().getByteLength());
+        record.flush();
+
+        out.writeInt(bytes.size());
+        out.writeLong(checksum(bytes.toByteArray()));
+        bytes.writeTo(out);
+    }
+
+    /** Returns the next config in the given stream, or null if there are no more complete and valid records */
+    private RawConfig readRecord(DataInputStream in) throws IOException {
+        byte[] bytes;
+        try {
+            int length = in.readInt();
+            long checksum = in.readLong();
+            if (length < 0 || length > file.length()) return truncated();
+            bytes = new byte[length];
+            in.readFully(bytes);
+            if (checksum(bytes) != checksum) return truncated();
+        } catch (EOFException e) {
+            return null;
+        }
+
+        DataInputStream record = new DataInputStream(new ByteArrayInputStream(bytes));
+        ConfigKey<?> key = new ConfigKey<>(record.readUTF(), record.readUTF(), record.readUTF());
+        String defMd5 = record.readUTF();
+        String configMd5 = record.readUTF();
+        long generation = record.readLong();
+        String vespaVersion = record.readUTF();
+        int defLines = record.readInt();
+        List<String> defContent = new ArrayList<>(defLines);
+        for (int i = 0; i < defLines; i++) {
+            defContent.add(record.readUTF());
+        }
+        CompressionType compressionType = CompressionType.valueOf(record.readUTF());
+        int uncompressedSize = record.readInt();
+        byte[] data = new byte[record.readInt()];
+        record.readFully(data);
+        Payload payload = Payload.from(new Utf8Array(data), CompressionInfo.create(compressionType, uncompressedSize));
+        return new RawConfig(key, defMd5, payload, configMd5, generation, defContent,
+                             vespaVersion.isEmpty() ? Optional.empty() : Optional.of(VespaVersion.fromString(vespaVersion)));
+    }
+
+    private RawConfig truncated() {
+        log.log(LogLevel.WARNING, "'" + file + "' ends with an incomplete record, which is dropped");
+        return null;
+    }
+
+    private static long checksum(byte[] bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length);
+        return crc.getValue();
+    }
+
+}
@@ -230,7 +230,7 @@ public class ConfigProxyRpcServer implements Runnable, TargetWatcher, RpcServer
     }
 
     public final void invalidateCache(Request req) {
-        proxyServer.getMemoryCache().clear();
+        proxyServer.getMemoryCache().invalidate();
         String[] s = new String[2];
         s[0] = "0";
         s[1] = "success";
@@ -1,6 +1,7 @@
 // Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.vespa.config.proxy;
 
+import com.yahoo.concurrent.DaemonThreadFactory;
 import com.yahoo.io.IOUtils;
 import com.yahoo.log.LogLevel;
 import com.yahoo.vespa.config.ConfigCacheKey;
@@ -9,15 +10,24 @@ import com.yahoo.vespa.config.RawConfig;
 import com.yahoo.vespa.config.protocol.CompressionType;
 import com.yahoo.vespa.config.protocol.Payload;
 import com.yahoo.vespa.defaults.Defaults;
+import com.yahoo.yolean.Exceptions;
 
 import java.io.File;
 import java.io.IOException;
 import java.io.Writer;
 import java.util.Collection;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Logger;
 
 /**
+ * A cache of configs, which may be backed by a {@link CacheFile}. Configs loaded from the file when the proxy
+ * starts are served right away, but are not verified with the config source before they are put again.
+ *
  * @author hmusum
  * @since 5.1.9
  */
@@ -28,12 +38,53 @@ public class MemoryCache {
     private final static String separator = ":";
     private static final String DEFAULT_DUMP_DIR = Defaults.getDefaults().underVespaHome("var/vespa/cache/config");
 
+    static final String DEFAULT_CACHE_FILE = Defaults.getDefaults().underVespaHome("var/vespa/cache/config/configproxy.cache");
+
     private final ConcurrentHashMap<ConfigCacheKey, RawConfig> cache = new ConcurrentHashMap<>(500, 0.75f);
+    // Keys of configs loaded from file, which have not been put since
+    private final Set<ConfigCacheKey> unverified = ConcurrentHashMap.newKeySet();
+    private volatile CacheFile cacheFile = null;
+    // Compacts the cache file, such that this is not done by the threads putting configs
+    private final ExecutorService compactor;
+    private final AtomicBoolean compactionPending = new AtomicBoolean(false);
+
+    public MemoryCache() {
+        this.compactor = null;
+    }
+
+    /**
+     * Creates a cache backed by the given file. The configs in the file are put in the cache,
+     * and all configs put in the cache later are written to the file.
+     */
+    public MemoryCache(File file) {
+        this.compactor = Executors.newSingleThreadExecutor(new DaemonThreadFactory("config-cache-compactor-"));
+        CacheFile cacheFile = new CacheFile(file);
+        try {
+            for (RawConfig config : cacheFile.load()) {
+                ConfigCacheKey key = new ConfigCacheKey(config.getKey(), config.getDefMd5());
+                cache.put(key, config);
+                unverified.add(key);
+            }
+            this.cacheFile = cacheFile;
+            log.log(LogLevel.INFO, "Loaded " + cache.size() + " configs from '" + file + "'");
+        } catch (IOException | RuntimeException e) {
+            log.log(LogLevel.WARNING, "Could not load config cache from '" + file + "', continuing without it: " +
+                    Exceptions.toMessageString(e));
+        }
+    }
 
     public RawConfig get(ConfigCacheKey key) {
         return cache.get(key);
     }
 
+    /**
+     * Returns whether the config for the given key was loaded from file and has not been put since,
+     * i.e. it may be out of date and must be verified by subscribing to it
+     */
+    boolean isUnverified(ConfigCacheKey key) {
+        return unverified.contains(key);
+    }
+
     /**
      * Put in cache, except when config has an error
      * @param config config to put in cache
@@ -44,7 +95,41 @@ public class MemoryCache {
         if (log.isLoggable(LogLevel.DEBUG)) {
             log.log(LogLevel.DEBUG, "Putting '" + config + "' into memory cache");
         }
-        cache.put(new ConfigCacheKey(config.getKey(), config.getDefMd5()), config);
+        ConfigCacheKey key = new ConfigCacheKey(config.getKey(), config.getDefMd5());
+        cache.put(key, config);
+        unverified.remove(key);
+        writeToFile(config);
+    }
+
+    private void writeToFile(RawConfig config) {
+        CacheFile cacheFile = this.cacheFile;
+        if (cacheFile == null) return;
+
+        try {
+            cacheFile.append(config);
+        } catch (IOException e) {
+            disableCacheFile(cacheFile, e);
+            return;
+        }
+        if (cacheFile.shouldCompact(cache.size()) && compactionPending.compareAndSet(false, true)) {
+            compactor.execute(() -> compact(cacheFile));
+        }
+    }
+
+    private void compact(CacheFile cacheFile) {
+        compactionPending.set(false);
+        if (this.cacheFile != cacheFile) return;
+        try {
+            cacheFile.compact(cache.values());
+        } catch (IOException e) {
+            disableCacheFile(cacheFile, e);
+        }
+    }
+
+    private void disableCacheFile(CacheFile cacheFile, IOException e) {
+        log.log(LogLevel.WARNING, "Could not write to config cache file '" + cacheFile.getFile() +
+                "', not writing to it anymore: " + Exceptions.toMessageString(e));
+        this.cacheFile = null;
     }
 
     boolean containsKey(ConfigCacheKey key) {
@@ -59,8 +144,44 @@ public class MemoryCache {
         return cache.size();
     }
 
+    /** Removes all configs from memory. Configs already written to the cache file are kept there */
     public void clear() {
         cache.clear();
+        unverified.clear();
+    }
+
+    /** Removes all configs, also from the cache file */
+    public void invalidate() {
+        clear();
+        CacheFile cacheFile = this.cacheFile;
+        if (cacheFile == null) return;
+
+        try {
+            cacheFile.compact(cache.values());
+        } catch (IOException e) {
+            log.log(LogLevel.WARNING, "Could not clear config cache file '" + cacheFile.getFile() + "': " +
+                    Exceptions.toMessageString(e));
+        }
+    }
+
+    /** Closes the cache file, if any, after completing any pending compaction of it */
+    void close() {
+        CacheFile cacheFile = this.cacheFile;
+        if (cacheFile == null) return;
+
+        try {
+            compactor.shutdown();
+            if ( ! compactor.awaitTermination(10, TimeUnit.SECONDS))
+                log.log(LogLevel.WARNING, "Timed out waiting for compaction of config cache file '" + cacheFile.getFile() + "'");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            cacheFile.close();
+        } catch (IOException e) {
+            log.log(LogLevel.WARNING, "Could not close config cache file '" + cacheFile.getFile() + "': " +
+                    Exceptions.toMessageString(e));
+        }
     }
 
     @Override
@@ -13,6 +13,7 @@ import com.yahoo.system.CatchSigTerm;
 import com.yahoo.vespa.config.*;
 import com.yahoo.vespa.config.protocol.JRTServerConfigRequest;
 
+import java.io.File;
 import java.util.List;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
@@ -206,8 +207,9 @@ public class ProxyServer implements Runnable {
 
         ConfigSourceSet configSources = new ConfigSourceSet(properties.configSources);
         DelayedResponses delayedResponses = new DelayedResponses(statistics);
+        MemoryCache memoryCache = properties.cacheFile.isEmpty() ? new MemoryCache() : new MemoryCache(new File(properties.cacheFile));
         ProxyServer proxyServer = new ProxyServer(new Spec(null, port), delayedResponses, configSources, statistics,
-                                                  defaultTimingValues(), true, new MemoryCache(), null);
+                                                  defaultTimingValues(), true, memoryCache, null);
         // catch termination signal
         proxyServer.setupSigTermHandler();
         Thread proxyserverThread = new Thread(proxyServer);
@@ -220,16 +222,20 @@ public class ProxyServer implements Runnable {
         // Read system properties
         long eventInterval = Long.getLong("eventinterval", ConfigProxyStatistics.defaultEventInterval);
         final String[] inputConfigSources = System.getProperty("proxyconfigsources", DEFAULT_PROXY_CONFIG_SOURCES).split(",");
-        return new Properties(eventInterval, inputConfigSources);
+        // Empty to run without a cache file
+        final String cacheFile = System.getProperty("cachefile", MemoryCache.DEFAULT_CACHE_FILE);
+        return new Properties(eventInterval, inputConfigSources, cacheFile);
     }
 
     static class Properties {
         final long eventInterval;
         final String[] configSources;
+        final String cacheFile;
 
-        Properties(long eventInterval, String[] configSources) {
+        Properties(long eventInterval, String[] configSources, String cacheFile) {
             this.eventInterval = eventInterval;
             this.configSources = configSources;
+            this.cacheFile = cacheFile;
         }
     }
 
@@ -257,6 +263,7 @@ public class ProxyServer implements Runnable {
         if (rpcServer != null) rpcServer.shutdown();
         if (delayedResponseScheduler != null) delayedResponseScheduler.cancel(true);
         flush();
+        memoryCache.close();
         if (statistics != null) {
             statistics.stop();
         }
@@ -102,8 +102,8 @@ class RpcConfigSourceClient implements ConfigSourceClient {
      * If the requested config is different from the one in cache, the cached request is returned immediately.
      * If they are equal, this method returns null.
      * <p>
-     * If the config was not in cache, this method starts a <em>Subscriber</em> in a separate thread
-     * that gets the config and calls updateSubscribers().
+     * If the config was not in cache, or was loaded from the cache file and is not yet verified,
+     * this method starts a <em>Subscriber</em> in a separate thread that gets the config and calls updateSubscribers().
      *
      * @param input The config to retrieve - can be empty (no payload), or have a valid payload.
      * @return A Config with a payload.
@@ -135,7 +135,8 @@ class RpcConfigSourceClient implements ConfigSourceClient {
                     ret = cachedConfig;
                 }
             }
-            if (!cachedConfig.isError()) {
+            // Configs loaded from the cache file are served, but must be verified with the config source
+            if (!cachedConfig.isError() && !memoryCache.isUnverified(configCacheKey)) {
                 needToGetConfig = false;
             }
         }
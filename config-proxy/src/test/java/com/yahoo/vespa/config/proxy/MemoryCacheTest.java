@@ -8,8 +8,15 @@ import com.yahoo.vespa.config.ConfigPayload;
 import com.yahoo.vespa.config.RawConfig;
 import com.yahoo.vespa.config.protocol.Payload;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Optional;
 
@@ -46,6 +53,9 @@ public class MemoryCacheTest {
     private Payload payload2;
     private Payload payloadDifferentMd5;
 
+    @Rule
+    public TemporaryFolder tmpFolder = new TemporaryFolder();
+
     @Before
     public void setup() {
         ArrayList<String> defContent = new ArrayList<>();
@@ -121,4 +131,83 @@ public class MemoryCacheTest {
         cache.clear();
         assertThat(cache.size(), is(0));
     }
+
+    @Test
+    public void configs_are_loaded_from_cache_file_as_unverified() throws IOException {
+        File file = new File(tmpFolder.getRoot(), "cache");
+        MemoryCache cache = new MemoryCache(file);
+        assertThat(cache.size(), is(0));
+        cache.put(config);
+        cache.put(config2);
+        RawConfig config2NextGeneration = new RawConfig(configKey2, defMd52, payload, configMd5, generation + 1,
+                                                        config2.getDefContent(), Optional.empty());
+        cache.put(config2NextGeneration);
+        assertFalse(cache.isUnverified(cacheKey));
+        cache.close();
+
+        MemoryCache loaded = new MemoryCache(file);
+        assertThat(loaded.size(), is(2));
+        assertTrue(loaded.isUnverified(cacheKey));
+        assertTrue(loaded.isUnverified(cacheKey2));
+        RawConfig response = loaded.get(cacheKey);
+        assertThat(response.getPayload().getData(), is(payload.getData()));
+        assertThat(response.getConfigMd5(), is(configMd5));
+        assertThat(response.getGeneration(), is(generation));
+        assertThat(response.getDefContent(), is(config.getDefContent()));
+        assertThat(loaded.get(cacheKey2).getGeneration(), is(generation + 1));
+        assertThat(loaded.get(cacheKey2).getPayload().getData(), is(payload.getData()));
+
+        loaded.put(config);
+        assertFalse(loaded.isUnverified(cacheKey));
+        assertTrue(loaded.isUnverified(cacheKey2));
+        loaded.close();
+    }
+
+    @Test
+    public void incomplete_record_at_end_of_cache_file_is_dropped() throws IOException {
+        File file = new File(tmpFolder.getRoot(), "cache");
+        MemoryCache cache = new MemoryCache(file);
+        cache.put(config);
+        cache.put(config2);
+        cache.close();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 3);
+        }
+
+        MemoryCache loaded = new MemoryCache(file);
+        assertThat(loaded.size(), is(1));
+        assertNotNull(loaded.get(cacheKey));
+        loaded.put(configDifferentMd5);
+        loaded.close();
+
+        assertThat(new MemoryCache(file).size(), is(2));
+    }
+
+    @Test
+    public void invalidate_removes_configs_from_cache_file() throws IOException {
+        File file = new File(tmpFolder.getRoot(), "cache");
+        MemoryCache cache = new MemoryCache(file);
+        cache.put(config);
+        cache.clear();
+        cache.close();
+        assertThat(new MemoryCache(file).size(), is(1));
+
+        cache = new MemoryCache(file);
+        cache.invalidate();
+        cache.close();
+        assertThat(new MemoryCache(file).size(), is(0));
+    }
+
+    @Test
+    public void file_which_is_not_a_cache_file_is_left_as_is() throws IOException {
+        File file = new File(tmpFolder.getRoot(), "not-a-cache");
+        byte[] content = "Not a config cache file".getBytes(StandardCharsets.UTF_8);
+        Files.write(file.toPath(), content);
+
+        MemoryCache cache = new MemoryCache(file);
+        assertThat(cache.size(), is(0));
+        cache.put(config);
+        cache.close();
+        assertArrayEquals(content, Files.readAllBytes(file.toPath()));
+    }
 }
@@ -215,6 +215,7 @@ public class ProxyServerTest {
         assertThat(properties.eventInterval, is(ConfigProxyStatistics.defaultEventInterval));
         assertThat(properties.configSources.length, is(1));
         assertThat(properties.configSources[0], is(ProxyServer.DEFAULT_PROXY_CONFIG_SOURCES));
+        assertThat(properties.cacheFile, is(MemoryCache.DEFAULT_CACHE_FILE));
     }
 
     static RawConfig createConfigWithNextConfigGeneration(RawConfig config, int errorCode) {
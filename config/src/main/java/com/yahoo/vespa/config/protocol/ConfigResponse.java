@@ -38,4 +38,12 @@ public interface ConfigResponse {
 
     CompressionInfo getCompressionInfo();
 
+    /**
+     * Returns the payload of this with the given compression. Implementations may keep the payload
+     * for each compression type, so that a cached response is only compressed once.
+     */
+    default Payload getPayload(CompressionType compressionType) {
+        return Payload.from(getPayload(), getCompressionInfo()).withCompression(compressionType);
+    }
+
 }
@@ -11,6 +11,8 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Class for serializing config responses based on {@link com.yahoo.slime.Slime} implementing the {@link ConfigResponse} interface.
@@ -25,6 +27,8 @@ public class SlimeConfigResponse implements ConfigResponse {
     private final InnerCNode targetDef;
     private final long generation;
     private final String configMd5;
+    // The payload for each compression type requested, shared by all requests for this response
+    private final Map<CompressionType, Payload> payloads = new ConcurrentHashMap<>(2);
 
     public static SlimeConfigResponse fromConfigPayload(ConfigPayload payload, InnerCNode targetDef, long generation, String configMd5) {
         Utf8Array data = payload.toUtf8Array(true);
@@ -69,7 +73,12 @@ public class SlimeConfigResponse implements ConfigResponse {
 
     @Override
     public void serialize(OutputStream os, CompressionType type) throws IOException {
-        os.write(Payload.from(payload, compressionInfo).withCompression(type).getData().getBytes());
+        os.write(getPayload(type).getData().getBytes());
+    }
+
+    @Override
+    public Payload getPayload(CompressionType compressionType) {
+        return payloads.computeIfAbsent(compressionType, type -> Payload.from(payload, compressionInfo).withCompression(type));
     }
 
     @Override
@@ -17,6 +17,7 @@ import java.util.List;
 
 import static org.hamcrest.core.Is.is;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThat;
 
 /**
@@ -63,4 +64,20 @@ public class ConfigResponseTest {
         response.serialize(baos, CompressionType.UNCOMPRESSED);
         assertThat(baos.toString(), is("{\"boolval\":false,\"doubleval\":0.0,\"enumval\":\"VAL1\",\"intval\":0,\"longval\":0,\"stringval\":\"s\"}"));
     }
+
+    @Test
+    public void require_that_slime_response_payload_is_created_once_per_compression_type() {
+        ConfigPayload configPayload = ConfigPayload.fromInstance(new SimpletypesConfig(new SimpletypesConfig.Builder()));
+        Utf8Array data = configPayload.toUtf8Array(true);
+        Utf8Array bytes = new Utf8Array(new LZ4PayloadCompressor().compress(data.getBytes()));
+        ConfigResponse response = new SlimeConfigResponse(bytes, null, 3, "mymd5", CompressionInfo.create(CompressionType.LZ4, data.getByteLength()));
+
+        Payload compressed = response.getPayload(CompressionType.LZ4);
+        assertSame(bytes, compressed.getData());
+        assertSame(compressed, response.getPayload(CompressionType.LZ4));
+
+        Payload uncompressed = response.getPayload(CompressionType.UNCOMPRESSED);
+        assertThat(uncompressed.getData(), is(data));
+        assertSame(uncompressed, response.getPayload(CompressionType.UNCOMPRESSED));
+    }
 }
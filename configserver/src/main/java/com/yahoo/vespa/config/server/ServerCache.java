@@ -8,6 +8,7 @@ import com.yahoo.vespa.config.protocol.ConfigResponse;
 
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Cache that holds configs and config definitions. It has separate maps for the separate
@@ -22,14 +23,25 @@ public class ServerCache {
     // NOTE: The reason we do a double mapping here is to dedup configs that have the same md5.
     private final Map<ConfigCacheKey, String> md5Sums = new ConcurrentHashMap<>();
     private final Map<String, ConfigResponse> md5ToConfig = new ConcurrentHashMap<>();
+    private final AtomicLong configBytes = new AtomicLong();
 
     public void addDef(ConfigDefinitionKey key, ConfigDefinition def) {
         defs.put(key, def);
     }
 
-    public void put(ConfigCacheKey key, ConfigResponse config, String configMd5) {
+    /**
+     * Adds a config to this cache. If a config with the same md5 is already cached, that one is kept,
+     * so that all keys with equal config share the same response, and the payload is only stored once.
+     *
+     * @return the response cached for the given md5
+     */
+    public ConfigResponse put(ConfigCacheKey key, ConfigResponse config, String configMd5) {
+        ConfigResponse cached = md5ToConfig.computeIfAbsent(configMd5, md5 -> {
+            configBytes.addAndGet(config.getPayload().getByteLength());
+            return config;
+        });
         md5Sums.put(key, configMd5);
-        md5ToConfig.put(configMd5, config);
+        return cached;
     }
 
     public ConfigResponse get(ConfigCacheKey key) {
@@ -45,6 +57,7 @@ public class ServerCache {
         sb.append("defs:        ").append(defs.size()).append("\n");
         sb.append("md5sums:     ").append(md5Sums.size()).append("\n");
         sb.append("md5ToConfig: ").append(md5ToConfig.size()).append("\n");
+        sb.append("bytes:       ").append(configBytes.get()).append("\n");
 
         return sb.toString();
     }
@@ -69,4 +82,12 @@ public class ServerCache {
         return md5Sums.size();
     }
 
+    /**
+     * The size of the payloads of the different {@link ConfigResponse} elements, as created
+     * @return bytes
+     */
+    public long configBytes() {
+        return configBytes.get();
+    }
+
 }
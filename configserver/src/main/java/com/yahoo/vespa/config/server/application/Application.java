@@ -113,9 +113,11 @@ public class Application implements ModelResult {
                 if (logDebug()) {
                     debug("Found config " + cacheKey + " in cache");
                 }
+                metricUpdater.incCacheHits();
                 metricUpdater.incrementProcTime(System.currentTimeMillis() - start);
                 return config;
             }
+            metricUpdater.incCacheMisses();
         }
 
         ConfigDefinition def = getTargetDef(req);
@@ -135,9 +137,10 @@ public class Application implements ModelResult {
         ConfigResponse configResponse = responseFactory.createResponse(payload, def.getCNode(), appGeneration);
         metricUpdater.incrementProcTime(System.currentTimeMillis() - start);
         if (!req.noCache()) {
-            cache.put(cacheKey, configResponse, configResponse.getConfigMd5());
+            configResponse = cache.put(cacheKey, configResponse, configResponse.getConfigMd5());
             metricUpdater.setCacheConfigElems(cache.configElems());
             metricUpdater.setCacheChecksumElems(cache.checkSumElems());
+            metricUpdater.setCacheConfigBytes(cache.configBytes());
         }
         return configResponse;
     }
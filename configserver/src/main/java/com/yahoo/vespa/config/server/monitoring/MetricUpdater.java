@@ -31,8 +31,12 @@ public class MetricUpdater {
     private static final String METRIC_APPLICATIONS = getMetricName("applications");
     private static final String METRIC_CACHE_CONFIG_ELEMENTS = getMetricName("cacheConfigElems");
     private static final String METRIC_CACHE_CONFIG_CHECKSUMS = getMetricName("cacheChecksumElems");
+    private static final String METRIC_CACHE_CONFIG_BYTES = getMetricName("cacheConfigBytes");
+    private static final String METRIC_CACHE_HITS = getMetricName("cacheHits");
+    private static final String METRIC_CACHE_MISSES = getMetricName("cacheMisses");
     private static final String METRIC_DELAYED_RESPONSES = getMetricName("delayedResponses");
     private static final String METRIC_RPCSERVER_WORK_QUEUE_SIZE = getMetricName("rpcServerWorkQueueSize");
+    private static final String METRIC_DELAYED_RESPONSE_WAKEUP_LATENCY = getMetricName("delayedResponseWakeupLatency");
 
 
     private final Metrics metrics;
@@ -76,6 +80,29 @@ public class MetricUpdater {
         staticMetrics.put(METRIC_CACHE_CONFIG_CHECKSUMS, elems);
     }
 
+    /**
+     * Sets the size of the config payloads in the {@link ServerCache}
+     *
+     * @param bytes size of payloads
+     */
+    public void setCacheConfigBytes(long bytes) {
+        staticMetrics.put(METRIC_CACHE_CONFIG_BYTES, bytes);
+    }
+
+    /**
+     * Increment the number of config requests answered from the {@link ServerCache}.
+     */
+    public void incCacheHits() {
+        metrics.increment(METRIC_CACHE_HITS, metricContext);
+    }
+
+    /**
+     * Increment the number of config requests which had to be resolved because the config was not in the {@link ServerCache}.
+     */
+    public void incCacheMisses() {
+        metrics.increment(METRIC_CACHE_MISSES, metricContext);
+    }
+
     /**
      * Sets the number of outstanding responses (unchanged config in long poll)
      *
@@ -219,4 +246,13 @@ public class MetricUpdater {
     public void setRpcServerQueueSize(int numQueued) {
         metrics.set(METRIC_RPCSERVER_WORK_QUEUE_SIZE, numQueued, metricContext);
     }
+
+    /**
+     * Set the time from config was activated until all delayed responses waiting for it were handled.
+     *
+     * @param millis latency in milliseconds
+     */
+    public void setDelayedResponseWakeupLatency(long millis) {
+        metrics.set(METRIC_DELAYED_RESPONSE_WAKEUP_LATENCY, millis, metricContext);
+    }
 }
@@ -1,10 +1,10 @@
 // Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.vespa.config.server.rpc;
 
-import com.yahoo.concurrent.ThreadFactoryFactory;
 import com.yahoo.jrt.Target;
 import com.yahoo.jrt.TargetWatcher;
 import com.yahoo.log.LogLevel;
+import com.yahoo.vespa.config.ConfigKey;
 import com.yahoo.vespa.config.protocol.JRTServerConfigRequest;
 import com.yahoo.vespa.config.server.GetConfigContext;
 import com.yahoo.vespa.config.server.monitoring.MetricUpdater;
@@ -14,6 +14,8 @@ import com.yahoo.vespa.config.server.tenant.Tenants;
 
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 
 /**
@@ -21,74 +23,119 @@ import java.util.logging.Logger;
  * A delayed response is a response sent at request (server) timeout
  * for a config which has not changed since the request was initiated.
  *
+ * Delayed responses are kept per application and config key, so that reloading config for an application
+ * only touches the responses for that application, and responses for the same config can be handled together.
+ * The timeouts are kept in a {@link TimeoutWheel}, which is cheap to add to and cancel from,
+ * also with many thousands of waiting requests.
+ *
  * @author hmusum
  */
 public class DelayedConfigResponses {
     private static final Logger log = Logger.getLogger(DelayedConfigResponses.class.getName());
+    private static final long TIMEOUT_TICK_MILLIS = 50;
+    private static final int TIMEOUT_WHEEL_SIZE = 2048;
+
     private final RpcServer rpcServer;
 
-    private final ScheduledExecutorService executorService;
+    private final TimeoutWheel timeouts;
     private final boolean useJrtWatcher;
 
     private Map<ApplicationId, MetricUpdater> metrics = new ConcurrentHashMap<>();
-    
-    /* Requests that resolve to config that has not changed are put on this queue. When reloading
-       config, all requests on this queue are reprocessed as if they were a new request */
-    private final Map<ApplicationId, BlockingQueue<DelayedConfigResponse>> delayedResponses =
-            new ConcurrentHashMap<>();
-            
-    public DelayedConfigResponses(RpcServer rpcServer, int numTimerThreads) {
-        this(rpcServer, numTimerThreads, true);
+
+    /* Requests that resolve to config that has not changed are kept here. When reloading
+       config, all requests for the application are reprocessed as if they were a new request */
+    private final Map<ApplicationId, ApplicationResponses> delayedResponses = new ConcurrentHashMap<>();
+
+    public DelayedConfigResponses(RpcServer rpcServer) {
+        this(rpcServer, true);
     }
 
     // Since JRT does not allow adding watcher for "fake" requests, we must be able to disable it for unit tests :(
-    DelayedConfigResponses(RpcServer rpcServer, int numTimerThreads, boolean useJrtWatcher) {
+    DelayedConfigResponses(RpcServer rpcServer, boolean useJrtWatcher) {
         this.rpcServer = rpcServer;
-        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(numTimerThreads, ThreadFactoryFactory.getThreadFactory(DelayedConfigResponses.class.getName()));
-        executor.setRemoveOnCancelPolicy(true);
-        this.executorService = executor;
+        this.timeouts = new TimeoutWheel(DelayedConfigResponses.class.getName(), TIMEOUT_TICK_MILLIS, TIMEOUT_WHEEL_SIZE);
         this.useJrtWatcher = useJrtWatcher;
     }
 
     List<DelayedConfigResponse> allDelayedResponses() {
         List<DelayedConfigResponse> responses = new ArrayList<>();
-        for (Map.Entry<ApplicationId, BlockingQueue<DelayedConfigResponse>> entry : delayedResponses.entrySet()) {
-            responses.addAll(entry.getValue());
+        for (ApplicationResponses applicationResponses : delayedResponses.values()) {
+            for (Set<DelayedConfigResponse> responsesForConfig : applicationResponses.byConfig.values()) {
+                responses.addAll(responsesForConfig);
+            }
         }
         return responses;
     }
 
+    /** The delayed responses of an application, by config key */
+    private static class ApplicationResponses {
+
+        final Map<ConfigKey<?>, Set<DelayedConfigResponse>> byConfig = new ConcurrentHashMap<>();
+        final AtomicInteger size = new AtomicInteger();
+
+        void add(DelayedConfigResponse response) {
+            byConfig.compute(response.request.getConfigKey(), (key, responses) -> {
+                if (responses == null) {
+                    responses = ConcurrentHashMap.newKeySet();
+                }
+                responses.add(response);
+                return responses;
+            });
+            size.incrementAndGet();
+        }
+
+        void remove(DelayedConfigResponse response) {
+            byConfig.computeIfPresent(response.request.getConfigKey(), (key, responses) -> {
+                if (responses.remove(response)) {
+                    size.decrementAndGet();
+                }
+                return responses.isEmpty() ? null : responses;
+            });
+        }
+
+    }
+
     /**
-     * The run method of this class is run by a Timer when the timeout expires.
-     * The timer associated with this response must be cancelled first.
+     * The run method of this class is run by the timeout wheel when the timeout expires.
+     * Only one of running and cancelling a response has any effect.
      */
-    public class DelayedConfigResponse implements Runnable, TargetWatcher {
+    public class DelayedConfigResponse implements TimeoutWheel.Task, TargetWatcher {
 
         final JRTServerConfigRequest request;
-        private final BlockingQueue<DelayedConfigResponse> delayedResponsesQueue;
+        private final ApplicationResponses applicationResponses;
         private final ApplicationId app;
-        private ScheduledFuture<?> future;
+        private final AtomicBoolean done = new AtomicBoolean(false);
 
-        public DelayedConfigResponse(JRTServerConfigRequest req, BlockingQueue<DelayedConfigResponse> delayedResponsesQueue, ApplicationId app) {
+        private DelayedConfigResponse(JRTServerConfigRequest req, ApplicationResponses applicationResponses, ApplicationId app) {
             this.request = req;
-            this.delayedResponsesQueue = delayedResponsesQueue;
+            this.applicationResponses = applicationResponses;
             this.app = app;
         }
 
-        public synchronized void run() {
-            remove();
+        @Override
+        public void run() {
+            if ( ! complete()) return;
             rpcServer.addToRequestQueue(request, true, null);
             if (log.isLoggable(LogLevel.DEBUG)) {
                 log.log(LogLevel.DEBUG, logPre()+"DelayedConfigResponse. putting on queue: " + request.getShortDescription());
             }
         }
 
+        @Override
+        public boolean isDone() {
+            return done.get();
+        }
+
         /**
-         * Remove delayed response from its queue
+         * Marks this as done and removes it from the delayed responses, if it was not done already
+         *
+         * @return true if this call completed the response
          */
-        private void remove() {
-            delayedResponsesQueue.remove(this);
+        private boolean complete() {
+            if ( ! done.compareAndSet(false, true)) return false;
+            applicationResponses.remove(this);
             removeWatcher();
+            return true;
         }
 
         public JRTServerConfigRequest getRequest() {
@@ -102,22 +149,23 @@ public class DelayedConfigResponses {
         }
 
         public ApplicationId getAppId() { return app; }
-        
+
         String logPre() {
             return Tenants.logPre(app);
         }
 
-        public synchronized boolean cancel() {
-            remove();
-            if (future == null) {
-                throw new IllegalStateException("Cannot cancel a task that has not been scheduled");
-            }
-            return future.cancel(false);
+        /**
+         * Cancels the timeout of this response, and removes it from the delayed responses.
+         *
+         * @return true if this was cancelled, false if it has already timed out or been cancelled
+         */
+        public boolean cancel() {
+            return complete();
         }
 
-        public synchronized void schedule(long delay) throws InterruptedException {
-            delayedResponsesQueue.put(this);
-            future = executorService.schedule(this, delay, TimeUnit.MILLISECONDS);
+        void schedule(long delay) {
+            applicationResponses.add(this);
+            timeouts.schedule(this, delay);
             addWatcher();
         }
 
@@ -147,7 +195,7 @@ public class DelayedConfigResponses {
 
     /**
      * Creates a DelayedConfigResponse object for taking care of requests that should
-     * not be responded to right away.  Puts the object on the delayedResponsesQueue.
+     * not be responded to right away, and adds it to the delayed responses of its application.
      *
      * NOTE: This method is called from multiple threads, so everything here needs to be
      * thread safe!
@@ -157,59 +205,55 @@ public class DelayedConfigResponses {
     public final void delayResponse(JRTServerConfigRequest request, GetConfigContext context) {
         if (request.isDelayedResponse()) {
             log.log(LogLevel.DEBUG, context.logPre()+"Request already delayed");
-        } else {            
-            createQueueIfNotExists(context);
-            BlockingQueue<DelayedConfigResponse> delayedResponsesQueue = delayedResponses.get(context.applicationId());
-            DelayedConfigResponse response = new DelayedConfigResponse(request, delayedResponsesQueue, context.applicationId());
+        } else {
+            ApplicationResponses applicationResponses =
+                    delayedResponses.computeIfAbsent(context.applicationId(), app -> new ApplicationResponses());
+            DelayedConfigResponse response = new DelayedConfigResponse(request, applicationResponses, context.applicationId());
             request.setDelayedResponse(true);
-            try {
-                if (log.isLoggable(LogLevel.DEBUG)) {
-                    log.log(LogLevel.DEBUG, context.logPre()+"Putting on delayedRequests queue (" + delayedResponsesQueue.size() + " elements): " +
-                            response.getRequest().getShortDescription());
-                }
-                // Config will be resolved in the run() method of DelayedConfigResponse,
-                // when the timer expires or config is updated/reloaded.
-                response.schedule(Math.max(0, request.getTimeout()));
-                metricDelayedResponses(context.applicationId(), delayedResponsesQueue.size());
-            } catch (InterruptedException e) {
-                log.log(LogLevel.WARNING, context.logPre()+"Interrupted when putting on delayed requests queue.");
+            if (log.isLoggable(LogLevel.DEBUG)) {
+                log.log(LogLevel.DEBUG, context.logPre()+"Adding to delayed requests (" + applicationResponses.size.get() + " elements): " +
+                        response.getRequest().getShortDescription());
             }
+            // Config will be resolved in the run() method of DelayedConfigResponse,
+            // when the timer expires or config is updated/reloaded.
+            response.schedule(Math.max(0, request.getTimeout()));
+            metricDelayedResponses(context.applicationId(), applicationResponses.size.get());
         }
     }
 
-    private synchronized void metricDelayedResponses(ApplicationId app, int elems) {
-        if ( ! metrics.containsKey(app)) {
-            metrics.put(app, rpcServer.metricUpdaterFactory().getOrCreateMetricUpdater(Metrics.createDimensions(app)));
-        }
-        metrics.get(app).setDelayedResponses(elems);
+    private void metricDelayedResponses(ApplicationId app, int elems) {
+        metricUpdater(app).setDelayedResponses(elems);
     }
 
-    private synchronized void createQueueIfNotExists(GetConfigContext context) {
-        if ( ! delayedResponses.containsKey(context.applicationId())) {
-            delayedResponses.put(context.applicationId(), new LinkedBlockingQueue<>());
-        }
+    MetricUpdater metricUpdater(ApplicationId app) {
+        return metrics.computeIfAbsent(app, id -> rpcServer.metricUpdaterFactory().getOrCreateMetricUpdater(Metrics.createDimensions(id)));
     }
 
     public void stop() {
-        executorService.shutdown();
+        timeouts.stop();
     }
 
     /**
-     * Drains delayed responses queue and returns responses in an array
+     * Removes the delayed responses of an application, and returns them grouped by config key
      *
-     * @return and array of DelayedConfigResponse objects
+     * @return the delayed responses of the given application, which the caller must cancel before responding to them
      */
-    public List<DelayedConfigResponse> drainQueue(ApplicationId app) {
-        ArrayList<DelayedConfigResponse> ret = new ArrayList<>();
-        
-        if (delayedResponses.containsKey(app)) {
-            BlockingQueue<DelayedConfigResponse> queue = delayedResponses.get(app);
-            queue.drainTo(ret);
+    public Map<ConfigKey<?>, List<DelayedConfigResponse>> drainQueue(ApplicationId app) {
+        Map<ConfigKey<?>, List<DelayedConfigResponse>> ret = new HashMap<>();
+        ApplicationResponses applicationResponses = delayedResponses.remove(app);
+        if (applicationResponses != null) {
+            for (Map.Entry<ConfigKey<?>, Set<DelayedConfigResponse>> entry : applicationResponses.byConfig.entrySet()) {
+                ret.put(entry.getKey(), new ArrayList<>(entry.getValue()));
+            }
         }
-        metrics.remove(app);
         return ret;
     }
 
+    /** Removes the metrics of an application which is removed, after its delayed responses are drained */
+    public void applicationRemoved(ApplicationId app) {
+        metrics.remove(app);
+    }
+
     public String toString() {
         return "DelayedConfigResponses. Average Size=" + size();
     }
@@ -217,9 +261,9 @@ public class DelayedConfigResponses {
     public int size() {
         int totalQueueSize = 0;
         int numQueues = 0;
-        for (Map.Entry<ApplicationId, BlockingQueue<DelayedConfigResponse>> e : delayedResponses.entrySet()) {
+        for (ApplicationResponses applicationResponses : delayedResponses.values()) {
             numQueues++;
-            totalQueueSize+=e.getValue().size();
+            totalQueueSize += applicationResponses.size.get();
         }
         return (numQueues > 0) ? (totalQueueSize / numQueues) : 0;
     }
@@ -18,6 +18,7 @@ import com.yahoo.jrt.StringValue;
 import com.yahoo.jrt.Supervisor;
 import com.yahoo.jrt.Transport;
 import com.yahoo.log.LogLevel;
+import com.yahoo.vespa.config.ConfigKey;
 import com.yahoo.vespa.config.ErrorCode;
 import com.yahoo.vespa.config.JRTMethods;
 import com.yahoo.vespa.config.protocol.ConfigResponse;
@@ -46,6 +47,7 @@ import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CompletionService;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.RejectedExecutionException;
@@ -102,7 +104,7 @@ public class RpcServer implements Runnable, ReloadListener, TenantListener {
         this.hostLivenessTracker = hostLivenessTracker;
         BlockingQueue<Runnable> workQueue = new LinkedBlockingQueue<>(config.maxgetconfigclients());
         executorService = new ThreadPoolExecutor(config.numthreads(), config.numthreads(), 0, TimeUnit.SECONDS, workQueue, ThreadFactoryFactory.getThreadFactory(THREADPOOL_NAME));
-        delayedConfigResponses = new DelayedConfigResponses(this, config.numDelayedResponseThreads());
+        delayedConfigResponses = new DelayedConfigResponses(this);
         spec = new Spec(null, config.rpcport());
         hostRegistry = hostRegistries.getTenantHostRegistry();
         this.useRequestVersion = config.useVespaVersionInRequest();
@@ -189,23 +191,72 @@ public class RpcServer implements Runnable, ReloadListener, TenantListener {
     @Override
     public void configActivated(TenantName tenant, ApplicationSet applicationSet) {
         ApplicationId applicationId = applicationSet.getId();
-        configReloaded(delayedConfigResponses.drainQueue(applicationId), Tenants.logPre(applicationId));
+        configReloaded(applicationId);
         reloadSuperModel(tenant, applicationSet);
     }
 
     private void reloadSuperModel(TenantName tenant, ApplicationSet applicationSet) {
         superModelRequestHandler.reloadConfig(tenant, applicationSet);
-        configReloaded(delayedConfigResponses.drainQueue(ApplicationId.global()), Tenants.logPre(ApplicationId.global()));
+        configReloaded(ApplicationId.global());
     }
 
-    private void configReloaded(List<DelayedConfigResponses.DelayedConfigResponse> responses, String logPre) {
+    private void configReloaded(ApplicationId applicationId) {
+        Map<ConfigKey<?>, List<DelayedConfigResponses.DelayedConfigResponse>> responses = delayedConfigResponses.drainQueue(applicationId);
+        String logPre = Tenants.logPre(applicationId);
         if (log.isLoggable(LogLevel.DEBUG)) {
-            log.log(LogLevel.DEBUG, logPre + "Start of configReload: " + responses.size() + " requests on delayed requests queue");
+            log.log(LogLevel.DEBUG, logPre + "Start of configReload: " + responses.size() + " configs with requests on delayed requests queue");
         }
+        if (responses.isEmpty()) return;
+
+        long start = System.currentTimeMillis();
+        int tasksSubmitted = 0;
+        CompletionService<Integer> completionService = new ExecutorCompletionService<>(executorService);
+        // Requests for the same config resolve to the same cached response, so handle them together,
+        // but split the requests for each config over the threads of the pool when there are many of them
+        int threads = executorService.getMaximumPoolSize();
+        for (List<DelayedConfigResponses.DelayedConfigResponse> responsesForConfig : responses.values()) {
+            int responsesPerTask = (responsesForConfig.size() + threads - 1) / threads;
+            for (int from = 0; from < responsesForConfig.size(); from += responsesPerTask) {
+                List<DelayedConfigResponses.DelayedConfigResponse> responsesForTask =
+                        responsesForConfig.subList(from, Math.min(from + responsesPerTask, responsesForConfig.size()));
+                try {
+                    completionService.submit(() -> respondToDelayedResponses(responsesForTask, logPre));
+                    tasksSubmitted++;
+                } catch (RejectedExecutionException e) {
+                    // Do not wait for these requests if we were unable to execute
+                    respondWithQueueFullError(responsesForTask);
+                }
+            }
+        }
+        updateWorkQueueMetrics();
+
         int responsesSent = 0;
-        CompletionService<Boolean> completionService = new ExecutorCompletionService<>(executorService);
-        while (!responses.isEmpty()) {
-            DelayedConfigResponses.DelayedConfigResponse delayedConfigResponse = responses.remove(0);
+        for (int i = 0; i < tasksSubmitted; i++) {
+            try {
+                responsesSent += completionService.take().get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                log.log(LogLevel.WARNING, logPre + "Failed responding to delayed requests", e.getCause());
+            }
+        }
+        delayedConfigResponses.metricUpdater(applicationId).setDelayedResponseWakeupLatency(System.currentTimeMillis() - start);
+
+        log.log(LogLevel.DEBUG, logPre + "Finished reloading " + responsesSent + " requests");
+    }
+
+    private void respondWithQueueFullError(List<DelayedConfigResponses.DelayedConfigResponse> responses) {
+        for (DelayedConfigResponses.DelayedConfigResponse delayedConfigResponse : responses) {
+            if ( ! delayedConfigResponse.cancel()) continue;
+            delayedConfigResponse.request.setDelayedResponse(false);
+            delayedConfigResponse.request.addErrorResponse(ErrorCode.INTERNAL_ERROR, "getConfig request queue size is larger than configured max limit");
+            respond(delayedConfigResponse.request);
+        }
+    }
+
+    private int respondToDelayedResponses(List<DelayedConfigResponses.DelayedConfigResponse> responses, String logPre) {
+        int responsesSent = 0;
+        for (DelayedConfigResponses.DelayedConfigResponse delayedConfigResponse : responses) {
             // Discard the ones that we have already answered
             // Doing cancel here deals with the case where the timer is already running or has not run, so
             // there is no need for any extra check.
@@ -213,25 +264,15 @@ public class RpcServer implements Runnable, ReloadListener, TenantListener {
                 if (log.isLoggable(LogLevel.DEBUG)) {
                     logRequestDebug(LogLevel.DEBUG, logPre + "Timer cancelled for ", delayedConfigResponse.request);
                 }
-                // Do not wait for this request if we were unable to execute
-                if (addToRequestQueue(delayedConfigResponse.request, false, completionService)) {
-                    responsesSent++;
-                }
+                // It's no longer delayed if we get here
+                delayedConfigResponse.request.setDelayedResponse(false);
+                new GetConfigProcessor(this, delayedConfigResponse.request, false).run();
+                responsesSent++;
             } else {
                 log.log(LogLevel.DEBUG, logPre + "Timer already cancelled or finished or never scheduled");
             }
         }
-
-        for (int i = 0; i < responsesSent; i++) {
-
-            try {
-                completionService.take();
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-            }
-        }
-
-        log.log(LogLevel.DEBUG, logPre + "Finished reloading " + responsesSent + " requests");
+        return responsesSent;
     }
 
     private void logRequestDebug(LogLevel level, String message, JRTServerConfigRequest request) {
@@ -254,8 +295,9 @@ public class RpcServer implements Runnable, ReloadListener, TenantListener {
     @Override
     public void applicationRemoved(ApplicationId applicationId) {
         superModelRequestHandler.removeApplication(applicationId);
-        configReloaded(delayedConfigResponses.drainQueue(applicationId), Tenants.logPre(applicationId));
-        configReloaded(delayedConfigResponses.drainQueue(ApplicationId.global()), Tenants.logPre(ApplicationId.global()));
+        configReloaded(applicationId);
+        configReloaded(ApplicationId.global());
+        delayedConfigResponses.applicationRemoved(applicationId);
     }
 
     public void respond(JRTServerConfigRequest request) {
@@ -0,0 +1,121 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.config.server.rpc;
+
+import com.yahoo.concurrent.ThreadFactoryFactory;
+import com.yahoo.log.LogLevel;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * A hashed wheel of timeouts. Tasks are put in the bucket of the tick they expire in, and a single scheduled task
+ * advances the wheel one tick at a time, running the expired tasks of each bucket. Scheduling and cancelling
+ * a task is then cheap and lock free, no matter how many tasks are waiting, at the cost of running tasks up to
+ * one tick late. Tasks which are done before they expire are dropped when their bucket is visited.
+ *
+ * @author agent
+ */
+class TimeoutWheel {
+
+    private static final Logger log = Logger.getLogger(TimeoutWheel.class.getName());
+
+    /** A task which may be completed by someone else before it expires */
+    interface Task extends Runnable {
+
+        /** Returns whether this is already completed, and should not be run */
+        boolean isDone();
+
+    }
+
+    private static class Entry {
+
+        final Task task;
+        final long deadline;
+
+        Entry(Task task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+    }
+
+    private final Clock clock;
+    private final long tickMillis;
+    private final List<Queue<Entry>> buckets;
+    private final ScheduledExecutorService executor;
+    /** The last tick where the tasks of the bucket have been run. Only written by the executor thread */
+    private volatile long processedTick;
+
+    TimeoutWheel(String name, long tickMillis, int size) {
+        this(name, tickMillis, size, Clock.systemUTC());
+    }
+
+    TimeoutWheel(String name, long tickMillis, int size, Clock clock) {
+        this.clock = clock;
+        this.tickMillis = tickMillis;
+        this.buckets = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            buckets.add(new ConcurrentLinkedQueue<>());
+        }
+        this.processedTick = clock.millis() / tickMillis;
+        this.executor = Executors.newSingleThreadScheduledExecutor(ThreadFactoryFactory.getThreadFactory(name));
+        this.executor.scheduleAtFixedRate(this::advance, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /** Runs the given task after the given delay, unless it is done by then */
+    void schedule(Task task, long delayMillis) {
+        long deadline = clock.millis() + Math.max(0, delayMillis);
+        long tick = (deadline + tickMillis - 1) / tickMillis;
+        // The bucket after the processed tick may be in the middle of being processed, so use the one after that
+        tick = Math.max(tick, processedTick + 2);
+        buckets.get((int) (tick % buckets.size())).add(new Entry(task, deadline));
+    }
+
+    void stop() {
+        executor.shutdown();
+    }
+
+    /** Returns the number of tasks in the wheel, including those which are done but not yet dropped */
+    int size() {
+        int size = 0;
+        for (Queue<Entry> bucket : buckets) {
+            size += bucket.size();
+        }
+        return size;
+    }
+
+    void advance() {
+        long now = clock.millis();
+        long currentTick = now / tickMillis;
+        // Visit each bucket at most once, even if we are lagging by more than a round
+        for (long tick = Math.max(processedTick + 1, currentTick - buckets.size() + 1); tick <= currentTick; tick++) {
+            expire(buckets.get((int) (tick % buckets.size())), now);
+            processedTick = tick;
+        }
+    }
+
+    private void expire(Queue<Entry> bucket, long now) {
+        for (Iterator<Entry> it = bucket.iterator(); it.hasNext(); ) {
+            Entry entry = it.next();
+            if (entry.task.isDone()) {
+                it.remove();
+            } else if (entry.deadline <= now) {
+                it.remove();
+                try {
+                    entry.task.run();
+                } catch (RuntimeException e) {
+                    log.log(LogLevel.WARNING, "Running timed out task failed", e);
+                }
+            }
+        }
+    }
+
+}
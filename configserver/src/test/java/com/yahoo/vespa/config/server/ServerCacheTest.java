@@ -77,4 +77,16 @@ public class ServerCacheTest {
     public void testThatCacheWorksWithDifferentKeySameMd5() {
         assertTrue(cache.get(fooBarCacheKey) == cache.get(bazQuuxCacheKey));
     }
+
+    @Test
+    public void testThatConfigWithSameMd5IsStoredOnce() {
+        ConfigResponse cached = cache.get(fooBarCacheKey);
+        ConfigResponse added = SlimeConfigResponse.fromConfigPayload(ConfigPayload.empty(), payload.getCNode(), 2, configMd5);
+        ConfigCacheKey otherCacheKey = new ConfigCacheKey(new ConfigKey<>("foo", "id3", "bar"), defMd5);
+        assertTrue(cache.put(otherCacheKey, added, configMd5) == cached);
+        assertTrue(cache.get(otherCacheKey) == cached);
+        assertThat(cache.configElems(), is(2));
+        assertThat(cache.checkSumElems(), is(4));
+        assertThat(cache.configBytes(), is(2L * cached.getPayload().getByteLength()));
+    }
 }
@@ -18,6 +18,7 @@ import org.junit.Test;
 
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static org.hamcrest.CoreMatchers.is;
@@ -34,7 +35,7 @@ public class DelayedConfigResponseTest {
     public void testDelayedConfigResponses() {
 
         MockRpc rpc = new MockRpc(13337);
-        DelayedConfigResponses responses = new DelayedConfigResponses(rpc, 1, false);
+        DelayedConfigResponses responses = new DelayedConfigResponses(rpc, false);
         assertThat(responses.size(), is(0));
         JRTServerConfigRequest req = createRequest("foo", "md5", "myid", "mymd5", 3, 1000000, "bar");
         req.setDelayedResponse(true);
@@ -55,17 +56,36 @@ public class DelayedConfigResponseTest {
     public void testDelayResponseRemove() {
         GetConfigContext context = GetConfigContext.testContext(ApplicationId.defaultId());
         MockRpc rpc = new MockRpc(13337);
-        DelayedConfigResponses responses = new DelayedConfigResponses(rpc, 1, false);
+        DelayedConfigResponses responses = new DelayedConfigResponses(rpc, false);
         responses.delayResponse(createRequest("foolio", "md5", "myid", "mymd5", 3, 100000, "bar"), context);
         assertThat(responses.size(), is(1));
         responses.allDelayedResponses().get(0).cancel();
         assertThat(responses.size(), is(0));
     }
 
+    @Test
+    public void testDrainQueueGroupsByConfig() {
+        GetConfigContext context = GetConfigContext.testContext(ApplicationId.defaultId());
+        MockRpc rpc = new MockRpc(13337);
+        DelayedConfigResponses responses = new DelayedConfigResponses(rpc, false);
+        responses.delayResponse(createRequest("foo", "md5", "myid", "mymd5", 3, 100000, "bar"), context);
+        responses.delayResponse(createRequest("foo", "md5", "myid", "mymd5", 3, 100000, "bar"), context);
+        responses.delayResponse(createRequest("foolio", "md5", "myid", "mymd5", 3, 100000, "bar"), context);
+        assertThat(responses.size(), is(3));
+
+        Map<ConfigKey<?>, List<DelayedConfigResponses.DelayedConfigResponse>> drained = responses.drainQueue(ApplicationId.defaultId());
+        assertThat(drained.size(), is(2));
+        assertThat(drained.get(new ConfigKey<>("foo", "myid", "bar")).size(), is(2));
+        assertThat(drained.get(new ConfigKey<>("foolio", "myid", "bar")).size(), is(1));
+        assertThat(responses.size(), is(0));
+        assertTrue(responses.drainQueue(ApplicationId.defaultId()).isEmpty());
+        responses.stop();
+    }
+
     @Test
     public void testDelayedConfigResponse() {
         MockRpc rpc = new MockRpc(13337);
-        DelayedConfigResponses responses = new DelayedConfigResponses(rpc, 1, false);
+        DelayedConfigResponses responses = new DelayedConfigResponses(rpc, false);
         assertThat(responses.size(), is(0));
         assertThat(responses.toString(), is("DelayedConfigResponses. Average Size=0"));
         JRTServerConfigRequest req = createRequest("foo", "md5", "myid", "mymd5", 3, 100, "bar");
@@ -0,0 +1,108 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.config.server.rpc;
+
+import com.yahoo.test.ManualClock;
+import org.junit.After;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * @author agent
+ */
+public class TimeoutWheelTest {
+
+    // Ticks are long enough for the wheel's own thread to never advance it during a test
+    private static final long tick = Duration.ofHours(1).toMillis();
+
+    private final ManualClock clock = new ManualClock("2017-01-01T00:00:00");
+    private final TimeoutWheel wheel = new TimeoutWheel("test", tick, 8, clock);
+
+    @After
+    public void stop() {
+        wheel.stop();
+    }
+
+    @Test
+    public void tasks_are_run_when_they_expire() {
+        CountingTask first = new CountingTask();
+        CountingTask second = new CountingTask();
+        wheel.schedule(first, 3 * tick);
+        wheel.schedule(second, 5 * tick);
+        assertThat(wheel.size(), is(2));
+
+        advance(3 * tick);
+        assertThat(first.runs.get(), is(1));
+        assertThat(second.runs.get(), is(0));
+
+        advance(2 * tick);
+        assertThat(first.runs.get(), is(1));
+        assertThat(second.runs.get(), is(1));
+        assertThat(wheel.size(), is(0));
+    }
+
+    @Test
+    public void tasks_expiring_after_more_than_a_round_are_kept() {
+        CountingTask task = new CountingTask();
+        wheel.schedule(task, 10 * tick);
+
+        advance(8 * tick);
+        assertThat(task.runs.get(), is(0));
+        assertThat(wheel.size(), is(1));
+
+        advance(2 * tick);
+        assertThat(task.runs.get(), is(1));
+    }
+
+    @Test
+    public void done_tasks_are_dropped_without_running() {
+        CountingTask task = new CountingTask();
+        wheel.schedule(task, 2 * tick);
+        task.done = true;
+
+        advance(2 * tick);
+        assertThat(task.runs.get(), is(0));
+        assertThat(wheel.size(), is(0));
+    }
+
+    @Test
+    public void tasks_without_delay_are_run_on_the_next_ticks() {
+        CountingTask task = new CountingTask();
+        wheel.schedule(task, 0);
+
+        advance(tick);
+        assertThat(task.runs.get(), is(0));
+        advance(tick);
+        assertThat(task.runs.get(), is(1));
+    }
+
+    private void advance(long millis) {
+        for (long advanced = 0; advanced < millis; advanced += tick) {
+            clock.advance(Duration.ofMillis(tick));
+            wheel.advance();
+        }
+    }
+
+    private static class CountingTask implements TimeoutWheel.Task {
+
+        final AtomicInteger runs = new AtomicInteger();
+        volatile boolean done = false;
+
+        @Override
+        public void run() {
+            runs.incrementAndGet();
+            done = true;
+        }
+
+        @Override
+        public boolean isDone() {
+            return done;
+        }
+
+    }
+
+}
@@ -11,7 +11,11 @@ import com.yahoo.yolean.Exceptions;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -28,6 +32,9 @@ public class ContentChannelOutputStream extends OutputStream implements Writable
     private long byteBufferData = 0L;
     private boolean failed = false;
     private final Object failLock = new Object();
+    /** The bytes handed to the endpoint which it has not yet completed writing */
+    private final AtomicLong pendingBytes = new AtomicLong(0);
+    private final List<DrainListener> drainListeners = new ArrayList<>();
 
     public ContentChannelOutputStream(final ContentChannel endpoint) {
         this.endpoint = endpoint;
@@ -133,8 +140,10 @@ public class ContentChannelOutputStream extends OutputStream implements Writable
         // Don't do a buffer.flush() from here, this method is used by the
         // buffer itself
         try {
-            byteBufferData += (long) src.remaining();
-            endpoint.write(src, new LoggingCompletionHandler());
+            int size = src.remaining();
+            byteBufferData += (long) size;
+            pendingBytes.addAndGet(size);
+            endpoint.write(src, new LoggingCompletionHandler(size));
         } catch (RuntimeException e) {
             throw new IOException(Exceptions.toMessageString(e), e);
         }
@@ -149,13 +158,72 @@ public class ContentChannelOutputStream extends OutputStream implements Writable
         return buffer.appended() + byteBufferData;
     }
 
+    /**
+     * Returns the number of bytes sent to the wrapped ContentChannel which it has not yet completed writing.
+     * This grows when the client reads slower than the response is produced.
+     */
+    public long pendingBytes() {
+        return pendingBytes.get();
+    }
+
+    /**
+     * Runs the given listener once the number of {@link #pendingBytes() pending bytes} is at or below the
+     * given number. The listener is run at once in the calling thread if this is already the case, and otherwise
+     * in the thread completing a write, so it must not block.
+     */
+    public void whenPendingBytesAtMost(long bytes, Runnable listener) {
+        synchronized (drainListeners) {
+            if (pendingBytes.get() > bytes) {
+                drainListeners.add(new DrainListener(bytes, listener));
+                return;
+            }
+        }
+        listener.run();
+    }
+
+    private void writeCompleted(int size) {
+        long pending = pendingBytes.addAndGet(-size);
+        List<Runnable> drained = new ArrayList<>();
+        synchronized (drainListeners) {
+            for (Iterator<DrainListener> i = drainListeners.iterator(); i.hasNext(); ) {
+                DrainListener drainListener = i.next();
+                if (pending <= drainListener.bytes) {
+                    drained.add(drainListener.listener);
+                    i.remove();
+                }
+            }
+        }
+        drained.forEach(Runnable::run);
+    }
+
+    private static class DrainListener {
+
+        final long bytes;
+        final Runnable listener;
+
+        DrainListener(long bytes, Runnable listener) {
+            this.bytes = bytes;
+            this.listener = listener;
+        }
+
+    }
+
     class LoggingCompletionHandler implements CompletionHandler {
+
+        private final int size;
+
+        LoggingCompletionHandler(int size) {
+            this.size = size;
+        }
+
         @Override
         public void completed() {
+            writeCompleted(size);
         }
 
         @Override
         public void failed(Throwable t) {
+            writeCompleted(size);
             Level logLevel;
             synchronized (failLock) {
                 if (failed) {
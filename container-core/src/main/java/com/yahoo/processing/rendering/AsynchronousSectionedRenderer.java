@@ -5,6 +5,7 @@ import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.MoreExecutors;
 import com.google.common.util.concurrent.SettableFuture;
 import com.yahoo.concurrent.ThreadFactoryFactory;
+import com.yahoo.container.jdisc.ContentChannelOutputStream;
 import com.yahoo.jdisc.handler.CompletionHandler;
 import com.yahoo.jdisc.handler.ContentChannel;
 import com.yahoo.log.LogLevel;
@@ -91,8 +92,25 @@ public abstract class AsynchronousSectionedRenderer<RESPONSE extends Response> e
      */
     public abstract void endResponse() throws IOException;
 
+    /**
+     * Invoked before rendering suspends to wait for more data or for the client to catch up, after which the stream
+     * is flushed. Renderers which buffer output outside the stream must write it to the stream here, such that
+     * the client can receive all data rendered so far. This default implementation does nothing.
+     *
+     * @throws IOException passed on from the stream
+     */
+    protected void flushBufferedOutput() throws IOException { }
+
     private static final Logger logger = Logger.getLogger(AsynchronousSectionedRenderer.class.getName());
 
+    /**
+     * Rendering of data items is suspended when more than this number of bytes are written to the network
+     * but not yet consumed by the client, to avoid buffering entire large responses for slow clients.
+     */
+    private static final long MAX_PENDING_BYTES = 1024 * 1024;
+    /** Suspended rendering is resumed when the number of pending bytes drops to this */
+    private static final long RESUME_PENDING_BYTES = MAX_PENDING_BYTES / 4;
+
     // NOTE: Renderers are *prototype objects* - a new instance is created for each rendering by invoking 
     // clone(), init() and then render().
     // Hence any field which is not reinitialized in init() or render() will be *reused* in all rendering operations
@@ -331,6 +349,9 @@ public abstract class AsynchronousSectionedRenderer<RESPONSE extends Response> e
 
         private boolean listStartIsRendered = false;
 
+        /** Whether rendering of this is suspended until the client catches up */
+        private boolean suspended = false;
+
         /** The list which this is listening to */
         private final DataList list;
 
@@ -353,10 +374,11 @@ public abstract class AsynchronousSectionedRenderer<RESPONSE extends Response> e
                 list.complete().get(); // trigger completion if not done already to invoke any listeners on that event
             boolean startedRendering = renderData();
             if ( ! startedRendering || uncompletedChildren > 0) return; // children must render to completion first
+            if (suspended) return; // resumed when the client has consumed more of the response
             if (list.complete().isDone()) // might not be when in before handover mode
                 endListLevel();
             else
-                stream.flush();
+                flushBeforeSuspending();
         }
 
         private void endListLevel() throws IOException {
@@ -385,6 +407,7 @@ public abstract class AsynchronousSectionedRenderer<RESPONSE extends Response> e
         @SuppressWarnings("unchecked")
         private boolean renderData() throws IOException {
             if (dataListListenerStack.peekFirst() != this) return false; // This listens to some ancestor of the current list, do this later
+            suspended = false;
             renderDataListStart();
 
             // Add newly arrived data, and as a consequence run data listeners
@@ -420,10 +443,37 @@ public abstract class AsynchronousSectionedRenderer<RESPONSE extends Response> e
                 }
                 else {
                     data(data);
+                    if (suspendIfClientIsBehind())
+                        return; // iii) Resumed by the stream when the client has caught up
                 }
             }
         }
 
+        /**
+         * Suspends rendering of this if the client is too far behind in consuming the response written so far.
+         * This is only done after handover, as rendering before handover happens in the thread producing the data.
+         *
+         * @return whether this was suspended
+         */
+        private boolean suspendIfClientIsBehind() throws IOException {
+            if (beforeHandoverMode || ! (stream instanceof ContentChannelOutputStream)) return false;
+            ContentChannelOutputStream channelStream = (ContentChannelOutputStream)stream;
+            if (channelStream.pendingBytes() <= MAX_PENDING_BYTES) return false;
+
+            suspended = true;
+            flushBeforeSuspending();
+            channelStream.whenPendingBytesAtMost(RESUME_PENDING_BYTES, this::resume);
+            return true;
+        }
+
+        private void resume() {
+            try {
+                getExecutor().execute(this);
+            } catch (RejectedExecutionException e) {
+                closeIO(e);
+            }
+        }
+
         private void listenTo(DataList subList, boolean listenToNewDataAdded) throws IOException {
             DataListListener listListener = new DataListListener(subList,this);
             dataListListenerStack.addFirst(listListener);
@@ -551,7 +601,12 @@ public abstract class AsynchronousSectionedRenderer<RESPONSE extends Response> e
 
         protected void flushIfLikelyToSuspend(DataList list) throws IOException {
             // If the listener is not complete, we will (likely) suspend rendering
-            if ( ! list.incoming().isComplete()) stream.flush();
+            if ( ! list.incoming().isComplete()) flushBeforeSuspending();
+        }
+
+        protected void flushBeforeSuspending() throws IOException {
+            flushBufferedOutput();
+            stream.flush();
         }
 
     }
@@ -22,6 +22,7 @@ import java.io.OutputStream;
 import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.*;
 
@@ -194,6 +195,40 @@ public class AsynchronousSectionedRendererTest {
                         "]}"));
     }
 
+    @Test
+    public void testRenderingIsSuspendedWhileClientIsBehind() throws Exception {
+        Request request = new Request();
+        StringDataList dataList = new StringDataList(request);
+        char[] chars = new char[10000];
+        Arrays.fill(chars, 'x');
+        for (int i = 0; i < 300; i++)
+            dataList.add(new StringDataItem(request, new String(chars)));
+
+        TestRenderer renderer = new TestRenderer();
+        renderer.init();
+        TestContentChannel contentChannel = new TestContentChannel(true);
+        ContentChannelOutputStream stream = new ContentChannelOutputStream(contentChannel);
+        ListenableFuture<Boolean> result = renderer.render(stream, new Response(dataList),
+                                                           Execution.createRoot(new NoopProcessor(), 0, null), null);
+
+        long start = System.currentTimeMillis();
+        while (stream.pendingBytes() <= 1024 * 1024 && System.currentTimeMillis() - start < 60000)
+            Thread.sleep(10);
+        Thread.sleep(100);
+        assertFalse("Rendering waits for the client", result.isDone());
+        assertTrue(stream.pendingBytes() < 2 * 1024 * 1024);
+
+        while ( ! result.isDone() && System.currentTimeMillis() - start < 60000) {
+            contentChannel.completePendingWrites();
+            Thread.sleep(10);
+        }
+        assertTrue(result.get());
+        long written = 0;
+        for (ByteBuffer buffer : contentChannel.getBuffers())
+            written += buffer.remaining();
+        assertTrue("Everything is rendered", written > 300 * 10000);
+    }
+
     public StringDataList createDataList() {
         Request request = new Request();
         StringDataList dataList = new StringDataList(request);
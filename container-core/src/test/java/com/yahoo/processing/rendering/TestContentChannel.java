@@ -14,14 +14,37 @@ import java.util.List;
 */
 class TestContentChannel implements ContentChannel {
     private final List<ByteBuffer> buffers = new ArrayList<>();
+    private final List<CompletionHandler> pendingWrites = new ArrayList<>();
+    private final boolean holdWrites;
     private boolean closed = false;
 
+    TestContentChannel() {
+        this(false);
+    }
+
+    /** Creates a channel which, if holdWrites is set, does not complete writes until completePendingWrites is called */
+    TestContentChannel(boolean holdWrites) {
+        this.holdWrites = holdWrites;
+    }
+
     @Override
-    public void write(ByteBuffer buf, CompletionHandler handler) {
+    public synchronized void write(ByteBuffer buf, CompletionHandler handler) {
         buffers.add(buf);
         if (handler != null) {
-            handler.completed();
+            if (holdWrites)
+                pendingWrites.add(handler);
+            else
+                handler.completed();
+        }
+    }
+
+    public void completePendingWrites() {
+        List<CompletionHandler> completed;
+        synchronized (this) {
+            completed = new ArrayList<>(pendingWrites);
+            pendingWrites.clear();
         }
+        completed.forEach(CompletionHandler::completed);
     }
 
     @Override
@@ -32,7 +55,7 @@ class TestContentChannel implements ContentChannel {
         }
     }
 
-    public List<ByteBuffer> getBuffers() {
+    public synchronized List<ByteBuffer> getBuffers() {
         return buffers;
     }
 
@@ -28,6 +28,10 @@ public class DocumentInfo implements Cloneable {
     }
 
     public DocumentInfo(GlobalId globalId, int metric, int partId, int distributionKey) {
+        this(globalId, (double)metric, partId, distributionKey);
+    }
+
+    public DocumentInfo(GlobalId globalId, double metric, int partId, int distributionKey) {
         this.globalId=globalId;
         this.metric=metric;
         this.partId=partId;
@@ -93,6 +93,16 @@ public class QueryResultPacket extends Packet {
     }
 
 
+    /** Sets the coverage of this result, turning on the coverage features */
+    public void setCoverage(long coverageDocs, long activeDocs, long soonActiveDocs, int degradedReason) {
+        this.coverageFeature = true;
+        this.coverageExtendedFeature = true;
+        this.coverageDocs = coverageDocs;
+        this.activeDocs = activeDocs;
+        this.soonActiveDocs = soonActiveDocs;
+        this.degradedReason = degradedReason;
+    }
+
     /** @return offset returned by backend */
     public int getOffset() { return offset; }
 
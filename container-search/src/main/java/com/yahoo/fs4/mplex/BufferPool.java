@@ -0,0 +1,69 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.fs4.mplex;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+/**
+ * A pool of direct read buffers shared by all fs4 connections, used for the packets which do not fit
+ * in the fixed read buffer of a connection. Buffers come in power of two slab sizes, and released buffers
+ * are kept as long as the total size kept is below a limit.
+ *
+ * @author agent
+ */
+class BufferPool {
+
+    /** The smallest slab is 64k, which is also the size of the fixed buffer of each connection */
+    static final int MIN_SIZE_CLASS = 16;
+    /** Packets above 64M are allocated on the heap and not pooled */
+    private static final int MAX_SIZE_CLASS = 26;
+
+    private final ArrayDeque<ByteBuffer>[] free;
+    private final long maxPooledBytes;
+    private long pooledBytes = 0;
+
+    @SuppressWarnings("unchecked")
+    BufferPool(long maxPooledBytes) {
+        this.maxPooledBytes = maxPooledBytes;
+        this.free = new ArrayDeque[MAX_SIZE_CLASS + 1];
+        for (int i = MIN_SIZE_CLASS; i <= MAX_SIZE_CLASS; i++)
+            free[i] = new ArrayDeque<>();
+    }
+
+    private static int sizeClass(int size) {
+        return Math.max(MIN_SIZE_CLASS, 32 - Integer.numberOfLeadingZeros(Math.max(size, 1) - 1));
+    }
+
+    /** Returns a cleared buffer with a capacity of at least the given size */
+    ByteBuffer allocate(int size) {
+        int sizeClass = sizeClass(size);
+        if (sizeClass > MAX_SIZE_CLASS) return ByteBuffer.allocate(size);
+
+        synchronized (this) {
+            ByteBuffer buffer = free[sizeClass].poll();
+            if (buffer != null) {
+                pooledBytes -= buffer.capacity();
+                buffer.clear();
+                return buffer;
+            }
+        }
+        return ByteBuffer.allocateDirect(1 << sizeClass);
+    }
+
+    /** Returns a buffer allocated from this to it. The buffer must not be used by the caller after this. */
+    void release(ByteBuffer buffer) {
+        if ( ! buffer.isDirect()) return;
+        int sizeClass = sizeClass(buffer.capacity());
+        if (sizeClass > MAX_SIZE_CLASS || buffer.capacity() != 1 << sizeClass) return;
+
+        synchronized (this) {
+            if (pooledBytes + buffer.capacity() > maxPooledBytes) return;
+            pooledBytes += buffer.capacity();
+            free[sizeClass].push(buffer);
+        }
+    }
+
+    /** Returns the number of bytes in released buffers kept by this */
+    synchronized long pooledBytes() { return pooledBytes; }
+
+}
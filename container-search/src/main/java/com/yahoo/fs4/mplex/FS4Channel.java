@@ -6,6 +6,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
@@ -27,6 +28,12 @@ import com.yahoo.search.Query;
  * <em>session</em>, which might be a more appropriate name for it).
  *
  * <P>
+ * Packets may be received either by blocking on the response queue, or
+ * by requesting a future which is completed by the network thread
+ * when the next packet arrives, which lets a client wait for responses
+ * on many channels without a thread per channel.
+ *
+ * <P>
  * Outbound packets are handed off to the FS4Connection.
  *
  * @author Bjorn Borud
@@ -40,6 +47,8 @@ public class FS4Channel
     volatile private BlockingQueue<BasicPacket> responseQueue;
     private Query query;
     private boolean isPingChannel = false;
+    /** The future to complete with the next packet instead of queueing it, or null. Guarded by this. */
+    private CompletableFuture<BasicPacket> nextPacketFuture = null;
 
     /** for unit testing.  do not use */
     protected FS4Channel () {
@@ -79,8 +88,16 @@ public class FS4Channel
      */
     public void close () {
         BlockingQueue<BasicPacket> q = responseQueue;
-        responseQueue = null;
+        CompletableFuture<BasicPacket> future;
+        synchronized (this) {
+            responseQueue = null;
+            future = nextPacketFuture;
+            nextPacketFuture = null;
+        }
         query = null;
+        if (future != null) {
+            future.completeExceptionally(new InvalidChannelException("Channel was closed"));
+        }
         if (isPingChannel) {
             backend.removePingChannel();
         } else {
@@ -193,10 +210,35 @@ public class FS4Channel
         return ensureValidQ().poll(timeout, TimeUnit.MILLISECONDS);
     }
 
+    /**
+     * Returns a future which completes with the next packet of this channel.
+     * If a packet is already available the future is complete when returned,
+     * otherwise it is completed by the network thread when the packet arrives,
+     * so dependent actions must not block. The future completes exceptionally
+     * with an InvalidChannelException if the channel is closed first.
+     * Only one such future may be pending at any time.
+     *
+     * @throws InvalidChannelException if the channel is no longer valid
+     */
+    public CompletableFuture<BasicPacket> nextPacketAsync() throws InvalidChannelException {
+        synchronized (this) {
+            BasicPacket packet = ensureValidQ().poll();
+            if (packet != null) {
+                return CompletableFuture.completedFuture(packet);
+            }
+            if (nextPacketFuture != null) {
+                throw new IllegalStateException("A packet future is already pending on " + this);
+            }
+            nextPacketFuture = new CompletableFuture<>();
+            return nextPacketFuture;
+        }
+    }
+
     /**
      * Add incoming packet to the response queue.  This is to be used
      * by the listener for placing incoming packets in the response
-     * queue.
+     * queue. If a future is waiting for the next packet, it is completed
+     * with the packet instead.
      *
      * @param packet BasicPacket to be placed in the response queue.
      *
@@ -204,7 +246,16 @@ public class FS4Channel
     protected void addPacket (BasicPacket packet)
         throws InterruptedException, InvalidChannelException
     {
-        ensureValidQ().put(packet);
+        CompletableFuture<BasicPacket> future;
+        synchronized (this) {
+            future = nextPacketFuture;
+            nextPacketFuture = null;
+            if (future == null) {
+                ensureValidQ().put(packet); // unbounded, does not block
+                return;
+            }
+        }
+        future.complete(packet);
     }
 
     /**
@@ -44,7 +44,9 @@ public class FS4Connection implements Connection
     private LinkedList<ByteBuffer> writeBufferList = new LinkedList<>();
 
     // inbound data
-    private ByteBuffer fixedReadBuffer = ByteBuffer.allocateDirect(256 * 1024);
+    /** Buffers for packets which do not fit in the fixed read buffer, shared by all connections */
+    private static final BufferPool oversizeBuffers = new BufferPool(64 * 1024 * 1024);
+    private ByteBuffer fixedReadBuffer = ByteBuffer.allocateDirect(1 << BufferPool.MIN_SIZE_CLASS);
     private ByteBuffer readBuffer = fixedReadBuffer;
 
     private volatile boolean valid = true;
@@ -176,18 +178,7 @@ public class FS4Connection implements Connection
 
         do {
             try {
-                if (readBuffer == fixedReadBuffer) {
-                    bytesRead = channel.read(readBuffer);
-                } else {
-                    fixedReadBuffer.clear();
-                    if (readBuffer.remaining() < fixedReadBuffer.capacity()) {
-                        fixedReadBuffer.limit(readBuffer.remaining());
-                    }
-                    bytesRead = channel.read(fixedReadBuffer);
-                    fixedReadBuffer.flip();
-                    readBuffer.put(fixedReadBuffer);
-                    fixedReadBuffer.clear();
-                }
+                bytesRead = channel.read(readBuffer);
             }
             catch (IOException e) {
                 // this is the "normal" way that connection closes.
@@ -314,8 +305,8 @@ public class FS4Connection implements Connection
 
 
     /**
-     * Extend the readBuffer.  Make a new buffer of the requested size
-     * copy the contents of the readBuffer into it and assign reference
+     * Extend the readBuffer.  Take a pooled buffer of at least the requested
+     * size, copy the contents of the readBuffer into it and assign reference
      * to readBuffer instance variable.
      *
      * <P>
@@ -340,17 +331,20 @@ public class FS4Connection implements Connection
             size = readBuffer.capacity() * 2;
         }
 
-        ByteBuffer tmp = ByteBuffer.allocate(size);
+        ByteBuffer tmp = oversizeBuffers.allocate(size);
         tmp.put(readBuffer);
-        log.fine("Extended readBuffer to " + size + " bytes"
+        log.fine("Extended readBuffer to " + tmp.capacity() + " bytes"
                  + "from " + readBuffer.capacity() + " bytes");
+        if (readBuffer != fixedReadBuffer) {
+            oversizeBuffers.release(readBuffer);
+        }
         readBuffer = tmp;
     }
 
     /**
      * Clear the readBuffer, and if temporarily allocated bigger
-     * buffer is in use: ditch it and reset the reference to the
-     * fixed readBuffer.
+     * buffer is in use: return it to the pool and reset the reference
+     * to the fixed readBuffer.
      */
     private void resetReadBuffer () {
         fixedReadBuffer.clear();
@@ -358,6 +352,7 @@ public class FS4Connection implements Connection
             return;
         }
         log.fine("Resetting readbuffer");
+        oversizeBuffers.release(readBuffer);
         readBuffer = fixedReadBuffer;
     }
 
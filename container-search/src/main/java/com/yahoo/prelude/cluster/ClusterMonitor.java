@@ -125,6 +125,7 @@ public class ClusterMonitor implements Runnable, Freezable {
         log.finest("Activating ping");
         try {
             ping();
+            nodeManager.reportCacheMetrics();
         } catch (Exception e) {
             log.log(Level.WARNING, "Error in monitor thread", e);
         }
@@ -13,6 +13,7 @@ import com.yahoo.container.handler.VipStatus;
 import com.yahoo.container.protect.Error;
 import com.yahoo.fs4.PacketDumper;
 import com.yahoo.fs4.mplex.Backend;
+import com.yahoo.jdisc.Metric;
 import com.yahoo.container.search.LegacyEmulationConfig;
 import com.yahoo.net.HostName;
 import com.yahoo.search.dispatch.Dispatcher;
@@ -23,6 +24,7 @@ import com.yahoo.prelude.Pong;
 import com.yahoo.prelude.fastsearch.CacheControl;
 import com.yahoo.prelude.fastsearch.CacheParams;
 import com.yahoo.prelude.fastsearch.ClusterParams;
+import com.yahoo.prelude.fastsearch.ConcurrentPacketCache;
 import com.yahoo.prelude.fastsearch.DocumentdbInfoConfig;
 import com.yahoo.prelude.fastsearch.FastSearcher;
 import com.yahoo.prelude.fastsearch.SummaryParameters;
@@ -70,6 +72,20 @@ public class ClusterSearcher extends Searcher {
 
     private final Value cacheHitRatio;
 
+    private static final String PACKET_CACHE_HITS_METRIC = "packet_cache.hits";
+    private static final String PACKET_CACHE_MISSES_METRIC = "packet_cache.misses";
+    private static final String PACKET_CACHE_EVICTIONS_METRIC = "packet_cache.evictions";
+    private static final String PACKET_CACHE_REJECTIONS_METRIC = "packet_cache.rejections";
+    private static final String PACKET_CACHE_ENTRIES_METRIC = "packet_cache.entries";
+    private static final String PACKET_CACHE_BYTES_METRIC = "packet_cache.bytes";
+
+    private final Metric metric;
+
+    private final CacheControl cacheControl;
+
+    /** The metric context of each packet cache segment, created on first use */
+    private Metric.Context[] cacheSegmentContexts = new Metric.Context[0];
+
     private final String clusterModelName;
 
     private final List<Backend> backends = new ArrayList<>();
@@ -103,8 +119,10 @@ public class ClusterSearcher extends Searcher {
                            ClusterInfoConfig clusterInfoConfig,
                            Statistics manager,
                            FS4ResourcePool fs4ResourcePool,
-                           VipStatus vipStatus) {
+                           VipStatus vipStatus,
+                           Metric metric) {
         super(id);
+        this.metric = metric;
         this.hasher = new Hasher();
         this.fs4ResourcePool = fs4ResourcePool;
 
@@ -129,7 +147,8 @@ public class ClusterSearcher extends Searcher {
         maxQueryCacheTimeout = ParameterParser.asMilliSeconds(clusterConfig.maxQueryCacheTimeout(),
                                                               DEFAULT_MAX_QUERY_CACHE_TIMEOUT);
 
-        CacheParams cacheParams = new CacheParams(createCache(clusterConfig, clusterModelName));
+        cacheControl = createCache(clusterConfig, clusterModelName);
+        CacheParams cacheParams = new CacheParams(cacheControl);
         SummaryParameters docSumParams = new SummaryParameters(qrsConfig
                 .com().yahoo().prelude().fastsearch().FastSearcher().docsum()
                 .defaultclass());
@@ -250,6 +269,8 @@ public class ClusterSearcher extends Searcher {
                                   Statistics.nullImplementation, new Value.Parameters());
         clusterModelName = "testScenario";
         fs4ResourcePool = null;
+        metric = null;
+        cacheControl = null;
         maxQueryTimeout = DEFAULT_MAX_QUERY_TIMEOUT;
         maxQueryCacheTimeout = DEFAULT_MAX_QUERY_CACHE_TIMEOUT;
     }
@@ -269,9 +290,10 @@ public class ClusterSearcher extends Searcher {
     private static CacheControl createCache(ClusterConfig config, String clusterModelName) {
         log.log(Level.INFO, "Enabling cache for search cluster "
                             + clusterModelName + " (size=" + config.cacheSize()
-                            + ", timeout=" + config.cacheTimeout() + ")");
+                            + ", timeout=" + config.cacheTimeout()
+                            + ", offheap=" + config.cacheOffHeap() + ")");
 
-        return new CacheControl(config.cacheSize(), config.cacheTimeout());
+        return new CacheControl(config.cacheSize(), config.cacheTimeout(), config.cacheOffHeap());
     }
 
     public String getClusterModelName() {
@@ -550,6 +572,36 @@ public class ClusterSearcher extends Searcher {
         cacheHitRatio.put(0.0);
     }
 
+    /** Reports the packet cache statistics since the last call to this. Called from ClusterMonitor. */
+    void reportCacheMetrics() {
+        if (metric == null || cacheControl == null) return;
+
+        List<ConcurrentPacketCache.SegmentStatistics> statistics = cacheControl.takeStatistics();
+        if (cacheSegmentContexts.length != statistics.size())
+            cacheSegmentContexts = createCacheSegmentContexts(statistics.size());
+        for (int i = 0; i < statistics.size(); i++) {
+            ConcurrentPacketCache.SegmentStatistics segment = statistics.get(i);
+            Metric.Context context = cacheSegmentContexts[i];
+            metric.add(PACKET_CACHE_HITS_METRIC, segment.hits(), context);
+            metric.add(PACKET_CACHE_MISSES_METRIC, segment.misses(), context);
+            metric.add(PACKET_CACHE_EVICTIONS_METRIC, segment.evictions(), context);
+            metric.add(PACKET_CACHE_REJECTIONS_METRIC, segment.rejections(), context);
+            metric.set(PACKET_CACHE_ENTRIES_METRIC, segment.entries(), context);
+            metric.set(PACKET_CACHE_BYTES_METRIC, segment.bytes(), context);
+        }
+    }
+
+    private Metric.Context[] createCacheSegmentContexts(int segmentCount) {
+        Metric.Context[] contexts = new Metric.Context[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            Map<String, String> dimensions = new HashMap<>();
+            dimensions.put("clusterName", clusterModelName);
+            dimensions.put("segment", String.valueOf(i));
+            contexts[i] = metric.createContext(dimensions);
+        }
+        return contexts;
+    }
+
     /** NodeManager method, called from ClusterMonitor. */
     void working(VespaBackEndSearcher node) {
         hasher.add(node);
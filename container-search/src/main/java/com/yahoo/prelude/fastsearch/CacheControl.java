@@ -8,6 +8,9 @@ import com.yahoo.fs4.QueryResultPacket;
 import com.yahoo.search.Query;
 import com.yahoo.processing.request.CompoundName;
 
+import java.util.Collections;
+import java.util.List;
+
 
 /**
  * The cache control logic for FastSearcher
@@ -21,13 +24,24 @@ public class CacheControl {
     /** Whether this CacheControl actually should cache hits at all. */
     private final boolean activeCache;
 
-    /** Direct unsychronized cache access */
-    private final PacketCache packetCache;
+    /** The cache, which is safe for concurrent access */
+    private final ConcurrentPacketCache packetCache;
 
     public CacheControl(int sizeMegaBytes, double cacheTimeOutSeconds) {
+        this(sizeMegaBytes, cacheTimeOutSeconds, false);
+    }
+
+    /**
+     * Creates a cache control
+     *
+     * @param sizeMegaBytes the size of the packet cache in megabytes, 0 or less disables caching
+     * @param cacheTimeOutSeconds the max age of cached packets, 0 or less disables caching
+     * @param offHeap whether cached docsums should be stored outside the Java heap
+     */
+    public CacheControl(int sizeMegaBytes, double cacheTimeOutSeconds, boolean offHeap) {
         activeCache = sizeMegaBytes > 0 && cacheTimeOutSeconds > 0.0d;
         if (activeCache) {
-            packetCache = new PacketCache(sizeMegaBytes, 0, cacheTimeOutSeconds);
+            packetCache = new ConcurrentPacketCache((long)sizeMegaBytes << 20, cacheTimeOutSeconds, offHeap);
         } else {
             packetCache = null;
         }
@@ -38,16 +52,22 @@ public class CacheControl {
         return packetCache.getCapacity();
     }
 
+    /**
+     * Returns the statistics of each cache segment since the last call to this,
+     * or an empty list if this is not caching
+     */
+    public List<ConcurrentPacketCache.SegmentStatistics> takeStatistics() {
+        if ( ! activeCache) return Collections.emptyList();
+        return packetCache.takeStatistics();
+    }
+
     public final boolean useCache(Query query) {
         return (activeCache && !query.getNoCache());
     }
 
     public final PacketWrapper lookup(CacheKey key, Query query) {
         if ((key != null) && useCache(query)) {
-            long now = System.currentTimeMillis();
-            synchronized (packetCache) {
-                return packetCache.get(key, now);
-            }
+            return packetCache.get(key, System.currentTimeMillis());
         }
         return null;
     }
@@ -65,9 +85,7 @@ public class CacheControl {
         oldTimestamp = wrapper.getTimestamp();
         wrapper = (PacketWrapper) wrapper.clone();
         wrapper.addResultPacket(resultPacket);
-        synchronized (packetCache) {
-            packetCache.put(key, wrapper, oldTimestamp);
-        }
+        packetCache.put(key, wrapper, oldTimestamp);
     }
 
     // updates phases after first phase phase in multi phase search
@@ -79,9 +97,7 @@ public class CacheControl {
 
         wrapper = (PacketWrapper) wrapper.clone();
         wrapper.addDocsums(packetKeys, packets);
-        synchronized (packetCache) {
-            packetCache.put(key, wrapper, wrapper.getTimestamp());
-        }
+        packetCache.put(key, wrapper, wrapper.getTimestamp());
     }
 
     void cache(CacheKey key, Query query, DocsumPacketKey[] packetKeys, Packet[] packets) {
@@ -93,17 +109,12 @@ public class CacheControl {
         PacketWrapper wrapper = lookup(key, query);
         if (wrapper == null) {
             wrapper = new PacketWrapper(key, packetKeys,packets);
-            long now = System.currentTimeMillis();
-            synchronized (packetCache) {
-                packetCache.put(key, wrapper, now);
-            }
+            packetCache.put(key, wrapper, System.currentTimeMillis());
         } else {
             wrapper = (PacketWrapper) wrapper.clone();
             wrapper.addResultPacket((QueryResultPacket) packets[0]);
             wrapper.addDocsums(packetKeys, packets, 1);
-            synchronized (packetCache) {
-                packetCache.put(key, wrapper, wrapper.getTimestamp());
-            }
+            packetCache.put(key, wrapper, wrapper.getTimestamp());
         }
     }
 
@@ -0,0 +1,428 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.prelude.fastsearch;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * A packet cache which may be accessed by many threads concurrently.
+ * <p>
+ * The cache is split into a power of two number of segments, each being an LRU cache of its share of the
+ * total byte capacity, guarded by its own lock. A key is mapped to a segment by its hash code, so threads
+ * only contend when they access the same segment.
+ * <p>
+ * Each segment keeps a frequency sketch of the keys looked up or inserted recently. When a new entry
+ * would force eviction, it is only admitted if it has been seen more often than the least recently used
+ * entry it would replace. This keeps one-off queries from evicting entries which are frequently hit.
+ * <p>
+ * Entries have the same max age and max relative item size semantics as in {@link PacketCache}.
+ * <p>
+ * The cache may optionally store docsums off heap, in direct memory blocks owned by each segment.
+ * Only the result packets and the index are then kept on the heap, and docsum packets are recreated
+ * from the stored bytes on each hit. This allows large caches without a correspondingly large heap.
+ *
+ * @author agent
+ */
+public class ConcurrentPacketCache {
+
+    /** The minimum number of bytes each segment should have room for, if there are more than one */
+    private static final long minSegmentCapacity = 1 << 20;
+
+    /** The maximum number of segments we create by default */
+    private static final int maxDefaultSegmentCount = 64;
+
+    /** An assumed average entry size, used to size the frequency sketches */
+    private static final int assumedEntrySize = 4096;
+
+    private final Segment[] segments;
+    private final int segmentMask;
+
+    /** The maximum number of bytes of packets in this cache */
+    private final long capacity;
+
+    /** The max age of a valid cache entry in milliseconds */
+    private final long maxAge;
+
+    /** Whether docsums are stored outside the Java heap */
+    private final boolean offHeap;
+
+    /** The max size of a cached item compared to the total size */
+    private volatile int maxCacheItemPercentage = 1;
+
+    /**
+     * Creates a cache with a default number of segments.
+     *
+     * @param capacity the total cache size in bytes
+     * @param maxAge seconds a cache entry is valid, 0 or less are illegal arguments
+     */
+    public ConcurrentPacketCache(long capacity, double maxAge) {
+        this(capacity, maxAge, false);
+    }
+
+    /**
+     * Creates a cache with a default number of segments.
+     *
+     * @param capacity the total cache size in bytes
+     * @param maxAge seconds a cache entry is valid, 0 or less are illegal arguments
+     * @param offHeap whether docsums should be stored outside the Java heap
+     */
+    public ConcurrentPacketCache(long capacity, double maxAge, boolean offHeap) {
+        this(capacity, maxAge, defaultSegmentCount(capacity), offHeap);
+    }
+
+    /**
+     * Creates a cache.
+     *
+     * @param capacity the total cache size in bytes
+     * @param maxAge seconds a cache entry is valid, 0 or less are illegal arguments
+     * @param segmentCount the number of segments to split this cache into, must be a power of two
+     */
+    public ConcurrentPacketCache(long capacity, double maxAge, int segmentCount) {
+        this(capacity, maxAge, segmentCount, false);
+    }
+
+    /**
+     * Creates a cache.
+     *
+     * @param capacity the total cache size in bytes
+     * @param maxAge seconds a cache entry is valid, 0 or less are illegal arguments
+     * @param segmentCount the number of segments to split this cache into, must be a power of two
+     * @param offHeap whether docsums should be stored outside the Java heap
+     */
+    public ConcurrentPacketCache(long capacity, double maxAge, int segmentCount, boolean offHeap) {
+        if (maxAge <= 0.0d)
+            throw new IllegalArgumentException("maxAge <= 0 not legal, use some very large number for no timeout.");
+        if (capacity <= 0)
+            throw new IllegalArgumentException("Total cache size set to 0 or less bytes. If no caching is desired, avoid creating this object instead.");
+        if (segmentCount <= 0 || Integer.bitCount(segmentCount) != 1)
+            throw new IllegalArgumentException("The number of segments must be a positive power of two, not " + segmentCount);
+
+        this.capacity = capacity;
+        this.maxAge = (long) (maxAge * 1000.0d);
+        this.offHeap = offHeap;
+        this.segments = new Segment[segmentCount];
+        this.segmentMask = segmentCount - 1;
+        long segmentCapacity = capacity / segmentCount;
+        int expectedEntries = (int) Math.min(Integer.MAX_VALUE, Math.max(1, segmentCapacity / assumedEntrySize));
+        for (int i = 0; i < segmentCount; i++)
+            segments[i] = new Segment(segmentCapacity, expectedEntries,
+                                      offHeap ? new OffHeapBlockStore(segmentCapacity, OffHeapBlockStore.defaultBlockSize) : null);
+    }
+
+    /** Returns a segment count giving little contention, while keeping segments reasonably large */
+    static int defaultSegmentCount(long capacity) {
+        int count = Math.min(maxDefaultSegmentCount, Integer.highestOneBit(4 * Runtime.getRuntime().availableProcessors()));
+        while (count > 1 && capacity / count < minSegmentCapacity)
+            count >>= 1;
+        return count;
+    }
+
+    /**
+     * Sets the max size of a cached item compared to the total size
+     * Cache requests for larger objects will be ignored
+     */
+    public void setMaxCacheItemPercentage(int maxCapacityPercentage) {
+        maxCacheItemPercentage = maxCapacityPercentage;
+    }
+
+    /** Returns the capacity of this in megabytes */
+    public int getCapacity() {
+        return (int) Math.min(Integer.MAX_VALUE, capacity >> 20);
+    }
+
+    public long getByteCapacity() {
+        return capacity;
+    }
+
+    public int getSegmentCount() {
+        return segments.length;
+    }
+
+    /** Returns whether this stores docsums outside the Java heap */
+    public boolean isOffHeap() {
+        return offHeap;
+    }
+
+    /**
+     * Adds a PacketWrapper object to this cache,
+     * unless the size is more than maxCacheItemPercentage of the total size
+     */
+    public void put(CacheKey key, PacketWrapper value) {
+        put(key, value, System.currentTimeMillis());
+    }
+
+    /**
+     * Adds a PacketWrapper object to this cache, unless the size is more than maxCacheItemPercentage
+     * of the total size, or it is not admitted because it is less popular than the entries it would evict.
+     *
+     * @param timestamp the timestamp for the first packet in the array, unit milliseconds
+     */
+    public void put(CacheKey key, PacketWrapper value, long timestamp) {
+        int size = value.getPacketsSize();
+        if (size > 0)
+            value.setTimestamp(timestamp);
+
+        if ((long)size * 100 > capacity * maxCacheItemPercentage) {
+            remove(key); // remove the old one since that is now stale
+            return;
+        }
+
+        Segment segment = segmentOf(key);
+        synchronized (segment) {
+            segment.put(key, value);
+        }
+    }
+
+    public PacketWrapper get(CacheKey key) {
+        return get(key, System.currentTimeMillis());
+    }
+
+    public PacketWrapper get(CacheKey key, long now) {
+        Segment segment = segmentOf(key);
+        synchronized (segment) {
+            return segment.get(key, now, maxAge);
+        }
+    }
+
+    public void remove(CacheKey key) {
+        Segment segment = segmentOf(key);
+        synchronized (segment) {
+            segment.remove(key);
+        }
+    }
+
+    public void clear() {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+    }
+
+    /** Returns the number of entries in this */
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.entries.size();
+            }
+        }
+        return size;
+    }
+
+    /** Returns the current number of bytes of packets in this cache */
+    public long totalPacketSize() {
+        long totalSize = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                totalSize += segment.totalSize;
+            }
+        }
+        return totalSize;
+    }
+
+    /**
+     * Returns the statistics of each segment accumulated since the last call to this method,
+     * and resets the counters of all segments.
+     */
+    public List<SegmentStatistics> takeStatistics() {
+        List<SegmentStatistics> statistics = new ArrayList<>(segments.length);
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                statistics.add(segment.takeStatistics());
+            }
+        }
+        return statistics;
+    }
+
+    private Segment segmentOf(CacheKey key) {
+        int hash = key.hashCode();
+        return segments[(hash ^ (hash >>> 16)) & segmentMask];
+    }
+
+    /** A cached entry */
+    private static final class Entry {
+
+        /** The cached packets, without docsums if they are stored off heap */
+        final PacketWrapper packets;
+
+        /** The blocks holding the encoded docsums of this, or null if they are stored in the packets on heap */
+        final int[] docsumBlocks;
+
+        /** The length of the encoded docsums */
+        final int docsumLength;
+
+        /** The number of bytes this is accounted as using */
+        final int size;
+
+        Entry(PacketWrapper packets, int[] docsumBlocks, int docsumLength, int size) {
+            this.packets = packets;
+            this.docsumBlocks = docsumBlocks;
+            this.docsumLength = docsumLength;
+            this.size = size;
+        }
+
+    }
+
+    /** An LRU cache of a share of the total capacity. Access must be synchronized on the segment. */
+    private static final class Segment {
+
+        private final LinkedHashMap<CacheKey, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+        private final FrequencySketch sketch;
+        private final long capacity;
+
+        /** The store of the docsums of this, or null if they are kept on heap */
+        private final OffHeapBlockStore docsumStore;
+
+        private long totalSize = 0;
+
+        private long hits = 0;
+        private long misses = 0;
+        private long evictions = 0;
+        private long rejections = 0;
+
+        Segment(long capacity, int expectedEntries, OffHeapBlockStore docsumStore) {
+            this.capacity = capacity;
+            this.sketch = new FrequencySketch(expectedEntries);
+            this.docsumStore = docsumStore;
+        }
+
+        PacketWrapper get(CacheKey key, long now, long maxAge) {
+            sketch.increment(key.hashCode());
+            Entry entry = entries.get(key);
+            if (entry == null) {
+                misses++;
+                return null;
+            }
+            if (now - entry.packets.getTimestamp() > maxAge) {
+                remove(key);
+                misses++;
+                return null;
+            }
+            hits++;
+            if (entry.docsumBlocks == null)
+                return entry.packets;
+            return entry.packets.withEncodedDocsums(docsumStore.read(entry.docsumBlocks, entry.docsumLength));
+        }
+
+        void put(CacheKey key, PacketWrapper value) {
+            sketch.increment(key.hashCode());
+
+            PacketWrapper packets = value;
+            byte[] docsums = null;
+            int size;
+            if (docsumStore == null) {
+                size = value.getPacketsSize();
+            } else {
+                packets = value.withoutDocsums();
+                docsums = value.encodeDocsums();
+                size = packets.getPacketsSize() + docsumStore.blocksNeeded(docsums.length) * docsumStore.blockSize();
+            }
+            if (size > capacity) {
+                remove(key); // remove the old one since that is now stale
+                return;
+            }
+
+            boolean replacing = entries.containsKey(key);
+            if ( ! replacing && totalSize + size > capacity && ! admit(key)) {
+                rejections++;
+                return;
+            }
+
+            remove(key);
+            evictUntilRoomFor(size);
+            int[] docsumBlocks = null;
+            if (docsums != null) {
+                docsumBlocks = docsumStore.write(docsums);
+                if (docsumBlocks == null) return; // not possible as long as the accounting above is correct
+            }
+            entries.put(key, new Entry(packets, docsumBlocks, docsums == null ? 0 : docsums.length, size));
+            totalSize += size;
+        }
+
+        /** Returns whether the given key is more popular than the eldest entry, which it would evict */
+        private boolean admit(CacheKey candidate) {
+            Iterator<CacheKey> keys = entries.keySet().iterator();
+            if ( ! keys.hasNext()) return true;
+            return sketch.frequency(candidate.hashCode()) > sketch.frequency(keys.next().hashCode());
+        }
+
+        private void evictUntilRoomFor(int size) {
+            for (Iterator<Entry> i = entries.values().iterator(); totalSize + size > capacity && i.hasNext(); ) {
+                Entry eldest = i.next();
+                i.remove();
+                release(eldest);
+                evictions++;
+            }
+        }
+
+        void remove(CacheKey key) {
+            Entry removed = entries.remove(key);
+            if (removed != null)
+                release(removed);
+        }
+
+        private void release(Entry entry) {
+            totalSize -= entry.size;
+            if (entry.docsumBlocks != null)
+                docsumStore.free(entry.docsumBlocks);
+        }
+
+        void clear() {
+            entries.clear();
+            sketch.clear();
+            if (docsumStore != null)
+                docsumStore.clear();
+            totalSize = 0;
+        }
+
+        SegmentStatistics takeStatistics() {
+            SegmentStatistics statistics = new SegmentStatistics(hits, misses, evictions, rejections, entries.size(), totalSize);
+            hits = misses = evictions = rejections = 0;
+            return statistics;
+        }
+
+    }
+
+    /** Counters of a cache segment */
+    public static final class SegmentStatistics {
+
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+        private final long rejections;
+        private final int entries;
+        private final long bytes;
+
+        SegmentStatistics(long hits, long misses, long evictions, long rejections, int entries, long bytes) {
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.rejections = rejections;
+            this.entries = entries;
+            this.bytes = bytes;
+        }
+
+        /** Returns the number of lookups which returned a valid entry */
+        public long hits() { return hits; }
+
+        /** Returns the number of lookups which did not find a valid entry */
+        public long misses() { return misses; }
+
+        /** Returns the number of entries removed to make room for new ones */
+        public long evictions() { return evictions; }
+
+        /** Returns the number of new entries which were not admitted because they were less popular than the entry to evict */
+        public long rejections() { return rejections; }
+
+        /** Returns the number of entries in the segment */
+        public int entries() { return entries; }
+
+        /** Returns the number of bytes of packets in the segment */
+        public long bytes() { return bytes; }
+
+    }
+
+}
@@ -43,6 +43,10 @@ public class DocsumPacketKey {
         return partid;
     }
 
+    public String getSummaryClass() {
+        return summaryClass;
+    }
+
     public boolean equals(Object o) {
         if (o instanceof DocsumPacketKey) {
             DocsumPacketKey other = (DocsumPacketKey) o;
@@ -275,22 +275,32 @@ public class FastHit extends Hit {
         }
     }
 
+    /**
+     * Adds the fields of a summary to this. String fields are not converted to Java objects before they are
+     * accessed, such that renderers may write them directly from their UTF-8 bytes. Other fields are converted
+     * at once, such that they have their Java type also when accessed through {@link #fields()}.
+     */
     void addSummary(DocsumDefinition docsumDef, Inspector value) {
         reserve(docsumDef.getFieldCount());
         for (DocsumField field : docsumDef.getFields()) {
             String fieldName = field.getName();
-            if (value.type() == Type.STRING &&
-                (field instanceof LongstringField || field instanceof StringField || field instanceof XMLField)) {
+            if (value.type() == Type.STRING && isStringField(field)) {
                 setDocsumFieldIfNotPresent(fieldName, new LazyString(field, value));
             } else {
                 Inspector f = value.field(fieldName);
-                if (field.getEmulConfig().forceFillEmptyFields() || f.valid()) {
+                if (f.type() == Type.STRING && isStringField(field)) {
+                    setDocsumFieldIfNotPresent(fieldName, new LazyString(field, f));
+                } else if (field.getEmulConfig().forceFillEmptyFields() || f.valid()) {
                     setDocsumFieldIfNotPresent(fieldName, field.convert(f));
                 }
             }
         }
     }
 
+    private static boolean isStringField(DocsumField field) {
+        return field instanceof LongstringField || field instanceof StringField || field instanceof XMLField;
+    }
+
     private void setDocsumFieldIfNotPresent(String fieldName, Object value) {
         if (super.getField(fieldName) == null) {
             setField(fieldName, value);
@@ -430,7 +440,7 @@ public class FastHit extends Hit {
         }
 
         Object getValue(String fieldName) {
-            return value.asString();
+            return fieldType.convert(value);
         }
 
         RawField getFieldAsUtf8(String fieldName) {
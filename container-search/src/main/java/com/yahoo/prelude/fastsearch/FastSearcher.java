@@ -59,6 +59,18 @@ public class FastSearcher extends VespaBackEndSearcher {
     /** The compression method which will be used with rpc dispatch. "lz4" (default) and "none" is supported. */
     private final static CompoundName dispatchCompression = new CompoundName("dispatch.compression");
 
+    /**
+     * The percentage of the search nodes which must respond to a dispatch.search query before we limit the time
+     * spent waiting for the rest. 100 waits for all nodes until the query times out.
+     */
+    private final static CompoundName dispatchSearchMinNodesPercentage = new CompoundName("dispatch.search.minNodesPercentage");
+
+    /**
+     * The time to wait for the remaining search nodes when the above percentage is reached,
+     * as a factor of the time spent waiting until then.
+     */
+    private final static CompoundName dispatchSearchTailTimeoutFactor = new CompoundName("dispatch.search.tailTimeoutFactor");
+
     /** Used to dispatch directly to search nodes over RPC, replacing the old fnet communication path */
     private final Dispatcher dispatcher;
 
@@ -172,6 +184,14 @@ public class FastSearcher extends VespaBackEndSearcher {
         try {
             if (dispatcher.searchCluster().groupSize() == 1)
                 forceSinglePassGrouping(query);
+            if (canSearchNodesDirectly(query)) {
+                Optional<QueryResultPacket> resultPacket =
+                        dispatcher.search(query,
+                                          query.properties().getDouble(dispatchSearchMinNodesPercentage, 90.0),
+                                          query.properties().getDouble(dispatchSearchTailTimeoutFactor, 1.0));
+                if (resultPacket.isPresent())
+                    return toResult(query, queryPacket, resultPacket.get());
+            }
             channel = chooseBackend(query).openChannel();
             channel.setQuery(query);
 
@@ -213,6 +233,18 @@ public class FastSearcher extends VespaBackEndSearcher {
             forceSinglePassGrouping(childOperation);
     }
 
+    /**
+     * Returns whether this query should be searched by dispatching it to all the search nodes of a group,
+     * merging the results in this container rather than in a dispatch node.
+     * Grouping and sorting results cannot be merged here, so such queries still go through the dispatch node.
+     */
+    private boolean canSearchNodesDirectly(Query query) {
+        if ( ! query.properties().getBoolean(dispatchSearch, false)) return false;
+        if (query.getRanking().getSorting() != null) return false;
+        if ( ! GroupingRequest.getRequests(query).isEmpty()) return false;
+        return true;
+    }
+
     /**
      * Returns the backend object to issue a search request over.
      * Normally this is the backend field of this instance, which connects to the dispatch node this talk to
@@ -439,6 +471,17 @@ public class FastSearcher extends VespaBackEndSearcher {
         return result;
     }
 
+    /** Creates a result from a result packet merged from the search nodes. Such results are not cached. */
+    private Result toResult(Query query, QueryPacket queryPacket, QueryResultPacket resultPacket) {
+        if (query.getPresentation().getSummary() == null)
+            query.getPresentation().setSummary(getDefaultDocsumClass());
+
+        Result result = new Result(query);
+        addMetaInfo(query, queryPacket.getQueryPacketData(), resultPacket, result, false);
+        addUnfilledHits(result, resultPacket.getDocuments(), false, queryPacket.getQueryPacketData(), null);
+        return result;
+    }
+
     private Packet[] convertBasicPackets(BasicPacket[] basicPackets) throws ClassCastException {
         // trying to cast a BasicPacket[] to Packet[] will compile,
         // but lead to a runtime error. At least that's what I got
@@ -0,0 +1,128 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.prelude.fastsearch;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Stores byte arrays outside the Java heap, in fixed size blocks carved out of direct byte buffer slabs.
+ * Any free block may be used by any array, so freeing an array always makes room for another of the same size.
+ * Slabs are allocated when their first block is needed, so an empty store uses no memory.
+ * <p>
+ * This is not thread safe, the owner must synchronize access.
+ *
+ * @author agent
+ */
+final class OffHeapBlockStore {
+
+    static final int defaultBlockSize = 2048;
+
+    private static final int maxSlabSize = 1 << 30;
+
+    private final int blockSize;
+    private final int blocksPerSlab;
+    private final int blockCount;
+    private final ByteBuffer[] slabs;
+
+    /** The stack of blocks which have been used and freed */
+    private final int[] freeBlocks;
+    private int freeCount = 0;
+
+    /** All blocks from this index and up have never been used */
+    private int unusedBlock = 0;
+
+    /**
+     * Creates a store.
+     *
+     * @param capacity the maximum number of bytes to allocate, rounded down to a whole number of blocks
+     * @param blockSize the size of each block in bytes
+     */
+    OffHeapBlockStore(long capacity, int blockSize) {
+        if (blockSize <= 0 || blockSize > maxSlabSize)
+            throw new IllegalArgumentException("Block size must be between 1 and " + maxSlabSize + ", not " + blockSize);
+        if (capacity / blockSize > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Capacity " + capacity + " requires more than " + Integer.MAX_VALUE + " blocks");
+
+        this.blockSize = blockSize;
+        this.blocksPerSlab = maxSlabSize / blockSize;
+        this.blockCount = (int) (capacity / blockSize);
+        this.slabs = new ByteBuffer[(blockCount + blocksPerSlab - 1) / blocksPerSlab];
+        this.freeBlocks = new int[blockCount];
+    }
+
+    int blockSize() { return blockSize; }
+
+    /** Returns the number of blocks needed to store the given number of bytes */
+    int blocksNeeded(int length) {
+        return (length + blockSize - 1) / blockSize;
+    }
+
+    /** Returns the number of blocks which are currently not in use */
+    int freeBlockCount() {
+        return freeCount + blockCount - unusedBlock;
+    }
+
+    /**
+     * Stores the given data.
+     *
+     * @return the blocks holding the data, in order, or null if there are not enough free blocks
+     */
+    int[] write(byte[] data) {
+        int[] blocks = new int[blocksNeeded(data.length)];
+        if (blocks.length > freeBlockCount()) return null;
+
+        for (int i = 0; i < blocks.length; i++) {
+            int block = allocate();
+            int length = Math.min(blockSize, data.length - i * blockSize);
+            ByteBuffer slab = slabOf(block);
+            slab.position(offsetOf(block));
+            slab.put(data, i * blockSize, length);
+            blocks[i] = block;
+        }
+        return blocks;
+    }
+
+    /** Returns a heap copy of the given number of bytes stored in the given blocks */
+    byte[] read(int[] blocks, int length) {
+        byte[] data = new byte[length];
+        for (int i = 0; i < blocks.length; i++) {
+            ByteBuffer slab = slabOf(blocks[i]);
+            slab.position(offsetOf(blocks[i]));
+            slab.get(data, i * blockSize, Math.min(blockSize, length - i * blockSize));
+        }
+        return data;
+    }
+
+    /** Returns the given blocks to this store */
+    void free(int[] blocks) {
+        for (int block : blocks)
+            freeBlocks[freeCount++] = block;
+    }
+
+    /** Frees all blocks. The allocated slabs are kept for reuse. */
+    void clear() {
+        freeCount = 0;
+        unusedBlock = 0;
+    }
+
+    private int allocate() {
+        if (freeCount > 0)
+            return freeBlocks[--freeCount];
+
+        int block = unusedBlock++;
+        int slab = block / blocksPerSlab;
+        if (slabs[slab] == null) {
+            int slabBlocks = Math.min(blocksPerSlab, blockCount - slab * blocksPerSlab);
+            slabs[slab] = ByteBuffer.allocateDirect(slabBlocks * blockSize);
+        }
+        return block;
+    }
+
+    private ByteBuffer slabOf(int block) {
+        return slabs[block / blocksPerSlab];
+    }
+
+    private int offsetOf(int block) {
+        return (block % blocksPerSlab) * blockSize;
+    }
+
+}
@@ -2,6 +2,7 @@
 package com.yahoo.prelude.fastsearch;
 
 
+import java.nio.ByteBuffer;
 import java.util.*;
 import java.util.logging.Logger;
 
@@ -12,6 +13,7 @@ import com.yahoo.fs4.Packet;
 import com.yahoo.fs4.QueryResultPacket;
 import com.yahoo.document.GlobalId;
 import com.yahoo.document.DocumentId;
+import com.yahoo.text.Utf8;
 
 
 /**
@@ -280,6 +282,72 @@ public class PacketWrapper implements Cloneable {
         return size;
     }
 
+    /** Returns a copy of this without docsums, sharing the result packets of this */
+    PacketWrapper withoutDocsums() {
+        PacketWrapper other = (PacketWrapper) clone();
+        other.packets = new LinkedHashMap<>();
+        return other;
+    }
+
+    /**
+     * Returns the docsums of this encoded into a byte array, on a form which can be
+     * added back to a copy of this without docsums by {@link #withEncodedDocsums}.
+     * Each docsum is encoded as its part id and summary class followed by the docsum packet.
+     */
+    byte[] encodeDocsums() {
+        int size = 4;
+        List<byte[]> summaryClasses = new ArrayList<>(packets.size());
+        for (Map.Entry<DocsumPacketKey, BasicPacket> entry : packets.entrySet()) {
+            String summaryClass = entry.getKey().getSummaryClass();
+            byte[] summaryClassBytes = summaryClass == null ? null : Utf8.toBytes(summaryClass);
+            summaryClasses.add(summaryClassBytes);
+            DocsumPacket packet = (DocsumPacket) entry.getValue();
+            size += 4 + 4 + (summaryClassBytes == null ? 0 : summaryClassBytes.length)
+                    + 3 * 4 + GlobalId.LENGTH + packet.getData().length;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putInt(packets.size());
+        Iterator<byte[]> summaryClass = summaryClasses.iterator();
+        for (Map.Entry<DocsumPacketKey, BasicPacket> entry : packets.entrySet()) {
+            DocsumPacket packet = (DocsumPacket) entry.getValue();
+            byte[] summaryClassBytes = summaryClass.next();
+            buffer.putInt(entry.getKey().getPartid());
+            if (summaryClassBytes == null) {
+                buffer.putInt(-1);
+            } else {
+                buffer.putInt(summaryClassBytes.length);
+                buffer.put(summaryClassBytes);
+            }
+            // The docsum packet on the wire format, where the length field excludes itself
+            buffer.putInt(2 * 4 + GlobalId.LENGTH + packet.getData().length);
+            buffer.putInt(packet.getCode());
+            buffer.putInt(packet.getChannel());
+            buffer.put(packet.getGlobalId().getRawId());
+            buffer.put(packet.getData());
+        }
+        return buffer.array();
+    }
+
+    /** Returns a copy of this with the docsums encoded by {@link #encodeDocsums} added */
+    PacketWrapper withEncodedDocsums(byte[] encodedDocsums) {
+        PacketWrapper other = (PacketWrapper) clone();
+        ByteBuffer buffer = ByteBuffer.wrap(encodedDocsums);
+        int count = buffer.getInt();
+        for (int i = 0; i < count; i++) {
+            int partid = buffer.getInt();
+            int summaryClassLength = buffer.getInt();
+            String summaryClass = null;
+            if (summaryClassLength >= 0) {
+                summaryClass = Utf8.toString(encodedDocsums, buffer.position(), summaryClassLength);
+                buffer.position(buffer.position() + summaryClassLength);
+            }
+            DocsumPacket packet = (DocsumPacket) DocsumPacket.create().decode(buffer);
+            other.packets.put(new DocsumPacketKey(packet.getGlobalId(), partid, summaryClass), packet);
+        }
+        return other;
+    }
+
     /**
      * Straightforward shallow copy.
      */
@@ -57,6 +57,8 @@ public abstract class VespaBackEndSearcher extends PingableSearcher {
     private static final CompoundName combinerows=new CompoundName("combinerows");
     /** If this is turned on this will fill summaries by dispatching directly to search nodes over RPC */
     private final static CompoundName dispatchSummaries = new CompoundName("dispatch.summaries");
+    /** If this is turned on this will search by dispatching directly to all search nodes of a group, see FastSearcher */
+    protected final static CompoundName dispatchSearch = new CompoundName("dispatch.search");
 
     protected static final CompoundName PACKET_COMPRESSION_LIMIT = new CompoundName("packetcompressionlimit");
     protected static final CompoundName PACKET_COMPRESSION_TYPE = new CompoundName("packetcompressiontype");
@@ -112,8 +114,9 @@ public abstract class VespaBackEndSearcher extends PingableSearcher {
 
     protected abstract void doPartialFill(Result result, String summaryClass);
 
+    /** Returns whether summaries should be filled over RPC. This is always the case when searching the nodes directly. */
     protected static boolean wantsRPCSummaryFill(Query query) {
-        return query.properties().getBoolean(dispatchSummaries);
+        return query.properties().getBoolean(dispatchSummaries) || query.properties().getBoolean(dispatchSearch);
     }
 
     /**
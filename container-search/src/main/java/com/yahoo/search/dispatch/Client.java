@@ -2,6 +2,7 @@
 package com.yahoo.search.dispatch;
 
 import com.yahoo.compress.CompressionType;
+import com.yahoo.data.access.Inspector;
 import com.yahoo.prelude.fastsearch.FastHit;
 
 import java.util.List;
@@ -15,12 +16,20 @@ import java.util.Optional;
 interface Client {
 
     void getDocsums(List<FastHit> hits, NodeConnection node, CompressionType compression,
-                    int uncompressedLength, byte[] compressedSlime, Dispatcher.GetDocsumsResponseReceiver responseReceiver,
+                    int uncompressedLength, byte[] compressedSlime, GetDocsumsReceiver responseReceiver,
                     double timeoutSeconds);
 
     /** Creates a connection to a particular node in this */
     NodeConnection createConnection(String hostname, int port);
 
+    /** Receives the response to a getDocsums request */
+    interface GetDocsumsReceiver {
+
+        /** Called by a thread belonging to the client when a response or error becomes available */
+        void receive(GetDocsumsResponseOrError response);
+
+    }
+
     class GetDocsumsResponseOrError {
 
         // One of these will be non empty and the other not
@@ -55,13 +64,41 @@ interface Client {
         private final byte[] compressedSlimeBytes;
         private final List<FastHit> hitsContext;
 
+        // Set instead of the above when this is a part of a larger response which is already decoded
+        private final Optional<Inspector> docsums;
+        private final int firstDocsum;
+
         public GetDocsumsResponse(byte compression, int uncompressedSize, byte[] compressedSlimeBytes, List<FastHit> hitsContext) {
             this.compression = compression;
             this.uncompressedSize = uncompressedSize;
             this.compressedSlimeBytes = compressedSlimeBytes;
             this.hitsContext = hitsContext;
+            this.docsums = Optional.empty();
+            this.firstDocsum = 0;
         }
 
+        /**
+         * Creates a response which is a part of a decoded response to a coalesced request.
+         *
+         * @param docsums the docsums array of the whole response
+         * @param firstDocsum the index of the docsum of the first hit of this in the docsums array
+         * @param hitsContext the hits of this part
+         */
+        public GetDocsumsResponse(Inspector docsums, int firstDocsum, List<FastHit> hitsContext) {
+            this.compression = 0;
+            this.uncompressedSize = 0;
+            this.compressedSlimeBytes = null;
+            this.hitsContext = hitsContext;
+            this.docsums = Optional.of(docsums);
+            this.firstDocsum = firstDocsum;
+        }
+
+        /** Returns the decoded docsums array containing the docsums of this, or empty if this is not decoded */
+        public Optional<Inspector> docsums() { return docsums; }
+
+        /** Returns the index in docsums() of the docsum of the first hit in this */
+        public int firstDocsum() { return firstDocsum; }
+
         public byte compression() {
             return compression;
         }
@@ -7,8 +7,11 @@ import com.yahoo.collections.ListMap;
 import com.yahoo.component.AbstractComponent;
 import com.yahoo.compress.CompressionType;
 import com.yahoo.compress.Compressor;
+import com.yahoo.concurrent.DaemonThreadFactory;
 import com.yahoo.container.handler.VipStatus;
 import com.yahoo.data.access.slime.SlimeAdapter;
+import com.yahoo.fs4.QueryPacket;
+import com.yahoo.fs4.QueryResultPacket;
 import com.yahoo.prelude.fastsearch.FS4ResourcePool;
 import com.yahoo.prelude.fastsearch.FastHit;
 import com.yahoo.prelude.fastsearch.TimeoutException;
@@ -23,17 +26,22 @@ import com.yahoo.slime.Slime;
 import com.yahoo.data.access.Inspector;
 import com.yahoo.vespa.config.search.DispatchConfig;
 
+import java.io.IOException;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
- * A dispatcher communicates with search nodes to (in the future) perform queries and (now) fill hits.
+ * A dispatcher communicates with search nodes to perform queries and fill hits.
  * This class is multithread safe.
  *
  * @author bratseth
@@ -52,9 +60,30 @@ public class Dispatcher extends AbstractComponent {
 
     private final Compressor compressor = new Compressor();
 
+    // Only needed until query requests are moved to rpc
+    private final FS4ResourcePool fs4ResourcePool;
+
+    /** Used to spread queries evenly over the groups */
+    private final AtomicInteger nextGroup = new AtomicInteger(0);
+
+    /** Packs docsum requests from concurrent queries into one request per node, or null if turned off */
+    private final DocsumRequestCoalescer coalescer;
+
+    /** The thread sending coalesced docsum requests, or null if coalescing is turned off */
+    private final ScheduledExecutorService coalescingTimer;
+
+    /** Cache of docsums which do not depend on the query, or null if turned off */
+    private final DocsumCache docsumCache;
+
     public Dispatcher(DispatchConfig dispatchConfig, FS4ResourcePool fs4ResourcePool,
                       int containerClusterSize, VipStatus vipStatus) {
-        this.client = new RpcClient();
+        this(new RpcClient(), dispatchConfig, fs4ResourcePool, containerClusterSize, vipStatus);
+    }
+
+    private Dispatcher(Client client, DispatchConfig dispatchConfig, FS4ResourcePool fs4ResourcePool,
+                       int containerClusterSize, VipStatus vipStatus) {
+        this.client = client;
+        this.fs4ResourcePool = fs4ResourcePool;
         this.searchCluster = new SearchCluster(dispatchConfig, fs4ResourcePool, containerClusterSize, vipStatus);
 
         // Create node rpc connections, indexed by the legacy "partid", which allows us to bridge
@@ -64,42 +93,134 @@ public class Dispatcher extends AbstractComponent {
             nodeConnectionsBuilder.put(node.key(), client.createConnection(node.host(), node.port()));
         }
         nodeConnections = nodeConnectionsBuilder.build();
+
+        this.coalescingTimer = createCoalescingTimer(dispatchConfig.docsumCoalescingWindow());
+        this.coalescer = createCoalescer(client, compressor, dispatchConfig.docsumCoalescingWindow(), coalescingTimer);
+        this.docsumCache = createDocsumCache(dispatchConfig.docsumCacheMaxBytes(), dispatchConfig.docsumCacheMaxAge());
     }
 
     /** For testing */
     public Dispatcher(Map<Integer, Client.NodeConnection> nodeConnections, Client client) {
+        this(nodeConnections, client, 0, 0, 0);
+    }
+
+    /** For testing */
+    public Dispatcher(Map<Integer, Client.NodeConnection> nodeConnections, Client client,
+                      int docsumCoalescingWindowMicros, long docsumCacheMaxBytes, double docsumCacheMaxAge) {
         this.searchCluster = null;
+        this.fs4ResourcePool = null;
         this.nodeConnections = ImmutableMap.copyOf(nodeConnections);
         this.client = client;
+        this.coalescingTimer = createCoalescingTimer(docsumCoalescingWindowMicros);
+        this.coalescer = createCoalescer(client, compressor, docsumCoalescingWindowMicros, coalescingTimer);
+        this.docsumCache = createDocsumCache(docsumCacheMaxBytes, docsumCacheMaxAge);
+    }
+
+    private static ScheduledExecutorService createCoalescingTimer(int windowMicros) {
+        if (windowMicros <= 0) return null;
+        return Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("docsum-coalescer-"));
+    }
+
+    private static DocsumRequestCoalescer createCoalescer(Client client, Compressor compressor, int windowMicros,
+                                                          ScheduledExecutorService timer) {
+        if (windowMicros <= 0) return null;
+        return new DocsumRequestCoalescer(client, compressor, windowMicros, timer);
+    }
+
+    private static DocsumCache createDocsumCache(long maxBytes, double maxAge) {
+        if (maxBytes <= 0) return null;
+        return new DocsumCache(maxBytes, maxAge);
     }
     
     /** Returns the search cluster this dispatches to */
     public SearchCluster searchCluster() { return searchCluster; }
 
-    /** Fills the given summary class by sending RPC requests to the right search nodes */
+    /**
+     * Searches by sending the query directly to all the nodes of a group and merging their results,
+     * instead of going through a dispatch node. Hits in the returned result must be filled by {@link #fill}.
+     *
+     * @param query the query to search
+     * @param minNodesPercentage the percentage of the nodes which must respond before we start
+     *                           to limit the time spent waiting for the rest
+     * @param tailTimeoutFactor the time to wait for the remaining nodes at that point, as a factor of the time spent
+     * @return the merged result, or empty if no group can currently be searched this way
+     * @throws IOException if no node in the group returned a result
+     */
+    public Optional<QueryResultPacket> search(Query query, double minNodesPercentage, double tailTimeoutFactor) throws IOException {
+        Optional<SearchCluster.Group> group = chooseGroup();
+        if ( ! group.isPresent()) return Optional.empty();
+
+        query.trace(false, 2, "Searching all nodes in ", group.get());
+        // Each node must return all its hits up to the last hit in the requested window
+        Query nodeQuery = query.clone();
+        nodeQuery.setOffset(0);
+        nodeQuery.setHits(query.getOffset() + query.getHits());
+        SearchFanOut fanOut = new SearchFanOut(group.get().nodes(),
+                                               node -> fs4ResourcePool.getBackend(node.hostname(), node.fs4port()),
+                                               minNodesPercentage, tailTimeoutFactor);
+        return Optional.of(fanOut.search(query, QueryPacket.create(nodeQuery)));
+    }
+
+    /** Returns the next group, in round robin order, which has sufficient coverage and all nodes working */
+    private Optional<SearchCluster.Group> chooseGroup() {
+        List<SearchCluster.Group> groups = searchCluster.groups().values().asList();
+        if (groups.isEmpty()) return Optional.empty();
+
+        int start = Math.floorMod(nextGroup.getAndIncrement(), groups.size());
+        for (int i = 0; i < groups.size(); i++) {
+            SearchCluster.Group group = groups.get((start + i) % groups.size());
+            if ( ! group.hasSufficientCoverage()) continue;
+            if ( ! group.nodes().stream().allMatch(SearchCluster.Node::isWorking)) continue;
+            return Optional.of(group);
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Fills the given summary class by sending RPC requests to the right search nodes.
+     * Requests which do not carry the query (no session id) may be coalesced with those of other queries,
+     * and their docsums may be served from and added to the docsum cache.
+     */
     public void fill(Result result, String summaryClass, CompressionType compression) {
         try {
-            ListMap<Integer, FastHit> hitsByNode = hitsByNode(result);
+            Query query = result.getQuery();
+            boolean queryIndependent = query.getSessionId(false) == null;
+            DocsumCache cache = queryIndependent ? docsumCache : null;
+            String rankProfile = query.getRanking().getProfile();
+            ListMap<Integer, FastHit> hitsByNode = hitsByNode(result, cache, summaryClass, rankProfile);
+            if (hitsByNode.size() == 0) return;
 
-            GetDocsumsResponseReceiver responseReceiver = new GetDocsumsResponseReceiver(hitsByNode.size(), compressor, result);
+            GetDocsumsResponseReceiver responseReceiver = new GetDocsumsResponseReceiver(hitsByNode.size(), compressor, result,
+                                                                                         cache, summaryClass, rankProfile);
             for (Map.Entry<Integer, List<FastHit>> nodeHits : hitsByNode.entrySet()) {
-                sendGetDocsumsRequest(nodeHits.getKey(), nodeHits.getValue(), summaryClass, compression, result, responseReceiver);
+                sendGetDocsumsRequest(nodeHits.getKey(), nodeHits.getValue(), summaryClass, compression, result,
+                                      queryIndependent, responseReceiver);
             }
-            responseReceiver.processResponses(result.getQuery());
+            responseReceiver.processResponses(query);
         }
         catch (TimeoutException e) {
             result.hits().addError(ErrorMessage.createTimeout("Summary data is incomplete: " + e.getMessage()));
         }
     }
 
-    /** Return a map of hits by their search node (partition) id */
-    private static ListMap<Integer, FastHit> hitsByNode(Result result) {
+    /**
+     * Return a map of hits by their search node (partition) id.
+     * Hits which can be filled from the given cache are filled and left out.
+     */
+    private static ListMap<Integer, FastHit> hitsByNode(Result result, DocsumCache cache, String summaryClass, String rankProfile) {
         ListMap<Integer, FastHit> hitsByPartition = new ListMap<>();
         for (Iterator<Hit> i = result.hits().unorderedDeepIterator() ; i.hasNext(); ) {
             Hit h = i.next();
             if ( ! (h instanceof FastHit)) continue;
             FastHit hit = (FastHit)h;
 
+            if (cache != null) {
+                Optional<Inspector> docsum = cache.get(hit.getGlobalId(), summaryClass, rankProfile);
+                if (docsum.isPresent()) {
+                    GetDocsumsResponseReceiver.fill(hit, docsum.get());
+                    continue;
+                }
+            }
             hitsByPartition.put(hit.getDistributionKey(), hit);
         }
         return hitsByPartition;
@@ -107,8 +228,8 @@ public class Dispatcher extends AbstractComponent {
 
     /** Send a getDocsums request to a node. Responses will be added to the given receiver. */
     private void sendGetDocsumsRequest(int nodeId, List<FastHit> hits, String summaryClass,
-                                       CompressionType compression,
-                                       Result result, GetDocsumsResponseReceiver responseReceiver) {
+                                       CompressionType compression, Result result, boolean queryIndependent,
+                                       GetDocsumsResponseReceiver responseReceiver) {
         Client.NodeConnection node = nodeConnections.get(nodeId);
         if (node == null) {
             result.hits().addError(ErrorMessage.createEmptyDocsums("Could not fill hits from unknown node " + nodeId));
@@ -118,15 +239,21 @@ public class Dispatcher extends AbstractComponent {
 
         Query query = result.getQuery();
         String rankProfile = query.getRanking().getProfile();
+        double timeoutSeconds = ((double)query.getTimeLeft()-3.0)/1000.0;
+        if (coalescer != null && queryIndependent) {
+            coalescer.getDocsums(node, hits, summaryClass, rankProfile, query.getModel().getDocumentDb(), compression,
+                                 responseReceiver, timeoutSeconds);
+            return;
+        }
+
         byte[] serializedSlime = BinaryFormat.encode(toSlime(rankProfile, summaryClass,
                 query.getModel().getDocumentDb(), query.getSessionId(false), hits));
-        double timeoutSeconds = ((double)query.getTimeLeft()-3.0)/1000.0;
         Compressor.Compression compressionResult = compressor.compress(compression, serializedSlime);
         client.getDocsums(hits, node, compressionResult.type(),
                           serializedSlime.length, compressionResult.data(), responseReceiver, timeoutSeconds);
     }
 
-    static private Slime toSlime(String rankProfile, String summaryClass, String docType, SessionId sessionId, List<FastHit> hits) {
+    static Slime toSlime(String rankProfile, String summaryClass, String docType, SessionId sessionId, List<FastHit> hits) {
         Slime slime = new Slime();
         Cursor root = slime.setObject();
         if (summaryClass != null) {
@@ -150,17 +277,24 @@ public class Dispatcher extends AbstractComponent {
 
     @Override
     public void deconstruct() {
+        if (coalescingTimer != null)
+            coalescingTimer.shutdown();
         for (Client.NodeConnection nodeConnection : nodeConnections.values())
             nodeConnection.close();
     }
 
     /** Receiver of the responses to a set of getDocsums requests */
-    public static class GetDocsumsResponseReceiver {
+    public static class GetDocsumsResponseReceiver implements Client.GetDocsumsReceiver {
 
         private final BlockingQueue<Client.GetDocsumsResponseOrError> responses;
         private final Compressor compressor;
         private final Result result;
 
+        /** The cache to add the received docsums to, or null if they should not be cached */
+        private final DocsumCache docsumCache;
+        private final String summaryClass;
+        private final String rankProfile;
+
         /** Whether we have already logged/notified about an error - to avoid spamming */
         private boolean hasReportedError = false;
 
@@ -168,13 +302,22 @@ public class Dispatcher extends AbstractComponent {
         private int outstandingResponses;
 
         public GetDocsumsResponseReceiver(int requestCount, Compressor compressor, Result result) {
+            this(requestCount, compressor, result, null, null, null);
+        }
+
+        GetDocsumsResponseReceiver(int requestCount, Compressor compressor, Result result,
+                                   DocsumCache docsumCache, String summaryClass, String rankProfile) {
             this.compressor = compressor;
             responses = new LinkedBlockingQueue<>(requestCount);
             outstandingResponses = requestCount;
             this.result = result;
+            this.docsumCache = docsumCache;
+            this.summaryClass = summaryClass;
+            this.rankProfile = rankProfile;
         }
 
         /** Called by a thread belonging to the client when a valid response becomes available */
+        @Override
         public void receive(Client.GetDocsumsResponseOrError response) {
             responses.add(response);
         }
@@ -215,29 +358,36 @@ public class Dispatcher extends AbstractComponent {
             }
             else {
                 Client.GetDocsumsResponse response = responseOrError.response().get();
+                if (response.docsums().isPresent()) {
+                    fill(response.hitsContext(), response.docsums().get(), response.firstDocsum());
+                    return;
+                }
                 CompressionType compression = CompressionType.valueOf(response.compression());
                 byte[] slimeBytes = compressor.decompress(response.compressedSlimeBytes(), compression, response.uncompressedSize());
-                fill(response.hitsContext(), slimeBytes);
+                fill(response.hitsContext(), new SlimeAdapter(BinaryFormat.decode(slimeBytes).get().field("docsums")), 0);
             }
         }
 
-        private void fill(List<FastHit> hits, byte[] slimeBytes) {
-            Inspector summaries = new SlimeAdapter(BinaryFormat.decode(slimeBytes).get().field("docsums"));
+        private void fill(List<FastHit> hits, Inspector summaries, int firstDocsum) {
             if ( ! summaries.valid())
                 throw new IllegalArgumentException("Expected a Slime root object containing a 'docsums' field");
             for (int i = 0; i < hits.size(); i++) {
-                fill(hits.get(i), summaries.entry(i).field("docsum"));
+                FastHit hit = hits.get(i);
+                Inspector summary = summaries.entry(firstDocsum + i).field("docsum");
+                fill(hit, summary);
+                if (docsumCache != null && summary.valid())
+                    docsumCache.put(hit.getGlobalId(), summaryClass, rankProfile, summary);
             }
         }
 
-        private void fill(FastHit hit, Inspector summary) {
+        static void fill(FastHit hit, Inspector summary) {
             hit.reserve(summary.fieldCount());
             summary.traverse((String name, Inspector value) -> {
                 hit.setField(name, nativeTypeOf(value));
             });
         }
 
-        private Object nativeTypeOf(Inspector inspector) {
+        private static Object nativeTypeOf(Inspector inspector) {
             switch (inspector.type()) {
                 case ARRAY: return inspector;
                 case OBJECT: return inspector;
@@ -0,0 +1,182 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.dispatch;
+
+import com.yahoo.concurrent.SystemTimer;
+import com.yahoo.data.access.Inspector;
+import com.yahoo.data.access.slime.SlimeAdapter;
+import com.yahoo.document.GlobalId;
+import com.yahoo.slime.BinaryFormat;
+import com.yahoo.slime.Cursor;
+import com.yahoo.slime.Slime;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * A cache of document summaries, keyed by global id, summary class and rank profile.
+ * Only summaries which do not depend on the query can be cached.
+ * Each summary is copied into its own binary Slime when cached, such that the cache does not keep
+ * the response it was read from alive. Entries are evicted in least recently used order when the total
+ * size of the cached summaries exceeds the max size, and dropped when they become older than the max age,
+ * which bounds how long an updated document may be served stale.
+ * <p>
+ * This class is multithread safe.
+ *
+ * @author agent
+ */
+class DocsumCache {
+
+    private final long maxBytes;
+    private final long maxAgeMillis;
+
+    /** The cached docsums. All access must be synchronized on this */
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    /** The sum of the sizes of the cached docsums. All access must be synchronized on entries */
+    private long bytes = 0;
+
+    /**
+     * Creates a docsum cache
+     *
+     * @param maxBytes the max total size in bytes of the docsums to cache
+     * @param maxAgeSeconds the max time a docsum can be returned from this after it was cached
+     */
+    DocsumCache(long maxBytes, double maxAgeSeconds) {
+        this.maxBytes = maxBytes;
+        this.maxAgeMillis = (long)(maxAgeSeconds * 1000);
+    }
+
+    /** Returns the cached docsum of this document in this summary class and rank profile, or empty if none */
+    Optional<Inspector> get(GlobalId globalId, String summaryClass, String rankProfile) {
+        Key key = new Key(globalId, summaryClass, rankProfile);
+        long now = SystemTimer.INSTANCE.milliTime();
+        byte[] docsum;
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry == null) return Optional.empty();
+            if (now - entry.creationTime > maxAgeMillis) {
+                remove(key);
+                return Optional.empty();
+            }
+            docsum = entry.docsum;
+        }
+        return Optional.of(new SlimeAdapter(BinaryFormat.decode(docsum).get()));
+    }
+
+    /** Caches a copy of the docsum of this document in this summary class and rank profile */
+    void put(GlobalId globalId, String summaryClass, String rankProfile, Inspector docsum) {
+        Slime copy = new Slime();
+        copy(docsum, copy.setObject());
+        Entry entry = new Entry(BinaryFormat.encode(copy), SystemTimer.INSTANCE.milliTime());
+        if (entry.docsum.length > maxBytes) return;
+
+        Key key = new Key(globalId, summaryClass, rankProfile);
+        synchronized (entries) {
+            remove(key);
+            entries.put(key, entry);
+            bytes += entry.docsum.length;
+            for (Iterator<Entry> i = entries.values().iterator(); bytes > maxBytes && i.hasNext(); ) {
+                bytes -= i.next().docsum.length;
+                i.remove();
+            }
+        }
+    }
+
+    /** Returns the number of docsums currently in this */
+    int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /** Returns the total size in bytes of the docsums currently in this */
+    long bytes() {
+        synchronized (entries) {
+            return bytes;
+        }
+    }
+
+    /** Removes an entry. Must be called while synchronized on entries */
+    private void remove(Key key) {
+        Entry removed = entries.remove(key);
+        if (removed != null)
+            bytes -= removed.docsum.length;
+    }
+
+    private static void copy(Inspector from, Cursor to) {
+        from.traverse((String name, Inspector value) -> {
+            switch (value.type()) {
+                case ARRAY: copyEntries(value, to.setArray(name)); break;
+                case OBJECT: copy(value, to.setObject(name)); break;
+                case BOOL: to.setBool(name, value.asBool()); break;
+                case DATA: to.setData(name, value.asData()); break;
+                case DOUBLE: to.setDouble(name, value.asDouble()); break;
+                case LONG: to.setLong(name, value.asLong()); break;
+                case STRING: to.setString(name, value.asUtf8()); break;
+                case EMPTY: to.setNix(name); break;
+                default: throw new IllegalArgumentException("Unexpected Slime type " + value.type());
+            }
+        });
+    }
+
+    private static void copyEntries(Inspector from, Cursor to) {
+        from.traverse((int index, Inspector value) -> {
+            switch (value.type()) {
+                case ARRAY: copyEntries(value, to.addArray()); break;
+                case OBJECT: copy(value, to.addObject()); break;
+                case BOOL: to.addBool(value.asBool()); break;
+                case DATA: to.addData(value.asData()); break;
+                case DOUBLE: to.addDouble(value.asDouble()); break;
+                case LONG: to.addLong(value.asLong()); break;
+                case STRING: to.addString(value.asUtf8()); break;
+                case EMPTY: to.addNix(); break;
+                default: throw new IllegalArgumentException("Unexpected Slime type " + value.type());
+            }
+        });
+    }
+
+    private static final class Entry {
+
+        /** The docsum in binary Slime format */
+        final byte[] docsum;
+        final long creationTime;
+
+        Entry(byte[] docsum, long creationTime) {
+            this.docsum = docsum;
+            this.creationTime = creationTime;
+        }
+
+    }
+
+    private static final class Key {
+
+        private final GlobalId globalId;
+        private final String summaryClass;
+        private final String rankProfile;
+        private final int hashCode;
+
+        Key(GlobalId globalId, String summaryClass, String rankProfile) {
+            this.globalId = globalId;
+            this.summaryClass = summaryClass;
+            this.rankProfile = rankProfile;
+            this.hashCode = Objects.hash(globalId, summaryClass, rankProfile);
+        }
+
+        @Override
+        public int hashCode() { return hashCode; }
+
+        @Override
+        public boolean equals(Object o) {
+            if (o == this) return true;
+            if ( ! (o instanceof Key)) return false;
+            Key other = (Key)o;
+            return globalId.equals(other.globalId) &&
+                   Objects.equals(summaryClass, other.summaryClass) &&
+                   Objects.equals(rankProfile, other.rankProfile);
+        }
+
+    }
+
+}
@@ -0,0 +1,191 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.dispatch;
+
+import com.yahoo.compress.CompressionType;
+import com.yahoo.compress.Compressor;
+import com.yahoo.data.access.Inspector;
+import com.yahoo.data.access.slime.SlimeAdapter;
+import com.yahoo.prelude.fastsearch.FastHit;
+import com.yahoo.slime.BinaryFormat;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Packs getDocsums requests from different queries to the same node into a single request.
+ * The first request to a node opens a batch which is sent when the coalescing window has passed,
+ * and the response is split back into a response per request.
+ * Only requests which agree on everything but the hits to fill can be coalesced,
+ * which means they cannot carry a query session id.
+ * <p>
+ * This class is multithread safe.
+ *
+ * @author agent
+ */
+class DocsumRequestCoalescer {
+
+    /** Batches reaching this many hits are sent right away */
+    private static final int maxBatchHits = 1000;
+
+    private final Client client;
+    private final Compressor compressor;
+    private final long windowMicros;
+    private final ScheduledExecutorService timer;
+
+    /** The batches waiting to be sent. All access must be synchronized on this */
+    private final Map<BatchKey, Batch> pending = new HashMap<>();
+
+    DocsumRequestCoalescer(Client client, Compressor compressor, long windowMicros, ScheduledExecutorService timer) {
+        this.client = client;
+        this.compressor = compressor;
+        this.windowMicros = windowMicros;
+        this.timer = timer;
+    }
+
+    /** Adds a request for the docsums of the given hits to the next batch to the given node */
+    void getDocsums(Client.NodeConnection node, List<FastHit> hits, String summaryClass, String rankProfile,
+                    String docType, CompressionType compression, Client.GetDocsumsReceiver receiver, double timeoutSeconds) {
+        BatchKey key = new BatchKey(node, summaryClass, rankProfile, docType, compression);
+        Batch batchToSend = null;
+        synchronized (this) {
+            Batch batch = pending.get(key);
+            if (batch == null) {
+                batch = new Batch(key);
+                pending.put(key, batch);
+                Batch newBatch = batch;
+                timer.schedule(() -> send(newBatch), windowMicros, TimeUnit.MICROSECONDS);
+            }
+            batch.add(hits, receiver, timeoutSeconds);
+            if (batch.hitCount() >= maxBatchHits) {
+                pending.remove(key);
+                batchToSend = batch;
+            }
+        }
+        if (batchToSend != null)
+            batchToSend.send();
+    }
+
+    /** Sends this batch unless it has already been sent because it became full */
+    private void send(Batch batch) {
+        synchronized (this) {
+            if (pending.get(batch.key) != batch) return;
+            pending.remove(batch.key);
+        }
+        batch.send();
+    }
+
+    /** A set of requests to be sent together */
+    private class Batch implements Client.GetDocsumsReceiver {
+
+        private final BatchKey key;
+        private final List<FastHit> hits = new ArrayList<>();
+        private final List<Part> parts = new ArrayList<>();
+        private long deadlineNanos = Long.MAX_VALUE;
+
+        Batch(BatchKey key) {
+            this.key = key;
+        }
+
+        void add(List<FastHit> partHits, Client.GetDocsumsReceiver receiver, double timeoutSeconds) {
+            parts.add(new Part(hits.size(), partHits, receiver));
+            hits.addAll(partHits);
+            deadlineNanos = Math.min(deadlineNanos, System.nanoTime() + (long)(timeoutSeconds * 1e9));
+        }
+
+        int hitCount() { return hits.size(); }
+
+        void send() {
+            byte[] serializedSlime = BinaryFormat.encode(Dispatcher.toSlime(key.rankProfile, key.summaryClass,
+                                                                             key.docType, null, hits));
+            Compressor.Compression compressionResult = compressor.compress(key.compression, serializedSlime);
+            double timeoutSeconds = Math.max(0, (deadlineNanos - System.nanoTime()) / 1e9);
+            client.getDocsums(hits, key.node, compressionResult.type(), serializedSlime.length, compressionResult.data(),
+                              this, timeoutSeconds);
+        }
+
+        /** Splits the response to this batch into a response to each request in it */
+        @Override
+        public void receive(Client.GetDocsumsResponseOrError responseOrError) {
+            if (responseOrError.error().isPresent()) {
+                for (Part part : parts)
+                    part.receiver.receive(responseOrError);
+                return;
+            }
+
+            Client.GetDocsumsResponse response = responseOrError.response().get();
+            Inspector docsums;
+            try {
+                CompressionType compression = CompressionType.valueOf(response.compression());
+                byte[] slimeBytes = compressor.decompress(response.compressedSlimeBytes(), compression, response.uncompressedSize());
+                docsums = new SlimeAdapter(BinaryFormat.decode(slimeBytes).get().field("docsums"));
+            }
+            catch (RuntimeException e) {
+                for (Part part : parts)
+                    part.receiver.receive(Client.GetDocsumsResponseOrError.fromError("Could not decode getDocsums response: " +
+                                                                                     e.getMessage()));
+                return;
+            }
+            for (Part part : parts)
+                part.receiver.receive(Client.GetDocsumsResponseOrError.fromResponse(
+                        new Client.GetDocsumsResponse(docsums, part.firstHit, part.hits)));
+        }
+
+    }
+
+    /** A single request in a batch */
+    private static class Part {
+
+        final int firstHit;
+        final List<FastHit> hits;
+        final Client.GetDocsumsReceiver receiver;
+
+        Part(int firstHit, List<FastHit> hits, Client.GetDocsumsReceiver receiver) {
+            this.firstHit = firstHit;
+            this.hits = hits;
+            this.receiver = receiver;
+        }
+
+    }
+
+    /** The properties requests must share to be coalesced */
+    private static final class BatchKey {
+
+        private final Client.NodeConnection node;
+        private final String summaryClass;
+        private final String rankProfile;
+        private final String docType;
+        private final CompressionType compression;
+
+        BatchKey(Client.NodeConnection node, String summaryClass, String rankProfile, String docType, CompressionType compression) {
+            this.node = node;
+            this.summaryClass = summaryClass;
+            this.rankProfile = rankProfile;
+            this.docType = docType;
+            this.compression = compression;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(node, summaryClass, rankProfile, docType, compression);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (o == this) return true;
+            if ( ! (o instanceof BatchKey)) return false;
+            BatchKey other = (BatchKey)o;
+            return node == other.node &&
+                   Objects.equals(summaryClass, other.summaryClass) &&
+                   Objects.equals(rankProfile, other.rankProfile) &&
+                   Objects.equals(docType, other.docType) &&
+                   compression == other.compression;
+        }
+
+    }
+
+}
@@ -33,7 +33,7 @@ class RpcClient implements Client {
 
     @Override
     public void getDocsums(List<FastHit> hits, NodeConnection node, CompressionType compression, int uncompressedLength,
-                           byte[] compressedSlime, Dispatcher.GetDocsumsResponseReceiver responseReceiver, double timeoutSeconds) {
+                           byte[] compressedSlime, GetDocsumsReceiver responseReceiver, double timeoutSeconds) {
         Request request = new Request("proton.getDocsums");
         request.parameters().add(new Int8Value(compression.getCode()));
         request.parameters().add(new Int32Value(uncompressedLength));
@@ -90,9 +90,9 @@ class RpcClient implements Client {
         private final RpcNodeConnection node;
 
         /** The handler to which the response is forwarded */
-        private final Dispatcher.GetDocsumsResponseReceiver handler;
+        private final GetDocsumsReceiver handler;
 
-        public RpcResponseWaiter(RpcNodeConnection node, Dispatcher.GetDocsumsResponseReceiver handler) {
+        public RpcResponseWaiter(RpcNodeConnection node, GetDocsumsReceiver handler) {
             this.node = node;
             this.handler = handler;
         }
@@ -0,0 +1,167 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.dispatch;
+
+import com.yahoo.concurrent.SystemTimer;
+import com.yahoo.fs4.BasicPacket;
+import com.yahoo.fs4.QueryPacket;
+import com.yahoo.fs4.QueryResultPacket;
+import com.yahoo.fs4.mplex.Backend;
+import com.yahoo.fs4.mplex.FS4Channel;
+import com.yahoo.fs4.mplex.InvalidChannelException;
+import com.yahoo.prelude.fastsearch.TimeoutException;
+import com.yahoo.search.Query;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Sends a query to all the search nodes of a group and merges their results incrementally as they arrive.
+ * The query thread sends to all the nodes first and then waits for the responses of all of them together,
+ * as each response completes a future which signals its arrival.
+ * <p>
+ * To avoid letting the slowest node decide the latency of every query, this uses an adaptive timeout:
+ * Once a given percentage of the nodes have responded, the remaining nodes are given time proportional
+ * to the time spent so far before the query returns without them, with coverage marked as degraded
+ * by adaptive timeout.
+ *
+ * @author agent
+ */
+class SearchFanOut {
+
+    /** The minimal time in ms we wait for the remaining nodes after the adaptive timeout kicks in */
+    private static final long minTailWait = 5;
+
+    private final List<SearchCluster.Node> nodes;
+    private final Function<SearchCluster.Node, Backend> backends;
+    private final double minNodesPercentage;
+    private final double tailTimeoutFactor;
+
+    /**
+     * Creates a fan out to a set of nodes
+     *
+     * @param nodes the nodes to send the query to, which together should hold the entire corpus
+     * @param backends returns the fs4 backend of a node
+     * @param minNodesPercentage the percentage of the nodes which must respond before the adaptive timeout kicks in.
+     *                           100 turns off the adaptive timeout
+     * @param tailTimeoutFactor the time to wait for the remaining nodes after the adaptive timeout kicks in,
+     *                          as a factor of the time spent until then
+     */
+    SearchFanOut(List<SearchCluster.Node> nodes, Function<SearchCluster.Node, Backend> backends,
+                 double minNodesPercentage, double tailTimeoutFactor) {
+        this.nodes = nodes;
+        this.backends = backends;
+        this.minNodesPercentage = minNodesPercentage;
+        this.tailTimeoutFactor = tailTimeoutFactor;
+    }
+
+    /**
+     * Sends the given query packet to all the nodes and returns the merged result.
+     *
+     * @param query the query to search, which determines the timeout and the window of hits to return
+     * @param queryPacket the packet to send to each node. This must request the hits from offset 0 to the
+     *                    last hit to return, as each node cannot know which of its hits will make it into the window
+     * @throws TimeoutException if no node responded in time
+     * @throws IOException if no node returned a result
+     */
+    QueryResultPacket search(Query query, QueryPacket queryPacket) throws IOException {
+        long startTime = SystemTimer.INSTANCE.milliTime();
+        long deadline = startTime + query.getTimeLeft();
+        SearchResultMerger merger = new SearchResultMerger(query.getOffset(), query.getHits());
+        BlockingQueue<Integer> arrivals = new LinkedBlockingQueue<>();
+        FS4Channel[] channels = new FS4Channel[nodes.size()];
+        List<CompletableFuture<BasicPacket>> responses = new ArrayList<>(nodes.size());
+        boolean[] done = new boolean[nodes.size()];
+        int outstanding = 0;
+        try {
+            for (int i = 0; i < nodes.size(); i++) {
+                CompletableFuture<BasicPacket> response = send(i, query, queryPacket, channels, arrivals);
+                responses.add(response);
+                if (response != null)
+                    outstanding++;
+                else
+                    done[i] = markFailed(i, merger, query, "could not be reached");
+            }
+
+            int minResults = (int)Math.ceil(outstanding * minNodesPercentage / 100.0);
+            long tailDeadline = Long.MAX_VALUE;
+            while (outstanding > 0) {
+                long now = SystemTimer.INSTANCE.milliTime();
+                if (merger.resultCount() >= minResults && tailDeadline == Long.MAX_VALUE)
+                    tailDeadline = now + Math.max(minTailWait, (long)((now - startTime) * tailTimeoutFactor));
+                long timeLeft = Math.min(deadline, tailDeadline) - now;
+                if (timeLeft <= 0) break;
+
+                Integer index = arrivals.poll(timeLeft, TimeUnit.MILLISECONDS);
+                if (index == null || done[index]) continue;
+
+                done[index] = true;
+                outstanding--;
+                CompletableFuture<BasicPacket> response = responses.get(index);
+                BasicPacket packet = response.isCompletedExceptionally() ? null : response.getNow(null);
+                if (packet instanceof QueryResultPacket)
+                    merger.add((QueryResultPacket)packet, nodes.get(index));
+                else
+                    markFailed(index, merger, query, packet == null ? "closed the channel" : "returned " + packet);
+            }
+
+            int degradedReason = tailDeadline < deadline ? SearchResultMerger.DEGRADED_BY_ADAPTIVE_TIMEOUT
+                                                         : SearchResultMerger.DEGRADED_BY_TIMEOUT;
+            for (int i = 0; i < nodes.size(); i++) {
+                if (done[i]) continue;
+                merger.addMissing(nodes.get(i), degradedReason);
+                query.trace(false, 2, "Gave up waiting for ", nodes.get(i));
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TimeoutException("Interrupted while waiting for search nodes");
+        }
+        finally {
+            for (FS4Channel channel : channels)
+                if (channel != null)
+                    channel.close();
+        }
+
+        if (merger.resultCount() == 0) {
+            if (outstanding > 0)
+                throw new TimeoutException("Timeout while waiting for " + outstanding + " search nodes");
+            throw new IOException("None of the " + nodes.size() + " search nodes returned a result");
+        }
+        return merger.toResult();
+    }
+
+    /**
+     * Sends the query packet to a node.
+     *
+     * @return the future response of the node, which adds the index of the node to arrivals when it completes,
+     *         or null if the query could not be sent
+     */
+    private CompletableFuture<BasicPacket> send(int index, Query query, QueryPacket queryPacket,
+                                                FS4Channel[] channels, BlockingQueue<Integer> arrivals) {
+        try {
+            FS4Channel channel = backends.apply(nodes.get(index)).openChannel();
+            channels[index] = channel;
+            channel.setQuery(query);
+            CompletableFuture<BasicPacket> response = channel.nextPacketAsync();
+            if ( ! channel.sendPacket(queryPacket)) return null;
+            response.whenComplete((packet, exception) -> arrivals.offer(index));
+            return response;
+        }
+        catch (InvalidChannelException | IOException | IllegalStateException e) {
+            return null;
+        }
+    }
+
+    private boolean markFailed(int index, SearchResultMerger merger, Query query, String reason) {
+        merger.addMissing(nodes.get(index), 0);
+        query.trace(false, 2, nodes.get(index), " ", reason);
+        return true;
+    }
+
+}
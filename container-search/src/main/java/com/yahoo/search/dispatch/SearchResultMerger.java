@@ -0,0 +1,99 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.dispatch;
+
+import com.yahoo.fs4.DocumentInfo;
+import com.yahoo.fs4.QueryResultPacket;
+
+import java.util.Comparator;
+import java.util.PriorityQueue;
+
+/**
+ * Merges the query results from the search nodes of a group into a single result as each of them arrives.
+ * Only the best offset+hits documents are kept, in a bounded heap having the worst kept document at the head.
+ * As each node returns its documents in descending rank order, merging a node result stops at the first
+ * document which is not better than the worst one kept, so a result costs at most offset+hits heap operations.
+ * <p>
+ * This is not thread safe.
+ *
+ * @author agent
+ */
+class SearchResultMerger {
+
+    // Degraded reasons, as in com.yahoo.container.handler.Coverage
+    static final int DEGRADED_BY_TIMEOUT = 2;
+    static final int DEGRADED_BY_ADAPTIVE_TIMEOUT = 4;
+
+    private final int offset;
+    private final int windowSize;
+    private final PriorityQueue<DocumentInfo> topDocuments;
+
+    private int resultCount = 0;
+    private long totalDocumentCount = 0;
+    private long coverageDocs = 0;
+    private long activeDocs = 0;
+    private long soonActiveDocs = 0;
+    private int degradedReason = 0;
+
+    SearchResultMerger(int offset, int hits) {
+        this.offset = offset;
+        this.windowSize = offset + hits;
+        this.topDocuments = new PriorityQueue<>(Math.max(1, windowSize), Comparator.comparingDouble(DocumentInfo::getMetric));
+    }
+
+    /** Merges the result from the given node into this */
+    void add(QueryResultPacket result, SearchCluster.Node node) {
+        resultCount++;
+        totalDocumentCount += result.getTotalDocumentCount();
+        if (result.getCoverageFeature()) {
+            coverageDocs += result.getCoverageDocs();
+            activeDocs += result.getActiveDocs();
+            soonActiveDocs += result.getSoonActiveDocs();
+            degradedReason |= result.getDegradedReason();
+        }
+        else {
+            coverageDocs += node.getActiveDocuments();
+            activeDocs += node.getActiveDocuments();
+            soonActiveDocs += node.getActiveDocuments();
+        }
+
+        for (DocumentInfo document : result.getDocuments()) {
+            if (topDocuments.size() == windowSize) {
+                if (windowSize == 0 || document.getMetric() <= topDocuments.peek().getMetric()) break;
+                topDocuments.poll();
+            }
+            // The node does not know its own distribution key, so we set it here for summary fetching
+            topDocuments.add(new DocumentInfo(document.getGlobalId(), document.getMetric(), node.key(), node.key()));
+        }
+    }
+
+    /**
+     * Records that the given node did not return a result.
+     * The active documents last reported by the node are added as not covered.
+     *
+     * @param degradedReason the reason for the missing result, or 0 if the node failed
+     */
+    void addMissing(SearchCluster.Node node, int degradedReason) {
+        activeDocs += node.getActiveDocuments();
+        soonActiveDocs += node.getActiveDocuments();
+        this.degradedReason |= degradedReason;
+    }
+
+    /** Returns the number of node results merged into this */
+    int resultCount() { return resultCount; }
+
+    /** Returns the merged result containing the requested window of documents. This empties this merger. */
+    QueryResultPacket toResult() {
+        QueryResultPacket result = QueryResultPacket.create();
+        result.setOffset(offset);
+        result.setTotalDocumentCount(totalDocumentCount);
+        result.setCoverage(coverageDocs, activeDocs, soonActiveDocs, degradedReason);
+
+        DocumentInfo[] documents = new DocumentInfo[topDocuments.size()];
+        for (int i = documents.length - 1; i >= 0; i--)
+            documents[i] = topDocuments.poll();
+        for (int i = offset; i < documents.length; i++)
+            result.addDocument(documents[i]);
+        return result;
+    }
+
+}
@@ -12,6 +12,7 @@ import com.yahoo.component.provider.ComponentRegistry;
 import com.yahoo.concurrent.CopyOnWriteHashMap;
 import com.yahoo.errorhandling.Results;
 import com.yahoo.errorhandling.Results.Builder;
+import com.yahoo.jdisc.Metric;
 import com.yahoo.prelude.IndexFacts;
 import com.yahoo.processing.request.CompoundName;
 import com.yahoo.search.Query;
@@ -33,6 +34,7 @@ import com.yahoo.search.result.Hit;
 import com.yahoo.search.result.HitGroup;
 import com.yahoo.search.result.HitOrderer;
 import com.yahoo.search.searchchain.AsyncExecution;
+import com.yahoo.search.searchchain.AsyncExecutor;
 import com.yahoo.search.searchchain.Execution;
 import com.yahoo.search.searchchain.ForkingSearcher;
 import com.yahoo.search.searchchain.FutureResult;
@@ -91,13 +93,21 @@ public class FederationSearcher extends ForkingSearcher {
     private final boolean strictSearchchain;
     private final TargetSelector<?> targetSelector;
 
+    /** Runs the searches of the targets, with the limits of their search chains */
+    private final AsyncExecutor executor;
+
     private final Clock clock = Clock.systemUTC();
 
     @Inject
     public FederationSearcher(FederationConfig config, StrictContractsConfig strict,
-                              ComponentRegistry<TargetSelector> targetSelectors) {
+                              ComponentRegistry<TargetSelector> targetSelectors, Metric metric) {
         this(createResolver(config), strict.searchchains(), strict.propagateSourceProperties(),
-             resolveSelector(config.targetSelector(), targetSelectors));
+             resolveSelector(config.targetSelector(), targetSelectors), createExecutor(config, metric));
+    }
+
+    public FederationSearcher(FederationConfig config, StrictContractsConfig strict,
+                              ComponentRegistry<TargetSelector> targetSelectors) {
+        this(config, strict, targetSelectors, null);
     }
 
     private static TargetSelector resolveSelector(String selectorId, 
@@ -109,17 +119,27 @@ public class FederationSearcher extends ForkingSearcher {
 
     // for testing
     public FederationSearcher(ComponentId id, SearchChainResolver searchChainResolver) {
-        this(searchChainResolver, false, PropagateSourceProperties.ALL, null);
+        this(searchChainResolver, false, PropagateSourceProperties.ALL, null, AsyncExecutor.getDefault());
     }
 
     private FederationSearcher(SearchChainResolver searchChainResolver, boolean strictSearchchain,
                                PropagateSourceProperties.Enum propagateSourceProperties,
-                               TargetSelector targetSelector) {
+                               TargetSelector targetSelector, AsyncExecutor executor) {
         this.searchChainResolver = searchChainResolver;
         sourceRefResolver = new SourceRefResolver(searchChainResolver);
         this.strictSearchchain = strictSearchchain;
         this.propagateSourceProperties = propagateSourceProperties;
         this.targetSelector = targetSelector;
+        this.executor = executor;
+    }
+
+    /** Returns an executor on the default threads, with the configured limits of each search chain */
+    private static AsyncExecutor createExecutor(FederationConfig config, Metric metric) {
+        AsyncExecutor executor = AsyncExecutor.getDefault().withMetric(metric);
+        for (FederationConfig.Target target : config.target())
+            for (FederationConfig.Target.SearchChain searchChain : target.searchChain())
+                executor.setChainLimit(ComponentId.fromString(searchChain.searchChainId()), searchChain.maxPendingSearches());
+        return executor;
     }
 
     private static SearchChainResolver createResolver(FederationConfig config) {
@@ -254,7 +274,7 @@ public class FederationSearcher extends ForkingSearcher {
         if (timeout <= 0)
             return new FutureResult(() -> new Result(query, ErrorMessage.createTimeout("Timed out before federation")), execution, query);
         Query clonedQuery = cloneFederationQuery(query, window, timeout, target);
-        return new AsyncExecution(target.getChain(), execution).search(clonedQuery);
+        return new AsyncExecution(new Execution(target.getChain(), execution.context()), executor).search(clonedQuery);
     }
 
     private Query cloneFederationQuery(Query query, Window window, long timeout, Target target) {
@@ -431,7 +451,7 @@ public class FederationSearcher extends ForkingSearcher {
                     chainExecution.fill(resultToFill, summaryClass);
                     propagateErrors(resultToFill, result);
                 } else {
-                    AsyncExecution asyncFill = new AsyncExecution(chainExecution);
+                    AsyncExecution asyncFill = new AsyncExecution(chainExecution, executor);
                     futureFilledResults.add(new Pair<>(resultToFill, asyncFill.fill(resultToFill, summaryClass)));
                 }
             }
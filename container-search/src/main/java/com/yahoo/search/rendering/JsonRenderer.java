@@ -758,6 +758,12 @@ public class JsonRenderer extends AsynchronousSectionedRenderer<Result> {
         endJsonCallback();
     }
 
+    @Override
+    protected void flushBufferedOutput() throws IOException {
+        if (generator != null && ! generator.isClosed())
+            generator.flush();
+    }
+
     @Override
     public String getEncoding() {
         return "utf-8";
@@ -0,0 +1,487 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.rendering;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.TreeNode;
+import com.google.common.base.Preconditions;
+import com.yahoo.data.JsonProducer;
+import com.yahoo.data.access.Inspectable;
+import com.yahoo.data.access.Inspector;
+import com.yahoo.data.access.slime.SlimeAdapter;
+import com.yahoo.document.datatypes.FieldValue;
+import com.yahoo.document.datatypes.StringFieldValue;
+import com.yahoo.document.datatypes.TensorFieldValue;
+import com.yahoo.document.json.JsonWriter;
+import com.yahoo.prelude.fastsearch.FastHit;
+import com.yahoo.processing.Response;
+import com.yahoo.processing.execution.Execution.Trace;
+import com.yahoo.processing.rendering.AsynchronousSectionedRenderer;
+import com.yahoo.processing.request.CompoundName;
+import com.yahoo.processing.response.Data;
+import com.yahoo.processing.response.DataList;
+import com.yahoo.search.Result;
+import com.yahoo.search.grouping.Continuation;
+import com.yahoo.search.grouping.result.AbstractList;
+import com.yahoo.search.grouping.result.BucketGroupId;
+import com.yahoo.search.grouping.result.Group;
+import com.yahoo.search.grouping.result.GroupId;
+import com.yahoo.search.grouping.result.RawBucketId;
+import com.yahoo.search.grouping.result.RawId;
+import com.yahoo.search.grouping.result.RootGroup;
+import com.yahoo.search.grouping.result.ValueGroupId;
+import com.yahoo.search.result.Coverage;
+import com.yahoo.search.result.DefaultErrorHit;
+import com.yahoo.search.result.ErrorHit;
+import com.yahoo.search.result.ErrorMessage;
+import com.yahoo.search.result.Hit;
+import com.yahoo.search.result.HitGroup;
+import com.yahoo.search.result.NanNumber;
+import com.yahoo.slime.BinaryFormat;
+import com.yahoo.slime.Cursor;
+import com.yahoo.slime.JsonDecoder;
+import com.yahoo.slime.Slime;
+import com.yahoo.tensor.Tensor;
+import com.yahoo.tensor.serialization.TypedBinaryFormat;
+import com.yahoo.text.Utf8;
+import com.yahoo.yolean.trace.TraceNode;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+/**
+ * Renders search results as binary Slime, for clients which consume results programmatically.
+ * This produces the same tree as the {@link JsonRenderer}, except that tensors are binary data fields containing
+ * the tensor in typed binary format, and raw data fields are binary data rather than strings.
+ * <p>
+ * The binary format holds a symbol table of all field names first, so the result is built in memory
+ * and written in endResponse.
+ *
+ * @author agent
+ */
+public class SlimeRenderer extends AsynchronousSectionedRenderer<Result> {
+
+    public static final String MIME_TYPE = "application/x-vespa-slime";
+
+    private static final CompoundName DEBUG_RENDERING_KEY = new CompoundName("renderer.json.debug");
+    private static final String VESPA_HIDDEN_FIELD_PREFIX = "$";
+    private static final JsonFactory jsonFactory = new JsonFactory();
+
+    private Slime slime;
+    private Cursor root;
+    private Deque<Cursor> groups;
+    private Deque<Cursor> children;
+    private boolean debugRendering;
+    private OutputStream stream;
+
+    public SlimeRenderer() {
+        this(null);
+    }
+
+    /**
+     * Creates a slime renderer using a custom executor.
+     * Using a custom executor is useful for tests to avoid creating new threads for each renderer registry.
+     */
+    public SlimeRenderer(Executor executor) {
+        super(executor);
+    }
+
+    @Override
+    public void init() {
+        super.init();
+        slime = null;
+        root = null;
+        groups = null;
+        children = null;
+        debugRendering = false;
+        stream = null;
+    }
+
+    @Override
+    public void beginResponse(OutputStream stream) throws IOException {
+        this.stream = stream;
+        slime = new Slime();
+        root = slime.setObject();
+        groups = new ArrayDeque<>();
+        children = new ArrayDeque<>();
+        debugRendering = getResult().getQuery() != null &&
+                         getResult().getQuery().properties().getBoolean(DEBUG_RENDERING_KEY, false);
+        renderTrace(getExecution().trace());
+        renderTiming();
+    }
+
+    private void renderTiming() {
+        if (getResult().getQuery() == null || ! getResult().getQuery().getPresentation().getTiming()) return;
+
+        double milli = .001d;
+        Cursor timing = root.setObject("timing");
+        if (getResult().getElapsedTime().firstFill() != 0L) {
+            timing.setDouble("querytime", getResult().getElapsedTime().weightedSearchTime() * milli);
+            timing.setDouble("summaryfetchtime", getResult().getElapsedTime().weightedFillTime() * milli);
+        }
+        timing.setDouble("searchtime", (System.currentTimeMillis() - getResult().getElapsedTime().first()) * milli);
+    }
+
+    private void renderTrace(Trace trace) {
+        if ( ! trace.traceNode().children().iterator().hasNext()) return;
+        if (getResult().getQuery() == null || getResult().getQuery().getTraceLevel() == 0) return;
+
+        long basetime = trace.traceNode().timestamp();
+        if (basetime == 0L)
+            basetime = getResult().getElapsedTime().first();
+        renderTraceChildren(trace.traceNode(), root.setObject("trace"), basetime);
+    }
+
+    private void renderTraceChildren(TraceNode node, Cursor parent, long basetime) {
+        Cursor array = null;
+        for (TraceNode child : node.children()) {
+            if (array == null)
+                array = parent.setArray("children");
+            Cursor object = array.addObject();
+            if (child.timestamp() != 0L)
+                object.setLong("timestamp", child.timestamp() - basetime);
+            if (child.payload() != null)
+                object.setString("message", child.payload().toString());
+            renderTraceChildren(child, object, basetime);
+        }
+    }
+
+    @Override
+    public void beginList(DataList<?> list) throws IOException {
+        Preconditions.checkArgument(list instanceof HitGroup,
+                                    "Expected subclass of com.yahoo.search.result.HitGroup, got %s.",
+                                    list.getClass());
+        HitGroup hitGroup = (HitGroup) list;
+        Cursor group = groups.isEmpty() ? root.setObject("root") : childrenOf(groups.peek()).addObject();
+        groups.push(group);
+        children.push(group); // marks that the children array of this group is not created yet
+
+        renderHitContents(hitGroup, group);
+        if (getRecursionLevel() == 1)
+            renderCoverage(group);
+
+        ErrorHit errorHit = hitGroup.getErrorHit();
+        if (errorHit != null)
+            renderErrors(errorHit.errors(), group);
+    }
+
+    /** Returns the children array of a group, creating it on first use */
+    private Cursor childrenOf(Cursor group) {
+        if (children.peek() == group) {
+            children.pop();
+            children.push(group.setArray("children"));
+        }
+        return children.peek();
+    }
+
+    @Override
+    public void data(Data data) throws IOException {
+        Preconditions.checkArgument(data instanceof Hit,
+                                    "Expected subclass of com.yahoo.search.result.Hit, got %s.",
+                                    data.getClass());
+        Hit hit = (Hit) data;
+        if (hit instanceof DefaultErrorHit) return;
+        renderHitContents(hit, childrenOf(groups.peek()).addObject());
+    }
+
+    @Override
+    public void endList(DataList<?> list) throws IOException {
+        groups.pop();
+        children.pop();
+    }
+
+    @Override
+    public void endResponse() throws IOException {
+        stream.write(BinaryFormat.encode(slime));
+    }
+
+    private void renderErrors(Set<ErrorMessage> errors, Cursor group) {
+        if (errors.isEmpty()) return;
+
+        Cursor array = group.setArray("errors");
+        for (ErrorMessage e : errors) {
+            Cursor error = array.addObject();
+            error.setLong("code", e.getCode());
+            error.setString("summary", e.getMessage());
+            if (e.getSource() != null)
+                error.setString("source", e.getSource());
+            if (e.getDetailedMessage() != null)
+                error.setString("message", e.getDetailedMessage());
+            Throwable cause = e.getCause();
+            if (cause != null && cause.getStackTrace().length > 0) {
+                StringWriter s = new StringWriter();
+                PrintWriter p = new PrintWriter(s);
+                cause.printStackTrace(p);
+                p.close();
+                error.setString("stackTrace", s.toString());
+            }
+        }
+    }
+
+    private void renderCoverage(Cursor group) {
+        Coverage c = getResult().getCoverage(false);
+        if (c == null) return;
+
+        Cursor coverage = group.setObject("coverage");
+        coverage.setLong("coverage", c.getResultPercentage());
+        coverage.setLong("documents", c.getDocs());
+        if (c.isDegraded()) {
+            Cursor degraded = coverage.setObject("degraded");
+            degraded.setBool("match-phase", c.isDegradedByMatchPhase());
+            degraded.setBool("timeout", c.isDegradedByTimeout());
+            degraded.setBool("adaptive-timeout", c.isDegradedByAdapativeTimeout());
+            degraded.setBool("non-ideal-state", c.isDegradedByNonIdealState());
+        }
+        coverage.setBool("full", c.getFull());
+        coverage.setLong("nodes", c.getNodes());
+        coverage.setLong("results", c.getResultSets());
+        coverage.setLong("resultsFull", c.getFullResultSets());
+    }
+
+    private void renderHitContents(Hit hit, Cursor object) throws IOException {
+        String id = hit.getDisplayId();
+        if (id != null)
+            object.setString("id", id);
+        object.setDouble("relevance", hit.getRelevance().getScore());
+
+        if (hit.types().size() > 0) {
+            Cursor types = object.setArray("types");
+            for (String type : hit.types())
+                types.addString(type);
+        }
+
+        if (hit.getSource() != null)
+            object.setString("source", hit.getSource());
+
+        renderSpecialCasesForGrouping(hit, object);
+        renderFields(hit, object);
+    }
+
+    private void renderSpecialCasesForGrouping(Hit hit, Cursor object) {
+        if (hit instanceof AbstractList) {
+            AbstractList list = (AbstractList) hit;
+            object.setString("label", list.getLabel());
+            renderContinuations(list.continuations(), object);
+        } else if (hit instanceof Group) {
+            renderGroupMetadata(((Group) hit).getGroupId(), object);
+            if (hit instanceof RootGroup)
+                renderContinuations(Collections.singletonMap(Continuation.THIS_PAGE,
+                                                             ((RootGroup) hit).continuation()),
+                                    object);
+        }
+    }
+
+    private void renderContinuations(Map<String, Continuation> continuations, Cursor object) {
+        if (continuations.isEmpty()) return;
+
+        Cursor continuation = object.setObject("continuation");
+        for (Map.Entry<String, Continuation> e : continuations.entrySet())
+            continuation.setString(e.getKey(), e.getValue().toString());
+    }
+
+    private void renderGroupMetadata(GroupId id, Cursor object) {
+        if (id instanceof ValueGroupId) {
+            ValueGroupId<?> valueId = (ValueGroupId<?>) id;
+            object.setString("value", (valueId instanceof RawId ? Arrays.toString(((RawId) valueId).getValue())
+                                                                : valueId.getValue()).toString());
+        } else if (id instanceof BucketGroupId) {
+            BucketGroupId<?> bucketId = (BucketGroupId<?>) id;
+            Cursor limits = object.setObject("limits");
+            limits.setString("from", (bucketId instanceof RawBucketId ? Arrays.toString(((RawBucketId) bucketId).getFrom())
+                                                                      : bucketId.getFrom()).toString());
+            limits.setString("to", (bucketId instanceof RawBucketId ? Arrays.toString(((RawBucketId) bucketId).getTo())
+                                                                    : bucketId.getTo()).toString());
+        }
+    }
+
+    private void renderFields(Hit hit, Cursor object) throws IOException {
+        Cursor fields = null;
+        if (getRecursionLevel() == 1 && hit instanceof HitGroup) {
+            fields = object.setObject("fields");
+            fields.setLong("totalCount", getResult().getTotalHitCount());
+        }
+        for (String fieldName : hit.fieldKeys()) {
+            if ( ! debugRendering && fieldName.startsWith(VESPA_HIDDEN_FIELD_PREFIX)) continue;
+
+            FastHit.RawField rawField = rawFieldOf(fieldName, hit);
+            if (rawField != null) {
+                byte[] utf8 = rawField.getUtf8();
+                if (utf8.length == 0 && ! debugRendering) continue;
+                if (fields == null)
+                    fields = object.setObject("fields");
+                fields.setString(fieldName, utf8);
+            }
+            else {
+                Object field = hit.getField(fieldName);
+                if ( ! debugRendering && isEmpty(field)) continue;
+                if (fields == null)
+                    fields = object.setObject("fields");
+                renderField(field, new ObjectField(fields, fieldName));
+            }
+        }
+    }
+
+    /** Returns the undecoded field of this hit, which can be rendered directly, or null if there is none */
+    private FastHit.RawField rawFieldOf(String fieldName, Hit hit) {
+        if ( ! (hit instanceof FastHit) || ! ((FastHit) hit).fieldIsNotDecoded(fieldName)) return null;
+        return ((FastHit) hit).fetchFieldAsUtf8(fieldName);
+    }
+
+    private boolean isEmpty(Object field) {
+        if (field instanceof CharSequence && ((CharSequence) field).length() == 0) return true;
+        if (field instanceof StringFieldValue && ((StringFieldValue) field).getString().isEmpty()) return true;
+        if (field instanceof NanNumber) return true;
+        return false;
+    }
+
+    private void renderField(Object field, Inserter inserter) throws IOException {
+        if (field == null) {
+            inserter.insertNix();
+        } else if (field instanceof Boolean) {
+            inserter.insertBool((Boolean) field);
+        } else if (field instanceof Double || field instanceof Float || field instanceof BigDecimal) {
+            inserter.insertDouble(((Number) field).doubleValue());
+        } else if (field instanceof Number) {
+            inserter.insertLong(((Number) field).longValue());
+        } else if (field instanceof Tensor) {
+            inserter.insertData(TypedBinaryFormat.encode((Tensor) field));
+        } else if (field instanceof TensorFieldValue) {
+            if (((TensorFieldValue) field).getTensor().isPresent())
+                inserter.insertData(TypedBinaryFormat.encode(((TensorFieldValue) field).getTensor().get()));
+            else
+                inserter.insertNix();
+        } else if (field instanceof byte[]) {
+            inserter.insertData((byte[]) field);
+        } else if (field instanceof Inspectable) {
+            copy(((Inspectable) field).inspect(), inserter);
+        } else if (field instanceof JsonProducer) {
+            insertJson(Utf8.toBytes(((JsonProducer) field).toJson()), inserter);
+        } else if (field instanceof TreeNode || field instanceof JSONArray || field instanceof JSONObject) {
+            insertJson(Utf8.toBytes(field.toString()), inserter);
+        } else if (field instanceof StringFieldValue) {
+            inserter.insertString(((StringFieldValue) field).getString());
+        } else if (field instanceof FieldValue) {
+            ByteArrayOutputStream json = new ByteArrayOutputStream();
+            try (JsonGenerator generator = jsonFactory.createGenerator(json)) {
+                // the null below is the field, which is inserted by the inserter
+                ((FieldValue) field).serialize(null, new JsonWriter(generator));
+            }
+            insertJson(json.toByteArray(), inserter);
+        } else {
+            inserter.insertString(field.toString());
+        }
+    }
+
+    private void insertJson(byte[] json, Inserter inserter) {
+        Slime decoded = new JsonDecoder().decode(new Slime(), json);
+        copy(new SlimeAdapter(decoded.get()), inserter);
+    }
+
+    private static void copy(Inspector value, Inserter inserter) {
+        switch (value.type()) {
+            case EMPTY: inserter.insertNix(); break;
+            case BOOL: inserter.insertBool(value.asBool()); break;
+            case LONG: inserter.insertLong(value.asLong()); break;
+            case DOUBLE: inserter.insertDouble(value.asDouble()); break;
+            case STRING: inserter.insertString(value.asUtf8()); break;
+            case DATA: inserter.insertData(value.asData()); break;
+            case ARRAY:
+                Cursor array = inserter.insertArray();
+                for (Inspector entry : value.entries())
+                    copy(entry, new ArrayEntry(array));
+                break;
+            case OBJECT:
+                Cursor object = inserter.insertObject();
+                for (Map.Entry<String, Inspector> field : value.fields())
+                    copy(field.getValue(), new ObjectField(object, field.getKey()));
+                break;
+        }
+    }
+
+    @Override
+    public String getEncoding() {
+        return null; // binary
+    }
+
+    @Override
+    public String getMimeType() {
+        return MIME_TYPE;
+    }
+
+    private Result getResult() {
+        Response r = getResponse();
+        Preconditions.checkArgument(r instanceof Result,
+                                    "SlimeRenderer can only render instances of com.yahoo.search.Result, got instance of %s.",
+                                    r.getClass());
+        return (Result) r;
+    }
+
+    /** Inserts a value either as a field of an object or as an entry of an array */
+    private interface Inserter {
+        Cursor insertNix();
+        Cursor insertBool(boolean value);
+        Cursor insertLong(long value);
+        Cursor insertDouble(double value);
+        Cursor insertString(String value);
+        Cursor insertString(byte[] utf8);
+        Cursor insertData(byte[] value);
+        Cursor insertArray();
+        Cursor insertObject();
+    }
+
+    private static final class ObjectField implements Inserter {
+
+        private final Cursor target;
+        private final String name;
+
+        ObjectField(Cursor target, String name) {
+            this.target = target;
+            this.name = name;
+        }
+
+        public Cursor insertNix()                { return target.setNix(name); }
+        public Cursor insertBool(boolean value)  { return target.setBool(name, value); }
+        public Cursor insertLong(long value)     { return target.setLong(name, value); }
+        public Cursor insertDouble(double value) { return target.setDouble(name, value); }
+        public Cursor insertString(String value) { return target.setString(name, value); }
+        public Cursor insertString(byte[] utf8)  { return target.setString(name, utf8); }
+        public Cursor insertData(byte[] value)   { return target.setData(name, value); }
+        public Cursor insertArray()              { return target.setArray(name); }
+        public Cursor insertObject()             { return target.setObject(name); }
+
+    }
+
+    private static final class ArrayEntry implements Inserter {
+
+        private final Cursor target;
+
+        ArrayEntry(Cursor target) {
+            this.target = target;
+        }
+
+        public Cursor insertNix()                { return target.addNix(); }
+        public Cursor insertBool(boolean value)  { return target.addBool(value); }
+        public Cursor insertLong(long value)     { return target.addLong(value); }
+        public Cursor insertDouble(double value) { return target.addDouble(value); }
+        public Cursor insertString(String value) { return target.addString(value); }
+        public Cursor insertString(byte[] utf8)  { return target.addString(utf8); }
+        public Cursor insertData(byte[] value)   { return target.addData(value); }
+        public Cursor insertArray()              { return target.addArray(); }
+        public Cursor insertObject()             { return target.addObject(); }
+
+    }
+
+}
@@ -2,10 +2,10 @@
 package com.yahoo.search.searchchain;
 
 import com.yahoo.component.chain.Chain;
-import com.yahoo.concurrent.ThreadFactoryFactory;
 import com.yahoo.search.Query;
 import com.yahoo.search.Result;
 import com.yahoo.search.Searcher;
+import com.yahoo.search.result.ErrorMessage;
 
 import java.util.ArrayList;
 import java.util.Collection;
@@ -39,28 +39,22 @@ import java.util.concurrent.*;
  * created for each AsyncExecution instance.
  * </p>
  *
+ * <p>
+ * The searches are executed by an {@link AsyncExecutor}, which is bounded. If it is at capacity the
+ * returned future will immediately hold a Result containing an error rather than waiting for capacity.
+ * </p>
+ *
  * @see com.yahoo.search.searchchain.Execution
  * @author Arne Bergene Fossaa
  */
 public class AsyncExecution {
 
-    private static final ThreadFactory threadFactory = ThreadFactoryFactory.getThreadFactory("search");
-
-    private static final Executor executorMain = createExecutor();
-
-    private static Executor createExecutor() {
-        ThreadPoolExecutor executor = new ThreadPoolExecutor(100, Integer.MAX_VALUE, 1L, TimeUnit.SECONDS,
-                                                            new SynchronousQueue<>(false), threadFactory);
-        // Prestart needed, if not all threads will be created by the fist N tasks and hence they might also
-        // get the dreaded thread locals initialized even if they will never run.
-        // That counters what we we want to achieve with the Q that will prefer thread locality.
-        executor.prestartAllCoreThreads();
-        return executor;
-    }
-
     /** The execution this executes */
     private final Execution execution;
 
+    /** The executor running the searches of this */
+    private final AsyncExecutor executor;
+
     /**
      * Creates an async execution.
      *
@@ -102,11 +96,26 @@ public class AsyncExecution {
      * @see #AsyncExecution(Chain, Execution)
      */
     public AsyncExecution(Execution execution) {
+        this(execution, AsyncExecutor.getDefault());
+    }
+
+    /**
+     * Creates an async execution from an existing execution, which is run by the given executor
+     * instead of the default one.
+     *
+     * @param execution the execution from which the state of this is created
+     * @param executor the executor to use for the searches of this
+     *
+     * @see #AsyncExecution(Execution)
+     */
+    public AsyncExecution(Execution execution, AsyncExecutor executor) {
         this.execution = new Execution(execution);
+        this.executor = executor;
     }
 
     private AsyncExecution(Execution.Context context, Chain<? extends Searcher> chain) {
         this.execution = new Execution(chain, context);
+        this.executor = AsyncExecutor.getDefault();
     }
 
     /**
@@ -129,10 +138,6 @@ public class AsyncExecution {
         }, query);
     }
 
-    private static Executor getExecutor() {
-        return executorMain;
-    }
-
     /**
      * The future of this functions returns the original Result
      *
@@ -146,25 +151,21 @@ public class AsyncExecution {
 
     }
 
-    private static <T> Future<T> getFuture(Callable<T> callable) {
-        final FutureTask<T> future = new FutureTask<>(callable);
-        getExecutor().execute(future);
-        return future;
-    }
-
-    private static Future<Void> runTask(Runnable runnable) {
-        return getFuture(() -> {
-            runnable.run();
-            return null;
-        });
-    }
-
     private FutureResult getFutureResult(Callable<Result> callable, Query query) {
         FutureResult future = new FutureResult(callable, execution, query);
-        getExecutor().execute(future);
+        if ( ! executor.execute(execution.chain().getId(), future)) {
+            FutureResult rejected = new FutureResult(() -> new Result(query, createRejectedError()), execution, query);
+            rejected.run();
+            return rejected;
+        }
         return future;
     }
 
+    private ErrorMessage createRejectedError() {
+        return ErrorMessage.createUnspecifiedError("Could not execute '" + execution + "': " +
+                                                   "Too many concurrent searches");
+    }
+
     /*
      * Waits for all futures until the given timeout. If a FutureResult isn't
      * done when the timeout expires, it will be cancelled, and it will return a
@@ -176,13 +177,12 @@ public class AsyncExecution {
     public static List<Result> waitForAll(Collection<FutureResult> tasks, long timeoutMs) {
         // Copy the list in case it is modified while we are waiting
         List<FutureResult> workingTasks = new ArrayList<>(tasks);
-        try {
-            runTask(() -> {
-                for (FutureResult task : workingTasks)
-                    task.get();
-            }).get(timeoutMs, TimeUnit.MILLISECONDS);
-        }catch (TimeoutException | InterruptedException | ExecutionException e) {
-            // Handle timeouts below
+        // Wait in this thread, as waiting in a thread of the executor could starve the tasks waited for
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        for (FutureResult task : workingTasks) {
+            long timeLeft = deadline - System.currentTimeMillis();
+            if (timeLeft <= 0) break;
+            task.getIfAvailable(timeLeft, TimeUnit.MILLISECONDS);
         }
 
         List<Result> results = new ArrayList<>(tasks.size());
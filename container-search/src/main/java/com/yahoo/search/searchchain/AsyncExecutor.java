@@ -0,0 +1,214 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.searchchain;
+
+import com.yahoo.component.ComponentId;
+import com.yahoo.concurrent.ThreadFactoryFactory;
+import com.yahoo.jdisc.Metric;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The threads executing the searches of {@link AsyncExecution}s.
+ * <p>
+ * This has a bounded number of threads and a bounded queue shared by all chains. New threads are preferred over
+ * queueing until the max number of threads are running. When both the threads and the queue are exhausted, execution
+ * is rejected rather than blocking the caller or creating more threads, such that a burst of slow targets
+ * cannot starve the container.
+ * <p>
+ * In addition a chain may be given a limit on the number of its tasks which may be running or waiting at the same time,
+ * to prevent one slow chain from occupying all the threads of this.
+ * <p>
+ * The time tasks wait before they start executing is reported as a metric per chain if this has a metric.
+ * Components such as the {@link com.yahoo.search.federation.FederationSearcher} use their own chain limits and
+ * metric on the threads of the default executor through {@link #withMetric}.
+ *
+ * @author agent
+ */
+public class AsyncExecutor {
+
+    public static final String QUEUE_WAIT_METRIC = "search_async_queue_wait_time";
+    public static final String REJECTED_METRIC = "search_async_rejected";
+
+    private static final AsyncExecutor defaultExecutor = new AsyncExecutor(defaultMaxThreads(), defaultMaxThreads(), null);
+
+    private final ThreadPoolExecutor executor;
+    private final ThreadsFirstQueue queue;
+    private final Metric metric;
+    private final Map<ComponentId, Semaphore> chainLimits = new ConcurrentHashMap<>();
+    private final Map<ComponentId, Metric.Context> chainContexts = new ConcurrentHashMap<>();
+
+    /**
+     * Creates an executor.
+     *
+     * @param maxThreads the max number of threads executing tasks
+     * @param maxQueued the max number of tasks waiting for a thread when all threads are busy
+     * @param metric the metric receiver of the queue wait times and rejections of this, or null to not report them
+     */
+    public AsyncExecutor(int maxThreads, int maxQueued, Metric metric) {
+        if (maxThreads < 1) throw new IllegalArgumentException("Must have at least one thread, not " + maxThreads);
+        ThreadsFirstQueue queue = new ThreadsFirstQueue(Math.max(1, maxQueued), maxThreads);
+        this.executor = new ThreadPoolExecutor(Math.min(100, maxThreads), maxThreads, 1L, TimeUnit.SECONDS, queue,
+                                               queue.countingThreadFactory(ThreadFactoryFactory.getThreadFactory("search")),
+                                               (task, executor) -> queue.offerAfterRejection(task));
+        queue.executor = executor;
+        // Prestart needed, if not all threads will be created by the fist N tasks and hence they might also
+        // get the dreaded thread locals initialized even if they will never run.
+        // That counters what we we want to achieve with the Q that will prefer thread locality.
+        executor.prestartAllCoreThreads();
+        this.queue = queue;
+        this.metric = metric;
+    }
+
+    private AsyncExecutor(AsyncExecutor threads, Metric metric) {
+        this.executor = threads.executor;
+        this.queue = threads.queue;
+        this.metric = metric;
+    }
+
+    /** Returns the executor used by async executions which are not given one */
+    public static AsyncExecutor getDefault() { return defaultExecutor; }
+
+    /**
+     * Returns an executor which runs its tasks on the threads of this, but which has its own chain limits,
+     * initially none, and reports to the given metric.
+     *
+     * @param metric the metric receiver of the queue wait times and rejections of the returned executor, or null
+     */
+    public AsyncExecutor withMetric(Metric metric) {
+        return new AsyncExecutor(this, metric);
+    }
+
+    /**
+     * Sets the max number of tasks of the given chain which can be running or waiting in this at any time.
+     *
+     * @param chainId the id of the chain to limit
+     * @param maxPending the max number of pending tasks of the chain, or 0 to remove the limit
+     */
+    public void setChainLimit(ComponentId chainId, int maxPending) {
+        if (maxPending <= 0)
+            chainLimits.remove(chainId);
+        else
+            chainLimits.put(chainId, new Semaphore(maxPending));
+    }
+
+    /**
+     * Executes a task of a chain.
+     *
+     * @return true if the task will be executed, false if it was rejected because the chain or this is at capacity
+     */
+    boolean execute(ComponentId chainId, Runnable task) {
+        Semaphore chainLimit = chainLimits.get(chainId);
+        if (chainLimit != null && ! chainLimit.tryAcquire()) {
+            reportRejected(chainId);
+            return false;
+        }
+
+        long queuedAt = System.nanoTime();
+        queue.submittedTasks.incrementAndGet();
+        try {
+            executor.execute(() -> {
+                try {
+                    reportQueueWait(chainId, System.nanoTime() - queuedAt);
+                    task.run();
+                }
+                finally {
+                    queue.submittedTasks.decrementAndGet();
+                    if (chainLimit != null)
+                        chainLimit.release();
+                }
+            });
+            return true;
+        }
+        catch (RejectedExecutionException e) {
+            queue.submittedTasks.decrementAndGet();
+            if (chainLimit != null)
+                chainLimit.release();
+            reportRejected(chainId);
+            return false;
+        }
+    }
+
+    private void reportQueueWait(ComponentId chainId, long waitNanos) {
+        if (metric == null) return;
+        metric.set(QUEUE_WAIT_METRIC, TimeUnit.NANOSECONDS.toMicros(waitNanos) / 1000.0, chainContext(chainId));
+    }
+
+    private void reportRejected(ComponentId chainId) {
+        if (metric == null) return;
+        metric.add(REJECTED_METRIC, 1, chainContext(chainId));
+    }
+
+    private Metric.Context chainContext(ComponentId chainId) {
+        return chainContexts.computeIfAbsent(chainId,
+                                             id -> metric.createContext(Collections.singletonMap("chain", id.stringValue())));
+    }
+
+    /**
+     * Returns the number of threads, a fixed multiple of the number of cores.
+     * This is more than the cores as the threads mostly wait for content nodes and federated sources.
+     */
+    private static int defaultMaxThreads() {
+        return 16 * Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * A queue which refuses tasks while the executor can create more threads, to make it prefer threads over queueing,
+     * unless there are idle threads which will take the task.
+     * The threads are counted here rather than asked from the executor, as that takes the lock of the executor.
+     * Tasks are counted from they are submitted until they complete, such that tasks which are submitted but not
+     * yet started are not mistaken for idle threads.
+     */
+    private static final class ThreadsFirstQueue extends LinkedBlockingQueue<Runnable> {
+
+        private final int maxThreads;
+        private final AtomicInteger threads = new AtomicInteger(0);
+        private final AtomicInteger submittedTasks = new AtomicInteger(0);
+        private ThreadPoolExecutor executor;
+
+        ThreadsFirstQueue(int capacity, int maxThreads) {
+            super(capacity);
+            this.maxThreads = maxThreads;
+        }
+
+        /** Returns a thread factory which keeps the thread count of this */
+        ThreadFactory countingThreadFactory(ThreadFactory factory) {
+            return runnable -> {
+                threads.incrementAndGet();
+                return factory.newThread(() -> {
+                    try {
+                        runnable.run();
+                    }
+                    finally {
+                        threads.decrementAndGet();
+                    }
+                });
+            };
+        }
+
+        @Override
+        public boolean offer(Runnable task) {
+            int threadCount = threads.get();
+            if (submittedTasks.get() <= threadCount) return super.offer(task);
+            if (threadCount < maxThreads) return false;
+            return super.offer(task);
+        }
+
+        /** Called when the executor could not create a thread for a task, because the max was reached meanwhile */
+        void offerAfterRejection(Runnable task) {
+            if (executor.isShutdown() || ! super.offer(task))
+                throw new RejectedExecutionException("Search executor is at capacity: " + maxThreads +
+                                                     " threads and " + size() + " queued tasks");
+        }
+
+    }
+
+}
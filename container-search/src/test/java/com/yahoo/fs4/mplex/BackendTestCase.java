@@ -20,9 +20,12 @@ import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -177,6 +180,26 @@ public class BackendTestCase {
         channel.close();
     }
 
+    @Test
+    public void testAsyncReceive() throws Exception {
+        FS4Channel channel = backend.openChannel();
+        server.dispatch.channelId = channel.getChannelId();
+
+        CompletableFuture<BasicPacket> response = channel.nextPacketAsync();
+        assertTrue(channel.sendPacket(QueryPacket.create(new Query("/?query=a"))));
+        assertEquals(217, response.get(10, TimeUnit.SECONDS).getCode());
+        channel.close();
+    }
+
+    @Test
+    public void testCloseCompletesPendingReceive() throws InvalidChannelException {
+        FS4Channel channel = backend.openChannel();
+        CompletableFuture<BasicPacket> response = channel.nextPacketAsync();
+        assertFalse(response.isDone());
+        channel.close();
+        assertTrue(response.isCompletedExceptionally());
+    }
+
     @Test
     public void testPinging() throws IOException, InvalidChannelException {
         FS4Channel channel = backend.openPingChannel();
@@ -12,6 +12,7 @@ import com.yahoo.prelude.fastsearch.*;
 import com.yahoo.search.Query;
 import com.yahoo.search.config.ClusterConfig;
 import com.yahoo.search.result.Hit;
+import com.yahoo.search.searchers.test.MockMetric;
 import com.yahoo.search.searchchain.Execution;
 import com.yahoo.container.handler.VipStatus;
 import com.yahoo.container.protect.Error;
@@ -516,7 +517,7 @@ public class ClusterSearcherTestCase extends junit.framework.TestCase {
         ClusterSearcher searcher = new ClusterSearcher(id, qrsCfg, clusterCfg, documentDbCfg, emulationCfg, monitorCfg, 
                                                        new DispatchConfig(new DispatchConfig.Builder()), 
                                                        createClusterInfoConfig(),
-                                                       statistics, fs4ResourcePool, new VipStatus());
+                                                       statistics, fs4ResourcePool, new VipStatus(), new MockMetric());
         return searcher;
     }
 
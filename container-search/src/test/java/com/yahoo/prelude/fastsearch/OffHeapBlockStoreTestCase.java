@@ -0,0 +1,56 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.prelude.fastsearch;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * @author agent
+ */
+public class OffHeapBlockStoreTestCase {
+
+    @Test
+    public void testWriteReadAndFree() {
+        OffHeapBlockStore store = new OffHeapBlockStore(10 * 16, 16);
+        assertEquals(10, store.freeBlockCount());
+
+        byte[] data = bytes(40);
+        int[] blocks = store.write(data);
+        assertEquals(3, blocks.length);
+        assertEquals(7, store.freeBlockCount());
+        assertArrayEquals(data, store.read(blocks, data.length));
+
+        assertNull(store.write(bytes(8 * 16)));
+        assertEquals(7, store.freeBlockCount());
+
+        store.free(blocks);
+        assertEquals(10, store.freeBlockCount());
+        byte[] large = bytes(10 * 16);
+        int[] largeBlocks = store.write(large);
+        assertEquals(10, largeBlocks.length);
+        assertArrayEquals(large, store.read(largeBlocks, large.length));
+        assertEquals(0, store.freeBlockCount());
+
+        store.clear();
+        assertEquals(10, store.freeBlockCount());
+    }
+
+    @Test
+    public void testEmptyData() {
+        OffHeapBlockStore store = new OffHeapBlockStore(64, 16);
+        int[] blocks = store.write(new byte[0]);
+        assertEquals(0, blocks.length);
+        assertEquals(0, store.read(blocks, 0).length);
+    }
+
+    private static byte[] bytes(int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++)
+            bytes[i] = (byte) i;
+        return bytes;
+    }
+
+}
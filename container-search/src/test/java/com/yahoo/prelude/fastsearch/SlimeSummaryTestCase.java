@@ -21,7 +21,9 @@ import org.junit.Test;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.CoreMatchers.*;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 
 public class SlimeSummaryTestCase {
@@ -144,6 +146,31 @@ public class SlimeSummaryTestCase {
         assertEquals(tensor2, hit.getField("tensor_field2"));
     }
 
+    @Test
+    public void testStringFieldsAreDecodedOnAccess() {
+        Tensor tensor1 = Tensor.from("tensor(x{},y{}):{{x:foo,y:bar}:0.1}");
+        Tensor tensor2 = Tensor.from("tensor(x[],y[1]):{{x:0,y:0}:-0.3}");
+
+        String summary_cf = "file:src/test/java/com/yahoo/prelude/fastsearch/summary.cfg";
+        DocsumDefinitionSet set = createDocsumDefinitionSet(summary_cf);
+        FastHit hit = new FastHit();
+        set.lazyDecode("default", makeDocsum(tensor1, tensor2), hit);
+        assertTrue(hit.fieldIsNotDecoded("string_field"));
+        assertTrue(hit.fieldIsNotDecoded("xmlstring_field"));
+        assertFalse(hit.fieldIsNotDecoded("integer_field"));
+        assertFalse(hit.fieldIsNotDecoded("tensor_field1"));
+
+        assertThat(new String(hit.fetchFieldAsUtf8("string_field").getUtf8(), StandardCharsets.UTF_8),
+                   equalTo("string_value"));
+        assertFalse(hit.fetchFieldAsUtf8("xmlstring_field").needXmlEscape());
+        assertNull(hit.fetchFieldAsUtf8("integer_field"));
+
+        assertThat(hit.fields().get("integer_field"), equalTo(4));
+        assertEquals(tensor1, hit.fields().get("tensor_field1"));
+        assertThat(hit.getField("string_field"), equalTo("string_value"));
+        assertFalse(hit.fieldIsNotDecoded("string_field"));
+    }
+
     private DocsumDefinitionSet createDocsumDefinitionSet(String configID) {
         DocumentdbInfoConfig config = new ConfigGetter<>(DocumentdbInfoConfig.class).getConfig(configID);
         return new DocsumDefinitionSet(config.documentdb(0));
@@ -0,0 +1,232 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.prelude.fastsearch.test;
+
+import com.yahoo.document.DocumentId;
+import com.yahoo.document.GlobalId;
+import com.yahoo.fs4.BasicPacket;
+import com.yahoo.fs4.BufferTooSmallException;
+import com.yahoo.fs4.PacketDecoder;
+import com.yahoo.fs4.QueryPacket;
+import com.yahoo.prelude.fastsearch.CacheKey;
+import com.yahoo.prelude.fastsearch.ConcurrentPacketCache;
+import com.yahoo.prelude.fastsearch.DocsumPacketKey;
+import com.yahoo.prelude.fastsearch.PacketWrapper;
+import com.yahoo.search.Query;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * @author agent
+ */
+public class ConcurrentPacketCacheTestCase {
+
+    private static final int length = PacketCacheTestCase.length;
+    private static final int keySize = 30;
+
+    private static final CacheKey key1 = key("key1");
+    private static final CacheKey key2 = key("key2");
+    private static final CacheKey key3 = key("key3");
+
+    @Test
+    public void testPutAndGet() throws BufferTooSmallException {
+        ConcurrentPacketCache cache = new ConcurrentPacketCache((length + keySize) * 3 - 1, 1e64, 1);
+        cache.setMaxCacheItemPercentage(50);
+
+        cache.put(key1, createCacheEntry(key1));
+        assertNotNull(cache.get(key1));
+        assertEquals(keySize + length, cache.totalPacketSize());
+
+        cache.put(key2, createCacheEntry(key2));
+        assertNotNull(cache.get(key1));
+        assertNotNull(cache.get(key2));
+        assertEquals(keySize * 2 + length * 2, cache.totalPacketSize());
+
+        cache.put(key1, createCacheEntry(key1));
+        assertEquals(keySize * 2 + length * 2, cache.totalPacketSize());
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void testOneOffEntriesDoNotEvictPopularEntries() throws BufferTooSmallException {
+        ConcurrentPacketCache cache = new ConcurrentPacketCache((length + keySize) * 2, 1e64, 1);
+        cache.setMaxCacheItemPercentage(50);
+
+        cache.put(key1, createCacheEntry(key1));
+        cache.put(key2, createCacheEntry(key2));
+        for (int i = 0; i < 5; i++) {
+            assertNotNull(cache.get(key1));
+            assertNotNull(cache.get(key2));
+        }
+
+        cache.put(key3, createCacheEntry(key3));
+        assertNull(cache.get(key3));
+        assertNotNull(cache.get(key1));
+        assertNotNull(cache.get(key2));
+    }
+
+    @Test
+    public void testFrequentEntriesEvictLeastRecentlyUsed() throws BufferTooSmallException {
+        ConcurrentPacketCache cache = new ConcurrentPacketCache((length + keySize) * 2, 1e64, 1);
+        cache.setMaxCacheItemPercentage(50);
+
+        cache.put(key1, createCacheEntry(key1));
+        cache.put(key2, createCacheEntry(key2));
+        for (int i = 0; i < 5; i++)
+            assertNull(cache.get(key3));
+        assertNotNull(cache.get(key2));
+
+        cache.put(key3, createCacheEntry(key3));
+        assertNotNull(cache.get(key3));
+        assertNull(cache.get(key1));
+        assertNotNull(cache.get(key2));
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void testTooLargeItem() throws BufferTooSmallException {
+        ConcurrentPacketCache cache = new ConcurrentPacketCache(100, 1e64, 1);
+        cache.setMaxCacheItemPercentage(50);
+
+        cache.put(key1, createCacheEntry(key1));
+        assertNull(cache.get(key1));
+        assertEquals(0, cache.totalPacketSize());
+    }
+
+    @Test
+    public void testEntryAging() throws BufferTooSmallException {
+        ConcurrentPacketCache cache = new ConcurrentPacketCache(1024, 5 * 3600, 1);
+        cache.setMaxCacheItemPercentage(50);
+
+        cache.put(key1, createCacheEntry(key1), System.currentTimeMillis() - 10 * 3600 * 1000);
+        cache.put(key2, createCacheEntry(key2), System.currentTimeMillis());
+        assertNull(cache.get(key1));
+        assertNotNull(cache.get(key2));
+        assertEquals(keySize + length, cache.totalPacketSize());
+    }
+
+    @Test
+    public void testRemovingAndClearing() throws BufferTooSmallException {
+        ConcurrentPacketCache cache = new ConcurrentPacketCache(1024, 1e64, 1);
+        cache.setMaxCacheItemPercentage(50);
+
+        cache.put(key1, createCacheEntry(key1));
+        cache.put(key2, createCacheEntry(key2));
+        cache.remove(key1);
+        assertNull(cache.get(key1));
+        assertNotNull(cache.get(key2));
+        assertEquals(keySize + length, cache.totalPacketSize());
+
+        cache.clear();
+        assertNull(cache.get(key2));
+        assertEquals(0, cache.totalPacketSize());
+    }
+
+    @Test
+    public void testSegmentStatistics() throws BufferTooSmallException {
+        ConcurrentPacketCache cache = new ConcurrentPacketCache(8 << 20, 1e64, 4);
+        assertEquals(4, cache.getSegmentCount());
+
+        cache.put(key1, createCacheEntry(key1));
+        cache.get(key1);
+        cache.get(key1);
+        cache.get(key2);
+
+        List<ConcurrentPacketCache.SegmentStatistics> statistics = cache.takeStatistics();
+        assertEquals(4, statistics.size());
+        assertEquals(2, statistics.stream().mapToLong(ConcurrentPacketCache.SegmentStatistics::hits).sum());
+        assertEquals(1, statistics.stream().mapToLong(ConcurrentPacketCache.SegmentStatistics::misses).sum());
+        assertEquals(1, statistics.stream().mapToLong(ConcurrentPacketCache.SegmentStatistics::entries).sum());
+        assertEquals(keySize + length, statistics.stream().mapToLong(ConcurrentPacketCache.SegmentStatistics::bytes).sum());
+
+        statistics = cache.takeStatistics();
+        assertEquals(0, statistics.stream().mapToLong(ConcurrentPacketCache.SegmentStatistics::hits).sum());
+        assertEquals(1, statistics.stream().mapToLong(ConcurrentPacketCache.SegmentStatistics::entries).sum());
+    }
+
+    @Test
+    public void testLargerThanTwoGigabytes() {
+        ConcurrentPacketCache cache = new ConcurrentPacketCache(4L << 30, 5 * 3600);
+        assertEquals(4L << 30, cache.getByteCapacity());
+        assertEquals(4096, cache.getCapacity());
+    }
+
+    @Test
+    public void testOffHeapDocsums() throws BufferTooSmallException {
+        ConcurrentPacketCache cache = new ConcurrentPacketCache(64 * 1024, 1e64, 1, true);
+        cache.setMaxCacheItemPercentage(50);
+
+        PacketWrapper entry = createCacheEntryWithDocsums(key1, 3, 1000);
+        cache.put(key1, entry);
+        PacketWrapper cached = cache.get(key1);
+        assertNotNull(cached);
+        assertEquals(3, cached.getNumPackets());
+        assertEquals(entry.getPacketsSize(), cached.getPacketsSize());
+        assertEquals(1, cached.getResultPackets().size());
+        // Docsums are stored in whole blocks
+        assertEquals(keySize + length + 2048 * 2, cache.totalPacketSize());
+
+        cache.remove(key1);
+        assertNull(cache.get(key1));
+        assertEquals(0, cache.totalPacketSize());
+    }
+
+    @Test
+    public void testOffHeapEvictionFreesBlocks() throws BufferTooSmallException {
+        ConcurrentPacketCache cache = new ConcurrentPacketCache(5000, 1e64, 1, true); // room for two entries
+        cache.setMaxCacheItemPercentage(100);
+
+        for (int i = 0; i < 10; i++) {
+            CacheKey key = key("offheap" + i);
+            for (int lookup = 0; lookup <= i; lookup++) // make each key more popular than the previous
+                assertNull(cache.get(key));
+            cache.put(key, createCacheEntryWithDocsums(key, 1, 1000));
+            PacketWrapper cached = cache.get(key);
+            assertNotNull(cached);
+            assertEquals(1, cached.getNumPackets());
+        }
+        assertEquals(2, cache.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSegmentCountMustBePowerOfTwo() {
+        new ConcurrentPacketCache(1024, 1e64, 3);
+    }
+
+    private static CacheKey key(String query) {
+        return new CacheKey(QueryPacket.create(new Query("/?query=" + query)));
+    }
+
+    private PacketWrapper createCacheEntryWithDocsums(CacheKey key, int docsumCount, int docsumSize) throws BufferTooSmallException {
+        DocsumPacketKey[] packetKeys = new DocsumPacketKey[docsumCount];
+        BasicPacket[] packets = new BasicPacket[docsumCount + 1];
+        packets[0] = createCacheEntry(key).getFirstResultPacket();
+        for (int i = 0; i < docsumCount; i++) {
+            GlobalId globalId = new GlobalId(new DocumentId("doc:test:" + i).getGlobalId());
+            packetKeys[i] = new DocsumPacketKey(globalId, i, i % 2 == 0 ? "default" : null);
+            ByteBuffer data = ByteBuffer.allocate(3 * 4 + GlobalId.LENGTH + docsumSize);
+            data.putInt(2 * 4 + GlobalId.LENGTH + docsumSize);
+            data.putInt(205);
+            data.putInt(0);
+            data.put(globalId.getRawId());
+            data.put(new byte[docsumSize]);
+            data.flip();
+            packets[i + 1] = PacketDecoder.extractPacket(data).packet;
+        }
+        return new PacketWrapper(key, packetKeys, packets);
+    }
+
+    private PacketWrapper createCacheEntry(CacheKey key) throws BufferTooSmallException {
+        ByteBuffer data = ByteBuffer.allocate(length);
+        data.put(PacketCacheTestCase.queryResultPacketData);
+        data.flip();
+        BasicPacket[] content = new BasicPacket[] { PacketDecoder.extractPacket(data).packet };
+        return new PacketWrapper(key, content);
+    }
+
+}
@@ -60,7 +60,7 @@ class FastSearcherTester {
         List<SearchCluster.Node> nodes = new ArrayList<>();
         for (String s : hostAndPortAndGroupStrings) {
             String[] parts = s.split(":");
-            nodes.add(new SearchCluster.Node(parts[0], Integer.parseInt(parts[1]), Integer.parseInt(parts[2])));
+            nodes.add(new SearchCluster.Node(nodes.size(), parts[0], Integer.parseInt(parts[1]), Integer.parseInt(parts[2])));
         }
         return nodes;
     }
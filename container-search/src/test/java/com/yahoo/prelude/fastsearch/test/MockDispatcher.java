@@ -32,14 +32,13 @@ class MockDispatcher extends Dispatcher {
 
     private static DispatchConfig toDispatchConfig(List<SearchCluster.Node> nodes) {
         DispatchConfig.Builder dispatchConfigBuilder = new DispatchConfig.Builder();
-        int key = 0;
         for (SearchCluster.Node node : nodes) {
             DispatchConfig.Node.Builder dispatchConfigNodeBuilder = new DispatchConfig.Node.Builder();
             dispatchConfigNodeBuilder.host(node.hostname());
             dispatchConfigNodeBuilder.fs4port(node.fs4port());
             dispatchConfigNodeBuilder.port(0); // Mandatory, but currently not used here
             dispatchConfigNodeBuilder.group(node.group());
-            dispatchConfigNodeBuilder.key(key++); // not used
+            dispatchConfigNodeBuilder.key(node.key());
             dispatchConfigBuilder.node(dispatchConfigNodeBuilder);
         }
         return new DispatchConfig(dispatchConfigBuilder);
@@ -0,0 +1,90 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.dispatch;
+
+import com.yahoo.data.access.Inspector;
+import com.yahoo.data.access.slime.SlimeAdapter;
+import com.yahoo.document.GlobalId;
+import com.yahoo.document.idstring.IdIdString;
+import com.yahoo.slime.Cursor;
+import com.yahoo.slime.Slime;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author agent
+ */
+public class DocsumCacheTestCase {
+
+    @Test
+    public void testCachedDocsumIsACopy() {
+        DocsumCache cache = new DocsumCache(1 << 20, 60);
+        Slime docsums = new Slime();
+        Cursor docsum = docsums.setArray().addObject();
+        docsum.setString("title", "first");
+        docsum.setLong("year", 2017);
+        Cursor tags = docsum.setArray("tags");
+        tags.addString("a");
+        tags.addObject().setDouble("weight", 0.5);
+
+        cache.put(globalId(0), "summary", "default", new SlimeAdapter(docsums.get().entry(0)));
+        docsum.setString("other", "added after caching");
+
+        Inspector cached = cache.get(globalId(0), "summary", "default").get();
+        assertEquals(3, cached.fieldCount());
+        assertEquals("first", cached.field("title").asString());
+        assertEquals(2017L, cached.field("year").asLong());
+        assertEquals("a", cached.field("tags").entry(0).asString());
+        assertEquals(0.5, cached.field("tags").entry(1).field("weight").asDouble(), 0);
+        assertFalse(cache.get(globalId(0), "otherSummary", "default").isPresent());
+    }
+
+    @Test
+    public void testCacheIsBoundedBySize() {
+        long docsumSize = encodedSize(docsum(0));
+        DocsumCache cache = new DocsumCache(docsumSize * 3, 60);
+        for (int i = 0; i < 3; i++)
+            cache.put(globalId(i), "summary", "default", docsum(i));
+        assertEquals(3, cache.size());
+        assertEquals(docsumSize * 3, cache.bytes());
+
+        assertTrue(cache.get(globalId(0), "summary", "default").isPresent());
+        cache.put(globalId(3), "summary", "default", docsum(3));
+        assertEquals(3, cache.size());
+        assertEquals(docsumSize * 3, cache.bytes());
+        assertTrue("Recently used", cache.get(globalId(0), "summary", "default").isPresent());
+        assertFalse("Least recently used", cache.get(globalId(1), "summary", "default").isPresent());
+
+        cache.put(globalId(0), "summary", "default", docsum(0));
+        assertEquals("Replacing a docsum does not count it twice", docsumSize * 3, cache.bytes());
+    }
+
+    @Test
+    public void testDocsumsLargerThanTheCacheAreNotCached() {
+        DocsumCache cache = new DocsumCache(encodedSize(docsum(0)) - 1, 60);
+        cache.put(globalId(0), "summary", "default", docsum(0));
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.bytes());
+    }
+
+    private static long encodedSize(Inspector docsum) {
+        DocsumCache cache = new DocsumCache(Long.MAX_VALUE, 60);
+        cache.put(globalId(0), "summary", "default", docsum);
+        return cache.bytes();
+    }
+
+    private static Inspector docsum(int id) {
+        Slime slime = new Slime();
+        Cursor docsum = slime.setObject();
+        docsum.setString("title", "title " + (char)('a' + id));
+        docsum.setLong("id", 1000 + id);
+        return new SlimeAdapter(slime.get());
+    }
+
+    private static GlobalId globalId(int id) {
+        return new GlobalId(new IdIdString("", "test", "", String.valueOf(id)));
+    }
+
+}
@@ -10,6 +10,9 @@ import static org.junit.Assert.assertEquals;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 
 /**
@@ -56,6 +59,71 @@ public class FillTestCase {
         assertEquals(4L, result.hits().get("hit:4").getField("field2"));
     }
 
+    @Test
+    public void testCoalescingRequestsFromConcurrentQueries() throws Exception {
+        Map<Integer, Client.NodeConnection> nodes = new HashMap<>();
+        nodes.put(0, client.createConnection("host0", 123));
+        Dispatcher dispatcher = new Dispatcher(nodes, client, 200 * 1000, 0, 0);
+        client.setDocsumReponse("host0", 0, "summaryClass1", map("field1", "s.0.0", "field2", 0));
+        client.setDocsumReponse("host0", 1, "summaryClass1", map("field1", "s.0.1", "field2", 1));
+        client.setDocsumReponse("host0", 2, "summaryClass1", map("field1", "s.0.2", "field2", 2));
+
+        Result result1 = new Result(new Query());
+        result1.hits().add(createHit(0, 0));
+        result1.hits().add(createHit(0, 1));
+        Result result2 = new Result(new Query());
+        result2.hits().add(createHit(0, 2));
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> fill1 = executor.submit(() -> dispatcher.fill(result1, "summaryClass1", CompressionType.valueOf("LZ4")));
+            Future<?> fill2 = executor.submit(() -> dispatcher.fill(result2, "summaryClass1", CompressionType.valueOf("LZ4")));
+            fill1.get();
+            fill2.get();
+        }
+        finally {
+            executor.shutdown();
+            dispatcher.deconstruct();
+        }
+
+        assertEquals(1, client.requestCount());
+        assertEquals("s.0.0", result1.hits().get("hit:0").getField("field1").toString());
+        assertEquals("s.0.1", result1.hits().get("hit:1").getField("field1").toString());
+        assertEquals("s.0.2", result2.hits().get("hit:2").getField("field1").toString());
+        assertEquals(2L, result2.hits().get("hit:2").getField("field2"));
+    }
+
+    @Test
+    public void testDocsumCache() {
+        Map<Integer, Client.NodeConnection> nodes = new HashMap<>();
+        nodes.put(0, client.createConnection("host0", 123));
+        nodes.put(1, client.createConnection("host1", 123));
+        Dispatcher dispatcher = new Dispatcher(nodes, client, 0, 1 << 20, 60);
+        client.setDocsumReponse("host0", 0, "summaryClass1", map("field1", "s.0.0", "field2", 0));
+        client.setDocsumReponse("host1", 1, "summaryClass1", map("field1", "s.1.1", "field2", 1));
+        client.setDocsumReponse("host1", 1, "summaryClass2", map("field1", "t.1.1", "field2", 1));
+
+        Result result = new Result(new Query());
+        result.hits().add(createHit(0, 0));
+        result.hits().add(createHit(1, 1));
+        dispatcher.fill(result, "summaryClass1", CompressionType.valueOf("LZ4"));
+        assertEquals(2, client.requestCount());
+
+        Result cachedResult = new Result(new Query());
+        cachedResult.hits().add(createHit(0, 0));
+        cachedResult.hits().add(createHit(1, 1));
+        dispatcher.fill(cachedResult, "summaryClass1", CompressionType.valueOf("LZ4"));
+        assertEquals("No new requests", 2, client.requestCount());
+        assertEquals("s.0.0", cachedResult.hits().get("hit:0").getField("field1").toString());
+        assertEquals(1L, cachedResult.hits().get("hit:1").getField("field2"));
+
+        Result otherClassResult = new Result(new Query());
+        otherClassResult.hits().add(createHit(1, 1));
+        dispatcher.fill(otherClassResult, "summaryClass2", CompressionType.valueOf("LZ4"));
+        assertEquals(3, client.requestCount());
+        assertEquals("t.1.1", otherClassResult.hits().get("hit:1").getField("field1").toString());
+    }
+
     @Test
     public void testErrorHandling() {
         client.setMalfunctioning(true);
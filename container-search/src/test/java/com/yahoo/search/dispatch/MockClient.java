@@ -16,6 +16,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * @author bratseth
@@ -25,10 +26,14 @@ public class MockClient implements Client {
     private final Map<DocsumKey, Map<String, Object>> docsums = new HashMap<>();
     private final Compressor compressor = new Compressor();
     private boolean malfunctioning = false;
+    private final AtomicInteger requestCount = new AtomicInteger(0);
 
     /** Set to true to cause this to produce an error instead of a regular response */
     public void setMalfunctioning(boolean malfunctioning) { this.malfunctioning = malfunctioning; }
 
+    /** Returns the number of getDocsums requests this has received */
+    public int requestCount() { return requestCount.get(); }
+
     @Override
     public NodeConnection createConnection(String hostname, int port) {
         return new MockNodeConnection(hostname, port);
@@ -36,8 +41,9 @@ public class MockClient implements Client {
 
     @Override
     public void getDocsums(List<FastHit> hitsContext, NodeConnection node, CompressionType compression,
-                           int uncompressedSize, byte[] compressedSlime, Dispatcher.GetDocsumsResponseReceiver responseReceiver,
+                           int uncompressedSize, byte[] compressedSlime, GetDocsumsReceiver responseReceiver,
                            double timeoutSeconds) {
+        requestCount.incrementAndGet();
         if (malfunctioning) {
             responseReceiver.receive(GetDocsumsResponseOrError.fromError("Malfunctioning"));
             return;
@@ -0,0 +1,175 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.dispatch;
+
+import com.google.common.collect.ImmutableList;
+import com.yahoo.document.DocumentId;
+import com.yahoo.document.GlobalId;
+import com.yahoo.fs4.BasicPacket;
+import com.yahoo.fs4.DocumentInfo;
+import com.yahoo.fs4.ErrorPacket;
+import com.yahoo.fs4.QueryPacket;
+import com.yahoo.fs4.QueryResultPacket;
+import com.yahoo.fs4.mplex.Backend;
+import com.yahoo.fs4.mplex.FS4Channel;
+import com.yahoo.search.Query;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests sending a query to all nodes of a group and merging the results
+ *
+ * @author agent
+ */
+public class SearchFanOutTestCase {
+
+    private final SearchCluster.Node node0 = new SearchCluster.Node(0, "host0", 123, 0);
+    private final SearchCluster.Node node1 = new SearchCluster.Node(1, "host1", 123, 0);
+    private final SearchCluster.Node node2 = new SearchCluster.Node(2, "host2", 123, 0);
+    private final List<SearchCluster.Node> nodes = ImmutableList.of(node0, node1, node2);
+
+    private final Map<SearchCluster.Node, BasicPacket> responses = new HashMap<>();
+
+    @Test
+    public void testMergingResults() throws IOException {
+        responses.put(node0, result(10, 90, 50, 10));
+        responses.put(node1, result(20, 80, 70));
+        responses.put(node2, result(30, 95, 60, 40, 30));
+
+        Query query = new Query("?query=test&offset=1&hits=3");
+        QueryResultPacket result = fanOut(100, 1.0).search(query, QueryPacket.create(query));
+
+        assertEquals(60, result.getTotalDocumentCount());
+        assertEquals(1, result.getOffset());
+        assertEquals(3, result.getDocumentCount());
+        assertDocument(90, 0, result.getDocuments().get(0));
+        assertDocument(80, 1, result.getDocuments().get(1));
+        assertDocument(70, 1, result.getDocuments().get(2));
+        assertTrue(result.getCoverageFull());
+        assertEquals(0, result.getDegradedReason());
+    }
+
+    @Test
+    public void testSlowNodeIsCutOffByAdaptiveTimeout() throws IOException {
+        responses.put(node0, result(10, 90));
+        responses.put(node1, result(20, 80));
+        // node2 never responds
+
+        Query query = new Query("?query=test&timeout=20s");
+        long startTime = System.currentTimeMillis();
+        QueryResultPacket result = fanOut(50, 1.0).search(query, QueryPacket.create(query));
+
+        assertTrue("Returned long before the query timeout", System.currentTimeMillis() - startTime < 10000);
+        assertEquals(2, result.getDocumentCount());
+        assertEquals(30, result.getTotalDocumentCount());
+        assertEquals(SearchResultMerger.DEGRADED_BY_ADAPTIVE_TIMEOUT, result.getDegradedReason());
+    }
+
+    @Test
+    public void testFailingNodeReducesCoverage() throws IOException {
+        node0.setActiveDocuments(10);
+        node1.setActiveDocuments(20);
+        responses.put(node0, result(10, 90));
+        responses.put(node1, ErrorPacket.create());
+        responses.put(node2, result(30, 95));
+
+        Query query = new Query("?query=test");
+        QueryResultPacket result = fanOut(100, 1.0).search(query, QueryPacket.create(query));
+
+        assertEquals(2, result.getDocumentCount());
+        assertEquals(40, result.getCoverageDocs());
+        assertEquals(60, result.getActiveDocs());
+        assertEquals(0, result.getDegradedReason());
+    }
+
+    @Test(expected = IOException.class)
+    public void testAllNodesFailing() throws IOException {
+        for (SearchCluster.Node node : nodes)
+            responses.put(node, ErrorPacket.create());
+
+        Query query = new Query("?query=test");
+        fanOut(100, 1.0).search(query, QueryPacket.create(query));
+    }
+
+    @Test
+    public void testMergerKeepsOnlyTheRequestedWindow() {
+        SearchResultMerger merger = new SearchResultMerger(0, 2);
+        merger.add(result(10, 5, 4, 3), node0);
+        merger.add(result(10, 6, 2, 1), node1);
+        merger.add(result(10, 4.5), node2);
+
+        QueryResultPacket result = merger.toResult();
+        assertEquals(3, merger.resultCount());
+        assertEquals(2, result.getDocumentCount());
+        assertDocument(6, 1, result.getDocuments().get(0));
+        assertDocument(5, 0, result.getDocuments().get(1));
+    }
+
+    private SearchFanOut fanOut(double minNodesPercentage, double tailTimeoutFactor) {
+        return new SearchFanOut(nodes, node -> new MockBackend(responses.get(node)), minNodesPercentage, tailTimeoutFactor);
+    }
+
+    private static void assertDocument(double expectedMetric, int expectedNode, DocumentInfo document) {
+        assertEquals(expectedMetric, document.getMetric(), 0.000001);
+        assertEquals(expectedNode, document.getDistributionKey());
+    }
+
+    private static int documentNumber = 0;
+
+    private static QueryResultPacket result(long activeDocs, double ... metrics) {
+        QueryResultPacket result = QueryResultPacket.create();
+        result.setTotalDocumentCount(activeDocs);
+        result.setCoverage(activeDocs, activeDocs, activeDocs, 0);
+        for (double metric : metrics) {
+            GlobalId globalId = new GlobalId(new DocumentId("doc:test:" + documentNumber++).getGlobalId());
+            result.addDocument(new DocumentInfo(globalId, metric, 0, 0));
+        }
+        return result;
+    }
+
+    /** A backend returning channels which respond with the given packet, or never respond if it is null */
+    private static class MockBackend extends Backend {
+
+        private final BasicPacket response;
+
+        MockBackend(BasicPacket response) {
+            this.response = response;
+        }
+
+        @Override
+        public FS4Channel openChannel() { return new MockChannel(response); }
+
+    }
+
+    private static class MockChannel extends FS4Channel {
+
+        private final BasicPacket response;
+        private final CompletableFuture<BasicPacket> future = new CompletableFuture<>();
+
+        MockChannel(BasicPacket response) {
+            this.response = response;
+        }
+
+        @Override
+        public CompletableFuture<BasicPacket> nextPacketAsync() { return future; }
+
+        @Override
+        public boolean sendPacket(BasicPacket packet) {
+            if (response != null)
+                future.complete(response);
+            return true;
+        }
+
+        @Override
+        public void close() { }
+
+    }
+
+}
@@ -0,0 +1,80 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.rendering;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import com.yahoo.processing.rendering.AsynchronousSectionedRenderer;
+import com.yahoo.search.Query;
+import com.yahoo.search.Result;
+import com.yahoo.search.result.Hit;
+import com.yahoo.search.searchchain.Execution;
+import com.yahoo.tensor.Tensor;
+
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Compares the time used and the size produced when rendering a result as JSON and as binary slime.
+ *
+ * @author agent
+ */
+public class SlimeRendererBenchmark {
+
+    private final Result result = createResult(400, 20);
+
+    public void run() throws InterruptedException, ExecutionException {
+        JsonRenderer json = new JsonRenderer(MoreExecutors.directExecutor());
+        SlimeRenderer slime = new SlimeRenderer(MoreExecutors.directExecutor());
+        System.out.println("Running ...");
+        for (int i = 0; i < 1000; i++) {
+            render(json);
+            render(slime);
+        }
+        measure("json", json);
+        measure("slime", slime);
+    }
+
+    private void measure(String name, AsynchronousSectionedRenderer<Result> renderer)
+            throws InterruptedException, ExecutionException {
+        int repetitions = 2000;
+        long size = 0;
+        long startTime = System.nanoTime();
+        for (int i = 0; i < repetitions; i++)
+            size += render(renderer);
+        long totalTime = System.nanoTime() - startTime;
+        System.out.println(name + ": " + totalTime / 1000 / repetitions + " us and " +
+                           size / repetitions + " bytes per result");
+    }
+
+    @SuppressWarnings("unchecked")
+    private int render(AsynchronousSectionedRenderer<Result> prototype) throws InterruptedException, ExecutionException {
+        AsynchronousSectionedRenderer<Result> renderer = (AsynchronousSectionedRenderer<Result>) prototype.clone();
+        renderer.init();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        renderer.render(out, result, new Execution(Execution.Context.createContextStub()), null).get();
+        return out.size();
+    }
+
+    private static Result createResult(int hitCount, int fieldCount) {
+        Tensor tensor = Tensor.from("tensor(x[4]):{{x:0}:0.5,{x:1}:1.5,{x:2}:2.5,{x:3}:3.5}");
+        Result result = new Result(new Query("/?query=a"));
+        for (int i = 0; i < hitCount; i++) {
+            Hit hit = new Hit("id:test:test::" + i, 1.0 / (i + 1));
+            for (int field = 0; field < fieldCount; field++) {
+                switch (field % 4) {
+                    case 0 : hit.setField("string" + field, "A string value of some length " + i); break;
+                    case 1 : hit.setField("long" + field, (long)i * field); break;
+                    case 2 : hit.setField("double" + field, i / (field + 1.0)); break;
+                    case 3 : hit.setField("tensor" + field, tensor); break;
+                }
+            }
+            result.hits().add(hit);
+        }
+        result.setTotalHitCount(hitCount);
+        return result;
+    }
+
+    public static void main(String[] args) throws InterruptedException, ExecutionException {
+        new SlimeRendererBenchmark().run();
+    }
+
+}
@@ -0,0 +1,107 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.rendering;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.yahoo.io.GrowableByteBuffer;
+import com.yahoo.prelude.fastsearch.FastHit;
+import com.yahoo.search.Query;
+import com.yahoo.search.Result;
+import com.yahoo.search.result.ErrorMessage;
+import com.yahoo.search.result.Hit;
+import com.yahoo.search.result.HitGroup;
+import com.yahoo.search.searchchain.Execution;
+import com.yahoo.slime.BinaryFormat;
+import com.yahoo.slime.Inspector;
+import com.yahoo.slime.Slime;
+import com.yahoo.slime.Type;
+import com.yahoo.tensor.Tensor;
+import com.yahoo.tensor.serialization.TypedBinaryFormat;
+import com.yahoo.text.Utf8;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Optional;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author agent
+ */
+public class SlimeRendererTestCase {
+
+    private SlimeRenderer renderer;
+
+    @Before
+    public void setUp() {
+        renderer = (SlimeRenderer) new SlimeRenderer().clone();
+        renderer.init();
+    }
+
+    @Test
+    public void testRendering() throws Exception {
+        Tensor tensor = Tensor.from("tensor(x{}):{{x:a}:1.0,{x:b}:2.0}");
+        Result result = new Result(new Query("/?query=a"));
+        Hit hit = new Hit("hit1", 0.5);
+        hit.setField("string", "value");
+        hit.setField("empty", "");
+        hit.setField("integer", 7);
+        hit.setField("double", 1.5);
+        hit.setField("tensor", tensor);
+        hit.setField("$hidden", "hidden");
+        result.hits().add(hit);
+        FastHit fastHit = new FastHit("hit2", 0.25);
+        fastHit.setLazyStringField("lazy", Utf8.toBytes("lazy value"));
+        result.hits().add(fastHit);
+        HitGroup group = new HitGroup("group");
+        group.add(new Hit("hit3", 0.1));
+        result.hits().add(group);
+        result.setTotalHitCount(3);
+
+        Inspector root = render(result).get().field("root");
+        assertEquals("toplevel", root.field("id").asString());
+        assertEquals(3, root.field("fields").field("totalCount").asLong());
+        assertEquals(3, root.field("children").entries());
+
+        Inspector first = root.field("children").entry(0);
+        assertEquals("hit1", first.field("id").asString());
+        assertEquals(0.5, first.field("relevance").asDouble(), 0.0);
+        Inspector fields = first.field("fields");
+        assertEquals("value", fields.field("string").asString());
+        assertFalse(fields.field("empty").valid());
+        assertFalse(fields.field("$hidden").valid());
+        assertEquals(Type.LONG, fields.field("integer").type());
+        assertEquals(7, fields.field("integer").asLong());
+        assertEquals(1.5, fields.field("double").asDouble(), 0.0);
+        assertEquals(Type.DATA, fields.field("tensor").type());
+        assertEquals(tensor, TypedBinaryFormat.decode(Optional.empty(),
+                                                      GrowableByteBuffer.wrap(fields.field("tensor").asData())));
+
+        assertEquals("lazy value", root.field("children").entry(1).field("fields").field("lazy").asString());
+
+        Inspector nested = root.field("children").entry(2);
+        assertEquals("group", nested.field("id").asString());
+        assertFalse(nested.field("fields").valid());
+        assertEquals("hit3", nested.field("children").entry(0).field("id").asString());
+    }
+
+    @Test
+    public void testErrors() throws Exception {
+        Result result = new Result(new Query("/?query=a"), ErrorMessage.createTimeout("Timed out"));
+        Inspector errors = render(result).get().field("root").field("errors");
+        assertEquals(1, errors.entries());
+        assertEquals(ErrorMessage.timeoutCode, errors.entry(0).field("code").asLong());
+        assertEquals("Timed out", errors.entry(0).field("message").asString());
+    }
+
+    private Slime render(Result result) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        Execution execution = new Execution(Execution.Context.createContextStub());
+        ListenableFuture<Boolean> done = renderer.render(bytes, result, execution, null);
+        assertTrue(done.get());
+        return BinaryFormat.decode(bytes.toByteArray());
+    }
+
+}
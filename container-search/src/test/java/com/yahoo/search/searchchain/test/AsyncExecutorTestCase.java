@@ -0,0 +1,145 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.searchchain.test;
+
+import com.yahoo.component.ComponentId;
+import com.yahoo.component.chain.Chain;
+import com.yahoo.jdisc.Metric;
+import com.yahoo.search.Query;
+import com.yahoo.search.Result;
+import com.yahoo.search.Searcher;
+import com.yahoo.search.searchchain.AsyncExecution;
+import com.yahoo.search.searchchain.AsyncExecutor;
+import com.yahoo.search.searchchain.Execution;
+import com.yahoo.search.searchchain.FutureResult;
+import com.yahoo.search.searchers.test.MockMetric;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author agent
+ */
+public class AsyncExecutorTestCase {
+
+    @Test
+    public void testRejectionWhenExecutorIsFull() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        BlockingSearcher searcher = new BlockingSearcher(release);
+        Chain<Searcher> chain = new Chain<>(new ComponentId("blocking"), searcher);
+        AsyncExecutor executor = new AsyncExecutor(1, 1, null);
+
+        FutureResult running = search(chain, executor);
+        assertTrue(searcher.started.await(10, TimeUnit.SECONDS));
+        FutureResult queued = search(chain, executor);
+        FutureResult rejected = search(chain, executor);
+
+        assertTrue(rejected.isDone());
+        assertNotNull(rejected.get().hits().getError());
+        assertTrue(rejected.get().hits().getError().getDetailedMessage().contains("Too many concurrent searches"));
+
+        release.countDown();
+        assertNull(running.get(10, TimeUnit.SECONDS).hits().getError());
+        assertNull(queued.get(10, TimeUnit.SECONDS).hits().getError());
+        assertNull(search(chain, executor).get(10, TimeUnit.SECONDS).hits().getError());
+    }
+
+    @Test
+    public void testChainLimit() {
+        CountDownLatch release = new CountDownLatch(1);
+        Chain<Searcher> slowChain = new Chain<>(new ComponentId("slow"), new BlockingSearcher(release));
+        Chain<Searcher> fastChain = new Chain<>(new ComponentId("fast"), new BlockingSearcher(new CountDownLatch(0)));
+        AsyncExecutor executor = new AsyncExecutor(10, 10, null);
+        executor.setChainLimit(slowChain.getId(), 2);
+
+        FutureResult slow1 = search(slowChain, executor);
+        FutureResult slow2 = search(slowChain, executor);
+        FutureResult slow3 = search(slowChain, executor);
+        assertFalse(slow1.isDone());
+        assertFalse(slow2.isDone());
+        assertTrue("The slow chain is at its limit", slow3.isDone());
+        assertNotNull(slow3.get().hits().getError());
+
+        assertNull("Other chains are unaffected",
+                   search(fastChain, executor).get(10, TimeUnit.SECONDS).hits().getError());
+
+        release.countDown();
+        assertNull(slow1.get(10, TimeUnit.SECONDS).hits().getError());
+        assertNull(slow2.get(10, TimeUnit.SECONDS).hits().getError());
+        assertNull("The limit is released as searches complete",
+                   search(slowChain, executor).get(10, TimeUnit.SECONDS).hits().getError());
+    }
+
+    @Test
+    public void testRemovingChainLimit() {
+        CountDownLatch release = new CountDownLatch(1);
+        Chain<Searcher> chain = new Chain<>(new ComponentId("chain"), new BlockingSearcher(release));
+        AsyncExecutor executor = new AsyncExecutor(10, 10, null);
+        executor.setChainLimit(chain.getId(), 1);
+        FutureResult first = search(chain, executor);
+        assertNotNull(search(chain, executor).get().hits().getError());
+
+        executor.setChainLimit(chain.getId(), 0);
+        FutureResult second = search(chain, executor);
+        release.countDown();
+        assertNull(first.get(10, TimeUnit.SECONDS).hits().getError());
+        assertNull(second.get(10, TimeUnit.SECONDS).hits().getError());
+        assertEquals(0, second.get().hits().size());
+    }
+
+    @Test
+    public void testExecutorWithMetricHasItsOwnChainLimits() {
+        CountDownLatch release = new CountDownLatch(1);
+        Chain<Searcher> chain = new Chain<>(new ComponentId("chain"), new BlockingSearcher(release));
+        AsyncExecutor threads = new AsyncExecutor(10, 10, null);
+        MockMetric metric = new MockMetric();
+        AsyncExecutor executor = threads.withMetric(metric);
+        executor.setChainLimit(chain.getId(), 1);
+
+        FutureResult first = search(chain, executor);
+        assertNotNull(search(chain, executor).get().hits().getError());
+        Metric.Context context = metric.createContext("chain", "chain");
+        assertEquals(1.0, metric.values(context).get(AsyncExecutor.REJECTED_METRIC));
+
+        FutureResult unlimited = search(chain, threads);
+        release.countDown();
+        assertNull(first.get(10, TimeUnit.SECONDS).hits().getError());
+        assertNull(unlimited.get(10, TimeUnit.SECONDS).hits().getError());
+        assertNotNull(metric.values(context).get(AsyncExecutor.QUEUE_WAIT_METRIC));
+    }
+
+    private FutureResult search(Chain<Searcher> chain, AsyncExecutor executor) {
+        Execution execution = new Execution(chain, Execution.Context.createContextStub());
+        return new AsyncExecution(execution, executor).search(new Query("?hits=0"));
+    }
+
+    private static class BlockingSearcher extends Searcher {
+
+        private final CountDownLatch release;
+        final CountDownLatch started = new CountDownLatch(1);
+
+        BlockingSearcher(CountDownLatch release) {
+            this.release = release;
+        }
+
+        @Override
+        public Result search(Query query, Execution execution) {
+            started.countDown();
+            try {
+                release.await(60, TimeUnit.SECONDS);
+            }
+            catch (InterruptedException e) {
+                // return empty result
+            }
+            return new Result(query);
+        }
+
+    }
+
+}
@@ -0,0 +1,52 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.docproc;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * <p>A document processor which processes many processings in one call. This is useful for processors
+ * where the cost of each call dominates the cost of each document, such as processors calling a model
+ * or a remote service.</p>
+ *
+ * <p>When a chain contains a batched processor, the document processing handler gathers incoming
+ * messages to that chain into batches of at most {@link #getMaxBatchSize()} messages, waiting no longer than
+ * {@link #getMaxBatchDelayMillis()} for a batch to fill up. Processors which are not batched in the same chain
+ * are still called once per processing, and each message gets its own reply.</p>
+ *
+ * <p>The progress returned from a batch applies to every processing in it: returning FAILED or throwing
+ * fails all the messages of the batch, while LATER calls this again later for each of them separately.</p>
+ *
+ * @author agent
+ */
+public abstract class BatchedDocumentProcessor extends DocumentProcessor {
+
+    /**
+     * Processes a batch of processings. The implementing document processor is free to modify, replace or
+     * delete elements in the list inside each processing, but not to change the list of processings.
+     *
+     * @param processings the processings to process
+     * @return the outcome of processing all of these
+     */
+    public abstract Progress process(List<Processing> processings);
+
+    /** Processes a single processing as a batch of one */
+    @Override
+    public final Progress process(Processing processing) {
+        return process(Collections.singletonList(processing));
+    }
+
+    /** Returns the max number of messages to gather into one batch. This default implementation returns 64. */
+    public int getMaxBatchSize() {
+        return 64;
+    }
+
+    /**
+     * Returns the max time in milliseconds a message may wait for the batch it belongs to to fill up.
+     * This default implementation returns 10.
+     */
+    public long getMaxBatchDelayMillis() {
+        return 10;
+    }
+
+}
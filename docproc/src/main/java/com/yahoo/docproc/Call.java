@@ -14,7 +14,9 @@ import com.yahoo.concurrent.SystemTimer;
 import com.yahoo.statistics.Counter;
 import com.yahoo.statistics.Statistics;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * A document processor to call - an item on a {@link com.yahoo.docproc.CallStack}.
@@ -30,6 +32,7 @@ public class Call implements Cloneable {
     private final Counter procTimeCounter;
     private final String procTimeCounterName;
     private final Metric metric;
+    private final Metric.Context context;
 
     public Call(DocumentProcessor processor) {
         this(processor, Statistics.nullImplementation, new NullMetric());
@@ -56,6 +59,10 @@ public class Call implements Cloneable {
         docCounter = new Counter(docCounterName, manager, false);
         procTimeCounter = new Counter(procTimeCounterName, manager, false, null, true);
         this.metric = metric;
+        Map<String, String> dimensions = new HashMap<>();
+        dimensions.put("chain", chainName);
+        dimensions.put("documentprocessor", getDocumentProcessorId().stringValue());
+        this.context = metric.createContext(dimensions);
     }
 
     @Override
@@ -158,7 +165,7 @@ public class Call implements Cloneable {
             schemaMapProcessing(processing);
             long startTime = SystemTimer.INSTANCE.milliTime();
             DocumentProcessor.Progress retval = processor.process(processing);
-            incrementProcTime(SystemTimer.INSTANCE.milliTime() - startTime);
+            incrementProcTime(SystemTimer.INSTANCE.milliTime() - startTime, "docprocessor_latency");
             incrementDocs(numDocs);
             return retval;
         } finally {
@@ -166,6 +173,34 @@ public class Call implements Cloneable {
         }
     }
 
+    /**
+     * Calls the batched DocumentProcessor of this call once for all the given processings.
+     *
+     * @param processings the Processing objects to use
+     * @return the progress of the DocumentProcessor that was called, which applies to all the processings
+     * @throws IllegalStateException if the processor of this call is not a {@link BatchedDocumentProcessor}
+     */
+    public DocumentProcessor.Progress call(List<Processing> processings) {
+        if ( ! (processor instanceof BatchedDocumentProcessor))
+            throw new IllegalStateException("Can not call " + processor + " with a batch, as it is not batched");
+        try {
+            int numDocs = 0;
+            for (Processing processing : processings) {
+                numDocs += processing.getDocumentOperations().size();
+                schemaMapProcessing(processing);
+            }
+            long startTime = SystemTimer.INSTANCE.milliTime();
+            DocumentProcessor.Progress retval = ((BatchedDocumentProcessor) processor).process(processings);
+            incrementProcTime(SystemTimer.INSTANCE.milliTime() - startTime, "docprocessor_batch_latency");
+            incrementDocs(numDocs);
+            metric.set("docprocessor_batch_size", processings.size(), context);
+            return retval;
+        } finally {
+            for (Processing processing : processings)
+                unwrapSchemaMapping(processing);
+        }
+    }
+
     public String toString() {
         return "call to class " + processor.getClass().getName() + " (id: " + getDocumentProcessorId() + ")";
     }
@@ -173,11 +208,14 @@ public class Call implements Cloneable {
     private void incrementDocs(long increment) {
         docCounter.increment(increment);
         metric.add(docCounterName, increment, null);
+        metric.add("docprocessor_documents", increment, context);
     }
 
-    private void incrementProcTime(long increment) {
+    /** Adds to the total processing time, and sets the given latency metric, which differs for batches */
+    private void incrementProcTime(long increment, String latencyMetricName) {
         procTimeCounter.increment(increment);
         metric.add(procTimeCounterName, increment, null);
+        metric.set(latencyMetricName, increment, context);
     }
 
 }
@@ -9,7 +9,12 @@ import com.yahoo.log.LogLevel;
 import com.yahoo.statistics.Counter;
 import com.yahoo.text.Utf8;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.logging.Logger;
 
 /**
@@ -131,6 +136,87 @@ public class DocprocExecutor {
         return progress;
     }
 
+    /**
+     * Processes a batch of processings through the CallStack of this executor. The processings move through
+     * their call stacks together, so that each {@link BatchedDocumentProcessor} is called once with all the
+     * processings which are to be processed by it next, while other processors are called once per processing.
+     *
+     * @param processings the processings to process. The CallStack of each will be set to a clone of the CallStack
+     *        of this executor, iff. it is currently null.
+     * @return the progress of each processing, which is LATER for those which are not done and must
+     *         be reprocessed later
+     */
+    public BatchResult process(List<Processing> processings) {
+        BatchResult result = new BatchResult();
+        List<Processing> active = new ArrayList<>(processings.size());
+        for (Processing processing : processings) {
+            processing.setServiceName(getName());
+            if (processing.callStack() == null) {
+                processing.setCallStack(new CallStack(getCallStack()));
+            }
+            incrementNumDocsProcessed(processing);
+            active.add(processing);
+        }
+
+        while ( ! active.isEmpty()) {
+            Map<DocumentProcessor, List<Processing>> byNextProcessor = new LinkedHashMap<>();
+            for (Processing processing : active) {
+                Call next = processing.callStack().peek();
+                if (next == null) // No more processors - done
+                    result.progress.put(processing, DocumentProcessor.Progress.DONE);
+                else
+                    byNextProcessor.computeIfAbsent(next.getDocumentProcessor(), processor -> new ArrayList<>()).add(processing);
+            }
+            active.clear();
+
+            for (Map.Entry<DocumentProcessor, List<Processing>> group : byNextProcessor.entrySet()) {
+                List<Processing> batch = group.getValue();
+                List<Call> calls = new ArrayList<>(batch.size());
+                for (Processing processing : batch)
+                    calls.add(processing.callStack().pop());
+
+                if (group.getKey() instanceof BatchedDocumentProcessor) {
+                    DocumentProcessor.Progress progress;
+                    try {
+                        progress = calls.get(0).call(batch);
+                    } catch (RuntimeException e) {
+                        for (Processing processing : batch)
+                            result.failures.put(processing, e);
+                        continue;
+                    }
+                    for (int i = 0; i < batch.size(); i++)
+                        advance(batch.get(i), calls.get(i), progress, active, result);
+                }
+                else {
+                    for (int i = 0; i < batch.size(); i++) {
+                        try {
+                            advance(batch.get(i), calls.get(i), calls.get(i).call(batch.get(i)), active, result);
+                        } catch (RuntimeException e) {
+                            result.failures.put(batch.get(i), e);
+                        }
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    private void advance(Processing processing, Call call, DocumentProcessor.Progress progress,
+                         List<Processing> active, BatchResult result) {
+        if (log.isLoggable(LogLevel.SPAM)) {
+            logProgress(processing, progress, call);
+        }
+
+        if (DocumentProcessor.Progress.DONE.equals(progress)) {
+            active.add(processing);
+            return;
+        }
+        if (DocumentProcessor.Progress.LATER.equals(progress)) {
+            processing.callStack().addNext(call);
+        }
+        result.progress.put(processing, progress);
+    }
+
     private void logProgress(Processing processing, DocumentProcessor.Progress progress, Call call) {
         StringBuilder message = new StringBuilder();
         boolean first = true;
@@ -182,4 +268,29 @@ public class DocprocExecutor {
         }
         return progress;
     }
+
+    /** The outcome of processing a batch of processings */
+    public static final class BatchResult {
+
+        private final Map<Processing, DocumentProcessor.Progress> progress = new IdentityHashMap<>();
+        private final Map<Processing, RuntimeException> failures = new IdentityHashMap<>();
+
+        private BatchResult() { }
+
+        /**
+         * Returns the progress of the given processing of the batch.
+         *
+         * @throws RuntimeException the exception thrown by a document processor while processing this processing
+         * @throws IllegalArgumentException if the given processing was not part of the batch
+         */
+        public DocumentProcessor.Progress progressOf(Processing processing) {
+            RuntimeException failure = failures.get(processing);
+            if (failure != null) throw failure;
+            DocumentProcessor.Progress outcome = progress.get(processing);
+            if (outcome == null) throw new IllegalArgumentException(processing + " was not part of this batch");
+            return outcome;
+        }
+
+    }
+
 }
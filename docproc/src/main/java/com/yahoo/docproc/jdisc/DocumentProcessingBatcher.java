@@ -0,0 +1,121 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.docproc.jdisc;
+
+import com.yahoo.docproc.BatchedDocumentProcessor;
+import com.yahoo.docproc.Call;
+import com.yahoo.docproc.CallStack;
+import com.yahoo.docproc.DocumentProcessor;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Gathers the tasks to a chain containing {@link BatchedDocumentProcessor}s into batches, which are submitted
+ * as a single task once they are full, or the first task in them has waited for the max batch delay.
+ *
+ * @author agent
+ */
+class DocumentProcessingBatcher {
+
+    private final int maxBatchSize;
+    private final long maxBatchDelayMillis;
+    private final ScheduledExecutorService timer;
+    private final Consumer<DocumentProcessingTask> submitter;
+
+    private List<DocumentProcessingTask> pending = new ArrayList<>();
+    /** Incremented for each batch, to ignore timeouts of batches which were submitted because they became full */
+    private long batchNumber = 0;
+    /** The timeout of the pending batch, or null if there is no pending batch */
+    private ScheduledFuture<?> timeout = null;
+    /** Whether this is closed, such that tasks are submitted at once */
+    private boolean closed = false;
+
+    DocumentProcessingBatcher(int maxBatchSize, long maxBatchDelayMillis,
+                              ScheduledExecutorService timer, Consumer<DocumentProcessingTask> submitter) {
+        this.maxBatchSize = maxBatchSize;
+        this.maxBatchDelayMillis = maxBatchDelayMillis;
+        this.timer = timer;
+        this.submitter = submitter;
+    }
+
+    /**
+     * Returns a batcher for the given call stack, using the smallest max batch size and delay of its batched
+     * processors, or empty if it has no batched processors.
+     */
+    static Optional<DocumentProcessingBatcher> forCallStack(CallStack callStack, ScheduledExecutorService timer,
+                                                            Consumer<DocumentProcessingTask> submitter) {
+        int maxBatchSize = Integer.MAX_VALUE;
+        long maxBatchDelayMillis = Long.MAX_VALUE;
+        for (Iterator<Call> calls = callStack.iterator(); calls.hasNext(); ) {
+            DocumentProcessor processor = calls.next().getDocumentProcessor();
+            if (processor instanceof BatchedDocumentProcessor) {
+                maxBatchSize = Math.min(maxBatchSize, ((BatchedDocumentProcessor) processor).getMaxBatchSize());
+                maxBatchDelayMillis = Math.min(maxBatchDelayMillis, ((BatchedDocumentProcessor) processor).getMaxBatchDelayMillis());
+            }
+        }
+        if (maxBatchSize == Integer.MAX_VALUE) return Optional.empty();
+        return Optional.of(new DocumentProcessingBatcher(maxBatchSize, maxBatchDelayMillis, timer, submitter));
+    }
+
+    /** Adds a task to the current batch, and submits the batch if it is full */
+    void add(DocumentProcessingTask task) {
+        List<DocumentProcessingTask> full = null;
+        synchronized (this) {
+            pending.add(task);
+            if (closed || pending.size() >= maxBatchSize) {
+                full = takePending();
+            }
+            else if (pending.size() == 1) {
+                long number = batchNumber;
+                timeout = timer.schedule(() -> timeout(number), maxBatchDelayMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+        if (full != null)
+            submit(full);
+    }
+
+    /** Submits the pending batch, if any, and submits tasks added after this at once */
+    void close() {
+        List<DocumentProcessingTask> remaining;
+        synchronized (this) {
+            closed = true;
+            if (pending.isEmpty()) return;
+            remaining = takePending();
+        }
+        submit(remaining);
+    }
+
+    private void timeout(long number) {
+        List<DocumentProcessingTask> expired;
+        synchronized (this) {
+            if (number != batchNumber || pending.isEmpty()) return;
+            expired = takePending();
+        }
+        submit(expired);
+    }
+
+    private List<DocumentProcessingTask> takePending() {
+        List<DocumentProcessingTask> batch = pending;
+        pending = new ArrayList<>();
+        batchNumber++;
+        if (timeout != null) {
+            timeout.cancel(false);
+            timeout = null;
+        }
+        return batch;
+    }
+
+    private void submit(List<DocumentProcessingTask> batch) {
+        DocumentProcessingTask first = batch.get(0);
+        if (batch.size() > 1)
+            first.batchWith(batch.subList(1, batch.size()));
+        submitter.accept(first);
+    }
+
+}
@@ -2,6 +2,7 @@
 package com.yahoo.docproc.jdisc;
 
 import com.google.inject.Inject;
+import com.yahoo.component.ComponentId;
 import com.yahoo.component.chain.Chain;
 import com.yahoo.component.chain.model.ChainsModel;
 import com.yahoo.component.provider.ComponentRegistry;
@@ -13,6 +14,7 @@ import com.yahoo.container.core.document.ContainerDocumentConfig;
 import com.yahoo.container.jdisc.ContainerMbusConfig;
 import com.yahoo.docproc.AbstractConcreteDocumentFactory;
 import com.yahoo.docproc.CallStack;
+import com.yahoo.docproc.DocprocExecutor;
 import com.yahoo.docproc.DocprocService;
 import com.yahoo.docproc.DocumentProcessor;
 import com.yahoo.docproc.jdisc.messagebus.MbusRequestContext;
@@ -30,6 +32,8 @@ import com.yahoo.messagebus.jdisc.MbusRequest;
 import com.yahoo.processing.execution.chain.ChainRegistry;
 import com.yahoo.statistics.Statistics;
 
+import java.util.Map;
+import java.util.Optional;
 import java.util.TimerTask;
 import java.util.concurrent.*;
 import java.util.logging.Logger;
@@ -51,6 +55,8 @@ public class DocumentProcessingHandler extends AbstractRequestHandler {
     private DocprocThreadPoolExecutor threadPool;
     private final ScheduledThreadPoolExecutor laterExecutor =
             new ScheduledThreadPoolExecutor(2, new DaemonThreadFactory("docproc-later-"));
+    /** The batcher of each service by id, which is empty for services without batched document processors */
+    private final Map<ComponentId, ServiceBatcher> batchers = new ConcurrentHashMap<>();
     private ContainerDocumentConfig containerDocConfig;
     private final DocumentTypeManager documentTypeManager;
 
@@ -70,6 +76,7 @@ public class DocumentProcessingHandler extends AbstractRequestHandler {
         threadPool.prestartCoreThread();
         laterExecutor.setContinueExistingPeriodicTasksAfterShutdownPolicy(false);
         laterExecutor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        laterExecutor.setRemoveOnCancelPolicy(true);
 
         if (chainsModel != null) {
             prepareChainRegistry(chainRegistry, chainsModel, documentProcessorComponentRegistry);
@@ -133,6 +140,10 @@ public class DocumentProcessingHandler extends AbstractRequestHandler {
 
     @Override
     protected void destroy() {
+        // Submit the pending batches while the thread pool still accepts them
+        for (ServiceBatcher batcher : batchers.values())
+            batcher.close();
+        batchers.clear();
         threadPool.shutdown();  //calling shutdownNow() seems like a bit of an overkill
     }
 
@@ -190,10 +201,28 @@ public class DocumentProcessingHandler extends AbstractRequestHandler {
         }
 
         DocumentProcessingTask task = new DocumentProcessingTask(requestContext, this, service);
-        submit(task);
+        Optional<DocumentProcessingBatcher> batcher = batcherOf(service);
+        if (batcher.isPresent())
+            batcher.get().add(task);
+        else
+            submit(task);
         return null;
     }
 
+    /** Returns the batcher of the current call stack of the given service, replacing any batcher of a previous one */
+    private Optional<DocumentProcessingBatcher> batcherOf(DocprocService service) {
+        DocprocExecutor executor = service.getExecutor();
+        ServiceBatcher current = batchers.get(service.getId());
+        if (current != null && current.executor == executor) return current.batcher;
+
+        return batchers.compute(service.getId(), (id, previous) -> {
+            if (previous != null && previous.executor == executor) return previous;
+            if (previous != null) previous.close();
+            return new ServiceBatcher(executor, DocumentProcessingBatcher.forCallStack(executor.getCallStack(),
+                                                                                       laterExecutor, this::submit));
+        }).batcher;
+    }
+
     @SuppressWarnings("unchecked")
     void submit(DocumentProcessingTask task) {
         if (threadPool.isAboveLimit()) {
@@ -233,4 +262,21 @@ public class DocumentProcessingHandler extends AbstractRequestHandler {
         return documentTypeManager;
     }
 
+    /** The batcher created for the executor of a service */
+    private static class ServiceBatcher {
+
+        private final DocprocExecutor executor;
+        private final Optional<DocumentProcessingBatcher> batcher;
+
+        ServiceBatcher(DocprocExecutor executor, Optional<DocumentProcessingBatcher> batcher) {
+            this.executor = executor;
+            this.batcher = batcher;
+        }
+
+        void close() {
+            batcher.ifPresent(DocumentProcessingBatcher::close);
+        }
+
+    }
+
 }
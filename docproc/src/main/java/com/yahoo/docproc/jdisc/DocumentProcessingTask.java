@@ -15,11 +15,13 @@ import com.yahoo.yolean.Exceptions;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Objects;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -40,6 +42,10 @@ public class DocumentProcessingTask implements Comparable<DocumentProcessingTask
     private final long seqNum;
     private final DocprocService service;
 
+    /** Other tasks to process in a batch together with this the next time it is run */
+    private List<DocumentProcessingTask> batch = Collections.emptyList();
+    private int batchApproxSize = 0;
+
     public DocumentProcessingTask(RequestContext requestContext, DocumentProcessingHandler docprocHandler,
                                   DocprocService service) {
         seqNum = seq.getAndIncrement();
@@ -49,24 +55,30 @@ public class DocumentProcessingTask implements Comparable<DocumentProcessingTask
         this.service = service;
     }
 
+    /**
+     * Makes this process the given tasks, which must be to the same service, together with its own
+     * processings the next time it is run.
+     */
+    void batchWith(List<DocumentProcessingTask> tasks) {
+        batch = new ArrayList<>(tasks);
+        for (DocumentProcessingTask task : tasks)
+            batchApproxSize += task.getApproxSize();
+    }
+
     @Override
     public void run() {
         try {
-            try {
-                processings.addAll(requestContext.getProcessings());
-            } catch (Exception e) {
-                //deserialization failed:
-                log.log(LogLevel.WARNING, "Deserialization of message failed.", e);
-                requestContext.processingFailed(e);
-                return;
+            if (batch.isEmpty()) {
+                if ( ! addProcessings()) return;
+                DocumentProcessor.Progress progress = process(service.getExecutor()::process);
+                submitIfLater(progress);
             }
-
-            DocprocExecutor executor = service.getExecutor();
-            DocumentProcessor.Progress progress = process(executor);
-
-            if (DocumentProcessor.Progress.LATER.equals(progress) && !processings.isEmpty()) {
-                DocumentProcessor.LaterProgress laterProgress = (DocumentProcessor.LaterProgress) progress;
-                docprocHandler.submit(this, laterProgress.getDelay());
+            else {
+                List<DocumentProcessingTask> tasks = new ArrayList<>(batch.size() + 1);
+                tasks.add(this);
+                tasks.addAll(batch);
+                batch = Collections.emptyList();
+                processBatch(tasks);
             }
         } catch (Error error) {
             try {
@@ -79,6 +91,45 @@ public class DocumentProcessingTask implements Comparable<DocumentProcessingTask
         }
     }
 
+    /** Adds the processings of the request of this, and returns whether this succeeded */
+    private boolean addProcessings() {
+        try {
+            processings.addAll(requestContext.getProcessings());
+            return true;
+        } catch (Exception e) {
+            //deserialization failed:
+            log.log(LogLevel.WARNING, "Deserialization of message failed.", e);
+            requestContext.processingFailed(e);
+            return false;
+        }
+    }
+
+    private void submitIfLater(DocumentProcessor.Progress progress) {
+        if (DocumentProcessor.Progress.LATER.equals(progress) && !processings.isEmpty()) {
+            DocumentProcessor.LaterProgress laterProgress = (DocumentProcessor.LaterProgress) progress;
+            docprocHandler.submit(this, laterProgress.getDelay());
+        }
+    }
+
+    /**
+     * Processes the processings of all the given tasks in one batch, and then completes each task separately.
+     * Tasks with processings which are not done are submitted for later on their own.
+     */
+    private void processBatch(List<DocumentProcessingTask> tasks) {
+        List<DocumentProcessingTask> added = new ArrayList<>(tasks.size());
+        List<Processing> batch = new ArrayList<>();
+        for (DocumentProcessingTask task : tasks) {
+            if ( ! task.addProcessings()) continue;
+            added.add(task);
+            if ( ! task.requestContext.hasExpired())
+                batch.addAll(task.processings);
+        }
+
+        DocprocExecutor.BatchResult result = service.getExecutor().process(batch);
+        for (DocumentProcessingTask task : added)
+            task.submitIfLater(task.process(result::progressOf));
+    }
+
     /**
      * Used by DocprocThreadManager. If a ProcessingTask has been taken by a thread, it can wait() no longer than
      * waitCounter (currently 10) times before being executed. This is to prevent large tasks from being delayed
@@ -92,11 +143,11 @@ public class DocumentProcessingTask implements Comparable<DocumentProcessingTask
     }
 
     /**
-     * Processes a single Processing, and fails the message if this processing fails.
+     * Processes the processings of this, and fails the message if one of them fails.
      *
-     * @param executor the DocprocService to use for processing
+     * @param executor the function returning the progress of processing each processing
      */
-    private DocumentProcessor.Progress process(DocprocExecutor executor) {
+    private DocumentProcessor.Progress process(Function<Processing, DocumentProcessor.Progress> executor) {
         Iterator<Processing> iterator = processings.iterator();
         List<Tuple2<DocumentProcessor.Progress, Processing>> later = new ArrayList<>();
         while (iterator.hasNext()) {
@@ -128,7 +179,7 @@ public class DocumentProcessingTask implements Comparable<DocumentProcessingTask
 
             DocumentProcessor.Progress progress = DocumentProcessor.Progress.FAILED;
             try {
-                progress = executor.process(processing);
+                progress = executor.apply(processing);
             } catch (Exception e) {
                 logProcessingFailure(processing, e);
                 requestContext.processingFailed(e);
@@ -179,6 +230,9 @@ public class DocumentProcessingTask implements Comparable<DocumentProcessingTask
 
 
     void queueFull() {
+        for (DocumentProcessingTask task : batch)
+            task.queueFull();
+        batch = Collections.emptyList();
         requestContext.processingFailed(RequestContext.ErrorCode.ERROR_BUSY,
                                         "Queue temporarily full. Returning message " + requestContext +
                                         ". Will be automatically resent.");
@@ -205,7 +259,7 @@ public class DocumentProcessingTask implements Comparable<DocumentProcessingTask
     }
 
     public int getApproxSize() {
-        return requestContext.getApproxSize();
+        return requestContext.getApproxSize() + batchApproxSize;
     }
 
     final long getSeqNum() {
@@ -0,0 +1,153 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.docproc;
+
+import com.yahoo.document.DataType;
+import com.yahoo.document.DocumentPut;
+import com.yahoo.document.DocumentType;
+import com.yahoo.document.datatypes.StringFieldValue;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+/**
+ * @author agent
+ */
+public class BatchedDocumentProcessorTestCase {
+
+    private final DocumentType type = new DocumentType("foobar");
+
+    public BatchedDocumentProcessorTestCase() {
+        type.addField("title", DataType.STRING);
+    }
+
+    @Test
+    public void requireThatBatchedProcessorIsCalledOnceForAllProcessings() {
+        RecordingBatchedProcessor batched = new RecordingBatchedProcessor(DocumentProcessor.Progress.DONE);
+        DocprocService service = setupDocprocService(new TitleSetter("first"), batched, new TitleSetter("last"));
+
+        List<Processing> processings = Arrays.asList(processing("doc:batch:0"),
+                                                     processing("doc:batch:1"),
+                                                     processing("doc:batch:2"));
+        DocprocExecutor.BatchResult result = service.getExecutor().process(processings);
+
+        assertEquals(Arrays.asList(3), batched.batchSizes);
+        assertEquals(Arrays.asList("first", "first", "first"), batched.titlesSeen);
+        for (Processing processing : processings) {
+            assertEquals(DocumentProcessor.Progress.DONE, result.progressOf(processing));
+            assertEquals("last", title(processing));
+        }
+    }
+
+    @Test
+    public void requireThatBatchedProcessorIsCalledForSingleProcessings() {
+        RecordingBatchedProcessor batched = new RecordingBatchedProcessor(DocumentProcessor.Progress.DONE);
+        DocprocService service = setupDocprocService(batched);
+
+        Processing processing = processing("doc:batch:0");
+        assertEquals(DocumentProcessor.Progress.DONE, service.getExecutor().process(processing));
+        assertEquals(Arrays.asList(1), batched.batchSizes);
+    }
+
+    @Test
+    public void requireThatLaterIsReturnedForAllProcessingsOfTheBatch() {
+        RecordingBatchedProcessor batched = new RecordingBatchedProcessor(DocumentProcessor.Progress.later(5));
+        DocprocService service = setupDocprocService(batched, new TitleSetter("last"));
+
+        List<Processing> processings = Arrays.asList(processing("doc:batch:0"), processing("doc:batch:1"));
+        DocprocExecutor.BatchResult result = service.getExecutor().process(processings);
+
+        for (Processing processing : processings) {
+            assertEquals(DocumentProcessor.Progress.LATER, result.progressOf(processing));
+            assertSame(batched, processing.callStack().peek().getDocumentProcessor());
+            assertNull(title(processing));
+        }
+    }
+
+    @Test
+    public void requireThatExceptionFailsAllProcessingsOfTheBatch() {
+        RuntimeException failure = new RuntimeException("oh no.");
+        DocprocService service = setupDocprocService(new BatchedDocumentProcessor() {
+            @Override
+            public Progress process(List<Processing> processings) {
+                throw failure;
+            }
+        });
+
+        List<Processing> processings = Arrays.asList(processing("doc:batch:0"), processing("doc:batch:1"));
+        DocprocExecutor.BatchResult result = service.getExecutor().process(processings);
+
+        for (Processing processing : processings) {
+            try {
+                result.progressOf(processing);
+                fail("Expected the exception of the processor");
+            } catch (RuntimeException e) {
+                assertSame(failure, e);
+            }
+        }
+    }
+
+    private static DocprocService setupDocprocService(DocumentProcessor... processors) {
+        CallStack stack = new CallStack("default");
+        for (DocumentProcessor processor : processors)
+            stack.addLast(processor);
+        DocprocService service = new DocprocService("default");
+        service.setCallStack(stack);
+        service.setInService(true);
+        return service;
+    }
+
+    private Processing processing(String id) {
+        Processing processing = new Processing();
+        processing.addDocumentOperation(new DocumentPut(type, id));
+        return processing;
+    }
+
+    private static String title(Processing processing) {
+        StringFieldValue title = (StringFieldValue) ((DocumentPut) processing.getDocumentOperations().get(0))
+                .getDocument().getFieldValue("title");
+        return title == null ? null : title.getString();
+    }
+
+    private static class TitleSetter extends SimpleDocumentProcessor {
+
+        private final String title;
+
+        TitleSetter(String title) {
+            this.title = title;
+        }
+
+        @Override
+        public void process(DocumentPut put) {
+            put.getDocument().setFieldValue("title", new StringFieldValue(title));
+        }
+
+    }
+
+    private static class RecordingBatchedProcessor extends BatchedDocumentProcessor {
+
+        private final Progress progress;
+        final List<Integer> batchSizes = new ArrayList<>();
+        final List<String> titlesSeen = new ArrayList<>();
+
+        RecordingBatchedProcessor(Progress progress) {
+            this.progress = progress;
+        }
+
+        @Override
+        public Progress process(List<Processing> processings) {
+            batchSizes.add(processings.size());
+            for (Processing processing : processings)
+                titlesSeen.add(title(processing));
+            return progress;
+        }
+
+    }
+
+}
@@ -0,0 +1,151 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.docproc.jdisc;
+
+import com.yahoo.docproc.BatchedDocumentProcessor;
+import com.yahoo.docproc.CallStack;
+import com.yahoo.docproc.DocprocService;
+import com.yahoo.docproc.Processing;
+import com.yahoo.document.DocumentPut;
+import com.yahoo.document.DocumentType;
+import org.junit.After;
+import org.junit.Test;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests gathering document processing tasks into batches, and completing the tasks of a batch one by one.
+ *
+ * @author agent
+ */
+public class DocumentProcessingBatcherTestCase {
+
+    private final DocumentType type = new DocumentType("batched");
+    private final ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1);
+    private final RecordingBatchedProcessor processor = new RecordingBatchedProcessor();
+    private final DocprocService service = new DocprocService("batched");
+    private final BlockingQueue<DocumentProcessingTask> submitted = new LinkedBlockingQueue<>();
+
+    public DocumentProcessingBatcherTestCase() {
+        CallStack stack = new CallStack("batched");
+        stack.addLast(processor);
+        service.setCallStack(stack);
+        service.setInService(true);
+        timer.setRemoveOnCancelPolicy(true);
+    }
+
+    @After
+    public void shutdownTimer() {
+        timer.shutdownNow();
+    }
+
+    @Test
+    public void testBatchIsSubmittedWhenFull() {
+        DocumentProcessingBatcher batcher = new DocumentProcessingBatcher(2, TimeUnit.MINUTES.toMillis(10), timer, submitted::add);
+        RecordingRequestContext first = new RecordingRequestContext("doc:batched:0");
+        RecordingRequestContext second = new RecordingRequestContext("doc:batched:1");
+        batcher.add(task(first));
+        assertTrue(submitted.isEmpty());
+        batcher.add(task(second));
+        assertEquals(1, submitted.size());
+        assertEquals("The timeout of the submitted batch is cancelled", 0, timer.getQueue().size());
+
+        submitted.poll().run();
+        assertEquals(Arrays.asList(2), processor.batchSizes);
+        assertEquals(first.processings, first.done);
+        assertEquals(second.processings, second.done);
+    }
+
+    @Test
+    public void testBatchIsSubmittedAfterMaxDelay() throws InterruptedException {
+        DocumentProcessingBatcher batcher = new DocumentProcessingBatcher(10, 1, timer, submitted::add);
+        RecordingRequestContext context = new RecordingRequestContext("doc:batched:0");
+        batcher.add(task(context));
+
+        DocumentProcessingTask task = submitted.poll(60, TimeUnit.SECONDS);
+        task.run();
+        assertEquals(Arrays.asList(1), processor.batchSizes);
+        assertEquals(context.processings, context.done);
+    }
+
+    @Test
+    public void testQueueFullFailsEveryTaskOfTheBatch() {
+        DocumentProcessingBatcher batcher = new DocumentProcessingBatcher(2, TimeUnit.MINUTES.toMillis(10), timer,
+                                                                          DocumentProcessingTask::queueFull);
+        RecordingRequestContext first = new RecordingRequestContext("doc:batched:0");
+        RecordingRequestContext second = new RecordingRequestContext("doc:batched:1");
+        batcher.add(task(first));
+        batcher.add(task(second));
+
+        assertSame(RequestContext.ErrorCode.ERROR_BUSY, first.error);
+        assertSame(RequestContext.ErrorCode.ERROR_BUSY, second.error);
+        assertTrue(processor.batchSizes.isEmpty());
+    }
+
+    @Test
+    public void testCloseSubmitsPendingAndLaterTasks() {
+        DocumentProcessingBatcher batcher = new DocumentProcessingBatcher(10, TimeUnit.MINUTES.toMillis(10), timer, submitted::add);
+        batcher.add(task(new RecordingRequestContext("doc:batched:0")));
+        assertTrue(submitted.isEmpty());
+
+        batcher.close();
+        assertEquals(1, submitted.size());
+        assertEquals(0, timer.getQueue().size());
+        batcher.add(task(new RecordingRequestContext("doc:batched:1")));
+        assertEquals(2, submitted.size());
+    }
+
+    private DocumentProcessingTask task(RecordingRequestContext context) {
+        return new DocumentProcessingTask(context, null, service);
+    }
+
+    private class RecordingRequestContext implements RequestContext {
+
+        final List<Processing> processings;
+        List<Processing> done = null;
+        ErrorCode error = null;
+
+        RecordingRequestContext(String documentId) {
+            Processing processing = new Processing();
+            processing.addDocumentOperation(new DocumentPut(type, documentId));
+            processings = Collections.singletonList(processing);
+        }
+
+        @Override public List<Processing> getProcessings() { return processings; }
+        @Override public String getServiceName() { return service.getName(); }
+        @Override public URI getUri() { return null; }
+        @Override public boolean isProcessable() { return true; }
+        @Override public int getApproxSize() { return 1; }
+        @Override public int getPriority() { return 0; }
+        @Override public void processingDone(List<Processing> processings) { assertNull(done); done = processings; }
+        @Override public void processingFailed(ErrorCode error, String message) { this.error = error; }
+        @Override public void processingFailed(Exception exception) { this.error = ErrorCode.ERROR_PROCESSING_FAILURE; }
+        @Override public void skip() { }
+
+    }
+
+    private static class RecordingBatchedProcessor extends BatchedDocumentProcessor {
+
+        final List<Integer> batchSizes = new ArrayList<>();
+
+        @Override
+        public Progress process(List<Processing> processings) {
+            batchSizes.add(processings.size());
+            return Progress.DONE;
+        }
+
+    }
+
+}
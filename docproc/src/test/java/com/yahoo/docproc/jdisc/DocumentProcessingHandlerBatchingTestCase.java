@@ -0,0 +1,146 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.docproc.jdisc;
+
+import com.yahoo.collections.Pair;
+import com.yahoo.docproc.BatchedDocumentProcessor;
+import com.yahoo.docproc.CallStack;
+import com.yahoo.docproc.Processing;
+import com.yahoo.document.DataType;
+import com.yahoo.document.Document;
+import com.yahoo.document.DocumentPut;
+import com.yahoo.document.DocumentType;
+import com.yahoo.document.Field;
+import com.yahoo.document.datatypes.StringFieldValue;
+import com.yahoo.documentapi.messagebus.protocol.PutDocumentMessage;
+import com.yahoo.messagebus.Message;
+import com.yahoo.messagebus.Reply;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that messages to chains with batched document processors are processed in batches,
+ * and replied to one by one.
+ *
+ * @author agent
+ */
+public class DocumentProcessingHandlerBatchingTestCase extends DocumentProcessingHandlerTestBase {
+
+    private final DocumentType type;
+    private final TitleBatchProcessor sizedProcessor = new TitleBatchProcessor(3, TimeUnit.MINUTES.toMillis(10));
+    private final TitleBatchProcessor timedProcessor = new TitleBatchProcessor(100, 10);
+
+    public DocumentProcessingHandlerBatchingTestCase() {
+        this.type = new DocumentType("batched");
+        this.type.addField(new Field("title", DataType.STRING));
+    }
+
+    @Test
+    public void testFullBatchIsProcessedAtOnceAndRepliedPerMessage() throws InterruptedException {
+        Set<String> sent = new HashSet<>();
+        for (int i = 0; i < 3; i++) {
+            String id = "doc:batched:" + i;
+            assertTrue(sendMessage("sized", put(id)));
+            sent.add(id);
+        }
+
+        for (int i = 0; i < 3; i++) {
+            Message message = remoteServer.awaitMessage(60, TimeUnit.SECONDS);
+            assertNotNull(message);
+            Document document = ((PutDocumentMessage) message).getDocumentPut().getDocument();
+            assertEquals(new StringFieldValue("processed"), document.getFieldValue("title"));
+            remoteServer.ackMessage(message);
+        }
+
+        Set<String> replied = new HashSet<>();
+        for (int i = 0; i < 3; i++) {
+            Reply reply = driver.client().awaitReply(60, TimeUnit.SECONDS);
+            assertNotNull(reply);
+            assertFalse(reply.hasErrors());
+            replied.add(((PutDocumentMessage) reply.getMessage()).getDocumentPut().getId().toString());
+        }
+        assertEquals(sent, replied);
+        assertEquals(Arrays.asList(3), sizedProcessor.batchSizes());
+    }
+
+    @Test
+    public void testIncompleteBatchIsProcessedAfterMaxDelay() throws InterruptedException {
+        assertTrue(sendMessage("timed", put("doc:batched:single")));
+
+        Message message = remoteServer.awaitMessage(60, TimeUnit.SECONDS);
+        assertNotNull(message);
+        remoteServer.ackMessage(message);
+        Reply reply = driver.client().awaitReply(60, TimeUnit.SECONDS);
+        assertNotNull(reply);
+        assertFalse(reply.hasErrors());
+        assertEquals(Arrays.asList(1), timedProcessor.batchSizes());
+    }
+
+    private PutDocumentMessage put(String id) {
+        return new PutDocumentMessage(new DocumentPut(new Document(getType(), id)));
+    }
+
+    @Override
+    public List<Pair<String, CallStack>> getCallStacks() {
+        CallStack sized = new CallStack();
+        sized.addLast(sizedProcessor);
+        CallStack timed = new CallStack();
+        timed.addLast(timedProcessor);
+
+        List<Pair<String, CallStack>> stacks = new ArrayList<>(2);
+        stacks.add(new Pair<>("sized", sized));
+        stacks.add(new Pair<>("timed", timed));
+        return stacks;
+    }
+
+    @Override
+    public DocumentType getType() {
+        return type;
+    }
+
+    private static class TitleBatchProcessor extends BatchedDocumentProcessor {
+
+        private final int maxBatchSize;
+        private final long maxBatchDelayMillis;
+        private final List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+
+        TitleBatchProcessor(int maxBatchSize, long maxBatchDelayMillis) {
+            this.maxBatchSize = maxBatchSize;
+            this.maxBatchDelayMillis = maxBatchDelayMillis;
+        }
+
+        @Override
+        public Progress process(List<Processing> processings) {
+            batchSizes.add(processings.size());
+            for (Processing processing : processings)
+                ((DocumentPut) processing.getDocumentOperations().get(0)).getDocument()
+                        .setFieldValue("title", new StringFieldValue("processed"));
+            return Progress.DONE;
+        }
+
+        @Override
+        public int getMaxBatchSize() { return maxBatchSize; }
+
+        @Override
+        public long getMaxBatchDelayMillis() { return maxBatchDelayMillis; }
+
+        List<Integer> batchSizes() {
+            synchronized (batchSizes) {
+                return new ArrayList<>(batchSizes);
+            }
+        }
+
+    }
+
+}
@@ -100,8 +100,9 @@ public class Acceptor {
     private void run() {
         while (serverChannel.isOpen()) {
             try {
-                parent.addConnection(new Connection(parent, owner, serverChannel.accept()));
-                parent.sync();
+                TransportThread thread = parent.selectThread();
+                thread.addConnection(new Connection(thread, owner, serverChannel.accept()));
+                thread.sync();
             } catch (ClosedChannelException ignore) {
             } catch (Exception e) {
                 log.log(Level.WARNING, "Error accepting connection", e);
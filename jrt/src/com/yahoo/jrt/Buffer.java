@@ -9,6 +9,7 @@ class Buffer {
 
     static final int MAX_IO = 65000;
 
+    private BufferPool pool;
     private ByteBuffer buf;
     private int        readPos;
     private int        writePos;
@@ -54,18 +55,54 @@ class Buffer {
             if (buf.capacity() + free < minFree) {
                 size = buf.capacity() + minFree;
             }
-            ByteBuffer tmp = ByteBuffer.allocate(size);
+            ByteBuffer tmp = allocate(size);
             tmp.order(buf.order());
             buf.position(readPos);
             buf.limit(writePos);
             tmp.put(buf);
-            buf = tmp;
+            replace(tmp);
             readPos = 0;
         }
     }
 
+    private ByteBuffer allocate(int size) {
+        return (pool != null) ? pool.allocate(size) : ByteBuffer.allocate(size);
+    }
+
+    private void replace(ByteBuffer tmp) {
+        if (pool != null) {
+            pool.release(buf);
+        }
+        buf = tmp;
+    }
+
     public Buffer(int size) {
-        buf = ByteBuffer.allocate(size);
+        this(size, null);
+    }
+
+    /**
+     * Create a buffer which allocates its underlying storage from
+     * the given pool, and returns it there when replaced or
+     * released.
+     *
+     * @param size initial size
+     * @param pool the pool to allocate from, or null to use the heap
+     **/
+    public Buffer(int size, BufferPool pool) {
+        this.pool = pool;
+        buf = allocate(size);
+        readPos = 0;
+        writePos = 0;
+        readMode = false;
+    }
+
+    /**
+     * Return the underlying storage of this buffer to its pool. Any
+     * buffered data is discarded, and the buffer should not be used
+     * after this.
+     **/
+    public void release() {
+        replace(ByteBuffer.allocate(0));
         readPos = 0;
         writePos = 0;
         readMode = false;
@@ -75,15 +112,18 @@ class Buffer {
         int rpos = readMode? buf.position() : readPos;
         int wpos = readMode? writePos : buf.position();
         int used = wpos - rpos;
+        if (pool != null) {
+            size = BufferPool.capacityFor(size);
+        }
         if (used > size || buf.capacity() <= size) {
             return false;
         }
-        ByteBuffer tmp = ByteBuffer.allocate(size);
+        ByteBuffer tmp = allocate(size);
         tmp.order(buf.order());
         buf.position(rpos);
         buf.limit(wpos);
         tmp.put(buf);
-        buf = tmp;
+        replace(tmp);
         readPos = 0;
         writePos = used;
         buf.position(readMode? readPos : writePos);
@@ -0,0 +1,113 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.jrt;
+
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * A pool of direct byte buffers used for connection IO. Buffers are
+ * handed out in power of two size classes, and released buffers are
+ * kept for reuse as long as the total size of the pooled buffers is
+ * below a given limit. Direct buffers are expensive to allocate but
+ * can be passed to the socket without an extra copy, which is why
+ * they are worth keeping.
+ **/
+class BufferPool {
+
+    private static final int MIN_SIZE_CLASS = 12; // 4k
+    private static final int MAX_SIZE_CLASS = 24; // 16M
+
+    private final List<ArrayDeque<ByteBuffer>> free = new ArrayList<>();
+    private final long maxPooledBytes;
+    private long pooledBytes = 0;
+
+    /**
+     * Create a buffer pool keeping at most the given number of bytes
+     * in released buffers.
+     *
+     * @param maxPooledBytes max number of bytes to keep for reuse
+     **/
+    BufferPool(long maxPooledBytes) {
+        this.maxPooledBytes = maxPooledBytes;
+        for (int i = 0; i <= MAX_SIZE_CLASS; i++) {
+            free.add(new ArrayDeque<>());
+        }
+    }
+
+    private static int sizeClass(int size) {
+        int sizeClass = 32 - Integer.numberOfLeadingZeros(Math.max(size, 1) - 1);
+        return Math.max(sizeClass, MIN_SIZE_CLASS);
+    }
+
+    /**
+     * Obtain the capacity of the buffer returned when allocating at
+     * least the given number of bytes.
+     *
+     * @return the buffer capacity used for the given size
+     * @param size the minimum size of the buffer
+     **/
+    static int capacityFor(int size) {
+        int sizeClass = sizeClass(size);
+        return (sizeClass > MAX_SIZE_CLASS) ? size : (1 << sizeClass);
+    }
+
+    /**
+     * Obtain a cleared buffer with room for at least the given number
+     * of bytes. Buffers too large to be pooled are allocated on the
+     * heap.
+     *
+     * @return a buffer with capacity {@link #capacityFor capacityFor(size)}
+     * @param size the minimum size of the buffer
+     **/
+    ByteBuffer allocate(int size) {
+        int sizeClass = sizeClass(size);
+        if (sizeClass > MAX_SIZE_CLASS) {
+            return ByteBuffer.allocate(size);
+        }
+        synchronized (this) {
+            ByteBuffer buf = free.get(sizeClass).poll();
+            if (buf != null) {
+                pooledBytes -= buf.capacity();
+                buf.clear();
+                return buf;
+            }
+        }
+        return ByteBuffer.allocateDirect(1 << sizeClass);
+    }
+
+    /**
+     * Return a buffer to this pool. The buffer must not be used by
+     * the caller after this.
+     *
+     * @param buf the buffer to release
+     **/
+    void release(ByteBuffer buf) {
+        if (!buf.isDirect()) {
+            return;
+        }
+        int sizeClass = sizeClass(buf.capacity());
+        if (sizeClass > MAX_SIZE_CLASS || buf.capacity() != (1 << sizeClass)) {
+            return;
+        }
+        synchronized (this) {
+            if (pooledBytes + buf.capacity() > maxPooledBytes) {
+                return;
+            }
+            pooledBytes += buf.capacity();
+            free.get(sizeClass).push(buf);
+        }
+    }
+
+    /**
+     * Obtain the number of bytes held in released buffers.
+     *
+     * @return pooled bytes
+     **/
+    synchronized long pooledBytes() {
+        return pooledBytes;
+    }
+}
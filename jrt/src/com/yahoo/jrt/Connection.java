@@ -30,15 +30,17 @@ class Connection extends Target {
     private int           state      = INITIAL;
     private Queue         queue      = new Queue();
     private Queue         myQueue    = new Queue();
-    private Buffer        input      = new Buffer(READ_SIZE * 2);
-    private Buffer        output     = new Buffer(WRITE_SIZE * 2);
+    private Buffer        input;
+    private Buffer        output;
+    private PayloadList   payloads   = new PayloadList();
+    private ByteBuffer[]  gather     = null;
     private int           maxInputSize  = 64*1024;
     private int           maxOutputSize = 64*1024;
     private Map<Integer, ReplyHandler> replyMap = new HashMap<>();
     private Map<TargetWatcher, TargetWatcher> watchers = new IdentityHashMap<>();
     private int           activeReqs = 0;
     private int           writeWork  = 0;
-    private Transport     parent;
+    private TransportThread parent;
     private Supervisor    owner;
     private Spec          spec;
     private SocketChannel channel;
@@ -81,21 +83,25 @@ class Connection extends Target {
         }
     }
 
-    public Connection(Transport parent, Supervisor owner,
+    public Connection(TransportThread parent, Supervisor owner,
                       SocketChannel channel) {
 
         this.parent = parent;
         this.owner = owner;
         this.channel = channel;
+        input = new Buffer(READ_SIZE * 2, parent.bufferPool());
+        output = new Buffer(WRITE_SIZE * 2, parent.bufferPool());
         server = true;
         owner.sessionInit(this);
     }
 
-    public Connection(Transport parent, Supervisor owner, Spec spec, Object context) {
+    public Connection(TransportThread parent, Supervisor owner, Spec spec, Object context) {
         super(context);
         this.parent = parent;
         this.owner = owner;
         this.spec = spec;
+        input = new Buffer(READ_SIZE * 2, parent.bufferPool());
+        output = new Buffer(WRITE_SIZE * 2, parent.bufferPool());
         server = false;
         owner.sessionInit(this);
     }
@@ -109,6 +115,10 @@ class Connection extends Target {
     }
 
     public Transport transport() {
+        return parent.transport();
+    }
+
+    TransportThread transportThread() {
         return parent;
     }
 
@@ -243,15 +253,33 @@ class Connection extends Target {
             queue.flush(myQueue);
         }
         for (int i = 0; i < WRITE_REDO; i++) {
-            while (output.bytes() < WRITE_SIZE) {
-                Packet packet = (Packet) myQueue.dequeue();
-                if (packet == null) {
+            if (gather == null) {
+                // stop encoding at the first packet with large payloads, as
+                // the output buffer must not move until they are written
+                while (output.bytes() < WRITE_SIZE && payloads.isEmpty()) {
+                    Packet packet = (Packet) myQueue.dequeue();
+                    if (packet == null) {
+                        break;
+                    }
+                    PacketInfo info = packet.getPacketInfo();
+                    ByteBuffer wb = output.getWritable(info.packetLength() - packet.payloadBytes());
+                    owner.writePacket(info);
+                    info.encodePacket(packet, wb, payloads);
+                }
+                if (!payloads.isEmpty()) {
+                    gather = payloads.gather(output.getReadable());
+                }
+            }
+            if (gather != null) {
+                channel.write(gather);
+                if (hasRemaining(gather)) {
                     break;
                 }
-                PacketInfo info = packet.getPacketInfo();
-                ByteBuffer wb = output.getWritable(info.packetLength());
-                owner.writePacket(info);
-                info.encodePacket(packet, wb);
+                ByteBuffer rb = output.getReadable();
+                rb.position(rb.limit());
+                payloads.clear();
+                gather = null;
+                continue;
             }
             ByteBuffer rb = output.getChannelReadable();
             if (rb.remaining() == 0) {
@@ -272,16 +300,30 @@ class Connection extends Target {
         if (disableWrite) {
             disableWrite();
         }
-        if (maxOutputSize > 0) {
+        if (maxOutputSize > 0 && gather == null) {
             output.shrink(maxOutputSize);
         }
     }
 
+    /** Returns whether any of the given buffers has bytes remaining. The last one may be empty. */
+    private static boolean hasRemaining(ByteBuffer[] buffers) {
+        for (ByteBuffer buffer : buffers) {
+            if (buffer.remaining() > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     public void fini() {
         setState(CLOSED);
         if (selectionKey != null) {
             selectionKey.cancel();
         }
+        gather = null;
+        payloads.clear();
+        input.release();
+        output.release();
     }
 
     public boolean isClosed() {
@@ -11,13 +11,19 @@ import java.nio.ByteBuffer;
 public class DataValue extends Value
 {
     private byte[] value;
+    private ByteBuffer buffer;
 
     /**
      * Create from a Java-type value
      *
      * @param value the value
      **/
-    public DataValue(byte[] value) { this.value = value; }
+    public DataValue(byte[] value) { this(value, null); }
+
+    private DataValue(byte[] value, ByteBuffer buffer) {
+        this.value = value;
+        this.buffer = buffer;
+    }
 
     /**
      * Create by decoding the value from the given buffer
@@ -30,23 +36,77 @@ public class DataValue extends Value
         src.get(value);
     }
 
+    /**
+     * Create a value wrapping the remaining bytes of the given
+     * buffer without copying them. Large values created this way are
+     * written directly from the given buffer when sent, so the
+     * content of the buffer must not be modified until the request
+     * or reply holding the value has been sent.
+     *
+     * @return a data value backed by the given buffer
+     * @param data the bytes between position and limit of this buffer make up the value
+     **/
+    public static DataValue wrap(ByteBuffer data) {
+        return new DataValue(null, data.slice());
+    }
+
     /**
      * @return DATA
      **/
     public byte type() { return DATA; }
     public int count() { return 1; }
 
-    int bytes() { return 4 + value.length; }
+    private int length() {
+        return (buffer != null) ? buffer.remaining() : value.length;
+    }
+
+    int bytes() { return 4 + length(); }
     void encode(ByteBuffer dst) {
-        dst.putInt(value.length);
-        dst.put(value);
+        dst.putInt(length());
+        if (buffer != null) {
+            dst.put(buffer.duplicate());
+        } else {
+            dst.put(value);
+        }
+    }
+
+    int payloadBytes() {
+        return (length() >= PayloadList.MIN_PAYLOAD_SIZE) ? length() : 0;
+    }
+    void encode(ByteBuffer dst, PayloadList payloads) {
+        if (payloadBytes() == 0) {
+            encode(dst);
+            return;
+        }
+        dst.putInt(length());
+        payloads.add(dst.position(), asBuffer());
+    }
+
+    /**
+     * Obtain the value as a byte array. For values wrapping a buffer
+     * the bytes are copied out of the buffer on the first call.
+     **/
+    public byte[] asData() {
+        if (value == null) {
+            value = new byte[buffer.remaining()];
+            buffer.duplicate().get(value);
+        }
+        return value;
     }
 
-    public byte[] asData() { return value; }
+    /**
+     * Obtain a read-only buffer holding the value, without copying
+     * it.
+     *
+     * @return the value as a buffer
+     **/
+    public ByteBuffer asBuffer() {
+        return (buffer != null) ? buffer.asReadOnlyBuffer() : ByteBuffer.wrap(value).asReadOnlyBuffer();
+    }
 
     @Override
     public String toString() {
-        return String.valueOf(value);
+        return String.valueOf(asData());
     }
 
 }
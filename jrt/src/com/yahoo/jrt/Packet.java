@@ -44,6 +44,22 @@ abstract class Packet
     public abstract int packetCode();
     public abstract void encode(ByteBuffer dst);
 
+    /**
+     * Number of bytes of this packet left out of the buffer when
+     * encoding with a {@link PayloadList}.
+     **/
+    public int payloadBytes() {
+        return 0;
+    }
+
+    /**
+     * Encode this packet, adding large payloads to the given list
+     * instead of copying them into the buffer.
+     **/
+    public void encode(ByteBuffer dst, PayloadList payloads) {
+        encode(dst);
+    }
+
     public PacketInfo getPacketInfo() {
         return new PacketInfo(bytes(), flags, packetCode(), requestId);
     }
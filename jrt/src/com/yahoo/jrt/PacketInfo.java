@@ -85,9 +85,20 @@ class PacketInfo
     }
 
     public void encodePacket(Packet packet, ByteBuffer dst) {
+        encodePacket(packet, dst, null);
+    }
+
+    /**
+     * Encode the given packet, leaving large payloads out of the
+     * buffer if a payload list is given. The buffer must then have
+     * room for the packet length minus the payload bytes of the
+     * packet.
+     **/
+    public void encodePacket(Packet packet, ByteBuffer dst, PayloadList payloads) {
         int pos = dst.position();
-        int end = pos + packetLength;
+        int end = pos + packetLength - ((payloads != null) ? packet.payloadBytes() : 0);
         int limit = dst.limit();
+        int numPayloads = (payloads != null) ? payloads.size() : 0;
         try {
             dst.limit(end);
             dst.putInt(packetLength - 4);
@@ -97,9 +108,16 @@ class PacketInfo
             if (reverseByteOrder()) {
                 dst.order(ByteOrder.LITTLE_ENDIAN);
             }
-            packet.encode(dst);
+            if (payloads != null) {
+                packet.encode(dst, payloads);
+            } else {
+                packet.encode(dst);
+            }
         } catch (RuntimeException e) {
             dst.position(pos);
+            if (payloads != null) {
+                payloads.truncate(numPayloads);
+            }
             throw e;
         } finally {
             dst.order(ByteOrder.BIG_ENDIAN);
@@ -0,0 +1,83 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.jrt;
+
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * Large data payloads left out when encoding a packet. Instead of
+ * being copied into the output buffer of a connection, each payload
+ * is written directly from its own buffer with a gathering write,
+ * at the recorded position of the encoded packet data.
+ **/
+class PayloadList {
+
+    /** Data values at least this large are written without being copied **/
+    static final int MIN_PAYLOAD_SIZE = 16 * 1024;
+
+    private final List<Integer>    positions = new ArrayList<>();
+    private final List<ByteBuffer> payloads  = new ArrayList<>();
+
+    /**
+     * Add a payload to be written at the given position of the
+     * encoded data.
+     *
+     * @param position buffer position where the payload belongs
+     * @param payload the payload, which must not be modified by the caller
+     **/
+    void add(int position, ByteBuffer payload) {
+        positions.add(position);
+        payloads.add(payload);
+    }
+
+    int size() {
+        return payloads.size();
+    }
+
+    boolean isEmpty() {
+        return payloads.isEmpty();
+    }
+
+    /**
+     * Drop the payloads added after the first n.
+     *
+     * @param n the number of payloads to keep
+     **/
+    void truncate(int n) {
+        while (payloads.size() > n) {
+            positions.remove(positions.size() - 1);
+            payloads.remove(payloads.size() - 1);
+        }
+    }
+
+    void clear() {
+        truncate(0);
+    }
+
+    /**
+     * Interleave the readable bytes of the given encoded data with
+     * the payloads, in the order they should be written.
+     *
+     * @return the buffers to write, backed by the given data and the payloads
+     * @param data encoded data, with all payload positions between position and limit
+     **/
+    ByteBuffer[] gather(ByteBuffer data) {
+        ByteBuffer[] result = new ByteBuffer[payloads.size() * 2 + 1];
+        int start = data.position();
+        for (int i = 0; i < payloads.size(); i++) {
+            ByteBuffer segment = data.duplicate();
+            segment.position(start);
+            segment.limit(positions.get(i));
+            result[i * 2] = segment;
+            result[i * 2 + 1] = payloads.get(i).duplicate();
+            start = positions.get(i);
+        }
+        ByteBuffer last = data.duplicate();
+        last.position(start);
+        result[result.length - 1] = last;
+        return result;
+    }
+}
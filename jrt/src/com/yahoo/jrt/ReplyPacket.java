@@ -36,6 +36,14 @@ class ReplyPacket extends Packet
         returnValues.encode(dst);
     }
 
+    public int payloadBytes() {
+        return returnValues.payloadBytes();
+    }
+
+    public void encode(ByteBuffer dst, PayloadList payloads) {
+        returnValues.encode(dst, payloads);
+    }
+
     public Values returnValues() {
         return returnValues;
     }
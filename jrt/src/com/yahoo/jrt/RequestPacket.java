@@ -42,6 +42,15 @@ class RequestPacket extends Packet
         parameters.encode(dst);
     }
 
+    public int payloadBytes() {
+        return parameters.payloadBytes();
+    }
+
+    public void encode(ByteBuffer dst, PayloadList payloads) {
+        methodName.encode(dst);
+        parameters.encode(dst, payloads);
+    }
+
     public String methodName() {
         return methodName.asString();
     }
@@ -2,7 +2,7 @@
 package com.yahoo.jrt;
 
 
-import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 
 /**
@@ -37,16 +37,17 @@ public class Supervisor {
             this.method = method;
         }
         public void run() {
-            Method m = methodMap.remove(methodName);
-            if (method != null && m != method) {
-                methodMap.put(method.name(), method);
+            if (method == null) {
+                methodMap.remove(methodName);
+            } else {
+                methodMap.remove(methodName, method);
             }
         }
     }
 
     private Transport               transport;
     private SessionHandler          sessionHandler = null;
-    private HashMap<String, Method> methodMap      = new HashMap<>();
+    private ConcurrentHashMap<String, Method> methodMap = new ConcurrentHashMap<>();
     private int                     maxInputBufferSize  = 0;
     private int                     maxOutputBufferSize = 0;
 
@@ -94,7 +95,7 @@ public class Supervisor {
      *
      * @return the method map
      **/
-    HashMap<String, Method> methodMap() {
+    ConcurrentHashMap<String, Method> methodMap() {
         return methodMap;
     }
 
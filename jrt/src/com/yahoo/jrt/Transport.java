@@ -2,10 +2,7 @@
 package com.yahoo.jrt;
 
 
-import java.io.IOException;
-import java.nio.channels.SelectionKey;
-import java.nio.channels.Selector;
-import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -16,166 +13,65 @@ import java.util.logging.Logger;
  * multiplexed network IO, handles scheduled tasks and keeps track of
  * some additional helper threads. A single Transport object can back
  * multiple {@link Supervisor} objects.
+ *
+ * <p>A Transport may be backed by more than one transport thread,
+ * each with its own selector and command queue. New connections are
+ * then spread round robin across the transport threads, and all IO
+ * and reply handling for a connection is done by the thread it was
+ * assigned to. This means that request and reply callbacks for
+ * different connections may run concurrently. Tasks and commands
+ * given to {@link #createTask} and {@link #perform} are always run by
+ * the first transport thread, so they are serialized with each other,
+ * but not with IO handled by the other threads. Applications
+ * depending on all callbacks being serialized should use a single
+ * transport thread, which is the default.
  **/
 public class Transport {
 
-    private static final int OPEN    = 1;
-    private static final int CLOSING = 2;
-    private static final int CLOSED  = 3;
-
-    private class Run implements Runnable {
-        public void run() {
-            try {
-                Transport.this.run();
-            } catch (Throwable problem) {
-                handleFailure(problem, Transport.this);
-            }
-        }
-    }
-
-    private class AddConnectionCmd implements Runnable {
-        private Connection conn;
-        AddConnectionCmd(Connection conn) { this.conn = conn; }
-        public void run() { handleAddConnection(conn); }
-    }
-
-    private class CloseConnectionCmd implements Runnable {
-        private Connection conn;
-        CloseConnectionCmd(Connection conn) { this.conn = conn; }
-        public void run() { handleCloseConnection(conn); }
-    }
-
-    private class EnableWriteCmd implements Runnable {
-        private Connection conn;
-        EnableWriteCmd(Connection conn) { this.conn = conn; }
-        public void run() { handleEnableWrite(conn); }
-    }
-
-    private class SyncCmd implements Runnable {
-        boolean done = false;
-        public synchronized void waitDone() {
-            while (!done) {
-                try { wait(); } catch (InterruptedException e) {}
-            }
-        }
-        public synchronized void run() {
-            done = true;
-            notify();
-        }
-    }
-
     private static Logger log = Logger.getLogger(Transport.class.getName());
 
     private FatalErrorHandler fatalHandler; // NB: this must be set first
-    private Thread            thread;
-    private Queue             queue;
-    private Queue             myQueue;
-    private Connector         connector;
-    private Closer            closer;
-    private Scheduler         scheduler;
-    private int               state;
-    private Selector          selector;
-
-    private void handleAddConnection(Connection conn) {
-        if (conn.isClosed()) {
-            if (conn.hasSocket()) {
-                closer.closeLater(conn);
-            }
-            return;
-        }
-        if (!conn.init(selector)) {
-            handleCloseConnection(conn);
-        }
-    }
+    private TransportThread[] threads;
+    private AtomicInteger     nextThread = new AtomicInteger(0);
 
-    private void handleCloseConnection(Connection conn) {
-        if (conn.isClosed()) {
-            return;
-        }
-        conn.fini();
-        if (conn.hasSocket()) {
-            closer.closeLater(conn);
-        }
-    }
-
-    private void handleEnableWrite(Connection conn) {
-        if (conn.isClosed()) {
-            return;
-        }
-        conn.enableWrite();
-    }
-
-    private boolean postCommand(Runnable cmd) {
-        boolean wakeup;
-        synchronized (this) {
-            if (state == CLOSED) {
-                return false;
-            }
-            wakeup = queue.isEmpty();
-            queue.enqueue(cmd);
-        }
-        if (wakeup) {
-            selector.wakeup();
+    /**
+     * Create a new Transport object with the given fatal error
+     * handler and number of transport threads.
+     *
+     * @param fatalHandler fatal error handler
+     * @param numThreads the number of transport threads, must be at least 1
+     **/
+    public Transport(FatalErrorHandler fatalHandler, int numThreads) {
+        if (numThreads < 1) {
+            throw new IllegalArgumentException("A transport needs at least one thread, got " + numThreads);
         }
-        return true;
-    }
-
-    private void handleEvents() {
         synchronized (this) {
-            queue.flush(myQueue);
-        }
-        while (!myQueue.isEmpty()) {
-            ((Runnable)myQueue.dequeue()).run();
-        }
-    }
-
-    private boolean handleIOEvents(Connection conn,
-                                   SelectionKey key) {
-        if (conn.isClosed()) {
-            return true;
-        }
-        if (key.isReadable()) {
-            try {
-                conn.read();
-            } catch (IOException e) {
-                conn.setLostReason(e);
-                return false;
-            }
+            this.fatalHandler = fatalHandler; // NB: this must be set first
         }
-        if (key.isWritable()) {
-            try {
-                conn.write();
-            } catch (IOException e) {
-                conn.setLostReason(e);
-                return false;
-            }
+        threads = new TransportThread[numThreads];
+        for (int i = 0; i < numThreads; i++) {
+            threads[i] = new TransportThread(this, (numThreads == 1) ? "<transport>" : "<transport-" + i + ">");
         }
-        return true;
     }
 
     /**
-     * Create a new Transport object with the given fatal error handler.
+     * Create a new Transport object with the given fatal error
+     * handler and a single transport thread.
      *
      * @param fatalHandler fatal error handler
      **/
     public Transport(FatalErrorHandler fatalHandler) {
-        synchronized (this) {
-            this.fatalHandler = fatalHandler; // NB: this must be set first
-        }
-        thread    = new Thread(new Run(), "<transport>");
-        queue     = new Queue();
-        myQueue   = new Queue();
-        connector = new Connector(this);
-        closer    = new Closer(this);
-        scheduler = new Scheduler(System.currentTimeMillis());
-        state     = OPEN;
-        try {
-            selector = Selector.open();
-        } catch (Exception e) {
-            throw new Error("Could not open transport selector", e);
-        }
-        thread.setDaemon(true);
-        thread.start();
+        this(fatalHandler, 1);
+    }
+
+    /**
+     * Create a Transport object with no fatal error handler and the
+     * given number of transport threads.
+     *
+     * @param numThreads the number of transport threads, must be at least 1
+     **/
+    public Transport(int numThreads) {
+        this(null, numThreads);
     }
 
     /**
@@ -185,7 +81,16 @@ public class Transport {
      * 1.
      **/
     public Transport() {
-        this(null);
+        this(null, 1);
+    }
+
+    /**
+     * Obtain the number of transport threads backing this Transport.
+     *
+     * @return the number of transport threads
+     **/
+    public int getNumThreads() {
+        return threads.length;
     }
 
     /**
@@ -207,6 +112,19 @@ public class Transport {
         Runtime.getRuntime().halt(1);
     }
 
+    /**
+     * Select the transport thread which should handle a new
+     * connection.
+     *
+     * @return the transport thread for the next connection
+     **/
+    TransportThread selectThread() {
+        if (threads.length == 1) {
+            return threads[0];
+        }
+        return threads[Math.floorMod(nextThread.getAndIncrement(), threads.length)];
+    }
+
     /**
      * Listen to the given address. This method is called by a {@link
      * Supervisor} object.
@@ -231,25 +149,25 @@ public class Transport {
      *             if this flag is set
      */
     Connection connect(Supervisor owner, Spec spec, Object context, boolean sync) {
-        Connection conn = new Connection(this, owner, spec, context);
+        TransportThread thread = selectThread();
+        Connection conn = new Connection(thread, owner, spec, context);
         if (sync) {
             addConnection(conn.connect());
         } else {
-            connector.connectLater(conn);
+            thread.connectLater(conn);
         }
         return conn;
     }
 
     /**
-     * Add a connection to the set of connections handled by this
-     * Transport. Invoked by the {@link Connector} class.
+     * Add a connection to the set of connections handled by the
+     * transport thread it was assigned to. Invoked by the {@link
+     * Connector} class.
      *
      * @param conn the connection to add
      **/
     void addConnection(Connection conn) {
-        if (!postCommand(new AddConnectionCmd(conn))) {
-            perform(new CloseConnectionCmd(conn));
-        }
+        conn.transportThread().addConnection(conn);
     }
 
     /**
@@ -258,7 +176,7 @@ public class Transport {
      * @param conn the connection to close
      **/
     void closeConnection(Connection conn) {
-        postCommand(new CloseConnectionCmd(conn));
+        conn.transportThread().closeConnection(conn);
     }
 
     /**
@@ -268,133 +186,70 @@ public class Transport {
      * @param conn the connection to enable write events for
      **/
     void enableWrite(Connection conn) {
-        if (Thread.currentThread() == thread) {
-            handleEnableWrite(conn);
-        } else {
-            postCommand(new EnableWriteCmd(conn));
-        }
+        conn.transportThread().enableWrite(conn);
     }
 
     /**
      * Create a {@link Task} that can be scheduled for execution in
-     * the transport thread.
+     * the (first) transport thread.
      *
      * @return the newly created Task
      * @param cmd what to run when the task is executed
      **/
     public Task createTask(Runnable cmd) {
-        return new Task(scheduler, cmd);
+        return threads[0].createTask(cmd);
     }
 
     /**
      * Perform the given command in such a way that it does not run
-     * concurrently with the transport thread or other commands
-     * performed by invoking this method. This method will continue to
-     * work even after the transport thread has been shut down.
+     * concurrently with the (first) transport thread or other
+     * commands performed by invoking this method. This method will
+     * continue to work even after the transport thread has been shut
+     * down.
      *
      * @param cmd the command to perform
      **/
     public void perform(Runnable cmd) {
-        if (Thread.currentThread() == thread) {
-            cmd.run();
-            return;
-        }
-        if (!postCommand(cmd)) {
-            join();
-            synchronized (thread) {
-                cmd.run();
-            }
-        }
+        threads[0].perform(cmd);
     }
 
     /**
-     * Synchronize with the transport thread. This method will block
+     * Synchronize with the transport threads. This method will block
      * until all commands issued before this method was invoked has
-     * completed. If the transport thread has been shut down (or is in
-     * the progress of being shut down) this method will instead wait
-     * for the transport thread to complete, since no more commands
-     * will be performed, and waiting would be forever. Invoking this
-     * method from the transport thread is not a good idea.
+     * completed. If the transport threads have been shut down (or are
+     * in the progress of being shut down) this method will instead
+     * wait for the transport threads to complete, since no more
+     * commands will be performed, and waiting would be
+     * forever. Invoking this method from a transport thread is not a
+     * good idea.
      *
      * @return this object, to enable chaining
      **/
     public Transport sync() {
-        SyncCmd cmd = new SyncCmd();
-        if (postCommand(cmd)) {
-            cmd.waitDone();
-        } else {
-            join();
+        for (TransportThread thread : threads) {
+            thread.sync();
         }
         return this;
     }
 
-    private void run() {
-        while (state == OPEN) {
-
-            // perform I/O selection
-            try {
-                selector.select(100);
-            } catch (IOException e) {
-                log.log(Level.WARNING, "error during select", e);
-            }
-
-            // handle internal events
-            handleEvents();
-
-            // handle I/O events
-            Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
-            while (keys.hasNext()) {
-                SelectionKey key = keys.next();
-                Connection conn = (Connection) key.attachment();
-                keys.remove();
-                if (!handleIOEvents(conn, key)) {
-                    handleCloseConnection(conn);
-                }
-            }
-
-            // check scheduled tasks
-            scheduler.checkTasks(System.currentTimeMillis());
-        }
-        connector.shutdown().waitDone();
-        synchronized (this) {
-            state = CLOSED;
-        }
-        handleEvents();
-        Iterator<SelectionKey> keys = selector.keys().iterator();
-        while (keys.hasNext()) {
-            SelectionKey key = keys.next();
-            Connection conn = (Connection) key.attachment();
-            handleCloseConnection(conn);
-        }
-        try { selector.close(); } catch (Exception e) {}
-        closer.shutdown().join();
-        connector.exit().join();
-    }
-
     /**
-     * Initiate controlled shutdown of the transport thread.
+     * Initiate controlled shutdown of the transport threads.
      *
      * @return this object, to enable chaining with join
      **/
     public Transport shutdown() {
-        synchronized (this) {
-            if (state == OPEN) {
-                state = CLOSING;
-                selector.wakeup();
-            }
+        for (TransportThread thread : threads) {
+            thread.shutdown();
         }
         return this;
     }
 
     /**
-     * Wait for the transport thread to finish.
+     * Wait for the transport threads to finish.
      **/
     public void join() {
-        while (true) {
-            try {
-                thread.join();
-                return;
-            } catch (InterruptedException e) {}
+        for (TransportThread thread : threads) {
+            thread.join();
         }
     }
 }
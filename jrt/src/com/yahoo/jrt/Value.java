@@ -100,6 +100,27 @@ public abstract class Value
      **/
     abstract void encode(ByteBuffer dst);
 
+    /**
+     * Determine the number of bytes of this value which are not
+     * encoded into the buffer when encoding with a {@link
+     * PayloadList}, but written directly from the value instead.
+     *
+     * @return number of bytes left out when encoding with a payload list
+     **/
+    int payloadBytes() { return 0; }
+
+    /**
+     * Encode this value into the given buffer, leaving large
+     * payloads out of the buffer and adding them to the given list
+     * instead.
+     *
+     * @param dst where to encode this value
+     * @param payloads where to add payloads left out of the buffer
+     **/
+    void encode(ByteBuffer dst, PayloadList payloads) {
+        encode(dst);
+    }
+
     /**
      * Decode a value from the given buffer. This method also acts as
      * a factory for value objects
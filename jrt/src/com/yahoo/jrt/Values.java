@@ -93,12 +93,37 @@ public class Values
         return bytes;
     }
 
+    /**
+     * Determine the number of bytes of this value sequence which are
+     * left out of the buffer when encoding with a {@link PayloadList}
+     *
+     * @return number of bytes left out when encoding with a payload list
+     **/
+    int payloadBytes() {
+        int bytes = 0;
+        for (int i = 0; i < values.size(); i++) {
+            bytes += get(i).payloadBytes();
+        }
+        return bytes;
+    }
+
     /**
      * Encode this value sequence into the given buffer
      *
      * @param dst where to encode this value sequence
      **/
     void encode(ByteBuffer dst) {
+        encode(dst, null);
+    }
+
+    /**
+     * Encode this value sequence into the given buffer, leaving large
+     * payloads out of the buffer if a payload list is given.
+     *
+     * @param dst where to encode this value sequence
+     * @param payloads where to add payloads left out of the buffer, may be null
+     **/
+    void encode(ByteBuffer dst, PayloadList payloads) {
         byte[] types = new byte[values.size()];
         for (int i = 0; i < types.length; i++) {
             types[i] = get(i).type();
@@ -106,7 +131,11 @@ public class Values
         dst.putInt(types.length);
         dst.put(types);
         for (int i = 0; i < types.length; i++) {
-            get(i).encode(dst);
+            if (payloads != null) {
+                get(i).encode(dst, payloads);
+            } else {
+                get(i).encode(dst);
+            }
         }
     }
 
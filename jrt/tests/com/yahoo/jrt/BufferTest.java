@@ -262,4 +262,28 @@ public class BufferTest extends junit.framework.TestCase {
             assertEquals(50, b.get());
         }
     }
+
+    public void testPooledBuffer() {
+        BufferPool pool = new BufferPool(1024 * 1024);
+        Buffer     buf  = new Buffer(5000, pool);
+        ByteBuffer b    = buf.getWritable(10);
+        assertTrue(b.isDirect());
+        assertEquals(8192, b.capacity());
+        b.put(new byte[8000]);
+
+        b = buf.getWritable(4000);
+        assertEquals(16384, b.capacity());
+        assertEquals(8192, pool.pooledBytes());
+        b.put(new byte[4000]);
+        assertEquals(12000, buf.bytes());
+        assertFalse(buf.shrink(12000));
+
+        buf.release();
+        assertEquals(0, buf.bytes());
+        assertEquals(8192 + 16384, pool.pooledBytes());
+
+        Buffer other = new Buffer(8000, pool);
+        assertEquals(8192, other.getWritable(1).capacity());
+        assertEquals(16384, pool.pooledBytes());
+    }
 }
@@ -1,6 +1,9 @@
 // Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.jrt;
 
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
 
 public class EchoTest extends junit.framework.TestCase {
 
@@ -83,4 +86,36 @@ public class EchoTest extends junit.framework.TestCase {
         assertTrue(Test.equals(req.returnValues(), refValues));
         assertTrue(Test.equals(req.parameters(), refValues));
     }
+
+    public void testLargeWrappedData() {
+        echoWrappedData(1024 * 1024, 3);
+    }
+
+    public void testMultiMegabyteWrappedData() {
+        echoWrappedData(8 * 1024 * 1024, 2);
+        echoWrappedData(32 * 1024 * 1024, 2);
+    }
+
+    private void echoWrappedData(int size, int times) {
+        server.addMethod(new Method("echo_data", "x", "x", this, "rpc_echo_data"));
+        byte[] data = new byte[size];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte)i;
+        }
+        ByteBuffer buf = ByteBuffer.allocateDirect(data.length);
+        buf.put(data);
+        buf.flip();
+        for (int i = 0; i < times; i++) {
+            Request req = new Request("echo_data");
+            req.parameters().add(DataValue.wrap(buf));
+            target.invokeSync(req, 60.0);
+            assertFalse(req.errorMessage(), req.isError());
+            assertTrue(req.checkReturnTypes("x"));
+            assertTrue(Arrays.equals(data, req.returnValues().get(0).asData()));
+        }
+    }
+
+    public void rpc_echo_data(Request req) {
+        req.returnValues().add(DataValue.wrap(ByteBuffer.wrap(req.parameters().get(0).asData())));
+    }
 }
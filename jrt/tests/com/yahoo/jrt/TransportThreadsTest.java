@@ -0,0 +1,124 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.jrt;
+
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+public class TransportThreadsTest extends junit.framework.TestCase {
+
+    static final int NUM_THREADS = 4;
+    static final int NUM_TARGETS = 8;
+
+    Supervisor   server;
+    Acceptor     acceptor;
+    Supervisor   client;
+    List<Target> targets = new ArrayList<>();
+
+    public TransportThreadsTest(String name) {
+        super(name);
+    }
+
+    public void setUp() throws ListenFailedException {
+        server   = new Supervisor(new Transport(NUM_THREADS));
+        client   = new Supervisor(new Transport(NUM_THREADS));
+        acceptor = server.listen(new Spec(Test.PORT));
+        server.addMethod(new Method("inc", "i", "i", this, "rpc_inc"));
+        for (int i = 0; i < NUM_TARGETS; i++) {
+            targets.add(client.connect(new Spec("localhost", Test.PORT)));
+        }
+    }
+
+    public void tearDown() {
+        for (Target target : targets) {
+            target.close();
+        }
+        acceptor.shutdown().join();
+        client.transport().shutdown().join();
+        server.transport().shutdown().join();
+    }
+
+    public void rpc_inc(Request req) {
+        req.returnValues().add(new Int32Value(req.parameters().get(0).asInt32() + 1));
+    }
+
+    public void testThreads() {
+        assertEquals(NUM_THREADS, server.transport().getNumThreads());
+        assertEquals(1, new Transport().shutdown().getNumThreads());
+        try {
+            new Transport(0);
+            fail("expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {}
+    }
+
+    public void testInvokeSyncOnAllConnections() {
+        for (int i = 0; i < NUM_TARGETS; i++) {
+            Request req = new Request("inc");
+            req.parameters().add(new Int32Value(i));
+            targets.get(i).invokeSync(req, 5.0);
+            assertTrue(!req.isError());
+            assertEquals(i + 1, req.returnValues().get(0).asInt32());
+        }
+    }
+
+    public void testConcurrentInvocations() throws InterruptedException {
+        final int numRequests = 1000;
+        final AtomicInteger errors = new AtomicInteger(0);
+        List<Thread> threads = new ArrayList<>();
+        for (final Target target : targets) {
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < numRequests; i++) {
+                    Request req = new Request("inc");
+                    req.parameters().add(new Int32Value(i));
+                    target.invokeSync(req, 5.0);
+                    if (req.isError() || req.returnValues().get(0).asInt32() != i + 1) {
+                        errors.incrementAndGet();
+                    }
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(0, errors.get());
+    }
+
+    public void testTimeoutOnNonDefaultThread() {
+        server.addMethod(new Method("hang", "", "", this, "rpc_hang"));
+        for (Target target : targets) {
+            Request req = new Request("hang");
+            target.invokeSync(req, 0.1);
+            assertTrue(req.isError());
+            assertEquals(ErrorCode.TIMEOUT, req.errorCode());
+        }
+    }
+
+    public void rpc_hang(Request req) {
+        req.detach();
+    }
+
+    public void testAddAndRemoveMethod() {
+        Method method = new Method("dec", "i", "i", this, "rpc_dec");
+        server.addMethod(method);
+        Request req = new Request("dec");
+        req.parameters().add(new Int32Value(10));
+        targets.get(1).invokeSync(req, 5.0);
+        assertEquals(9, req.returnValues().get(0).asInt32());
+
+        server.removeMethod(method);
+        req = new Request("dec");
+        req.parameters().add(new Int32Value(10));
+        targets.get(2).invokeSync(req, 5.0);
+        assertEquals(ErrorCode.NO_SUCH_METHOD, req.errorCode());
+    }
+
+    public void rpc_dec(Request req) {
+        req.returnValues().add(new Int32Value(req.parameters().get(0).asInt32() - 1));
+    }
+
+}
@@ -258,6 +258,55 @@ public class ValuesTest extends junit.framework.TestCase {
         assertTrue(Arrays.equals(dst.get(0).asData(), val));
     }
 
+    public void testWrappedData() {
+        ByteBuffer data = ByteBuffer.allocateDirect(10);
+        data.put(new byte[] { 9, 9, 1, 2, 3, 4, 9, 9, 9, 9 });
+        data.position(2);
+        data.limit(6);
+        Values src = new Values();
+        src.add(DataValue.wrap(data));
+        checkSingleValue(src, Value.DATA, 4 + 1 + 4 + 4);
+        assertEquals(0, src.payloadBytes());
+
+        ByteBuffer buf = ByteBuffer.allocate(src.bytes());
+        src.encode(buf);
+        buf.flip();
+        Values dst = new Values();
+        dst.decode(buf);
+        assertTrue(Arrays.equals(dst.get(0).asData(), new byte[] { 1, 2, 3, 4 }));
+        assertEquals(2, data.position());
+    }
+
+    public void testLargeDataIsLeftOutWithPayloadList() {
+        byte[] val = new byte[PayloadList.MIN_PAYLOAD_SIZE];
+        Arrays.fill(val, (byte)7);
+        Values src = new Values();
+        src.add(new Int32Value(42));
+        src.add(new DataValue(val));
+        src.add(new Int32Value(43));
+        assertEquals(val.length, src.payloadBytes());
+
+        PayloadList payloads = new PayloadList();
+        ByteBuffer buf = ByteBuffer.allocate(src.bytes() - src.payloadBytes());
+        src.encode(buf, payloads);
+        assertEquals(0, buf.remaining());
+        assertEquals(1, payloads.size());
+        buf.flip();
+
+        ByteBuffer[] gather = payloads.gather(buf);
+        assertEquals(3, gather.length);
+        ByteBuffer joined = ByteBuffer.allocate(src.bytes());
+        for (ByteBuffer b : gather) {
+            joined.put(b);
+        }
+        joined.flip();
+        Values dst = new Values();
+        dst.decode(joined);
+        assertEquals(42, dst.get(0).asInt32());
+        assertTrue(Arrays.equals(dst.get(1).asData(), val));
+        assertEquals(43, dst.get(2).asInt32());
+    }
+
     public void testDataArray() {
         int byteSize = 4 + 1 + 4 + 4 * (4 + 4);
         Values src = new Values();
@@ -0,0 +1,87 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+
+import com.yahoo.jrt.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures request throughput of a jrt server and client pair using
+ * a single transport thread compared to the given number of
+ * transport threads.
+ **/
+public class TransportBenchmark {
+
+    public void rpc_echo(Request req) {
+	for (int i = 0; i < req.parameters().size(); i++) {
+	    req.returnValues().add(req.parameters().get(i));
+	}
+    }
+
+    private static double run(int threads, int connections, int payload, double seconds, int port) {
+	Supervisor server = new Supervisor(new Transport(threads));
+	Supervisor client = new Supervisor(new Transport(threads));
+	server.addMethod(new Method("echo", "*", "*", new TransportBenchmark(), "rpc_echo"));
+	Acceptor acceptor;
+	try {
+	    acceptor = server.listen(new Spec(port));
+	} catch (ListenFailedException e) {
+	    System.err.println("could not listen at port " + port);
+	    System.exit(1);
+	    return 0;
+	}
+	final byte[] data = new byte[payload];
+	final AtomicLong completed = new AtomicLong(0);
+	final long endTime = System.currentTimeMillis() + (long)(seconds * 1000);
+	List<Thread> workers = new ArrayList<>();
+	List<Target> targets = new ArrayList<>();
+	for (int i = 0; i < connections; i++) {
+	    final Target target = client.connect(new Spec("localhost", port));
+	    targets.add(target);
+	    workers.add(new Thread(() -> {
+		while (System.currentTimeMillis() < endTime) {
+		    Request req = new Request("echo");
+		    req.parameters().add(new DataValue(data));
+		    target.invokeSync(req, 10.0);
+		    if (!req.isError()) {
+			completed.incrementAndGet();
+		    }
+		}
+	    }));
+	}
+	long startTime = System.currentTimeMillis();
+	for (Thread worker : workers) {
+	    worker.start();
+	}
+	for (Thread worker : workers) {
+	    try { worker.join(); } catch (InterruptedException e) {}
+	}
+	double elapsed = (System.currentTimeMillis() - startTime) / 1000.0;
+	for (Target target : targets) {
+	    target.close();
+	}
+	acceptor.shutdown().join();
+	client.transport().shutdown().join();
+	server.transport().shutdown().join();
+	return completed.get() / elapsed;
+    }
+
+    public static void main(String[] args) {
+	if (args.length != 5) {
+	    System.err.println("usage: TransportBenchmark <threads> <connections> <payload bytes> <seconds> <port>");
+	    System.exit(1);
+	}
+	int threads = Integer.parseInt(args[0]);
+	int connections = Integer.parseInt(args[1]);
+	int payload = Integer.parseInt(args[2]);
+	double seconds = Double.parseDouble(args[3]);
+	int port = Integer.parseInt(args[4]);
+
+	double single = run(1, connections, payload, seconds, port);
+	double multi = run(threads, connections, payload, seconds, port);
+	System.out.printf("connections: %d, payload: %d bytes%n", connections, payload);
+	System.out.printf("1 transport thread:   %.0f requests/s%n", single);
+	System.out.printf("%d transport threads: %.0f requests/s (%.2fx)%n", threads, multi, multi / single);
+    }
+}
@@ -16,6 +16,7 @@ import com.yahoo.logserver.filter.LogFilterManager;
 
 import com.yahoo.log.LogLevel;
 import com.yahoo.log.LogMessage;
+import com.yahoo.log.event.Event;
 import com.yahoo.logserver.handlers.AbstractLogHandler;
 
 
@@ -25,6 +26,12 @@ import com.yahoo.logserver.handlers.AbstractLogHandler;
  * is to make it easy to locate messages in a time interval, while
  * ensuring that no log file exceeds the maximum allowed size.
  * <p>
+ * Messages are collected in blocks per file.  If a write queue
+ * size is given, the blocks are written, and optionally compressed,
+ * by a separate {@link BlockWriter} thread, otherwise they are
+ * written by the thread handling the messages.
+ * </p>
+ * <p>
  * This class is not thread safe.
  * </p>
  * <p>
@@ -94,6 +101,25 @@ public class ArchiverHandler extends AbstractLogHandler {
      */
     private LogFilter filter = null;
 
+    /**
+     * Writes the blocks of log messages, or null if they are
+     * written by the thread handling the messages
+     */
+    private BlockWriter blockWriter = null;
+
+    /**
+     * The hour since epoch and slot of the last message, to avoid
+     * computing the slot of every message
+     */
+    private long lastHour = Long.MIN_VALUE;
+    private int lastSlot;
+
+    /**
+     * Minimum interval between reporting metrics for the block writer
+     */
+    private static final long METRICS_INTERVAL_MILLIS = 60 * 1000;
+    private long lastMetricsReport = 0;
+
     /**
      * Creates an ArchiverHandler which puts files under
      * the given root directory.
@@ -126,19 +152,45 @@ public class ArchiverHandler extends AbstractLogHandler {
         this.maxFileSize = maxFileSize;
     }
 
+    /**
+     * Creates an ArchiverHandler which puts files under the given
+     * root directory, and writes them in a separate thread.
+     *
+     * @param writeQueueSize The max number of blocks of messages waiting to
+     *                       be written.  If 0, the blocks are written by the
+     *                       thread handling the messages.
+     * @param compress       Whether to gzip the files written.  Only
+     *                       supported when the write queue size is positive.
+     */
+    public ArchiverHandler(String rootDir, int maxFileSize, int writeQueueSize, boolean compress) {
+        this(rootDir, maxFileSize);
+        if (writeQueueSize > 0) {
+            blockWriter = new BlockWriter("logarchive writer", writeQueueSize, compress);
+            blockWriter.start();
+        } else if (compress) {
+            throw new IllegalArgumentException("Compression requires a positive write queue size");
+        }
+    }
+
 
     /**
      * Return the appropriate LogWriter given a log message.
      */
     private synchronized LogWriter getLogWriter(LogMessage m) throws IOException {
-        Integer slot = dateHash(m.getTime());
+        // slots are whole hours in UTC, so messages in the same hour since epoch share slot
+        long hour = Math.floorDiv(m.getTime(), 3600 * 1000L);
+        if (hour != lastHour) {
+            lastSlot = dateHash(m.getTime());
+            lastHour = hour;
+        }
+        Integer slot = lastSlot;
         LogWriter logWriter = logWriterLRUCache.get(slot);
         if (logWriter != null) {
             return logWriter;
         }
 
         // invariant: LogWriter we sought was not in the cache
-        logWriter = new LogWriter(getPrefix(m), maxFileSize);
+        logWriter = new LogWriter(getPrefix(m), maxFileSize, blockWriter);
         logWriterLRUCache.put(slot, logWriter);
 
         return logWriter;
@@ -214,6 +266,33 @@ public class ArchiverHandler extends AbstractLogHandler {
                 log.log(Level.WARNING, "Flushing failed", e);
             }
         }
+        reportMetrics();
+    }
+
+    private void reportMetrics() {
+        if (blockWriter == null) return;
+        long now = System.currentTimeMillis();
+        if (now - lastMetricsReport < METRICS_INTERVAL_MILLIS) return;
+        lastMetricsReport = now;
+        Event.value("logarchive.write_queue_depth", blockWriter.getQueueDepth());
+        Event.count("logarchive.dropped_messages", blockWriter.getDroppedMessages());
+        Event.count("logarchive.written_bytes", blockWriter.getWrittenBytes());
+    }
+
+    /**
+     * @return Returns the number of blocks of messages waiting to be
+     * written, or 0 if they are written by the thread handling messages.
+     */
+    public int getWriteQueueDepth() {
+        return blockWriter == null ? 0 : blockWriter.getQueueDepth();
+    }
+
+    /**
+     * @return Returns the number of messages dropped because they could
+     * not be written fast enough, or because writing them failed.
+     */
+    public long getDroppedMessageCount() {
+        return blockWriter == null ? 0 : blockWriter.getDroppedMessages();
     }
 
     public synchronized void close() {
@@ -227,6 +306,9 @@ public class ArchiverHandler extends AbstractLogHandler {
             }
             it.remove();
         }
+        if (blockWriter != null) {
+            blockWriter.shutdown();
+        }
     }
 
     private void setRootDir(String rootDir) {
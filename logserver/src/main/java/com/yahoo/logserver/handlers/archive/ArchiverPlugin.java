@@ -20,6 +20,12 @@ public class ArchiverPlugin implements Plugin {
      */
     private static final String DEFAULT_MAXFILESIZE = "20971520";
 
+    /**
+     * Default max number of blocks of log messages waiting to be
+     * written to the archive.
+     */
+    private static final String DEFAULT_WRITEQUEUESIZE = "256";
+
     private final Server server = Server.getInstance();
     private static final Logger log = Logger.getLogger(ArchiverPlugin.class.getName());
     private ArchiverHandler archiver;
@@ -39,6 +45,11 @@ public class ArchiverPlugin implements Plugin {
      * maxfilesize
      * dir            The root of the logarchive, make sure this does
      * <b>not</b> end with a '/' character.
+     * writequeuesize The max number of 64k blocks waiting to be written,
+     * messages are dropped when it is full.  If 0, the
+     * files are written by the handler thread.
+     * compression    "gzip" to compress the archived files,
+     * or "none" (the default).
      */
     public void initPlugin(Config config) {
 
@@ -52,9 +63,11 @@ public class ArchiverPlugin implements Plugin {
         String rootDir = config.get("dir", DEFAULT_DIR);
         int maxFileSize = config.getInt("maxfilesize", DEFAULT_MAXFILESIZE);
         String threadName = config.get("thread", getPluginName());
+        int writeQueueSize = config.getInt("writequeuesize", DEFAULT_WRITEQUEUESIZE);
+        boolean compress = "gzip".equals(config.get("compression", "none"));
 
         // register log handler and flusher
-        archiver = new ArchiverHandler(rootDir, maxFileSize);
+        archiver = new ArchiverHandler(rootDir, maxFileSize, writeQueueSize, compress);
         server.registerLogHandler(archiver, threadName);
         server.registerFlusher(archiver);
     }
@@ -0,0 +1,225 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.logserver.handlers.archive;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPOutputStream;
+
+import com.yahoo.log.LogLevel;
+
+/**
+ * This thread writes blocks of formatted log messages to the files
+ * of the log archive, so that the handler thread of the archiver only
+ * has to format messages and fill blocks.  The blocks are written in
+ * the order they are queued, with one large sequential write each.
+ * <p>
+ * If compression is enabled, each block is written as a separate gzip
+ * member, which makes the file a valid gzip file after every block.
+ * </p>
+ * <p>
+ * The queue of blocks is bounded.  When the disk can not keep up
+ * and the queue is full, new blocks are dropped and the messages in
+ * them are counted as dropped.  Closing files is never dropped.
+ * </p>
+ *
+ * @author agent
+ */
+public class BlockWriter extends Thread {
+    private static final Logger log = Logger.getLogger(BlockWriter.class.getName());
+
+    private interface Task {
+        void run() throws IOException;
+    }
+
+    private static final Task shutdown = () -> {};
+
+    private final BlockingQueue<Task> queue;
+    private final boolean compress;
+    private final AtomicLong droppedMessages = new AtomicLong();
+    private final AtomicLong writtenMessages = new AtomicLong();
+    private final AtomicLong writtenBytes = new AtomicLong();
+    private boolean shutdownRequested = false;
+
+    /**
+     * @param name      Name of the thread
+     * @param queueSize The max number of blocks waiting to be written
+     * @param compress  Whether to gzip compress the blocks
+     */
+    public BlockWriter(String name, int queueSize, boolean compress) {
+        super(name);
+        setDaemon(true);
+        this.queue = new LinkedBlockingQueue<>(queueSize);
+        this.compress = compress;
+    }
+
+    /**
+     * @return Returns true if the blocks are compressed, which means
+     * that the files written should have a .gz suffix.
+     */
+    public boolean compresses() {
+        return compress;
+    }
+
+    /**
+     * Queue a block to be written to the given channel, or drop it
+     * if the queue is full.
+     *
+     * @param channel  The channel to write to
+     * @param block    The block, ready to be read.  Owned by this after the call
+     * @param messages The number of log messages in the block
+     */
+    public void write(FileChannel channel, ByteBuffer block, int messages) {
+        boolean queued = queue.offer(() -> {
+            try {
+                writeBlock(channel, block);
+                writtenMessages.addAndGet(messages);
+            } catch (IOException e) {
+                droppedMessages.addAndGet(messages);
+                throw e;
+            }
+        });
+        if (! queued) {
+            if (droppedMessages.getAndAdd(messages) == 0) {
+                log.log(LogLevel.WARNING, "Log archive writer queue is full, dropping log messages");
+            }
+        }
+    }
+
+    /**
+     * Queue closing of the channel after the blocks already queued for it
+     * are written.  Blocks until there is room in the queue.
+     */
+    public void close(FileChannel channel) {
+        put(channel::close);
+    }
+
+    /**
+     * Write all queued blocks and stop this thread.  Does nothing if the
+     * thread is already stopped.
+     */
+    public synchronized void shutdown() {
+        if (shutdownRequested) return;
+        shutdownRequested = true;
+        if (isAlive()) {
+            put(shutdown);
+        } else {
+            // never started, write the blocks here
+            processQueue();
+        }
+        boolean interrupted = false;
+        while (isAlive()) {
+            try {
+                join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return Returns the number of blocks waiting to be written.
+     */
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    /**
+     * @return Returns the number of log messages dropped because
+     * the queue was full or because writing them failed.
+     */
+    public long getDroppedMessages() {
+        return droppedMessages.get();
+    }
+
+    /**
+     * @return Returns the number of log messages written.
+     */
+    public long getWrittenMessages() {
+        return writtenMessages.get();
+    }
+
+    /**
+     * @return Returns the number of bytes written to disk, after compression.
+     */
+    public long getWrittenBytes() {
+        return writtenBytes.get();
+    }
+
+    public void run() {
+        try {
+            for (; ; ) {
+                Task task = queue.take();
+                if (task == shutdown) {
+                    processQueue();
+                    return;
+                }
+                runTask(task);
+            }
+        } catch (InterruptedException e) {
+            processQueue();
+        }
+    }
+
+    private void processQueue() {
+        for (Task task = queue.poll(); task != null; task = queue.poll()) {
+            if (task != shutdown) {
+                runTask(task);
+            }
+        }
+    }
+
+    private void runTask(Task task) {
+        try {
+            task.run();
+        } catch (IOException e) {
+            log.log(Level.WARNING, "Writing to log archive failed", e);
+        }
+    }
+
+    private void put(Task task) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                queue.put(task);
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void writeBlock(FileChannel channel, ByteBuffer block) throws IOException {
+        if (compress) {
+            block = compress(block);
+        }
+        writtenBytes.addAndGet(block.remaining());
+        while (block.hasRemaining()) {
+            channel.write(block);
+        }
+    }
+
+    private static ByteBuffer compress(ByteBuffer block) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(block.remaining() / 4);
+        try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+            out.write(block.array(), block.arrayOffset() + block.position(), block.remaining());
+        }
+        return ByteBuffer.wrap(compressed.toByteArray());
+    }
+
+    public String toString() {
+        return BlockWriter.class.getName() + ": " + getName();
+    }
+}
@@ -2,14 +2,22 @@
 package com.yahoo.logserver.handlers.archive;
 
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
 import java.util.logging.Logger;
 
 import com.yahoo.log.LogLevel;
 
 /**
+ * Writes log messages to a sequence of files with a common prefix,
+ * rotating to the next file when the current one is full.  Messages
+ * are collected in blocks which are written with one write each,
+ * either directly or by a {@link BlockWriter} thread.
+ * <p>
  * This class is not thread-safe.
  *
  * @author Bjorn Borud
@@ -23,13 +31,26 @@ public class LogWriter extends Writer {
     private final int resumeLimit = 95;
     private final int resumeLimitSize = (maxSize * resumeLimit / 100);
     private File currentFile;
-    private Writer writer;
+    private FileChannel channel;
     private final String prefix;
 
+    /** Size of the blocks of messages written to disk */
+    static final int BLOCK_SIZE = 64 * 1024;
+    private ByteBuffer block = ByteBuffer.allocate(BLOCK_SIZE);
+    private int messagesInBlock = 0;
+
+    /** Writes the blocks, or null to write them in the calling thread */
+    private final BlockWriter blockWriter;
+
     public LogWriter(String prefix, int maxSize) throws IOException {
+        this(prefix, maxSize, null);
+    }
+
+    public LogWriter(String prefix, int maxSize, BlockWriter blockWriter) throws IOException {
         this.prefix = prefix;
         this.maxSize = maxSize;
-        writer = nextWriter();
+        this.blockWriter = blockWriter;
+        channel = nextChannel();
     }
 
     /**
@@ -41,12 +62,13 @@ public class LogWriter extends Writer {
      * <LI> when we have filled the file and want to rotate it
      * </UL>
      */
-    private Writer nextWriter() throws IOException {
+    private FileChannel nextChannel() throws IOException {
 
-        if (writer != null) {
-            writer.close();
+        if (channel != null) {
+            closeChannel();
         }
 
+        boolean compress = blockWriter != null && blockWriter.compresses();
         int maxAttempts = 1000;
         while (maxAttempts-- > 0) {
             String name = prefix + "-" + generation++;
@@ -66,27 +88,35 @@ public class LogWriter extends Writer {
 
             // if file does not exist we have a winner
             if (! f.exists()) {
-                log.log(LogLevel.DEBUG, "nextWriter, new file: " + name);
+                if (compress) {
+                    f = new File(name + ".gz");
+                }
+                log.log(LogLevel.DEBUG, "nextChannel, new file: " + f.getPath());
                 currentFile = f;
                 bytesWritten = 0;
-                return new FileWriter(f, true);
+                return open(f);
+            }
+
+            // compressed blocks can not be appended to an uncompressed file
+            if (compress) {
+                continue;
             }
 
             // just skip over directories for now
             if (! f.isFile()) {
-                log.fine("nextWriter, " + name + " is a directory, skipping");
+                log.fine("nextChannel, " + name + " is a directory, skipping");
                 continue;
             }
 
             // if the size is < resumeSizeLimit then we open it
             if (f.length() < resumeLimitSize) {
-                log.fine("nextWriter, resuming " + name + ", length was " + f.length());
+                log.fine("nextChannel, resuming " + name + ", length was " + f.length());
                 currentFile = f;
                 bytesWritten = f.length();
-                return new FileWriter(f, true);
+                return open(f);
             } else {
 
-                log.fine("nextWriter, not resuming " + name
+                log.fine("nextChannel, not resuming " + name
                                  + " because it is bigger than "
                                  + resumeLimit
                                  + " percent of max");
@@ -96,6 +126,13 @@ public class LogWriter extends Writer {
         throw new RuntimeException("Unable to create next log file");
     }
 
+    private static FileChannel open(File f) throws IOException {
+        return FileChannel.open(f.toPath(),
+                                StandardOpenOption.CREATE,
+                                StandardOpenOption.WRITE,
+                                StandardOpenOption.APPEND);
+    }
+
     /**
      * Note that this method should not be used directly since
      * that would circumvent rotation when it grows past its
@@ -110,33 +147,79 @@ public class LogWriter extends Writer {
     }
 
     public void write(String str) throws IOException {
-        if (writer == null) {
-            writer = nextWriter();
+        if (channel == null) {
+            channel = nextChannel();
         }
 
-        bytesWritten += str.length();
-        writer.write(str, 0, str.length());
+        byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+        bytesWritten += bytes.length;
+        if (bytes.length > block.remaining()) {
+            writeBlock();
+        }
+        if (bytes.length > block.remaining()) {
+            // larger than a block, write it by itself
+            writeBlock(ByteBuffer.wrap(bytes), 1);
+        } else {
+            block.put(bytes);
+            messagesInBlock++;
+        }
 
         if (bytesWritten >= maxSize) {
             log.fine("logfile '"
                              + currentFile.getAbsolutePath()
                              + "' full, rotating");
-            writer = nextWriter();
+            channel = nextChannel();
         }
     }
 
+    private void writeBlock() throws IOException {
+        if (block.position() == 0) {
+            return;
+        }
+        block.flip();
+        writeBlock(block, messagesInBlock);
+        messagesInBlock = 0;
+        if (blockWriter != null) {
+            // the block writer owns the block until it is written
+            block = ByteBuffer.allocate(BLOCK_SIZE);
+        } else {
+            block.clear();
+        }
+    }
+
+    private void writeBlock(ByteBuffer buffer, int messages) throws IOException {
+        if (blockWriter != null) {
+            blockWriter.write(channel, buffer, messages);
+        } else {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    private void closeChannel() throws IOException {
+        writeBlock();
+        if (blockWriter != null) {
+            blockWriter.close(channel);
+        } else {
+            channel.close();
+        }
+        channel = null;
+    }
 
     public void flush() throws IOException {
-        if (writer != null) {
-            writer.flush();
+        if (channel != null) {
+            writeBlock();
         }
     }
 
     public void close() throws IOException {
-        flush();
-        if (writer != null) {
-            writer.close();
-            writer = null;
+        if (channel != null) {
+            closeChannel();
         }
     }
+
+    public String toString() {
+        return LogWriter.class.getName() + ": " + (currentFile == null ? prefix : currentFile.getAbsolutePath());
+    }
 }
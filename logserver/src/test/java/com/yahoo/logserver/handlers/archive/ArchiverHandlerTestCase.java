@@ -3,12 +3,16 @@ package com.yahoo.logserver.handlers.archive;
 
 import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
 
 import com.yahoo.io.IOUtils;
 import com.yahoo.log.InvalidLogFormatException;
@@ -208,6 +212,57 @@ public class ArchiverHandlerTestCase {
         }
     }
 
+    /**
+     * Log messages through the block writer thread and make sure
+     * they are all written, compressed, when the handler is closed.
+     */
+    @Test
+    public void testCompressedLoggingInWriterThread() throws IOException {
+        File tmpDir = temporaryFolder.newFolder();
+        ArchiverHandler a = new ArchiverHandler(tmpDir.getAbsolutePath(), 1024 * 1024, 16, true);
+        for (int i = 0; i < 1000; i++) {
+            a.handle(msg[1]);
+        }
+        a.handle(msg[2]);
+        a.close();
+        assertEquals(0, a.getDroppedMessageCount());
+        assertEquals(0, a.getWriteQueueDepth());
+
+        File first = new File(a.getPrefix(msg[1]) + "-0.gz");
+        assertTrue(first.exists());
+        assertFalse(new File(a.getPrefix(msg[1]) + "-0").exists());
+        int msgCount = 0;
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(new GZIPInputStream(new FileInputStream(first))))) {
+            for (String line = br.readLine(); line != null; line = br.readLine()) {
+                assertEquals(msg[1].toString(), line + "\n");
+                msgCount++;
+            }
+        }
+        assertEquals(1000, msgCount);
+        assertTrue(new File(a.getPrefix(msg[2]) + "-0.gz").exists());
+    }
+
+    /**
+     * Messages larger than a block are written by themselves, in order.
+     */
+    @Test
+    public void testMessagesLargerThanABlock() throws IOException {
+        File tmpDir = temporaryFolder.newFolder();
+        LogWriter writer = new LogWriter(tmpDir.getAbsolutePath() + "/large", Integer.MAX_VALUE);
+        char[] large = new char[LogWriter.BLOCK_SIZE * 2];
+        Arrays.fill(large, 'x');
+        writer.write("first\n");
+        writer.write(new String(large) + "\n");
+        writer.write("last\n");
+        writer.close();
+        try (BufferedReader br = new BufferedReader(new FileReader(new File(tmpDir, "large-0")))) {
+            assertEquals("first", br.readLine());
+            assertEquals(large.length, br.readLine().length());
+            assertEquals("last", br.readLine());
+            assertNull(br.readLine());
+        }
+    }
+
     @Test
     public void testCacheEldestEntry() throws IOException {
         LogWriterLRUCache cache = new LogWriterLRUCache(5, (float) 0.75);
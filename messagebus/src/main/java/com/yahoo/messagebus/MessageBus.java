@@ -5,12 +5,14 @@ import com.yahoo.concurrent.CopyOnWriteHashMap;
 import com.yahoo.concurrent.SystemTimer;
 import com.yahoo.log.LogLevel;
 import com.yahoo.messagebus.metrics.MessageBusMetricSet;
+import com.yahoo.messagebus.metrics.ValueMetric;
 import com.yahoo.messagebus.network.Network;
 import com.yahoo.messagebus.network.NetworkOwner;
 import com.yahoo.messagebus.routing.*;
 import com.yahoo.text.Utf8Array;
 import com.yahoo.text.Utf8String;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -139,7 +141,12 @@ public class MessageBus implements ConfigHandler, NetworkOwner, MessageHandler,
             throw new IllegalStateException("Network failed to become ready in time.");
 
         // Start messenger.
-        msn = new Messenger();
+        msn = new Messenger(params.getNumMessengerLanes());
+        List<ValueMetric<Integer>> laneQueueSizes = new ArrayList<>(msn.getNumLanes());
+        for (int i = 0; i < msn.getNumLanes(); ++i) {
+            laneQueueSizes.add(new ValueMetric<>("lane" + i + ".queuesize", 0, metrics.messenger));
+        }
+        msn.addRecurrentTask(new QueueSizeTask(msn, laneQueueSizes));
 
         RetryPolicy retryPolicy = params.getRetryPolicy();
         if (retryPolicy != null) {
@@ -629,5 +636,30 @@ public class MessageBus implements ConfigHandler, NetworkOwner, MessageHandler,
         }
 
     }
-}
 
+    /**
+     * <p>Implements a task for sampling the queue size of each messenger lane
+     * into the messenger metrics.</p>
+     */
+    private static class QueueSizeTask implements Messenger.Task {
+
+        final Messenger msn;
+        final List<ValueMetric<Integer>> queueSizes;
+
+        QueueSizeTask(Messenger msn, List<ValueMetric<Integer>> queueSizes) {
+            this.msn = msn;
+            this.queueSizes = queueSizes;
+        }
+
+        public void destroy() {
+            // empty
+        }
+
+        public void run() {
+            for (int i = 0; i < queueSizes.size(); ++i) {
+                queueSizes.get(i).set(msn.getQueueSize(i));
+            }
+        }
+
+    }
+}
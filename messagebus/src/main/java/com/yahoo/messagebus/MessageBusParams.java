@@ -19,6 +19,7 @@ public class MessageBusParams {
     private RetryPolicy retryPolicy;
     private int maxPendingCount;
     private int maxPendingSize;
+    private int numMessengerLanes;
 
     /**
      * Constructs a new instance of this parameter object with default values for all members.
@@ -27,6 +28,7 @@ public class MessageBusParams {
         retryPolicy = new RetryTransientErrorsPolicy();
         maxPendingCount = 1024;
         maxPendingSize = 128 * 1024 * 1024;
+        numMessengerLanes = 1;
     }
 
     /**
@@ -39,6 +41,7 @@ public class MessageBusParams {
         retryPolicy = params.retryPolicy;
         maxPendingCount = params.maxPendingCount;
         maxPendingSize = params.maxPendingSize;
+        numMessengerLanes = params.numMessengerLanes;
     }
 
     /**
@@ -143,4 +146,25 @@ public class MessageBusParams {
         this.maxPendingSize = maxSize;
         return this;
     }
+
+    /**
+     * Returns the number of messenger lanes, which is the number of threads processing sends and replies.
+     *
+     * @return The number of lanes.
+     */
+    public int getNumMessengerLanes() {
+        return numMessengerLanes;
+    }
+
+    /**
+     * Sets the number of messenger lanes. Tasks are sharded across the lanes by message sequence id, or by handler
+     * for messages without one, so the order of sequenced messages is preserved with any number of lanes.
+     *
+     * @param numLanes The number of lanes to use, at least 1.
+     * @return This, to allow chaining.
+     */
+    public MessageBusParams setNumMessengerLanes(int numLanes) {
+        this.numMessengerLanes = numLanes;
+        return this;
+    }
 }
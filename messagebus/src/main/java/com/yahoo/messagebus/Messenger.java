@@ -3,38 +3,63 @@ package com.yahoo.messagebus;
 
 import com.yahoo.log.LogLevel;
 
-import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
 import java.util.logging.Logger;
 
 /**
- * <p>This class implements a single thread that is able to process arbitrary
- * tasks. Tasks are enqueued using the synchronized {@link #enqueue(Task)}
- * method, and are run in the order they were enqueued.</p>
+ * <p>This class implements a set of threads, called lanes, that are able to
+ * process arbitrary tasks. Tasks are enqueued using the thread-safe {@link
+ * #enqueue(Task)} and {@link #enqueue(Task, long)} methods. Each task is
+ * assigned to a lane by its shard key, and the tasks of a lane are run in the
+ * order they were enqueued. Tasks enqueued without a shard key all go to the
+ * first lane.</p>
+ *
+ * <p>Messages are sharded by their sequence id when they have one, so that the
+ * ordering guarantees of sequenced messages are kept, and otherwise by their
+ * handler. Replies are sharded by their handler. With a single lane, which is
+ * the default, all tasks are run in the order they were enqueued.</p>
  *
  * @author <a href="mailto:simon@yahoo-inc.com">Simon Thoresen</a>
  */
-public class Messenger implements Runnable {
+public class Messenger {
 
     private static final Logger log = Logger.getLogger(Messenger.class.getName());
     private final AtomicBoolean destroyed = new AtomicBoolean(false);
     private final List<Task> children = new ArrayList<>();
-    private final Queue<Task> queue = new ArrayDeque<>();
-    private final Thread thread = new Thread(this, "Messenger");
+    private final Lane[] lanes;
 
     public Messenger() {
-        thread.setDaemon(true);
+        this(1);
+    }
+
+    /**
+     * <p>Constructs a messenger with the given number of lanes.</p>
+     *
+     * @param numLanes The number of threads to process tasks in.
+     */
+    public Messenger(int numLanes) {
+        if (numLanes < 1) {
+            throw new IllegalArgumentException("A messenger needs at least one lane, got " + numLanes + ".");
+        }
+        lanes = new Lane[numLanes];
+        for (int i = 0; i < numLanes; ++i) {
+            lanes[i] = new Lane(numLanes == 1 ? "Messenger" : "Messenger-" + i, i == 0);
+        }
     }
 
     /**
      * <p>Adds a recurrent task to this that is to be run for every iteration of
-     * the main loop. This task must be very light-weight as to not block the
-     * messenger. Note that this method is NOT thread-safe, so it should NOT be
-     * used after calling {@link #start()}.</p>
+     * the main loop of the first lane. This task must be very light-weight as to
+     * not block the messenger. Note that this method is NOT thread-safe, so it
+     * should NOT be used after calling {@link #start()}.</p>
      *
      * @param task The task to add.
      */
@@ -43,13 +68,35 @@ public class Messenger implements Runnable {
     }
 
     /**
-     * <p>Starts the internal thread. This must be done AFTER all recurrent
+     * <p>Starts the internal threads. This must be done AFTER all recurrent
      * tasks have been added.</p>
      *
      * @see #addRecurrentTask(Task)
      */
     public void start() {
-        thread.start();
+        for (final Lane lane : lanes) {
+            lane.thread.start();
+        }
+    }
+
+    /**
+     * <p>Returns the number of lanes of this messenger.</p>
+     *
+     * @return The number of lanes.
+     */
+    public int getNumLanes() {
+        return lanes.length;
+    }
+
+    /**
+     * <p>Returns the number of tasks currently waiting to be run by the given
+     * lane.</p>
+     *
+     * @param lane The index of the lane.
+     * @return The number of queued tasks.
+     */
+    public int getQueueSize(final int lane) {
+        return lanes[lane].size.get();
     }
 
     /**
@@ -61,7 +108,8 @@ public class Messenger implements Runnable {
      * @param handler The handler to send to.
      */
     public void deliverMessage(final Message msg, final MessageHandler handler) {
-        enqueue(new MessageTask(msg, handler));
+        final long shardKey = msg.hasSequenceId() ? msg.getSequenceId() : System.identityHashCode(handler);
+        enqueue(new MessageTask(msg, handler), shardKey);
     }
 
     /**
@@ -73,40 +121,68 @@ public class Messenger implements Runnable {
      * @param handler The handler to return to.
      */
     public void deliverReply(final Reply reply, final ReplyHandler handler) {
-        enqueue(new ReplyTask(reply, handler));
+        enqueue(new ReplyTask(reply, handler), System.identityHashCode(handler));
     }
 
     /**
-     * <p>Enqueues the given task in the list of tasks that this worker is to
-     * process. If this thread has been destroyed previously, this method
-     * invokes {@link Messenger.Task#destroy()}.</p>
+     * <p>Enqueues the given task in the list of tasks that the first lane is
+     * to process. If this has been destroyed previously, this method invokes
+     * {@link Messenger.Task#destroy()}.</p>
      *
      * @param task The task to enqueue.
      */
     public void enqueue(final Task task) {
+        enqueue(task, 0);
+    }
+
+    /**
+     * <p>Enqueues the given task in the list of tasks that the lane selected by
+     * the given shard key is to process. Tasks with equal shard keys are run in
+     * the order they were enqueued. If this has been destroyed previously, this
+     * method invokes {@link Messenger.Task#destroy()}.</p>
+     *
+     * @param task     The task to enqueue.
+     * @param shardKey The key selecting the lane to run the task in.
+     */
+    public void enqueue(final Task task, final long shardKey) {
         if (destroyed.get()) {
             task.destroy();
             return;
         }
-        synchronized (this) {
-            queue.offer(task);
-            if (queue.size() == 1) {
-                notify();
-            }
+        lanes[laneOf(shardKey)].offer(task);
+    }
+
+    private int laneOf(final long shardKey) {
+        if (lanes.length == 1) {
+            return 0;
         }
+        return Math.floorMod((int)(shardKey ^ (shardKey >>> 32)), lanes.length);
     }
 
     /**
-     * <p>Handshakes with the internal thread. If this method is called using
-     * the messenger thread, this will deadlock.</p>
+     * <p>Handshakes with the internal threads. If this method is called using
+     * one of the messenger threads, it returns immediately, as waiting for the
+     * other lanes could deadlock.</p>
      */
     public void sync() {
-        if (Thread.currentThread() == thread) {
-            return; // no need to wait for self
+        for (final Lane lane : lanes) {
+            if (Thread.currentThread() == lane.thread) {
+                return; // no need to wait for self
+            }
+        }
+        final List<SyncTask> tasks = new ArrayList<>(lanes.length);
+        for (final Lane lane : lanes) {
+            final SyncTask task = new SyncTask();
+            if (destroyed.get()) {
+                task.destroy();
+            } else {
+                lane.offer(task);
+            }
+            tasks.add(task);
+        }
+        for (final SyncTask task : tasks) {
+            task.await();
         }
-        final SyncTask task = new SyncTask();
-        enqueue(task);
-        task.await();
     }
 
     /**
@@ -119,15 +195,14 @@ public class Messenger implements Runnable {
      */
     public boolean destroy() {
         boolean done = false;
-        enqueue(Terminate.INSTANCE);
+        for (final Lane lane : lanes) {
+            lane.offer(Terminate.INSTANCE);
+        }
         if (!destroyed.getAndSet(true)) {
             try {
-                synchronized (this) {
-                    while (!queue.isEmpty()) {
-                        wait();
-                    }
+                for (final Lane lane : lanes) {
+                    lane.thread.join();
                 }
-                thread.join();
             } catch (final InterruptedException e) {
                 // ignore
             }
@@ -136,52 +211,78 @@ public class Messenger implements Runnable {
         return done;
     }
 
-    @Override
-    public void run() {
-        while (true) {
-            Task task = null;
-            synchronized (this) {
-                if (queue.isEmpty()) {
+    /**
+     * <p>A single thread running the tasks enqueued to it in order. Any thread
+     * may enqueue tasks, but only the lane thread dequeues them, so the queue
+     * needs no locking.</p>
+     */
+    private class Lane implements Runnable {
+
+        final Queue<Task> queue = new ConcurrentLinkedQueue<>();
+        final AtomicInteger size = new AtomicInteger(0);
+        final Thread thread;
+        final boolean runChildren;
+
+        Lane(final String name, final boolean runChildren) {
+            this.thread = new Thread(this, name);
+            this.runChildren = runChildren;
+            thread.setDaemon(true);
+        }
+
+        void offer(final Task task) {
+            queue.offer(task);
+            if (size.getAndIncrement() == 0) {
+                LockSupport.unpark(thread);
+            }
+        }
+
+        Task poll() {
+            final Task task = queue.poll();
+            if (task != null) {
+                size.decrementAndGet();
+            }
+            return task;
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                Task task = poll();
+                if (task == null) {
+                    LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(100));
+                    task = poll();
+                }
+                if (task == Terminate.INSTANCE) {
+                    break;
+                }
+                if (task != null) {
+                    try {
+                        task.run();
+                    } catch (final Exception e) {
+                        log.log(LogLevel.ERROR, "An exception was thrown while running " + task.getClass().getName(), e);
+                    }
                     try {
-                        wait(100);
-                    } catch (final InterruptedException e) {
-                        continue;
+                        task.destroy();
+                    } catch (final Exception e) {
+                        log.warning("An exception was thrown while destroying " + task.getClass().getName() + ": " +
+                                    e.toString());
+                        log.warning("Someone, somewhere might have to wait indefinetly for something.");
                     }
                 }
-                if (queue.size() > 0) {
-                    task = queue.poll();
+                if (runChildren) {
+                    for (final Task child : children) {
+                        child.run();
+                    }
                 }
             }
-            if (task == Terminate.INSTANCE) {
-                break;
-            }
-            if (task != null) {
-                try {
-                    task.run();
-                } catch (final Exception e) {
-                    log.log(LogLevel.ERROR, "An exception was thrown while running " + task.getClass().getName(), e);
-                }
-                try {
-                    task.destroy();
-                } catch (final Exception e) {
-                    log.warning("An exception was thrown while destroying " + task.getClass().getName() + ": " +
-                                e.toString());
-                    log.warning("Someone, somewhere might have to wait indefinetly for something.");
+            if (runChildren) {
+                for (final Task child : children) {
+                    child.destroy();
                 }
             }
-            for (final Task child : children) {
-                child.run();
-            }
-        }
-        for (final Task child : children) {
-            child.destroy();
-        }
-        synchronized (this) {
-            while (!queue.isEmpty()) {
-                final Task task = queue.poll();
+            for (Task task = poll(); task != null; task = poll()) {
                 task.destroy();
             }
-            notify();
         }
     }
 
@@ -3,9 +3,12 @@ package com.yahoo.messagebus;
 
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -95,6 +98,65 @@ public class MessengerTestCase {
         assertTrue(tryMessenger(msn));
     }
 
+    @Test
+    public void requireThatTasksWithEqualShardKeysRunInOrder() throws InterruptedException {
+        Messenger msn = new Messenger(4);
+        assertEquals(4, msn.getNumLanes());
+        msn.start();
+
+        final int numKeys = 16;
+        final int numTasks = 1000;
+        List<List<Integer>> results = new ArrayList<>();
+        for (int key = 0; key < numKeys; ++key) {
+            results.add(new ArrayList<>());
+        }
+        for (int i = 0; i < numTasks; ++i) {
+            for (int key = 0; key < numKeys; ++key) {
+                final List<Integer> result = results.get(key);
+                final int value = i;
+                msn.enqueue(new Messenger.Task() {
+
+                    @Override
+                    public void run() {
+                        result.add(value);
+                    }
+
+                    @Override
+                    public void destroy() {
+
+                    }
+                }, key);
+            }
+        }
+        msn.sync();
+        for (List<Integer> result : results) {
+            assertEquals(numTasks, result.size());
+            for (int i = 0; i < numTasks; ++i) {
+                assertEquals(i, result.get(i).intValue());
+            }
+        }
+        for (int lane = 0; lane < msn.getNumLanes(); ++lane) {
+            assertEquals(0, msn.getQueueSize(lane));
+        }
+        assertTrue(msn.destroy());
+    }
+
+    @Test
+    public void requireThatTasksAreDestroyedAfterDestroy() throws InterruptedException {
+        Messenger msn = new Messenger(2);
+        msn.start();
+        assertTrue(msn.destroy());
+        MyTask task = new MyTask();
+        msn.enqueue(task, 1);
+        assertTrue(task.destroyLatch.await(60, TimeUnit.SECONDS));
+        assertEquals(1, task.runLatch.getCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void requireThatMessengerNeedsALane() {
+        new Messenger(0);
+    }
+
     private static boolean tryMessenger(Messenger msn) {
         MyTask task = new MyTask();
         msn.enqueue(task);
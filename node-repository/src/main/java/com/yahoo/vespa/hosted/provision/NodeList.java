@@ -23,6 +23,7 @@ public class NodeList {
 
     private final List<Node> nodes;
 
+    /** Creates a list of the given nodes. This does not copy the given list if it is an immutable list */
     public NodeList(List<Node> nodes) {
         this.nodes = ImmutableList.copyOf(nodes);
     }
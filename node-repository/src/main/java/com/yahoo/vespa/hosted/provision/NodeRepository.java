@@ -162,6 +162,15 @@ public class NodeRepository extends AbstractComponent {
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Returns a list of all nodes. This is a snapshot which is not copied when no nodes have changed
+     * since the last call.
+     */
+    public NodeList list() { return new NodeList(db.getAllNodes()); }
+
+    /** Returns statistics of the node reads done by this */
+    public CuratorDatabaseClient.ReadStatistics readStatistics() { return db.readStatistics(); }
+
     public List<Node> getNodes(ApplicationId id, Node.State ... inState) { return db.getNodes(id, inState); }
     public List<Node> getInactive() { return db.getNodes(Node.State.inactive); }
     public List<Node> getFailed() { return db.getNodes(Node.State.failed); }
@@ -227,7 +236,7 @@ public class NodeRepository extends AbstractComponent {
      * @return List of node ACLs
      */
     public List<NodeAcl> getNodeAcls(Node node, boolean children) {
-        NodeList candidates = new NodeList(getNodes());
+        NodeList candidates = list();
         if (children) {
             return candidates.childNodes(node).asList().stream()
                     .map(childNode -> getNodeAcl(childNode, candidates))
@@ -6,6 +6,7 @@ import com.yahoo.config.provision.NodeType;
 import com.yahoo.jdisc.Metric;
 import com.yahoo.vespa.hosted.provision.Node;
 import com.yahoo.vespa.hosted.provision.NodeRepository;
+import com.yahoo.vespa.hosted.provision.persistence.CuratorDatabaseClient;
 import com.yahoo.vespa.hosted.provision.provisioning.DockerHostCapacity;
 
 import java.time.Duration;
@@ -21,10 +22,12 @@ public class MetricsReporter extends Maintainer {
 
     private final Metric metric;
     private final HashMap<Flavor, Metric.Context> contextMap = new HashMap<>();
+    private CuratorDatabaseClient.ReadStatistics lastReadStatistics;
 
     public MetricsReporter(NodeRepository nodeRepository, Metric metric, Duration interval, JobControl jobControl) {
         super(nodeRepository, interval, jobControl);
         this.metric = metric;
+        this.lastReadStatistics = nodeRepository.readStatistics();
     }
 
     @Override
@@ -57,5 +60,19 @@ public class MetricsReporter extends Maintainer {
             metric.set("hostedVespa.docker.idealHeadroomFlavor", flavor.getIdealHeadroom(), context);
             metric.set("hostedVespa.docker.hostsAvailableFlavor", capacity.getNofHostsAvailableFor(flavor), context);
         }
+
+        updateReadMetrics();
+    }
+
+    /** Reports node reads since the last run */
+    private void updateReadMetrics() {
+        CuratorDatabaseClient.ReadStatistics statistics = nodeRepository().readStatistics();
+        long calls = statistics.getNodesCalls() - lastReadStatistics.getNodesCalls();
+        long millis = statistics.getNodesMillis() - lastReadStatistics.getNodesMillis();
+        metric.set("hostedVespa.nodeRepository.getNodesCalls", calls, null);
+        metric.set("hostedVespa.nodeRepository.getNodesAverageMillis", calls == 0 ? 0 : (double) millis / calls, null);
+        metric.set("hostedVespa.nodeRepository.snapshotHits", statistics.snapshotHits() - lastReadStatistics.snapshotHits(), null);
+        metric.set("hostedVespa.nodeRepository.deserializedNodes", statistics.deserializedNodes() - lastReadStatistics.deserializedNodes(), null);
+        lastReadStatistics = statistics;
     }
 }
@@ -14,6 +14,7 @@ import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.OptionalLong;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -94,6 +95,16 @@ public class CuratorDatabase {
 
     public Optional<byte[]> getData(Path path) { return getCache().getData(path); }
 
+    /**
+     * Returns the generation of the content currently returned by reads, or empty if reads are not cached.
+     * Content read from this while it returns the same generation does not change, so values computed
+     * from such content may be reused as long as the generation is unchanged.
+     */
+    public OptionalLong cacheGeneration() {
+        if ( ! useCache) return OptionalLong.empty();
+        return OptionalLong.of(getCache().generation());
+    }
+
     private CuratorDatabaseCache getCache() {
         CuratorDatabaseCache cache = this.cache.get();
         long currentCuratorGeneration = changeGenerationCounter.get();
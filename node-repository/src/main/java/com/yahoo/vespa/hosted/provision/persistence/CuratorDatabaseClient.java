@@ -1,6 +1,7 @@
 // Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.vespa.hosted.provision.persistence;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.util.concurrent.UncheckedTimeoutException;
 import com.yahoo.config.provision.ApplicationId;
 import com.yahoo.config.provision.ApplicationLockException;
@@ -23,12 +24,19 @@ import java.nio.charset.StandardCharsets;
 import java.time.Clock;
 import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.EnumMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.OptionalLong;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
@@ -59,6 +67,17 @@ public class CuratorDatabaseClient {
     
     private final Zone zone;
 
+    /** The last node read from each path, which is reused as long as the data at the path is unchanged */
+    private final Map<Path, ReadNode> readNodes = new ConcurrentHashMap<>();
+
+    /** All nodes, by state, as of the last read of all nodes from the cache of the curator database */
+    private final AtomicReference<NodeSnapshot> snapshot = new AtomicReference<>();
+
+    private final LongAdder getNodesCalls = new LongAdder();
+    private final LongAdder getNodesNanos = new LongAdder();
+    private final LongAdder snapshotHits = new LongAdder();
+    private final LongAdder deserializedNodes = new LongAdder();
+
     public CuratorDatabaseClient(NodeFlavors flavors, Curator curator, Clock clock, Zone zone) {
         this.nodeSerializer = new NodeSerializer(flavors);
         this.zone = zone;
@@ -81,12 +100,13 @@ public class CuratorDatabaseClient {
     public List<Node> addNodesInState(List<Node> nodes, Node.State expectedState) {
         NestedTransaction transaction = new NestedTransaction();
         CuratorTransaction curatorTransaction = curatorDatabase.newCuratorTransactionIn(transaction);
+        boolean binary = binaryNodeFormatEnabled();
         for (Node node : nodes) {
             if (node.state() != expectedState)
                 throw new IllegalArgumentException(node + " is not in the " + node.state() + " state");
 
             node = node.with(node.history().recordStateTransition(null, expectedState, Agent.system, clock.instant()));
-            curatorTransaction.add(CuratorOperations.create(toPath(node).getAbsolute(), nodeSerializer.toJson(node)));
+            curatorTransaction.add(CuratorOperations.create(toPath(node).getAbsolute(), toBytes(node, binary)));
         }
         transaction.commit();
 
@@ -186,6 +206,7 @@ public class CuratorDatabaseClient {
         List<Node> writtenNodes = new ArrayList<>(nodes.size());
 
         CuratorTransaction curatorTransaction = curatorDatabase.newCuratorTransactionIn(transaction);
+        boolean binary = binaryNodeFormatEnabled();
         for (Node node : nodes) {
             Node newNode = new Node(node.openStackId(), node.ipAddresses(), node.additionalIpAddresses(), node.hostname(),
                                     node.parentHostname(), node.flavor(),
@@ -195,7 +216,7 @@ public class CuratorDatabaseClient {
                                     node.history().recordStateTransition(node.state(), toState, agent, clock.instant()),
                                     node.type());
             curatorTransaction.add(CuratorOperations.delete(toPath(node).getAbsolute()))
-                              .add(CuratorOperations.create(toPath(toState, newNode.hostname()).getAbsolute(), nodeSerializer.toJson(newNode)));
+                              .add(CuratorOperations.create(toPath(toState, newNode.hostname()).getAbsolute(), toBytes(newNode, binary)));
             writtenNodes.add(newNode);
         }
 
@@ -229,16 +250,74 @@ public class CuratorDatabaseClient {
      * If no states are given this returns all nodes.
      */
     public List<Node> getNodes(Node.State ... states) {
-        List<Node> nodes = new ArrayList<>();
-        if (states.length == 0)
-            states = Node.State.values();
-        for (Node.State state : states) {
-            for (String hostname : curatorDatabase.getChildren(toPath(state))) {
-                Optional<Node> node = getNode(hostname, state);
-                if (node.isPresent()) nodes.add(node.get()); // node might disappear between getChildren and getNode
-            }
+        long startTime = System.nanoTime();
+        try {
+            if (states.length == 0)
+                states = Node.State.values();
+            Optional<NodeSnapshot> snapshot = getNodeSnapshot();
+            List<Node> nodes = new ArrayList<>();
+            for (Node.State state : states)
+                nodes.addAll(snapshot.isPresent() ? snapshot.get().nodesByState.get(state) : readNodes(state));
+            return nodes;
         }
-        return nodes;
+        finally {
+            getNodesCalls.increment();
+            getNodesNanos.add(System.nanoTime() - startTime);
+        }
+    }
+
+    /**
+     * Returns an immutable list of all nodes. When the curator database is cached, this is the same instance
+     * as long as no nodes are changed, such that it is cheap to call repeatedly.
+     */
+    public List<Node> getAllNodes() {
+        long startTime = System.nanoTime();
+        Optional<NodeSnapshot> snapshot = getNodeSnapshot();
+        if ( ! snapshot.isPresent()) return ImmutableList.copyOf(getNodes()); // counted by getNodes
+
+        getNodesCalls.increment();
+        getNodesNanos.add(System.nanoTime() - startTime);
+        return snapshot.get().all;
+    }
+
+    /**
+     * Returns a snapshot of all nodes at the current generation of the cache of the curator database,
+     * or empty if the curator database is not cached
+     */
+    private Optional<NodeSnapshot> getNodeSnapshot() {
+        OptionalLong generation = curatorDatabase.cacheGeneration();
+        if ( ! generation.isPresent()) return Optional.empty();
+
+        NodeSnapshot current = snapshot.get();
+        if (current != null && current.generation == generation.getAsLong()) {
+            snapshotHits.increment();
+            return Optional.of(current);
+        }
+
+        Map<Node.State, ImmutableList<Node>> nodesByState = new EnumMap<>(Node.State.class);
+        for (Node.State state : Node.State.values())
+            nodesByState.put(state, readNodes(state));
+
+        // The content read may be newer than the generation, but then the generation has changed
+        // and this snapshot will not be used
+        NodeSnapshot created = new NodeSnapshot(generation.getAsLong(), nodesByState);
+        snapshot.accumulateAndGet(created, (old, fresh) -> old == null || old.generation < fresh.generation ? fresh : old);
+        return Optional.of(created);
+    }
+
+    /** Reads all nodes in the given state */
+    private ImmutableList<Node> readNodes(Node.State state) {
+        ImmutableList.Builder<Node> nodes = ImmutableList.builder();
+        Set<Path> paths = new HashSet<>();
+        for (String hostname : curatorDatabase.getChildren(toPath(state))) {
+            Path path = toPath(state, hostname);
+            Optional<Node> node = readNode(state, path);
+            if (node.isPresent()) nodes.add(node.get()); // node might disappear between getChildren and getNode
+            paths.add(path);
+        }
+        Path statePath = toPath(state);
+        readNodes.keySet().removeIf(path -> path.getParentPath().equals(statePath) && ! paths.contains(path)); // forget removed nodes
+        return nodes.build();
     }
 
     /** 
@@ -259,13 +338,50 @@ public class CuratorDatabaseClient {
         if (states.length == 0)
             states = Node.State.values();
         for (Node.State state : states) {
-            Optional<byte[]> nodeData = curatorDatabase.getData(toPath(state, hostname));
-            if (nodeData.isPresent())
-                return nodeData.map((data) -> nodeSerializer.fromJson(state, data));
+            Optional<Node> node = readNode(state, toPath(state, hostname));
+            if (node.isPresent())
+                return node;
         }
         return Optional.empty();
     }
 
+    /** Reads the node at the given path, and deserializes it unless it is unchanged since it was last read */
+    private Optional<Node> readNode(Node.State state, Path path) {
+        Optional<byte[]> nodeData = curatorDatabase.getData(path);
+        if ( ! nodeData.isPresent()) return Optional.empty();
+
+        byte[] data = nodeData.get();
+        ReadNode readNode = readNodes.get(path);
+        if (readNode != null && (readNode.data == data || Arrays.equals(readNode.data, data)))
+            return Optional.of(readNode.node);
+
+        Node node = nodeSerializer.fromBytes(state, data);
+        deserializedNodes.increment();
+        readNodes.put(path, new ReadNode(data, node));
+        return Optional.of(node);
+    }
+
+    /** Serializes a node to the binary format if given, and to json otherwise */
+    private byte[] toBytes(Node node, boolean binary) {
+        return binary ? nodeSerializer.toBinary(node) : nodeSerializer.toJson(node);
+    }
+
+    /*
+     * Temporary feature toggle for writing nodes in the binary format. Nodes in either format are always read,
+     * so nodes are migrated as they are written once this is enabled. Only enable this when all config servers
+     * read the binary format, as earlier versions can not read nodes written with it.
+     * TODO: Remove when enabled in all zones
+     */
+    private boolean binaryNodeFormatEnabled() {
+        return curatorDatabase.getData(root.append("binaryNodeFormat")).isPresent();
+    }
+
+    /** Returns statistics of the reads of nodes done by this since it was created */
+    public ReadStatistics readStatistics() {
+        return new ReadStatistics(getNodesCalls.sum(), TimeUnit.NANOSECONDS.toMillis(getNodesNanos.sum()),
+                                  snapshotHits.sum(), deserializedNodes.sum());
+    }
+
     private Path toPath(Node.State nodeState) { return root.append(toDir(nodeState)); }
 
     private Path toPath(Node node) {
@@ -367,4 +483,65 @@ public class CuratorDatabaseClient {
         return root.append("inactiveJobs");
     }
     
+
+    /** A node and the data it was deserialized from */
+    private static class ReadNode {
+
+        private final byte[] data;
+        private final Node node;
+
+        ReadNode(byte[] data, Node node) {
+            this.data = data;
+            this.node = node;
+        }
+
+    }
+
+    /** All nodes, by state, as read from the cache of a given generation */
+    private static class NodeSnapshot {
+
+        private final long generation;
+        private final Map<Node.State, ImmutableList<Node>> nodesByState;
+        private final ImmutableList<Node> all;
+
+        NodeSnapshot(long generation, Map<Node.State, ImmutableList<Node>> nodesByState) {
+            this.generation = generation;
+            this.nodesByState = Collections.unmodifiableMap(nodesByState);
+            ImmutableList.Builder<Node> all = ImmutableList.builder();
+            for (Node.State state : Node.State.values())
+                all.addAll(nodesByState.get(state));
+            this.all = all.build();
+        }
+
+    }
+
+    /** Counts of node reads */
+    public static class ReadStatistics {
+
+        private final long getNodesCalls;
+        private final long getNodesMillis;
+        private final long snapshotHits;
+        private final long deserializedNodes;
+
+        public ReadStatistics(long getNodesCalls, long getNodesMillis, long snapshotHits, long deserializedNodes) {
+            this.getNodesCalls = getNodesCalls;
+            this.getNodesMillis = getNodesMillis;
+            this.snapshotHits = snapshotHits;
+            this.deserializedNodes = deserializedNodes;
+        }
+
+        /** Returns the number of calls reading multiple nodes */
+        public long getNodesCalls() { return getNodesCalls; }
+
+        /** Returns the total time spent in calls reading multiple nodes */
+        public long getNodesMillis() { return getNodesMillis; }
+
+        /** Returns the number of calls reading multiple nodes which were answered from the last snapshot of all nodes */
+        public long snapshotHits() { return snapshotHits; }
+
+        /** Returns the number of nodes deserialized, because they were read for the first time or had changed */
+        public long deserializedNodes() { return deserializedNodes; }
+
+    }
+
 }
@@ -12,6 +12,7 @@ import com.yahoo.config.provision.NodeFlavors;
 import com.yahoo.config.provision.NodeType;
 import com.yahoo.config.provision.TenantName;
 import com.yahoo.slime.ArrayTraverser;
+import com.yahoo.slime.BinaryFormat;
 import com.yahoo.slime.Cursor;
 import com.yahoo.slime.Inspector;
 import com.yahoo.slime.Slime;
@@ -31,7 +32,9 @@ import java.util.Optional;
 import java.util.Set;
 
 /**
- * Serializes a node to/from JSON.
+ * Serializes a node to/from JSON, or to/from a more compact binary format of the same fields.
+ * Binary data starts with a header which can not start a JSON document, followed by the slime binary format,
+ * so that nodes written in either format can be read by {@link #fromBytes}.
  * Instances of this are multithread safe and can be reused
  *
  * @author bratseth
@@ -41,6 +44,11 @@ public class NodeSerializer {
     /** The configured node flavors */
     private final NodeFlavors flavors;
 
+    // Binary format header: A byte which can not start JSON data, followed by the version of the binary format
+    private static final byte binaryFormatMarker = 0;
+    private static final byte binaryFormatVersion = 1;
+    private static final int binaryHeaderSize = 2;
+
     // Node fields
     private static final String hostnameKey = "hostname";
     private static final String ipAddressesKey = "ipAddresses";
@@ -95,6 +103,18 @@ public class NodeSerializer {
         }
     }
 
+    /** Serializes the given node to the binary format */
+    public byte[] toBinary(Node node) {
+        Slime slime = new Slime();
+        toSlime(node, slime.setObject());
+        byte[] slimeData = BinaryFormat.encode(slime);
+        byte[] data = new byte[binaryHeaderSize + slimeData.length];
+        data[0] = binaryFormatMarker;
+        data[1] = binaryFormatVersion;
+        System.arraycopy(slimeData, 0, data, binaryHeaderSize, slimeData.length);
+        return data;
+    }
+
     private void toSlime(Node node, Cursor object) {
         object.setString(hostnameKey, node.hostname());
         toSlime(node.ipAddresses(), object.setArray(ipAddressesKey));
@@ -148,6 +168,24 @@ public class NodeSerializer {
         return nodeFromSlime(state, SlimeUtils.jsonToSlime(data).get());
     }
 
+    /** Deserializes a node written in either the JSON or the binary format */
+    public Node fromBytes(Node.State state, byte[] data) {
+        if (data.length > 0 && data[0] == binaryFormatMarker)
+            return fromBinary(state, data);
+        return fromJson(state, data);
+    }
+
+    private Node fromBinary(Node.State state, byte[] data) {
+        if (data.length < binaryHeaderSize || data[1] != binaryFormatVersion)
+            throw new IllegalArgumentException("Unknown binary node format version " +
+                                               (data.length < binaryHeaderSize ? "(missing)" : String.valueOf(data[1])));
+        Slime slime = BinaryFormat.decode(data, binaryHeaderSize, data.length - binaryHeaderSize);
+        Inspector error = slime.get().field("error_message");
+        if (error.valid())
+            throw new IllegalArgumentException("Could not deserialize binary node data: " + error.asString());
+        return nodeFromSlime(state, slime.get());
+    }
+
     private Node nodeFromSlime(Node.State state, Inspector object) {
         return new Node(object.field(openStackIdKey).asString(),
                         ipAddressesFromSlime(object, ipAddressesKey),
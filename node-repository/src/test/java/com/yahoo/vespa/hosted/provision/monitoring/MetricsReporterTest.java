@@ -13,6 +13,7 @@ import com.yahoo.vespa.curator.Curator;
 import com.yahoo.vespa.curator.mock.MockCurator;
 import com.yahoo.vespa.hosted.provision.Node;
 import com.yahoo.vespa.hosted.provision.NodeRepository;
+import com.yahoo.vespa.hosted.provision.persistence.CuratorDatabaseClient;
 import com.yahoo.vespa.hosted.provision.maintenance.JobControl;
 import com.yahoo.vespa.hosted.provision.maintenance.MetricsReporter;
 import com.yahoo.vespa.hosted.provision.node.Allocation;
@@ -70,9 +71,24 @@ public class MetricsReporterTest {
 
         TestMetric metric = new TestMetric();
         MetricsReporter metricsReporter = new MetricsReporter(nodeRepository, metric, Duration.ofMinutes(1), new JobControl(nodeRepository.database()));
+        CuratorDatabaseClient.ReadStatistics before = nodeRepository.readStatistics();
         metricsReporter.maintain();
+        CuratorDatabaseClient.ReadStatistics after = nodeRepository.readStatistics();
+
+        // One read per state, and one of all nodes, where both nodes are deserialized on their first read
+        expectedMetrics.put("hostedVespa.nodeRepository.getNodesCalls", 9L);
+        expectedMetrics.put("hostedVespa.nodeRepository.getNodesAverageMillis",
+                            (double) (after.getNodesMillis() - before.getNodesMillis()) / 9);
+        expectedMetrics.put("hostedVespa.nodeRepository.snapshotHits", 0L); // no snapshots without a cached database
+        expectedMetrics.put("hostedVespa.nodeRepository.deserializedNodes", 2L);
 
         assertEquals(expectedMetrics, metric.values);
+
+        metricsReporter.maintain();
+        assertEquals("Reads since the last run are reported",
+                     9L, metric.values.get("hostedVespa.nodeRepository.getNodesCalls"));
+        assertEquals("Unchanged nodes are not deserialized again",
+                     0L, metric.values.get("hostedVespa.nodeRepository.deserializedNodes"));
     }
 
     @Test
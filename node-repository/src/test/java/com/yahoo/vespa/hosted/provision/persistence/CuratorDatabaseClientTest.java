@@ -3,21 +3,30 @@ package com.yahoo.vespa.hosted.provision.persistence;
 
 import com.yahoo.config.provision.ApplicationId;
 import com.yahoo.config.provision.ApplicationName;
+import com.yahoo.config.provision.Environment;
 import com.yahoo.config.provision.InstanceName;
+import com.yahoo.config.provision.NodeFlavors;
 import com.yahoo.config.provision.NodeType;
+import com.yahoo.config.provision.RegionName;
+import com.yahoo.config.provision.SystemName;
 import com.yahoo.config.provision.TenantName;
 import com.yahoo.config.provision.Zone;
 import com.yahoo.vespa.curator.Curator;
 import com.yahoo.vespa.curator.Lock;
 import com.yahoo.vespa.curator.mock.MockCurator;
 import com.yahoo.vespa.hosted.provision.Node;
+import com.yahoo.vespa.hosted.provision.node.Agent;
 import com.yahoo.vespa.hosted.provision.provisioning.FlavorConfigBuilder;
 import org.junit.Test;
 
 import java.time.Clock;
+import java.util.Collections;
 import java.util.List;
+import java.util.Optional;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 
 /**
  * @author mpolden
@@ -39,6 +48,66 @@ public class CuratorDatabaseClientTest {
         assertEquals(NodeType.host, allocatedNodes.get(0).type());
     }
 
+    @Test
+    public void unchanged_nodes_are_not_deserialized_again() throws Exception {
+        String zkline = "{\"hostname\":\"host1\",\"ipAddresses\":[\"127.0.0.1\"],\"openStackId\":\"7951bb9d-3989-4a60-a21c-13690637c8ea\",\"flavor\":\"default\",\"created\":1421054425159, \"type\":\"host\"}";
+        curator.framework().create().creatingParentsIfNeeded().forPath("/provision/v1/ready/host1", zkline.getBytes());
+
+        Node node = zkClient.getNodes(Node.State.ready).get(0);
+        assertSame(node, zkClient.getNodes(Node.State.ready).get(0));
+        assertSame(node, zkClient.getNode("host1").get());
+        assertEquals(1, zkClient.readStatistics().deserializedNodes());
+
+        curator.framework().setData().forPath("/provision/v1/ready/host1", zkline.replace("host\"}", "tenant\"}").getBytes());
+        assertEquals(NodeType.tenant, zkClient.getNodes(Node.State.ready).get(0).type());
+        assertEquals(2, zkClient.readStatistics().deserializedNodes());
+        assertEquals(3, zkClient.readStatistics().getNodesCalls());
+    }
+
+    @Test
+    public void all_nodes_are_reused_until_nodes_are_changed() {
+        NodeFlavors flavors = FlavorConfigBuilder.createDummies("default");
+        CuratorDatabaseClient client = new CuratorDatabaseClient(flavors, new MockCurator(), Clock.systemUTC(),
+                                                                 new Zone(SystemName.cd, Environment.prod, RegionName.from("us-east")));
+        client.addNodes(Collections.singletonList(createNode("host1", flavors)));
+
+        List<Node> nodes = client.getAllNodes();
+        assertEquals(1, nodes.size());
+        assertSame(nodes, client.getAllNodes());
+        assertEquals(1, client.getNodes().size());
+        assertEquals(2, client.readStatistics().snapshotHits());
+
+        client.addNodes(Collections.singletonList(createNode("host2", flavors)));
+        List<Node> changedNodes = client.getAllNodes();
+        assertNotSame(nodes, changedNodes);
+        assertEquals(2, changedNodes.size());
+        assertSame("Unchanged nodes are reused",
+                   nodes.get(0), changedNodes.stream().filter(node -> node.hostname().equals("host1")).findFirst().get());
+        assertEquals(2, client.readStatistics().deserializedNodes());
+    }
+
+    @Test
+    public void nodes_are_migrated_to_the_binary_format_when_written_with_binary_format_enabled() throws Exception {
+        String zkline = "{\"hostname\":\"host1\",\"ipAddresses\":[\"127.0.0.1\"],\"openStackId\":\"7951bb9d-3989-4a60-a21c-13690637c8ea\",\"flavor\":\"default\",\"created\":1421054425159, \"type\":\"host\"}";
+        curator.framework().create().creatingParentsIfNeeded().forPath("/provision/v1/provisioned/host1", zkline.getBytes());
+
+        zkClient.writeTo(Node.State.dirty, zkClient.getNode("host1").get(), Agent.system, Optional.empty());
+        assertEquals("Json is written by default",
+                     '{', curator.framework().getData().forPath("/provision/v1/dirty/host1")[0]);
+
+        curator.framework().create().forPath("/provision/v1/binaryNodeFormat");
+        zkClient.writeTo(Node.State.ready, zkClient.getNode("host1").get(), Agent.system, Optional.empty());
+        assertEquals("Binary is written when enabled",
+                     0, curator.framework().getData().forPath("/provision/v1/ready/host1")[0]);
+        assertEquals(Node.State.ready, zkClient.getNode("host1").get().state());
+        assertEquals(NodeType.host, zkClient.getNode("host1").get().type());
+    }
+
+    private static Node createNode(String hostname, NodeFlavors flavors) {
+        return Node.create(hostname, Collections.singleton("127.0.0.1"), Collections.emptySet(), hostname,
+                           Optional.empty(), flavors.getFlavorOrThrow("default"), NodeType.tenant);
+    }
+
     @Test
     public void locks_can_be_acquired_and_released() {
         ApplicationId app = ApplicationId.from(TenantName.from("testTenant"), ApplicationName.from("testApp"), InstanceName.from("testInstance"));
@@ -0,0 +1,117 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.hosted.provision.persistence;
+
+import com.google.common.collect.ImmutableSet;
+import com.yahoo.component.Version;
+import com.yahoo.config.provision.ApplicationId;
+import com.yahoo.config.provision.ApplicationName;
+import com.yahoo.config.provision.ClusterMembership;
+import com.yahoo.config.provision.InstanceName;
+import com.yahoo.config.provision.NodeFlavors;
+import com.yahoo.config.provision.NodeType;
+import com.yahoo.config.provision.TenantName;
+import com.yahoo.vespa.hosted.provision.Node;
+import com.yahoo.vespa.hosted.provision.node.Agent;
+import com.yahoo.vespa.hosted.provision.node.Generation;
+import com.yahoo.vespa.hosted.provision.provisioning.FlavorConfigBuilder;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Compares the throughput and data sizes of the json and binary node formats, for nodes like those of a large zone:
+ * Docker nodes with several ip addresses, an allocation and a history of state changes.
+ *
+ * Run with: [number of nodes] [iterations]
+ *
+ * @author agent
+ */
+public class NodeSerializerBenchmark {
+
+    private static final NodeFlavors flavors = FlavorConfigBuilder.createDummies("docker");
+
+    private static List<Node> createNodes(int count) {
+        List<Node> nodes = new ArrayList<>(count);
+        Instant at = Instant.ofEpochMilli(1500000000000L);
+        for (int i = 0; i < count; i++) {
+            String hostname = "host" + i + ".region-1.prod.vespa.example.com";
+            Node node = Node.createDockerNode("openStackId" + i,
+                                              ImmutableSet.of("10.0." + (i / 256) % 256 + "." + i % 256,
+                                                              "2001:db8:0:" + Integer.toHexString(i) + "::1"),
+                                              ImmutableSet.of(),
+                                              hostname,
+                                              Optional.of("dockerhost" + i / 8 + ".region-1.prod.vespa.example.com"),
+                                              flavors.getFlavorOrThrow("docker"),
+                                              NodeType.tenant);
+            node = node.with(node.history().recordStateTransition(null, Node.State.ready, Agent.system, at));
+            node = node.allocate(ApplicationId.from(TenantName.from("tenant" + i % 50),
+                                                    ApplicationName.from("application" + i % 200),
+                                                    InstanceName.from("default")),
+                                 ClusterMembership.from("container/default/" + i % 10 + "/" + i, Version.fromString("6.150.12")),
+                                 at.plusSeconds(60));
+            node = node.with(node.history().recordStateTransition(Node.State.reserved, Node.State.active, Agent.application,
+                                                                  at.plusSeconds(120)));
+            node = node.withRestart(new Generation(2, 2)).withReboot(new Generation(1, 1));
+            node = node.with(node.status().withVespaVersion(Version.fromString("6.150.12")));
+            nodes.add(node);
+        }
+        return nodes;
+    }
+
+    private static long serialize(List<Node> nodes, NodeSerializer serializer, boolean binary, int iterations) {
+        long bytes = 0;
+        for (int i = 0; i < iterations; i++)
+            for (Node node : nodes)
+                bytes += binary ? serializer.toBinary(node).length : serializer.toJson(node).length;
+        return bytes;
+    }
+
+    private static long deserialize(List<byte[]> data, NodeSerializer serializer, int iterations) {
+        long count = 0;
+        for (int i = 0; i < iterations; i++)
+            for (byte[] nodeData : data)
+                count += serializer.fromBytes(Node.State.active, nodeData).hostname().length();
+        return count;
+    }
+
+    private static void run(String format, List<Node> nodes, NodeSerializer serializer, boolean binary, int iterations) {
+        List<byte[]> data = new ArrayList<>(nodes.size());
+        long totalSize = 0;
+        for (Node node : nodes) {
+            byte[] nodeData = binary ? serializer.toBinary(node) : serializer.toJson(node);
+            totalSize += nodeData.length;
+            data.add(nodeData);
+        }
+
+        long start = System.nanoTime();
+        serialize(nodes, serializer, binary, iterations);
+        long serializeNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        deserialize(data, serializer, iterations);
+        long deserializeNanos = System.nanoTime() - start;
+
+        long operations = (long) nodes.size() * iterations;
+        System.out.println(format + ": average size " + totalSize / nodes.size() + " bytes, " +
+                           "serialize " + operations * 1000000000L / serializeNanos + " nodes/s, " +
+                           "deserialize " + operations * 1000000000L / deserializeNanos + " nodes/s");
+    }
+
+    public static void main(String[] argv) {
+        int nodeCount = argv.length > 0 ? Integer.parseInt(argv[0]) : 2000;
+        int iterations = argv.length > 1 ? Integer.parseInt(argv[1]) : 50;
+        List<Node> nodes = createNodes(nodeCount);
+        NodeSerializer serializer = new NodeSerializer(flavors);
+
+        System.out.println("Warming up");
+        run("json", nodes, serializer, false, Math.max(1, iterations / 5));
+        run("binary", nodes, serializer, true, Math.max(1, iterations / 5));
+
+        System.out.println(nodeCount + " nodes, " + iterations + " iterations");
+        run("json", nodes, serializer, false, iterations);
+        run("binary", nodes, serializer, true, iterations);
+    }
+
+}
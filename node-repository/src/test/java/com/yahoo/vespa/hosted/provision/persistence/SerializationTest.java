@@ -340,6 +340,34 @@ public class SerializationTest {
         assertEquals("6.42.2", node.allocation().get().membership().cluster().vespaVersion().toString());
     }
 
+    @Test
+    public void binary_serialization() {
+        Node node = createNode().allocate(ApplicationId.from(TenantName.from("myTenant"),
+                                                             ApplicationName.from("myApplication"),
+                                                             InstanceName.from("myInstance")),
+                                          ClusterMembership.from("content/myId/0/0", Vtag.currentVersion),
+                                          clock.instant());
+        node = node.with(node.status().withVespaVersion(Version.fromString("1.2.3")));
+        node = node.with(node.status().withHardwareFailureDescription(Optional.of("memory_mcelog")));
+
+        byte[] binary = nodeSerializer.toBinary(node);
+        byte[] json = nodeSerializer.toJson(node);
+        assertTrue("Binary format is smaller: " + binary.length + " < " + json.length, binary.length < json.length);
+
+        Node copy = nodeSerializer.fromBytes(State.reserved, binary);
+        assertEquals(State.reserved, copy.state());
+        assertEquals("Binary and json serialization keeps the same fields",
+                     new String(json, StandardCharsets.UTF_8), new String(nodeSerializer.toJson(copy), StandardCharsets.UTF_8));
+        assertEquals(node.hostname(), nodeSerializer.fromBytes(State.reserved, json).hostname());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknown_binary_format_version_is_rejected() {
+        byte[] binary = nodeSerializer.toBinary(createNode());
+        binary[1] = 99;
+        nodeSerializer.fromBytes(State.provisioned, binary);
+    }
+
     private byte[] createNodeJson(String hostname, String... ipAddress) {
         String ipAddressJsonPart = "";
         if (ipAddress.length > 0) {
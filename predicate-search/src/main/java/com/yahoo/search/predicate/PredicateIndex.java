@@ -6,16 +6,26 @@ import com.yahoo.document.predicate.Predicate;
 import com.yahoo.search.predicate.index.*;
 import com.yahoo.search.predicate.index.conjunction.ConjunctionHit;
 import com.yahoo.search.predicate.index.conjunction.ConjunctionIndex;
+import com.yahoo.search.predicate.serialization.MappedFileReader;
 import com.yahoo.search.predicate.serialization.SerializationHelper;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Stream;
 
+import static java.util.stream.Collectors.toList;
+
 /**
  * An index of {@link Predicate} objects.
  * <p>
@@ -38,6 +48,7 @@ import java.util.stream.Stream;
 @Beta
 public class PredicateIndex {
     private static final int SERIALIZATION_FORMAT_VERSION = 3;
+    private static final int MAPPABLE_SERIALIZATION_FORMAT_VERSION = 4;
 
     private final PredicateRangeTermExpander expander;
     private final int[] internalToExternalIdMapping;
@@ -142,6 +153,74 @@ public class PredicateIndex {
         );
     }
 
+    /**
+     * Writes this in a format which may be loaded with {@link #fromMappedFile(Path)}. The posting lists and
+     * intervals are written last, in sorted tables which are searched in place in the mapped file,
+     * while the per document data and the conjunction index are written first, and read into the heap.
+     */
+    public void writeMappableToOutputStream(DataOutputStream out) throws IOException {
+        ByteArrayOutputStream heapSection = new ByteArrayOutputStream();
+        DataOutputStream heapOut = new DataOutputStream(heapSection);
+        config.writeToOutputStream(heapOut);
+        SerializationHelper.writeIntArray(internalToExternalIdMapping, heapOut);
+        SerializationHelper.writeByteArray(minFeatureIndex, heapOut);
+        SerializationHelper.writeShortArray(intervalEnds, heapOut);
+        heapOut.writeInt(highestIntervalEnd);
+        SerializationHelper.writeIntArray(zeroConstraintDocuments, heapOut);
+        conjunctionIndex.writeToOutputStream(heapOut);
+        heapOut.flush();
+
+        out.writeInt(MAPPABLE_SERIALIZATION_FORMAT_VERSION);
+        out.writeInt(heapSection.size());
+        heapSection.writeTo(out);
+        intervalIndex.writeMappableToOutputStream(out);
+        boundsIndex.writeMappableToOutputStream(out);
+        conjunctionIntervalIndex.writeMappableToOutputStream(out);
+        intervalStore.writeMappableToOutputStream(out);
+    }
+
+    /**
+     * Loads an index written by {@link #writeMappableToOutputStream(DataOutputStream)} by memory mapping
+     * its posting lists and intervals, which are then read in place when searching.
+     */
+    public static PredicateIndex fromMappedFile(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedFileReader reader = new MappedFileReader(channel);
+            int version = reader.readInt();
+            if (version != MAPPABLE_SERIALIZATION_FORMAT_VERSION) {
+                throw new IllegalArgumentException(String.format(
+                        "Invalid serialization format version. Expected %d, was %d.",
+                        MAPPABLE_SERIALIZATION_FORMAT_VERSION, version));
+            }
+            int heapSectionLength = reader.readInt();
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(reader.readByteArray(heapSectionLength)));
+            Config config = Config.fromInputStream(in);
+            int[] internalToExternalIdMapping = SerializationHelper.readIntArray(in);
+            byte[] minFeatureIndex = SerializationHelper.readByteArray(in);
+            short[] intervalEnds = SerializationHelper.readShortArray(in);
+            int highestIntervalEnd = in.readInt();
+            int[] zeroConstraintDocuments = SerializationHelper.readIntArray(in);
+            ConjunctionIndex conjunctionIndex = ConjunctionIndex.fromInputStream(in);
+            SimpleIndex intervalIndex = MappedSimpleIndex.map(reader);
+            SimpleIndex boundsIndex = MappedSimpleIndex.map(reader);
+            SimpleIndex conjunctionIntervalIndex = MappedSimpleIndex.map(reader);
+            PredicateIntervalStore intervalStore = MappedPredicateIntervalStore.map(reader);
+            return new PredicateIndex(
+                    config,
+                    internalToExternalIdMapping,
+                    minFeatureIndex,
+                    intervalEnds,
+                    highestIntervalEnd,
+                    intervalIndex,
+                    boundsIndex,
+                    conjunctionIntervalIndex,
+                    intervalStore,
+                    conjunctionIndex,
+                    zeroConstraintDocuments
+            );
+        }
+    }
+
     @Beta
     public class Searcher {
         private final byte[] nPostingListsForDocument;
@@ -159,6 +238,63 @@ public class PredicateIndex {
          * @return A stream of hits.
          */
         public Stream<Hit> search(PredicateQuery query) {
+            List<PostingList> postingLists = createPostingLists(query, conjunctionIndexSearcher.search(query));
+            countPostingListsPerDocument(postingLists);
+            return new PredicateSearch(
+                    postingLists, nPostingListsForDocument, minFeatureIndex, intervalEnds, highestIntervalEnd).stream()
+                    // Map to external id. Note that internal id for first document is 1.
+                    .map(hit -> new Hit(internalToExternalIdMapping[hit.getDocId()], hit.getSubquery()));
+        }
+
+        /**
+         * Retrieves the hits for the given query by splitting the document id space into the given number of ranges,
+         * which are searched in parallel by tasks in the given pool. This reduces the latency of expensive queries
+         * against large indexes, at the cost of some overhead per range.
+         * The hits are collected before this returns, and are in the same order as for {@link #search(PredicateQuery)}.
+         *
+         * @param query       Specifies the boolean variables that are true.
+         * @param pool        The pool running the search of each range.
+         * @param nPartitions The number of ranges to search.
+         * @return A stream of hits.
+         */
+        public Stream<Hit> search(PredicateQuery query, ForkJoinPool pool, int nPartitions) {
+            if (nPartitions < 1) throw new IllegalArgumentException("Number of partitions must be positive, was " + nPartitions);
+            List<ConjunctionHit> conjunctionHits = conjunctionIndexSearcher.search(query);
+            List<PostingList> postingLists = createPostingLists(query, conjunctionHits);
+            countPostingListsPerDocument(postingLists);
+
+            int nDocuments = nPostingListsForDocument.length;
+            int partitionSize = Math.max(1, (nDocuments + nPartitions - 1) / nPartitions);
+            List<ForkJoinTask<List<Hit>>> tasks = new ArrayList<>(nPartitions);
+            for (int from = 0; from < nDocuments; from += partitionSize) {
+                // Posting lists are iterators, so each range needs its own
+                List<PostingList> rangePostingLists = from == 0 ? postingLists : createPostingLists(query, conjunctionHits);
+                int fromDocId = from;
+                int toDocId = Math.min(nDocuments, from + partitionSize);
+                tasks.add(pool.submit(() -> searchRange(rangePostingLists, fromDocId, toDocId)));
+            }
+            List<Hit> hits = new ArrayList<>();
+            for (ForkJoinTask<List<Hit>> task : tasks) {
+                hits.addAll(task.join());
+            }
+            return hits.stream();
+        }
+
+        private List<Hit> searchRange(List<PostingList> postingLists, int fromDocId, int toDocId) {
+            return new PredicateSearch(
+                    postingLists, nPostingListsForDocument, minFeatureIndex, intervalEnds, highestIntervalEnd)
+                    .stream(fromDocId, toDocId)
+                    .map(hit -> new Hit(internalToExternalIdMapping[hit.getDocId()], hit.getSubquery()))
+                    .collect(toList());
+        }
+
+        private void countPostingListsPerDocument(List<PostingList> postingLists) {
+            CachedPostingListCounter counter = postingListCounter.get();
+            counter.registerUsage(postingLists);
+            counter.countPostingListsPerDocument(postingLists, nPostingListsForDocument);
+        }
+
+        private List<PostingList> createPostingLists(PredicateQuery query, List<ConjunctionHit> conjunctionHits) {
             ArrayList<PostingList> postingLists = new ArrayList<>();
             for (PredicateQuery.Feature feature : query.getFeatures()) {
                 addIntervalPostingList(feature.featureHash, feature.subqueryBitmap, postingLists);
@@ -171,16 +307,9 @@ public class PredicateIndex {
                         (featureHash, value) -> addBoundsPostingList(featureHash, value, feature.subqueryBitmap, postingLists));
             }
             addCompressedZStarPostingList(postingLists);
-            addConjunctionPostingLists(query, postingLists);
+            addConjunctionPostingLists(conjunctionHits, postingLists);
             addZeroConstraintPostingList(postingLists);
-
-            CachedPostingListCounter counter = postingListCounter.get();
-            counter.registerUsage(postingLists);
-            counter.countPostingListsPerDocument(postingLists, nPostingListsForDocument);
-            return new PredicateSearch(
-                    postingLists, nPostingListsForDocument, minFeatureIndex, intervalEnds, highestIntervalEnd).stream()
-                    // Map to external id. Note that internal id for first document is 1.
-                    .map(hit -> new Hit(internalToExternalIdMapping[hit.getDocId()], hit.getSubquery()));
+            return postingLists;
         }
 
         private void addCompressedZStarPostingList(List<PostingList> postingLists) {
@@ -205,8 +334,7 @@ public class PredicateIndex {
             }
         }
 
-        private void addConjunctionPostingLists(PredicateQuery query, List<PostingList> postingLists) {
-            List<ConjunctionHit> hits = conjunctionIndexSearcher.search(query);
+        private void addConjunctionPostingLists(List<ConjunctionHit> hits, List<PostingList> postingLists) {
             for (ConjunctionHit hit : hits) {
                 SimpleIndex.Entry e = conjunctionIntervalIndex.getPostingList(hit.conjunctionId);
                 if (e != null) {
@@ -0,0 +1,358 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.predicate;
+
+import com.google.common.annotations.Beta;
+import com.yahoo.document.predicate.Predicate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.TreeMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * An index of {@link Predicate} objects which may be updated while it is searched.
+ * <p>
+ * The index consists of an immutable base {@link PredicateIndex} and a delta of small immutable segments, each
+ * holding the documents added, replaced or removed by one or more updates since the base was built. An update
+ * adds a segment with just its own changes, and segments of similar size are merged, such that each change is
+ * indexed a logarithmic number of times before the delta is compacted. Documents changed in a segment are hidden
+ * from the hits of the base and of older segments. Once the delta holds more than a given number of documents,
+ * a new base containing all documents is built in the background.
+ * </p><p>
+ * Searches see the index as it was when the search started, and updates are visible to searches started after
+ * the update returns. Hits are returned in increasing document id order.
+ * The index keeps the {@link Predicate} of every document to be able to rebuild the base.
+ * </p><p>
+ * Like for {@link PredicateIndex}, the index is thread-safe, but each thread <strong>must</strong> use
+ * its own {@link Searcher}.
+ * </p>
+ * @author agent
+ */
+@Beta
+public class UpdatablePredicateIndex {
+
+    private static final ExecutorService defaultCompactionExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "predicate-index-compaction");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Config config;
+    private final int maxDeltaSize;
+    private final Executor compactionExecutor;
+    private final Object compactionMonitor = new Object();
+
+    /** All documents of this, guarded by this */
+    private final Map<Integer, Predicate> documents = new HashMap<>();
+    /** The documents which have changed since the base was built, with null values for removed ones. Guarded by this */
+    private final Map<Integer, Predicate> delta = new HashMap<>();
+    /** The base index, guarded by this */
+    private PredicateIndex base;
+    /** Whether a compaction is submitted to the executor and not yet done. Guarded by this */
+    private boolean compactionPending = false;
+
+    private final AtomicReference<Segments> segments = new AtomicReference<>();
+
+    /**
+     * Creates an empty index which compacts its delta into the base in a shared background thread.
+     *
+     * @param config       Configuration for the indexes built by this.
+     * @param maxDeltaSize The number of changed documents in the delta at which the base is rebuilt.
+     */
+    public UpdatablePredicateIndex(Config config, int maxDeltaSize) {
+        this(config, maxDeltaSize, defaultCompactionExecutor);
+    }
+
+    /**
+     * Creates an empty index.
+     *
+     * @param config             Configuration for the indexes built by this.
+     * @param maxDeltaSize       The number of changed documents in the delta at which the base is rebuilt.
+     * @param compactionExecutor The executor used to rebuild the base.
+     */
+    public UpdatablePredicateIndex(Config config, int maxDeltaSize, Executor compactionExecutor) {
+        if (maxDeltaSize < 1) throw new IllegalArgumentException("Max delta size must be positive, was " + maxDeltaSize);
+        this.config = config;
+        this.maxDeltaSize = maxDeltaSize;
+        this.compactionExecutor = compactionExecutor;
+        synchronized (this) {
+            this.base = new PredicateIndexBuilder(config).build();
+            segments.set(new Segments(base, Collections.emptyList()));
+        }
+    }
+
+    /**
+     * Adds a predicate with the given id, or replaces the predicate of a document with this id.
+     *
+     * @param docId     A 32-bit document id, returned in the Hit objects when the predicate matches.
+     * @param predicate The predicate to index.
+     */
+    public synchronized void indexDocument(int docId, Predicate predicate) {
+        documents.put(docId, predicate);
+        update(Collections.singletonMap(docId, predicate));
+    }
+
+    /**
+     * Adds or replaces many documents at once. This is cheaper than adding each separately,
+     * as the documents are indexed together.
+     *
+     * @param predicates The predicates to index, by document id.
+     */
+    public synchronized void indexDocuments(Map<Integer, Predicate> predicates) {
+        if (predicates.isEmpty()) return;
+        documents.putAll(predicates);
+        update(predicates);
+    }
+
+    /**
+     * Removes the document with the given id, if present.
+     *
+     * @param docId The id of the document to remove.
+     */
+    public synchronized void removeDocument(int docId) {
+        if (documents.remove(docId) == null) return;
+        update(Collections.singletonMap(docId, null));
+    }
+
+    /** Returns the number of documents in this */
+    public synchronized int getDocumentCount() {
+        return documents.size();
+    }
+
+    /** Returns the number of changed documents which are not yet compacted into the base */
+    public synchronized int getDeltaSize() {
+        return delta.size();
+    }
+
+    /** Returns the number of segments in the delta */
+    synchronized int getSegmentCount() {
+        return segments.get().delta.size();
+    }
+
+    /** Adds the given changes to the delta, and makes them visible to new searches. Must hold this. */
+    private void update(Map<Integer, Predicate> changes) {
+        delta.putAll(changes);
+        List<Segment> deltaSegments = new ArrayList<>(segments.get().delta);
+        Segment added = new Segment(config, changes);
+        // Merge with older segments which are not larger, such that there is a logarithmic number of segments
+        while ( ! deltaSegments.isEmpty() && deltaSegments.get(deltaSegments.size() - 1).size() <= added.size())
+            added = new Segment(config, deltaSegments.remove(deltaSegments.size() - 1), added);
+        deltaSegments.add(added);
+        segments.set(new Segments(base, deltaSegments));
+
+        if (delta.size() >= maxDeltaSize && ! compactionPending) {
+            compactionPending = true;
+            compactionExecutor.execute(() -> {
+                try {
+                    compact();
+                } finally {
+                    synchronized (this) {
+                        compactionPending = false;
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Builds a new base from all the documents of this, and removes the changes it contains from the delta.
+     * Changes made while the new base is built are kept in the delta.
+     * This is done in the background when the delta becomes too large, but may also be called directly.
+     */
+    public void compact() {
+        synchronized (compactionMonitor) {
+            Map<Integer, Predicate> snapshot;
+            Map<Integer, Predicate> compacted;
+            synchronized (this) {
+                if (delta.isEmpty()) return;
+                snapshot = new TreeMap<>(documents);
+                compacted = new HashMap<>(delta);
+            }
+
+            PredicateIndexBuilder builder = new PredicateIndexBuilder(config);
+            snapshot.forEach(builder::indexDocument); // in id order, such that hits are too
+            PredicateIndex newBase = builder.build();
+
+            synchronized (this) {
+                base = newBase;
+                // Documents which have not changed again since the snapshot was taken are correct in the new base
+                compacted.forEach(delta::remove);
+                segments.set(new Segments(base, delta.isEmpty() ? Collections.emptyList()
+                                                                : Collections.singletonList(new Segment(config, delta))));
+            }
+        }
+    }
+
+    /** Rebuilds the posting list cache of the current base */
+    public void rebuildPostingListCache() {
+        segments.get().base.rebuildPostingListCache();
+    }
+
+    /**
+     * Create a new searcher.
+     */
+    public Searcher searcher() {
+        return new Searcher();
+    }
+
+    /** An immutable index of some changed documents, where documents with a null predicate are removed */
+    private static class Segment {
+
+        final Map<Integer, Predicate> changes;
+        final PredicateIndex index;
+
+        Segment(Config config, Map<Integer, Predicate> changes) {
+            this.changes = Collections.unmodifiableMap(new TreeMap<>(changes));
+            PredicateIndexBuilder builder = new PredicateIndexBuilder(config);
+            for (Map.Entry<Integer, Predicate> entry : this.changes.entrySet()) { // in id order, such that hits are too
+                if (entry.getValue() != null)
+                    builder.indexDocument(entry.getKey(), entry.getValue());
+            }
+            this.index = builder.build();
+        }
+
+        /** Creates a segment with the changes of the given segments, where the changes of the newer one win */
+        Segment(Config config, Segment older, Segment newer) {
+            this(config, merge(older.changes, newer.changes));
+        }
+
+        int size() { return changes.size(); }
+
+        /** Returns whether the given document is changed or removed in this */
+        boolean changes(int docId) { return changes.containsKey(docId); }
+
+        private static Map<Integer, Predicate> merge(Map<Integer, Predicate> older, Map<Integer, Predicate> newer) {
+            Map<Integer, Predicate> merged = new TreeMap<>(older);
+            merged.putAll(newer);
+            return merged;
+        }
+
+    }
+
+    /** An immutable view of the segments of this index, as seen by searches */
+    private static class Segments {
+
+        final PredicateIndex base;
+        /** The segments of the delta, oldest first */
+        final List<Segment> delta;
+
+        Segments(PredicateIndex base, List<Segment> delta) {
+            this.base = base;
+            this.delta = Collections.unmodifiableList(delta);
+        }
+
+        /** Returns whether the given document is changed in any segment after the given one, where -1 is the base */
+        boolean isChangedAfter(int segment, int docId) {
+            for (int i = segment + 1; i < delta.size(); i++) {
+                if (delta.get(i).changes(docId)) return true;
+            }
+            return false;
+        }
+
+    }
+
+    @Beta
+    public class Searcher {
+
+        /** The searchers of the indexes of the last search, which are reused when the indexes are unchanged */
+        private Map<PredicateIndex, PredicateIndex.Searcher> searchers = new IdentityHashMap<>();
+
+        private Searcher() {}
+
+        /**
+         * Retrieves a stream of hits for the given query, in increasing document id order.
+         *
+         * @param query Specifies the boolean variables that are true.
+         * @return A stream of hits.
+         */
+        public Stream<Hit> search(PredicateQuery query) {
+            Segments current = segments.get();
+            Map<PredicateIndex, PredicateIndex.Searcher> currentSearchers = new IdentityHashMap<>();
+            List<Stream<Hit>> hits = new ArrayList<>(current.delta.size() + 1);
+            hits.add(search(current, -1, current.base, query, currentSearchers));
+            for (int i = 0; i < current.delta.size(); i++)
+                hits.add(search(current, i, current.delta.get(i).index, query, currentSearchers));
+            searchers = currentSearchers;
+            if (hits.size() == 1) return hits.get(0);
+            return StreamSupport.stream(Spliterators.spliteratorUnknownSize(new MergingIterator(hits),
+                                                                            Spliterator.ORDERED | Spliterator.NONNULL),
+                                        false);
+        }
+
+        private Stream<Hit> search(Segments current, int segment, PredicateIndex index, PredicateQuery query,
+                                   Map<PredicateIndex, PredicateIndex.Searcher> currentSearchers) {
+            PredicateIndex.Searcher searcher = searchers.get(index);
+            if (searcher == null)
+                searcher = index.searcher();
+            currentSearchers.put(index, searcher);
+            Stream<Hit> hits = searcher.search(query);
+            if (segment + 1 < current.delta.size())
+                hits = hits.filter(hit -> ! current.isChangedAfter(segment, hit.getDocId()));
+            return hits;
+        }
+
+    }
+
+    /** Merges streams of hits which are each in increasing document id order, and have no document in common */
+    private static class MergingIterator implements Iterator<Hit> {
+
+        private final PriorityQueue<Head> heads;
+
+        MergingIterator(List<Stream<Hit>> hits) {
+            heads = new PriorityQueue<>(hits.size());
+            for (Stream<Hit> stream : hits) {
+                Iterator<Hit> iterator = stream.iterator();
+                if (iterator.hasNext())
+                    heads.add(new Head(iterator.next(), iterator));
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return ! heads.isEmpty();
+        }
+
+        @Override
+        public Hit next() {
+            Head head = heads.poll();
+            if (head == null) throw new NoSuchElementException();
+            Hit hit = head.hit;
+            if (head.rest.hasNext())
+                heads.add(new Head(head.rest.next(), head.rest));
+            return hit;
+        }
+
+        private static class Head implements Comparable<Head> {
+
+            final Hit hit;
+            final Iterator<Hit> rest;
+
+            Head(Hit hit, Iterator<Hit> rest) {
+                this.hit = hit;
+                this.rest = rest;
+            }
+
+            @Override
+            public int compareTo(Head other) {
+                return hit.compareTo(other.hit);
+            }
+
+        }
+
+    }
+
+}
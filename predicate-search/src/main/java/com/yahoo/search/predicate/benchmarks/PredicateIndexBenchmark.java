@@ -24,6 +24,7 @@ import java.io.DataOutputStream;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
@@ -37,6 +38,7 @@ import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -70,6 +72,9 @@ public class PredicateIndexBenchmark {
         if (args.indexOutputFile != null) {
             writeIndexToFile(index, args.indexOutputFile);
         }
+        if (args.mappableIndexOutputFile != null) {
+            writeMappableIndexToFile(index, args.mappableIndexOutputFile);
+        }
         if (args.queryFile != null) {
             runQueries(args, index);
         }
@@ -83,8 +88,8 @@ public class PredicateIndexBenchmark {
         if (args.helpOption.showHelpIfRequested()) {
             return Optional.empty();
         }
-        if (args.feedFile == null && args.indexFile == null) {
-            System.err.println("Provide either a feed file or index file.");
+        if (args.feedFile == null && args.indexFile == null && args.mappedIndexFile == null) {
+            System.err.println("Provide either a feed file, index file or mapped index file.");
             return Optional.empty();
         }
         return Optional.of(args);
@@ -105,6 +110,11 @@ public class PredicateIndexBenchmark {
             PredicateIndex index = builder.build();
             output.put("Time prepare index", System.currentTimeMillis() - start);
             return index;
+        } else if (args.mappedIndexFile != null) {
+            long start = System.currentTimeMillis();
+            PredicateIndex index = PredicateIndex.fromMappedFile(Paths.get(args.mappedIndexFile));
+            output.put("Time map index", System.currentTimeMillis() - start);
+            return index;
         } else {
             try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(args.indexFile)))) {
                 long start = System.currentTimeMillis();
@@ -123,29 +133,40 @@ public class PredicateIndexBenchmark {
         }
     }
 
+    private static void writeMappableIndexToFile(PredicateIndex index, String indexOutputFile) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexOutputFile)))) {
+            long start = System.currentTimeMillis();
+            index.writeMappableToOutputStream(out);
+            output.put("Time write mappable index", System.currentTimeMillis() - start);
+        }
+    }
+
     private static void putBenchmarkArgumentsToOutput(BenchmarkArguments args) {
         output.put("Arity", args.arity);
         output.put("Max documents", args.maxDocuments);
         output.put("Max queries", args.maxQueries);
         output.put("Threads", args.nThreads);
+        output.put("Partitions", args.nPartitions);
         output.put("Runtime", args.runtime);
         output.put("Algorithm", args.algorithm);
         output.put("Serialized index output file", args.indexOutputFile);
         output.put("Feed file", args.feedFile);
         output.put("Query file", args.queryFile);
         output.put("Index file", args.indexFile);
+        output.put("Mappable index output file", args.mappableIndexOutputFile);
+        output.put("Mapped index file", args.mappedIndexFile);
         output.put("Query format", args.format);
         output.put("Warmup", args.warmup);
     }
 
     private static void runQueries(BenchmarkArguments args, PredicateIndex index) throws IOException {
         List<PredicateQuery> queries = parseQueries(args.queryFile, args.maxQueries, args.format);
-        long warmup1 = warmup(queries, index, args.nThreads, args.warmup / 2);
+        long warmup1 = warmup(queries, index, args.nThreads, args.warmup / 2, args.nPartitions);
         output.put("Time warmup before building posting cache", warmup1);
         rebuildPostingListCache(index);
-        long warmup2 = warmup(queries, index, args.nThreads, args.warmup / 2);
+        long warmup2 = warmup(queries, index, args.nThreads, args.warmup / 2, args.nPartitions);
         output.put("Time warmup after building posting cache", warmup2);
-        searchIndex(queries, index, args.nThreads, args.runtime);
+        searchIndex(queries, index, args.nThreads, args.runtime, args.nPartitions);
     }
 
     private static void rebuildPostingListCache(PredicateIndex index) {
@@ -164,27 +185,29 @@ public class PredicateIndexBenchmark {
         return queries;
     }
 
-    private static long warmup(List<PredicateQuery> queries, PredicateIndex index, int nThreads, int warmup) {
+    private static long warmup(List<PredicateQuery> queries, PredicateIndex index, int nThreads, int warmup,
+                               int nPartitions) {
         ExecutorService executor = Executors.newFixedThreadPool(nThreads);
         Random random = new Random(42);
         for (int i = 0; i < nThreads; i++) {
             List<PredicateQuery> shuffledQueries = new ArrayList<>(queries);
             Collections.shuffle(shuffledQueries, random);
-            executor.submit(new QueryRunner(shuffledQueries, index.searcher()));
+            executor.submit(new QueryRunner(shuffledQueries, index.searcher(), nPartitions));
         }
         long start = System.currentTimeMillis();
         waitAndShutdown(warmup, executor);
         return System.currentTimeMillis() - start;
     }
 
-    private static void searchIndex(List<PredicateQuery> queries, PredicateIndex index, int nThreads, int runtime) {
+    private static void searchIndex(List<PredicateQuery> queries, PredicateIndex index, int nThreads, int runtime,
+                                    int nPartitions) {
         ExecutorService executor = Executors.newFixedThreadPool(nThreads);
         Random random = new Random(42);
         List<QueryRunner> runners = new ArrayList<>();
         for (int i = 0; i < nThreads; i++) {
             List<PredicateQuery> shuffledQueries = new ArrayList<>(queries);
             Collections.shuffle(shuffledQueries, random);
-            runners.add(new QueryRunner(shuffledQueries, index.searcher()));
+            runners.add(new QueryRunner(shuffledQueries, index.searcher(), nPartitions));
         }
         long start = System.currentTimeMillis();
         List<Future<ResultMetrics>> futureResults = runners.stream().map(executor::submit).collect(toList());
@@ -218,10 +241,12 @@ public class PredicateIndexBenchmark {
     private static class QueryRunner implements Callable<ResultMetrics> {
         private final List<PredicateQuery> queries;
         private final PredicateIndex.Searcher searcher;
+        private final int nPartitions;
 
-        public QueryRunner(List<PredicateQuery> queries, PredicateIndex.Searcher seacher) {
+        public QueryRunner(List<PredicateQuery> queries, PredicateIndex.Searcher seacher, int nPartitions) {
             this.queries = queries;
             this.searcher = seacher;
+            this.nPartitions = nPartitions;
         }
 
         @Override
@@ -230,7 +255,9 @@ public class PredicateIndexBenchmark {
             ResultMetrics result = new ResultMetrics();
             while (!Thread.interrupted()) {
                 long start = System.nanoTime();
-                long hits = searcher.search(iterator.next()).count();
+                long hits = nPartitions > 1
+                        ? searcher.search(iterator.next(), ForkJoinPool.commonPool(), nPartitions).count()
+                        : searcher.search(iterator.next()).count();
                 double latencyMilliseconds = (System.nanoTime() - start) / 1_000_000d;
                 result.registerResult(hits, latencyMilliseconds);
             }
@@ -256,6 +283,10 @@ public class PredicateIndexBenchmark {
         @Option(name = {"-t", "--threads"}, description = "Number of search threads")
         public int nThreads = 1;
 
+        @Option(name = {"-p", "--partitions"},
+                description = "Number of document id ranges each query is split into, searched in parallel")
+        public int nPartitions = 1;
+
         @Option(name = {"-a", "--arity"}, description = "Arity")
         public int arity = 2;
 
@@ -288,6 +319,13 @@ public class PredicateIndexBenchmark {
         @Option(name = {"-wi", "--write-index"}, description = "Serialize index to the given file")
         public String indexOutputFile;
 
+        @Option(name = {"-mif", "--mapped-index-file"},
+                description = "File path to index file to memory map (Serialized mappable index)")
+        public String mappedIndexFile;
+
+        @Option(name = {"-wmi", "--write-mappable-index"}, description = "Serialize mappable index to the given file")
+        public String mappableIndexOutputFile;
+
         @Option(name = {"-quf", "--query-file"}, description = "File path to a query file")
         public String queryFile;
 
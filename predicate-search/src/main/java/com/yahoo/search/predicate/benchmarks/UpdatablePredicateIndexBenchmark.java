@@ -0,0 +1,219 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.predicate.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.google.common.collect.Iterators;
+import com.yahoo.document.predicate.Predicate;
+import com.yahoo.search.predicate.Config;
+import com.yahoo.search.predicate.PredicateQuery;
+import com.yahoo.search.predicate.UpdatablePredicateIndex;
+import com.yahoo.search.predicate.utils.VespaFeedParser;
+import com.yahoo.search.predicate.utils.VespaQueryParser;
+import io.airlift.airline.Command;
+import io.airlift.airline.HelpOption;
+import io.airlift.airline.Option;
+import io.airlift.airline.SingleCommand;
+
+import javax.inject.Inject;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * A benchmark that measures the search performance of an {@link UpdatablePredicateIndex}
+ * while its documents are replaced at a given rate.
+ *
+ * @author agent
+ */
+public class UpdatablePredicateIndexBenchmark {
+
+    private static final Map<String, Object> output = new TreeMap<>();
+
+    public static void main(String[] rawArgs) throws IOException {
+        BenchmarkArguments args = SingleCommand.singleCommand(BenchmarkArguments.class).parse(rawArgs);
+        if (args.helpOption.showHelpIfRequested()) return;
+        if (args.feedFile == null || args.queryFile == null) {
+            System.err.println("Provide both a feed file and a query file.");
+            return;
+        }
+        putBenchmarkArgumentsToOutput(args);
+
+        long start = System.currentTimeMillis();
+        Config config = new Config.Builder().setArity(args.arity).build();
+        UpdatablePredicateIndex index = new UpdatablePredicateIndex(config, args.maxDeltaSize);
+        List<Predicate> predicates = new ArrayList<>();
+        VespaFeedParser.parseDocuments(args.feedFile, args.maxDocuments, predicates::add);
+        Map<Integer, Predicate> documents = new HashMap<>();
+        for (int id = 0; id < predicates.size(); id++) {
+            documents.put(id, predicates.get(id));
+        }
+        index.indexDocuments(documents);
+        index.compact();
+        output.put("Indexed document count", predicates.size());
+        output.put("Time indexing documents", System.currentTimeMillis() - start);
+
+        List<PredicateQuery> queries = VespaQueryParser.parseQueries(args.queryFile, args.maxQueries);
+        output.put("Queries parsed", queries.size());
+        searchIndexWhileUpdating(queries, predicates, index, args);
+        output.put("Total time", System.currentTimeMillis() - start);
+        output.put("Timestamp", new Date().toString());
+        writeOutputToStandardOut();
+    }
+
+    private static void putBenchmarkArgumentsToOutput(BenchmarkArguments args) {
+        output.put("Arity", args.arity);
+        output.put("Max documents", args.maxDocuments);
+        output.put("Max queries", args.maxQueries);
+        output.put("Max delta size", args.maxDeltaSize);
+        output.put("Updates per second", args.updatesPerSecond);
+        output.put("Threads", args.nThreads);
+        output.put("Runtime", args.runtime);
+        output.put("Feed file", args.feedFile);
+        output.put("Query file", args.queryFile);
+    }
+
+    private static void searchIndexWhileUpdating(List<PredicateQuery> queries, List<Predicate> predicates,
+                                                 UpdatablePredicateIndex index, BenchmarkArguments args) {
+        ExecutorService executor = Executors.newFixedThreadPool(args.nThreads + 1);
+        Random random = new Random(42);
+        List<QueryRunner> runners = new ArrayList<>();
+        for (int i = 0; i < args.nThreads; i++) {
+            List<PredicateQuery> shuffledQueries = new ArrayList<>(queries);
+            Collections.shuffle(shuffledQueries, random);
+            runners.add(new QueryRunner(shuffledQueries, index.searcher()));
+        }
+        long start = System.currentTimeMillis();
+        Future<Long> updates = executor.submit(new Updater(predicates, index, args.updatesPerSecond));
+        List<Future<ResultMetrics>> futureResults = runners.stream().map(executor::submit).collect(toList());
+        try {
+            Thread.sleep(args.runtime * 1000L);
+            executor.shutdownNow();
+            executor.awaitTermination(2, TimeUnit.SECONDS);
+            long searchTime = System.currentTimeMillis() - start;
+            ResultMetrics combined = futureResults.get(0).get();
+            for (int i = 1; i < futureResults.size(); i++) {
+                combined.combine(futureResults.get(i).get());
+            }
+            combined.writeMetrics(output, searchTime);
+            output.put("Updates done", updates.get());
+            output.put("Delta size at end", index.getDeltaSize());
+        } catch (InterruptedException | ExecutionException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /** Replaces random documents with the predicate of another random document at a fixed rate */
+    private static class Updater implements Callable<Long> {
+        private final List<Predicate> predicates;
+        private final UpdatablePredicateIndex index;
+        private final long nanosBetweenUpdates;
+
+        public Updater(List<Predicate> predicates, UpdatablePredicateIndex index, int updatesPerSecond) {
+            this.predicates = predicates;
+            this.index = index;
+            this.nanosBetweenUpdates = TimeUnit.SECONDS.toNanos(1) / Math.max(1, updatesPerSecond);
+        }
+
+        @Override
+        public Long call() {
+            Random random = new Random(7);
+            long updates = 0;
+            long next = System.nanoTime();
+            while (!Thread.interrupted()) {
+                int id = random.nextInt(predicates.size());
+                index.indexDocument(id, predicates.get(random.nextInt(predicates.size())));
+                ++updates;
+                next += nanosBetweenUpdates;
+                LockSupport.parkNanos(next - System.nanoTime());
+            }
+            return updates;
+        }
+    }
+
+    private static class QueryRunner implements Callable<ResultMetrics> {
+        private final List<PredicateQuery> queries;
+        private final UpdatablePredicateIndex.Searcher searcher;
+
+        public QueryRunner(List<PredicateQuery> queries, UpdatablePredicateIndex.Searcher searcher) {
+            this.queries = queries;
+            this.searcher = searcher;
+        }
+
+        @Override
+        public ResultMetrics call() throws Exception {
+            Iterator<PredicateQuery> iterator = Iterators.cycle(queries);
+            ResultMetrics result = new ResultMetrics();
+            while (!Thread.interrupted()) {
+                long start = System.nanoTime();
+                long hits = searcher.search(iterator.next()).count();
+                double latencyMilliseconds = (System.nanoTime() - start) / 1_000_000d;
+                result.registerResult(hits, latencyMilliseconds);
+            }
+            return result;
+        }
+    }
+
+    private static void writeOutputToStandardOut() {
+        try {
+            ObjectMapper objectMapper = new ObjectMapper();
+            objectMapper.enable(SerializationFeature.INDENT_OUTPUT);
+            objectMapper.writeValue(System.out, output);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Command(name = "updatable-benchmark",
+             description = "Java predicate search library benchmark, searching while updating the index")
+    public static class BenchmarkArguments {
+
+        @Option(name = {"-t", "--threads"}, description = "Number of search threads")
+        public int nThreads = 1;
+
+        @Option(name = {"-a", "--arity"}, description = "Arity")
+        public int arity = 2;
+
+        @Option(name = {"-r", "--runtime"}, description = "Number of seconds to run queries")
+        public int runtime = 30;
+
+        @Option(name = {"-u", "--updates-per-second"}, description = "Number of documents replaced per second")
+        public int updatesPerSecond = 100;
+
+        @Option(name = {"-d", "--max-delta-size"},
+                description = "Number of changed documents at which the index is compacted")
+        public int maxDeltaSize = 1000;
+
+        @Option(name = {"-md", "--max-documents"},
+                description = "The maximum number of documents to index from feed file")
+        public int maxDocuments = Integer.MAX_VALUE;
+
+        @Option(name = {"-mq", "--max-queries"}, description = "The maximum number of queries to run from query file")
+        public int maxQueries = Integer.MAX_VALUE;
+
+        @Option(name = {"-ff", "--feed-file"}, description = "File path to feed file (Vespa XML feed)")
+        public String feedFile;
+
+        @Option(name = {"-quf", "--query-file"}, description = "File path to a query file (Vespa format)")
+        public String queryFile;
+
+        @Inject
+        public HelpOption helpOption;
+    }
+}
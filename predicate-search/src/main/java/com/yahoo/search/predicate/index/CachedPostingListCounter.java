@@ -2,17 +2,19 @@
 package com.yahoo.search.predicate.index;
 
 import com.google.common.collect.MinMaxPriorityQueue;
-import com.gs.collections.api.tuple.primitive.ObjectLongPair;
 import com.gs.collections.impl.map.mutable.primitive.ObjectIntHashMap;
-import com.gs.collections.impl.map.mutable.primitive.ObjectLongHashMap;
 
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
 
 /**
  * Counts the number of posting lists per document id.
  * Caches the most expensive posting list in a bit vector.
+ * Usage is counted per posting list array, which is held weakly, such that arrays evicted from the cache of a
+ * {@link MappedSimpleIndex} are not retained by this.
  *
  * @author bjorncs
  */
@@ -21,7 +23,7 @@ public class CachedPostingListCounter {
     private static final double THRESHOLD_USE_BIT_VECTOR = 1;
 
     private final int nDocuments;
-    private final ObjectLongHashMap<int[]> frequency = new ObjectLongHashMap<>();
+    private final WeakHashMap<int[], long[]> frequency = new WeakHashMap<>(); // Arrays are compared by identity
     private final ObjectIntHashMap<int[]> postingListMapping;
     private final int[] bitVector;
 
@@ -39,7 +41,7 @@ public class CachedPostingListCounter {
 
     public synchronized void registerUsage(List<PostingList> postingLists) {
         for (PostingList postingList : postingLists) {
-            frequency.updateValue(postingList.getDocIds(), 0, v -> v + 1);
+            frequency.computeIfAbsent(postingList.getDocIds(), docIds -> new long[1])[0]++;
         }
     }
 
@@ -90,8 +92,8 @@ public class CachedPostingListCounter {
         MinMaxPriorityQueue<Entry> mostExpensive = MinMaxPriorityQueue
                 .maximumSize(32).expectedSize(32).create();
         synchronized (this) {
-            for (ObjectLongPair<int[]> p : frequency.keyValuesView()) {
-                mostExpensive.add(new Entry(p.getOne(), p.getTwo()));
+            for (Map.Entry<int[], long[]> e : frequency.entrySet()) {
+                mostExpensive.add(new Entry(e.getKey(), e.getValue()[0]));
             }
         }
         ObjectIntHashMap<int[]> postingListMapping = new ObjectIntHashMap<>();
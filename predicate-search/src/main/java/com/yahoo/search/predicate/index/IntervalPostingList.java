@@ -9,7 +9,7 @@ package com.yahoo.search.predicate.index;
  */
 public class IntervalPostingList extends MultiIntervalPostingList {
     private final PredicateIntervalStore store;
-    private int[] currentIntervals;
+    private final PredicateIntervalStore.Intervals currentIntervals = new PredicateIntervalStore.Intervals();
     private int currentIntervalIndex;
     private int currentInterval;
 
@@ -20,16 +20,16 @@ public class IntervalPostingList extends MultiIntervalPostingList {
 
     @Override
     protected boolean prepareIntervals(int dataRef) {
-        currentIntervals = store.get(dataRef);
+        store.read(dataRef, currentIntervals);
         currentIntervalIndex = 1;
-        currentInterval = currentIntervals[0];
+        currentInterval = currentIntervals.get(0);
         return true;
     }
 
     @Override
     public boolean nextInterval() {
-        if (currentIntervalIndex < currentIntervals.length) {
-            this.currentInterval = currentIntervals[currentIntervalIndex++];
+        if (currentIntervalIndex < currentIntervals.length()) {
+            this.currentInterval = currentIntervals.get(currentIntervalIndex++);
             return true;
         }
         return false;
@@ -0,0 +1,79 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.predicate.index;
+
+import com.yahoo.search.predicate.serialization.MappedFileReader;
+import com.yahoo.search.predicate.serialization.MappedInts;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * A {@link PredicateIntervalStore} read in place from a memory mapped file written by
+ * {@link PredicateIntervalStore#writeMappableToOutputStream(DataOutputStream)}.
+ * Posting lists read interval lists with bulk copies into a buffer they own, see {@link #read}.
+ *
+ * @author agent
+ */
+public class MappedPredicateIntervalStore extends PredicateIntervalStore {
+
+    private final MappedInts offsets;
+    private final MappedInts intervals;
+
+    private MappedPredicateIntervalStore(MappedInts offsets, MappedInts intervals) {
+        super(new int[0][]); // Not used, all lookups go to the mapped buffers
+        this.offsets = offsets;
+        this.intervals = intervals;
+    }
+
+    /** Maps the next section of the given reader, which must be written by {@link #writeMappableToOutputStream} */
+    public static MappedPredicateIntervalStore map(MappedFileReader reader) throws IOException {
+        int nIntervalLists = reader.readInt();
+        int nIntervals = reader.readInt();
+        MappedInts offsets = reader.mapInts(nIntervalLists + 1);
+        MappedInts intervals = reader.mapInts(nIntervals);
+        return new MappedPredicateIntervalStore(offsets, intervals);
+    }
+
+    @Override
+    public int[] get(int intervalRef) {
+        assert intervalRef < offsets.size() - 1;
+        int from = offsets.get(intervalRef);
+        int[] result = new int[offsets.get(intervalRef + 1) - from];
+        intervals.view().get(from, result, 0, result.length);
+        return result;
+    }
+
+    @Override
+    public void read(int intervalRef, Intervals target) {
+        assert intervalRef < offsets.size() - 1;
+        int from = offsets.get(intervalRef);
+        target.copy(intervals, from, offsets.get(intervalRef + 1) - from);
+    }
+
+    @Override
+    public void writeToOutputStream(DataOutputStream out) throws IOException {
+        int nIntervalLists = offsets.size() - 1;
+        out.writeInt(nIntervalLists);
+        for (int i = 0; i < nIntervalLists; i++) {
+            int from = offsets.get(i);
+            int to = offsets.get(i + 1);
+            out.writeInt(to - from);
+            for (int j = from; j < to; j++) {
+                out.writeInt(intervals.get(j));
+            }
+        }
+    }
+
+    @Override
+    public void writeMappableToOutputStream(DataOutputStream out) throws IOException {
+        out.writeInt(offsets.size() - 1);
+        out.writeInt(intervals.size());
+        for (int i = 0; i < offsets.size(); i++) {
+            out.writeInt(offsets.get(i));
+        }
+        for (int i = 0; i < intervals.size(); i++) {
+            out.writeInt(intervals.get(i));
+        }
+    }
+
+}
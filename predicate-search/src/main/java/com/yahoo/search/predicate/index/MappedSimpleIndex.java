@@ -0,0 +1,167 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.predicate.index;
+
+import com.gs.collections.impl.map.mutable.primitive.LongObjectHashMap;
+import com.yahoo.search.predicate.serialization.MappedFileReader;
+import com.yahoo.search.predicate.serialization.MappedInts;
+import com.yahoo.search.predicate.serialization.MappedLongs;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A {@link SimpleIndex} searched in place in a memory mapped file written by
+ * {@link SimpleIndex#writeMappableToOutputStream(DataOutputStream)}.
+ * Keys are looked up by binary search in the mapped key table. Posting lists are iterated as int arrays, so the
+ * posting list of a key is bulk copied to the heap when used, and kept in a cache bounded by the total number
+ * of postings, evicting the least recently used.
+ *
+ * @author agent
+ */
+public class MappedSimpleIndex extends SimpleIndex {
+
+    private final MappedLongs keys;
+    private final MappedInts offsets;
+    private final MappedInts docIds;
+    private final MappedInts dataRefs;
+    private final int maxCachedPostings;
+    private final LinkedHashMap<Long, Entry> usedEntries = new LinkedHashMap<>(16, 0.75f, true);
+    private long cachedPostings = 0;
+
+    /** The default maximum number of postings to cache, each taking 8 bytes of heap */
+    public static final int DEFAULT_MAX_CACHED_POSTINGS = 1 << 20;
+
+    private MappedSimpleIndex(MappedLongs keys, MappedInts offsets, MappedInts docIds, MappedInts dataRefs,
+                              int maxCachedPostings) {
+        super(new LongObjectHashMap<>(0)); // Not used, all lookups go to the mapped buffers
+        this.keys = keys;
+        this.offsets = offsets;
+        this.docIds = docIds;
+        this.dataRefs = dataRefs;
+        this.maxCachedPostings = maxCachedPostings;
+    }
+
+    /** Maps the next section of the given reader, which must be written by {@link #writeMappableToOutputStream} */
+    public static MappedSimpleIndex map(MappedFileReader reader) throws IOException {
+        return map(reader, DEFAULT_MAX_CACHED_POSTINGS);
+    }
+
+    /**
+     * Maps the next section of the given reader, which must be written by {@link #writeMappableToOutputStream},
+     * caching at most the given number of postings on the heap
+     */
+    public static MappedSimpleIndex map(MappedFileReader reader, int maxCachedPostings) throws IOException {
+        int nKeys = reader.readInt();
+        int nPostings = reader.readInt();
+        MappedLongs keys = reader.mapLongs(nKeys);
+        MappedInts offsets = reader.mapInts(nKeys + 1);
+        MappedInts docIds = reader.mapInts(nPostings);
+        MappedInts dataRefs = reader.mapInts(nPostings);
+        return new MappedSimpleIndex(keys, offsets, docIds, dataRefs, maxCachedPostings);
+    }
+
+    @Override
+    public Entry getPostingList(long key) {
+        synchronized (usedEntries) {
+            Entry entry = usedEntries.get(key);
+            if (entry != null) return entry;
+        }
+
+        int index = indexOf(key);
+        if (index < 0) return null;
+        Entry entry = readEntry(index);
+        synchronized (usedEntries) {
+            Entry previous = usedEntries.putIfAbsent(key, entry);
+            if (previous != null) return previous; // Read concurrently by another search
+            cachedPostings += entry.docIds.length;
+            evictIfFull();
+        }
+        return entry;
+    }
+
+    /** Evicts the least recently used entries until the postings fit. An entry in use by a search stays valid. */
+    private void evictIfFull() {
+        Iterator<Map.Entry<Long, Entry>> entries = usedEntries.entrySet().iterator();
+        while (cachedPostings > maxCachedPostings && entries.hasNext()) {
+            cachedPostings -= entries.next().getValue().docIds.length;
+            entries.remove();
+        }
+    }
+
+    /** Returns the number of postings currently cached on the heap */
+    long getCachedPostings() {
+        synchronized (usedEntries) {
+            return cachedPostings;
+        }
+    }
+
+    private int indexOf(long key) {
+        int low = 0;
+        int high = keys.size() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long midKey = keys.get(mid);
+            if (midKey < key) {
+                low = mid + 1;
+            } else if (midKey > key) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    private Entry readEntry(int index) {
+        int from = offsets.get(index);
+        int length = offsets.get(index + 1) - from;
+        return new Entry(copy(docIds, from, length), copy(dataRefs, from, length));
+    }
+
+    private static int[] copy(MappedInts ints, int from, int length) {
+        int[] result = new int[length];
+        ints.view().get(from, result, 0, length);
+        return result;
+    }
+
+    @Override
+    public void writeToOutputStream(DataOutputStream out) throws IOException {
+        int nKeys = keys.size();
+        out.writeInt(nKeys);
+        for (int i = 0; i < nKeys; i++) {
+            out.writeLong(keys.get(i));
+            int from = offsets.get(i);
+            int to = offsets.get(i + 1);
+            out.writeInt(to - from);
+            for (int j = from; j < to; j++) {
+                out.writeInt(docIds.get(j));
+            }
+            out.writeInt(to - from);
+            for (int j = from; j < to; j++) {
+                out.writeInt(dataRefs.get(j));
+            }
+        }
+    }
+
+    @Override
+    public void writeMappableToOutputStream(DataOutputStream out) throws IOException {
+        out.writeInt(keys.size());
+        out.writeInt(docIds.size());
+        for (int i = 0; i < keys.size(); i++) {
+            out.writeLong(keys.get(i));
+        }
+        for (int i = 0; i < offsets.size(); i++) {
+            out.writeInt(offsets.get(i));
+        }
+        for (int i = 0; i < docIds.size(); i++) {
+            out.writeInt(docIds.get(i));
+        }
+        for (int i = 0; i < dataRefs.size(); i++) {
+            out.writeInt(dataRefs.get(i));
+        }
+    }
+
+}
@@ -2,6 +2,7 @@
 package com.yahoo.search.predicate.index;
 
 import com.google.common.primitives.Ints;
+import com.yahoo.search.predicate.serialization.MappedInts;
 import com.yahoo.search.predicate.serialization.SerializationHelper;
 
 import java.io.DataInputStream;
@@ -29,6 +30,15 @@ public class PredicateIntervalStore {
         return intervalsList[intervalRef];
     }
 
+    /**
+     * Reads the interval list of the given reference into the given intervals, without allocating.
+     * This is used by the posting lists, which read the intervals of every document they visit.
+     */
+    public void read(int intervalRef, Intervals intervals) {
+        int[] array = get(intervalRef);
+        intervals.set(array, array.length);
+    }
+
     public void writeToOutputStream(DataOutputStream out) throws IOException {
         out.writeInt(intervalsList.length);
         for (int[] intervals : intervalsList) {
@@ -36,6 +46,30 @@ public class PredicateIntervalStore {
         }
     }
 
+    /**
+     * Writes this in a format which may be read in place by {@link MappedPredicateIntervalStore}:
+     * the number of interval lists and intervals, the offset of each interval list, and then all intervals.
+     */
+    public void writeMappableToOutputStream(DataOutputStream out) throws IOException {
+        int nIntervals = 0;
+        for (int[] intervals : intervalsList) {
+            nIntervals = Math.addExact(nIntervals, intervals.length);
+        }
+        out.writeInt(intervalsList.length);
+        out.writeInt(nIntervals);
+        int offset = 0;
+        for (int[] intervals : intervalsList) {
+            out.writeInt(offset);
+            offset += intervals.length;
+        }
+        out.writeInt(offset);
+        for (int[] intervals : intervalsList) {
+            for (int interval : intervals) {
+                out.writeInt(interval);
+            }
+        }
+    }
+
     public static PredicateIntervalStore fromInputStream(DataInputStream in) throws IOException {
         int length = in.readInt();
         int[][] intervalsList = new int[length][];
@@ -45,6 +79,45 @@ public class PredicateIntervalStore {
         return new PredicateIntervalStore(intervalsList);
     }
 
+    /**
+     * An interval list read by {@link #read}, valid until the next read into it.
+     * This is reused between reads and is not thread safe, so each posting list owns its own instance.
+     */
+    public static final class Intervals {
+
+        private int[] array = new int[0];
+        private int length = 0;
+        private int[] buffer = new int[0];
+        private MappedInts source = null;
+        private MappedInts.View view = null;
+
+        public int get(int index) { return array[index]; }
+
+        public int length() { return length; }
+
+        /** Returns the array holding these intervals in its first {@link #length()} elements */
+        public int[] array() { return array; }
+
+        void set(int[] array, int length) {
+            this.array = array;
+            this.length = length;
+        }
+
+        /** Bulk copies the given range of the given ints into an array owned by this */
+        void copy(MappedInts from, int offset, int length) {
+            if (source != from) {
+                source = from;
+                view = from.view();
+            }
+            if (buffer.length < length) {
+                buffer = new int[Math.max(length, buffer.length * 2)];
+            }
+            view.get(offset, buffer, 0, length);
+            set(buffer, length);
+        }
+
+    }
+
     public static class Builder {
         private final List<int[]> intervalsListBuilder = new ArrayList<>();
         private final Map<Entry, Integer> intervalsListIndexes = new HashMap<>();
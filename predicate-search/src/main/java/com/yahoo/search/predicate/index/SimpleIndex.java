@@ -47,6 +47,40 @@ public class SimpleIndex {
         }
     }
 
+    /**
+     * Writes this in a format which may be searched in place by {@link MappedSimpleIndex}:
+     * the number of keys and postings, the sorted keys, the offset of the posting list of each key,
+     * and then the doc ids and data refs of all posting lists.
+     */
+    public void writeMappableToOutputStream(DataOutputStream out) throws IOException {
+        long[] keys = dictionary.keySet().toSortedArray();
+        int nPostings = 0;
+        for (long key : keys) {
+            nPostings = Math.addExact(nPostings, dictionary.get(key).docIds.length);
+        }
+        out.writeInt(keys.length);
+        out.writeInt(nPostings);
+        for (long key : keys) {
+            out.writeLong(key);
+        }
+        int offset = 0;
+        for (long key : keys) {
+            out.writeInt(offset);
+            offset += dictionary.get(key).docIds.length;
+        }
+        out.writeInt(offset);
+        for (long key : keys) {
+            for (int docId : dictionary.get(key).docIds) {
+                out.writeInt(docId);
+            }
+        }
+        for (long key : keys) {
+            for (int dataRef : dictionary.get(key).dataRefs) {
+                out.writeInt(dataRef);
+            }
+        }
+    }
+
     public static SimpleIndex fromInputStream(DataInputStream in) throws IOException {
         int nEntries = in.readInt();
         LongObjectHashMap<Entry> dictionary = new LongObjectHashMap<>(nEntries);
@@ -64,7 +98,7 @@ public class SimpleIndex {
         public final int[] docIds;
         public final int[] dataRefs;
 
-        private Entry(int[] docIds, int[] dataRefs) {
+        Entry(int[] docIds, int[] dataRefs) {
             this.docIds = docIds;
             this.dataRefs = dataRefs;
         }
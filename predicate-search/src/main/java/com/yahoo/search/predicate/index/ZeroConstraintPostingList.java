@@ -2,6 +2,7 @@
 package com.yahoo.search.predicate.index;
 
 import com.yahoo.search.predicate.SubqueryBitmap;
+import com.yahoo.search.predicate.utils.PostingListSearch;
 
 /**
  * Wraps an int stream of document ids into a PostingList.
@@ -24,14 +25,16 @@ public class ZeroConstraintPostingList implements PostingList {
 
     @Override
     public boolean nextDocument(int docId) {
-        int currentDocId = this.currentDocId;
-        while (currentIndex < length && currentDocId <= docId) {
-            currentDocId = docIds[currentIndex++];
+        if (currentIndex == length) {
+            return false;
         }
-        if (currentDocId <= docId) {
+        int index = PostingListSearch.interpolationSearch(docIds, currentIndex, length, docId);
+        if (index == length) {
+            currentIndex = length;
             return false;
         }
-        this.currentDocId = currentDocId;
+        this.currentDocId = docIds[index];
+        this.currentIndex = index;
         return true;
     }
 
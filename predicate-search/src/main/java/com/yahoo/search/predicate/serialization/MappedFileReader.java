@@ -0,0 +1,96 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.predicate.serialization;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads the sections of a file written with a {@link java.io.DataOutputStream} in order, either by copying them
+ * to the heap or by memory mapping them. Sections larger than a chunk, 1GB by default, are mapped as several chunks,
+ * as a single mapping can not be larger than 2GB.
+ *
+ * @author agent
+ */
+public class MappedFileReader {
+
+    private static final int DEFAULT_CHUNK_BYTES = 1 << 30;
+
+    private final FileChannel channel;
+    private final int chunkBytes;
+    private long position;
+
+    public MappedFileReader(FileChannel channel) {
+        this(channel, DEFAULT_CHUNK_BYTES);
+    }
+
+    /** Creates a reader mapping sections in chunks of the given number of bytes, which must be a power of two >= 8 */
+    MappedFileReader(FileChannel channel, int chunkBytes) {
+        if (Integer.bitCount(chunkBytes) != 1 || chunkBytes < Long.BYTES)
+            throw new IllegalArgumentException("Chunk size must be a power of two >= " + Long.BYTES + ", was " + chunkBytes);
+        this.channel = channel;
+        this.chunkBytes = chunkBytes;
+        this.position = 0;
+    }
+
+    public int readInt() throws IOException {
+        return readBytes(Integer.BYTES).getInt();
+    }
+
+    public long readLong() throws IOException {
+        return readBytes(Long.BYTES).getLong();
+    }
+
+    /** Copies the given number of bytes to the heap */
+    public byte[] readByteArray(int length) throws IOException {
+        return readBytes(length).array();
+    }
+
+    /** Maps the given number of ints, written with {@link java.io.DataOutputStream#writeInt(int)} */
+    public MappedInts mapInts(int count) throws IOException {
+        ByteBuffer[] chunks = map((long) count * Integer.BYTES);
+        IntBuffer[] intChunks = new IntBuffer[chunks.length];
+        for (int i = 0; i < chunks.length; i++)
+            intChunks[i] = chunks[i].asIntBuffer();
+        return new MappedInts(intChunks, chunkBytes / Integer.BYTES, count);
+    }
+
+    /** Maps the given number of longs, written with {@link java.io.DataOutputStream#writeLong(long)} */
+    public MappedLongs mapLongs(int count) throws IOException {
+        ByteBuffer[] chunks = map((long) count * Long.BYTES);
+        LongBuffer[] longChunks = new LongBuffer[chunks.length];
+        for (int i = 0; i < chunks.length; i++)
+            longChunks[i] = chunks[i].asLongBuffer();
+        return new MappedLongs(longChunks, chunkBytes / Long.BYTES, count);
+    }
+
+    private ByteBuffer readBytes(int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0)
+                throw new EOFException("Unexpected end of file at position " + (position + buffer.position()));
+        }
+        position += length;
+        buffer.flip();
+        return buffer;
+    }
+
+    /** Maps the given number of bytes as chunks of the chunk size, where only the last may be smaller */
+    private ByteBuffer[] map(long length) throws IOException {
+        if (length < 0)
+            throw new IllegalArgumentException("Can not map a section of " + length + " bytes");
+        if (position + length > channel.size())
+            throw new EOFException("Section of " + length + " bytes at position " + position + " is beyond the end of file");
+        ByteBuffer[] chunks = new ByteBuffer[(int) Math.max(1, (length + chunkBytes - 1) / chunkBytes)];
+        for (int i = 0; i < chunks.length; i++) {
+            long chunkLength = Math.min(chunkBytes, length - (long) i * chunkBytes);
+            chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, position + (long) i * chunkBytes, chunkLength);
+        }
+        position += length;
+        return chunks;
+    }
+
+}
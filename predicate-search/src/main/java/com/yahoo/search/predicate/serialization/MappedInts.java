@@ -0,0 +1,62 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.predicate.serialization;
+
+import java.nio.IntBuffer;
+
+/**
+ * A section of ints mapped by {@link MappedFileReader#mapInts(int)}, in one or more chunks
+ * as a single mapping can not be larger than 2GB.
+ *
+ * @author agent
+ */
+public final class MappedInts {
+
+    private final IntBuffer[] chunks;
+    private final int shift;
+    private final int mask;
+    private final int size;
+
+    MappedInts(IntBuffer[] chunks, int intsPerChunk, int size) {
+        this.chunks = chunks;
+        this.shift = Integer.numberOfTrailingZeros(intsPerChunk);
+        this.mask = intsPerChunk - 1;
+        this.size = size;
+    }
+
+    public int size() { return size; }
+
+    public int get(int index) {
+        return chunks[index >>> shift].get(index & mask);
+    }
+
+    /** Returns a view for bulk reads. A view keeps its own buffer positions, so it is not thread safe. */
+    public View view() {
+        return new View();
+    }
+
+    public final class View {
+
+        private final IntBuffer[] views = new IntBuffer[chunks.length];
+
+        private View() {
+            for (int i = 0; i < chunks.length; i++)
+                views[i] = chunks[i].duplicate(); // Private positions, as Java 8 has no absolute bulk get
+        }
+
+        /** Bulk copies the given number of ints starting at the given index into the given array */
+        public void get(int index, int[] destination, int offset, int length) {
+            while (length > 0) {
+                IntBuffer chunk = views[index >>> shift];
+                int chunkIndex = index & mask;
+                int count = Math.min(length, chunk.limit() - chunkIndex);
+                chunk.position(chunkIndex);
+                chunk.get(destination, offset, count);
+                index += count;
+                offset += count;
+                length -= count;
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,32 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.predicate.serialization;
+
+import java.nio.LongBuffer;
+
+/**
+ * A section of longs mapped by {@link MappedFileReader#mapLongs(int)}, in one or more chunks
+ * as a single mapping can not be larger than 2GB.
+ *
+ * @author agent
+ */
+public final class MappedLongs {
+
+    private final LongBuffer[] chunks;
+    private final int shift;
+    private final int mask;
+    private final int size;
+
+    MappedLongs(LongBuffer[] chunks, int longsPerChunk, int size) {
+        this.chunks = chunks;
+        this.shift = Integer.numberOfTrailingZeros(longsPerChunk);
+        this.mask = longsPerChunk - 1;
+        this.size = size;
+    }
+
+    public int size() { return size; }
+
+    public long get(int index) {
+        return chunks[index >>> shift].get(index & mask);
+    }
+
+}
@@ -3,6 +3,9 @@ package com.yahoo.search.predicate.utils;
 
 /**
  * Algorithms for searching in the docId arrays in posting lists.
+ * All searches return the index of the first element larger than the key.
+ * The final step of each search counts the elements in a small window without branching on the values,
+ * which lets the JIT compile it to conditional moves or vector instructions.
  * @author bjorncs
  */
 public class PostingListSearch {
@@ -18,7 +21,7 @@ public class PostingListSearch {
         int low = fromIndex;
         int lowVal = a[low];
         if (key - lowVal < LINEAR_SEARCH_THRESHOLD_2) {
-            return linearSearch(a, low, toIndex, key);
+            return gallopingSearch(a, low, toIndex, key);
         }
         int high = toIndex - 1;
         int diff = high - low;
@@ -60,30 +63,47 @@ public class PostingListSearch {
     }
 
     /**
-     * Modified binary search:
+     * Exponential search from fromIndex, for keys expected to be close to the start of the range:
+     *  - Returns the first index where a[index] is larger then key
+     */
+    public static int gallopingSearch(int[] a, int fromIndex, int toIndex, int key) {
+        assert fromIndex < toIndex;
+        int low = fromIndex;
+        int step = 1;
+        int high = low + step;
+        while (high < toIndex && a[high - 1] <= key) {
+            low = high;
+            step <<= 1;
+            high = low + step;
+        }
+        return binarySearch(a, low, Math.min(high, toIndex), key);
+    }
+
+    /**
+     * Modified binary search, without branches on the values compared:
      *  - Returns the first index where a[index] is larger then key
      */
     private static int binarySearch(int[] a, int fromIndex, int toIndex, int key) {
         assert fromIndex < toIndex;
         int low = fromIndex;
-        int high = toIndex - 1;
-        while (high - low > LINEAR_SEARCH_THRESHOLD) {
-            int mid = (low + high) >>> 1;
-            assert mid < high;
-            if (a[mid] < key) {
-                low = mid + 1;
-            } else {
-                high = mid;
-            }
+        int length = toIndex - fromIndex;
+        while (length > LINEAR_SEARCH_THRESHOLD) {
+            int half = length >>> 1;
+            low = a[low + half - 1] <= key ? low + half : low;
+            length -= half;
         }
-        return linearSearch(a, low, high + 1, key);
+        return countingSearch(a, low, low + length, key);
     }
 
-    private static int linearSearch(int[] a, int low, int high, int key) {
-        assert low < high;
-        while (low < high && a[low] <= key) {
-            ++low;
+    /**
+     * Counts the elements not larger than key, which for a sorted array gives the first index with a larger element.
+     * Only used for small ranges, as it always visits every element.
+     */
+    private static int countingSearch(int[] a, int low, int high, int key) {
+        int count = 0;
+        for (int i = low; i < high; ++i) {
+            count += a[i] <= key ? 1 : 0;
         }
-        return low;
+        return low + count;
     }
 }
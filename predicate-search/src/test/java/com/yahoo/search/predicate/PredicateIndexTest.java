@@ -2,12 +2,21 @@
 package com.yahoo.search.predicate;
 
 import com.yahoo.document.predicate.Predicate;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 import static com.yahoo.search.predicate.serialization.SerializationTestHelper.assertSerializationDeserializationMatches;
 import static java.util.stream.Collectors.toList;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 
 /**
@@ -18,6 +27,9 @@ public class PredicateIndexTest {
 
     private static final int DOC_ID = 42;
 
+    @Rule
+    public final TemporaryFolder tmpFolder = new TemporaryFolder();
+
     @Test
     public void requireThatPredicateIndexCanSearch() {
         PredicateIndexBuilder builder = new PredicateIndexBuilder(10);
@@ -129,6 +141,34 @@ public class PredicateIndexTest {
         assertEquals("[42]", searcher.search(query).collect(toList()).toString());
     }
 
+    @Test
+    public void require_that_partitioned_search_gives_same_hits_as_sequential_search() {
+        PredicateIndexBuilder builder = new PredicateIndexBuilder(10);
+        for (int id = 1; id <= 100; id++) {
+            String country = id % 3 == 0 ? "no" : "se";
+            builder.indexDocument(id, Predicate.fromString(
+                    "country in ['" + country + "'] and age in [" + id + ".." + (id + 20) + "]"));
+        }
+        builder.indexDocument(101, Predicate.fromString("true"));
+        builder.indexDocument(102, Predicate.fromString("country not in ['se']"));
+        PredicateIndex index = builder.build();
+        PredicateIndex.Searcher searcher = index.searcher();
+        PredicateQuery query = new PredicateQuery();
+        query.addFeature("country", "no");
+        query.addRangeFeature("age", 42);
+
+        List<Hit> expected = searcher.search(query).collect(toList());
+        assertEquals(9, expected.size());
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (int nPartitions : new int[]{1, 2, 7, 200}) {
+                assertEquals(expected, searcher.search(query, pool, nPartitions).collect(toList()));
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
     @Test
     public void require_that_serialization_and_deserialization_retain_data() throws IOException {
         PredicateIndexBuilder builder = new PredicateIndexBuilder(10);
@@ -138,4 +178,67 @@ public class PredicateIndexTest {
         assertSerializationDeserializationMatches(
                 index, PredicateIndex::writeToOutputStream, PredicateIndex::fromInputStream);
     }
+
+    @Test
+    public void require_that_mapped_index_gives_same_hits_as_original() throws IOException {
+        PredicateIndexBuilder builder = new PredicateIndexBuilder(10);
+        builder.indexDocument(1, Predicate.fromString("country in ['no', 'se'] and gender in ['male']"));
+        builder.indexDocument(2, Predicate.fromString("country in ['no'] and gender in ['female']"));
+        builder.indexDocument(3, Predicate.fromString("country not in ['no'] and age in [20..40]"));
+        builder.indexDocument(4, Predicate.fromString("true"));
+        PredicateIndex index = builder.build();
+
+        File file = tmpFolder.newFile();
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(file))) {
+            index.writeMappableToOutputStream(out);
+        }
+        PredicateIndex mapped = PredicateIndex.fromMappedFile(file.toPath());
+
+        assertSameHits(index, mapped, "country", "no", "gender", "male");
+        assertSameHits(index, mapped, "country", "no", "gender", "female");
+        assertSameHits(index, mapped, "country", "se", "gender", "male");
+        assertSameHits(index, mapped, "country", "dk", "gender", "female");
+        assertSameHits(index, mapped, "country", "dk", "gender", "male");
+
+        mapped.rebuildPostingListCache();
+        assertSameHits(index, mapped, "country", "no", "gender", "male");
+        assertArrayEquals(mappableBytes(index), mappableBytes(mapped));
+    }
+
+    @Test
+    public void require_that_mapped_index_can_be_written_in_the_old_format() throws IOException {
+        PredicateIndexBuilder builder = new PredicateIndexBuilder(10);
+        builder.indexDocument(1, Predicate.fromString("country in ['no', 'se'] and gender in ['male']"));
+        builder.indexDocument(0x3fffffe, Predicate.fromString("country in ['no'] and gender in ['female']"));
+        PredicateIndex index = builder.build();
+
+        File file = tmpFolder.newFile();
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(file))) {
+            index.writeMappableToOutputStream(out);
+        }
+        PredicateIndex mapped = PredicateIndex.fromMappedFile(file.toPath());
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        index.writeToOutputStream(new DataOutputStream(expected));
+        ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        mapped.writeToOutputStream(new DataOutputStream(actual));
+        assertArrayEquals(expected.toByteArray(), actual.toByteArray());
+    }
+
+    private static void assertSameHits(PredicateIndex expected, PredicateIndex actual,
+                                       String key1, String value1, String key2, String value2) {
+        PredicateQuery query = new PredicateQuery();
+        query.addFeature(key1, value1);
+        query.addFeature(key2, value2);
+        query.addRangeFeature("age", 30);
+        assertEquals(expected.searcher().search(query).sorted().collect(toList()),
+                     actual.searcher().search(query).sorted().collect(toList()));
+    }
+
+    private static byte[] mappableBytes(PredicateIndex index) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        index.writeMappableToOutputStream(new DataOutputStream(bytes));
+        return bytes.toByteArray();
+    }
+
 }
@@ -0,0 +1,133 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.predicate;
+
+import com.yahoo.document.predicate.Predicate;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static java.util.stream.Collectors.toList;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author agent
+ */
+public class UpdatablePredicateIndexTest {
+
+    private static final Config config = new Config.Builder().setArity(10).build();
+
+    @Test
+    public void requireThatAddedDocumentsAreSearchable() {
+        UpdatablePredicateIndex index = new UpdatablePredicateIndex(config, 100);
+        UpdatablePredicateIndex.Searcher searcher = index.searcher();
+        assertEquals("[]", search(searcher, "no"));
+
+        index.indexDocument(1, Predicate.fromString("country in ['no', 'se']"));
+        index.indexDocument(2, Predicate.fromString("country in ['se']"));
+        assertEquals("[1]", search(searcher, "no"));
+        assertEquals("[1, 2]", search(searcher, "se"));
+    }
+
+    @Test
+    public void requireThatDocumentsCanBeReplacedAndRemovedFromTheBase() {
+        UpdatablePredicateIndex index = new UpdatablePredicateIndex(config, 100);
+        UpdatablePredicateIndex.Searcher searcher = index.searcher();
+        index.indexDocument(1, Predicate.fromString("country in ['no']"));
+        index.indexDocument(2, Predicate.fromString("country in ['no']"));
+        index.indexDocument(3, Predicate.fromString("country in ['no']"));
+        index.compact();
+        assertEquals(0, index.getDeltaSize());
+        assertEquals("[1, 2, 3]", search(searcher, "no"));
+
+        index.indexDocument(2, Predicate.fromString("country in ['se']"));
+        index.removeDocument(3);
+        assertEquals(2, index.getDeltaSize());
+        assertEquals(2, index.getDocumentCount());
+        assertEquals("[1]", search(searcher, "no"));
+        assertEquals("[2]", search(searcher, "se"));
+
+        index.compact();
+        assertEquals(0, index.getDeltaSize());
+        assertEquals("[1]", search(searcher, "no"));
+        assertEquals("[2]", search(searcher, "se"));
+    }
+
+    @Test
+    public void requireThatLargeDeltaIsCompactedInTheBackground() {
+        List<Runnable> compactions = new ArrayList<>();
+        Executor executor = compactions::add;
+        UpdatablePredicateIndex index = new UpdatablePredicateIndex(config, 2, executor);
+        UpdatablePredicateIndex.Searcher searcher = index.searcher();
+        index.indexDocument(1, Predicate.fromString("country in ['no']"));
+        assertEquals(0, compactions.size());
+        index.indexDocument(2, Predicate.fromString("country in ['no']"));
+        index.indexDocument(3, Predicate.fromString("country in ['no']"));
+        assertEquals("Only one compaction is pending at a time", 1, compactions.size());
+
+        compactions.get(0).run();
+        assertEquals(0, index.getDeltaSize());
+        assertEquals("[1, 2, 3]", search(searcher, "no"));
+    }
+
+    @Test
+    public void requireThatSearchesSeeTheIndexAsWhenTheyStarted() {
+        UpdatablePredicateIndex index = new UpdatablePredicateIndex(config, 100);
+        index.indexDocument(1, Predicate.fromString("country in ['no']"));
+        index.compact();
+
+        PredicateQuery query = new PredicateQuery();
+        query.addFeature("country", "no");
+        List<Hit> hits = new ArrayList<>();
+        index.searcher().search(query).forEach(hit -> {
+            index.removeDocument(1);
+            index.compact();
+            hits.add(hit);
+        });
+        assertEquals("[1]", hits.toString());
+        assertEquals("[]", search(index.searcher(), "no"));
+    }
+
+    @Test
+    public void requireThatHitsAreInDocumentIdOrder() {
+        UpdatablePredicateIndex index = new UpdatablePredicateIndex(config, 100);
+        index.indexDocument(5, Predicate.fromString("country in ['no']"));
+        index.indexDocument(1, Predicate.fromString("country in ['no']"));
+        index.compact();
+        index.indexDocument(4, Predicate.fromString("country in ['no']"));
+        index.indexDocument(3, Predicate.fromString("country in ['no']"));
+        index.indexDocument(2, Predicate.fromString("country in ['no']"));
+        index.removeDocument(4);
+
+        PredicateQuery query = new PredicateQuery();
+        query.addFeature("country", "no");
+        assertEquals("[1, 2, 3, 5]", index.searcher().search(query).collect(toList()).toString());
+    }
+
+    @Test
+    public void requireThatTheDeltaHasALogarithmicNumberOfSegments() {
+        UpdatablePredicateIndex index = new UpdatablePredicateIndex(config, 100000, runnable -> {});
+        for (int docId = 1; docId <= 1023; docId++)
+            index.indexDocument(docId, Predicate.fromString("country in ['no']"));
+        assertEquals(10, index.getSegmentCount());
+        assertEquals(1023, index.searcher().search(query("no")).count());
+
+        index.indexDocument(1024, Predicate.fromString("country in ['no']"));
+        assertEquals(1, index.getSegmentCount());
+        assertEquals(1024, index.searcher().search(query("no")).count());
+    }
+
+    private static PredicateQuery query(String country) {
+        PredicateQuery query = new PredicateQuery();
+        query.addFeature("country", country);
+        return query;
+    }
+
+    private static String search(UpdatablePredicateIndex.Searcher searcher, String country) {
+        PredicateQuery query = new PredicateQuery();
+        query.addFeature("country", country);
+        return searcher.search(query).sorted().collect(toList()).toString();
+    }
+
+}
@@ -2,9 +2,17 @@
 package com.yahoo.search.predicate.index;
 
 import com.google.common.primitives.Ints;
+import com.yahoo.search.predicate.serialization.MappedFileReader;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -12,6 +20,7 @@ import java.util.List;
 import static com.yahoo.search.predicate.serialization.SerializationTestHelper.assertSerializationDeserializationMatches;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -19,6 +28,9 @@ import static org.junit.Assert.assertTrue;
  */
 public class PredicateIntervalStoreTest {
 
+    @Rule
+    public TemporaryFolder tmpFolder = new TemporaryFolder();
+
     @Test(expected = IllegalArgumentException.class)
     public void requireThatEmptyIntervalListThrows() {
         PredicateIntervalStore.Builder builder = new PredicateIntervalStore.Builder();
@@ -70,6 +82,32 @@ public class PredicateIntervalStoreTest {
         assertTrue(a1 == a2);
     }
 
+    @Test
+    public void requireThatMappedIntervalsAreReadIntoTheSameBuffer() throws IOException {
+        PredicateIntervalStore.Builder builder = new PredicateIntervalStore.Builder();
+        int ref1 = builder.insert(Arrays.asList(0x00010001, 0x00020002, 0x00030003));
+        int ref2 = builder.insert(Arrays.asList(0x0001ffff));
+        File file = tmpFolder.newFile();
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(file))) {
+            builder.build().writeMappableToOutputStream(out);
+        }
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            PredicateIntervalStore store = MappedPredicateIntervalStore.map(new MappedFileReader(channel));
+            assertArrayEquals(new int[] {0x00010001, 0x00020002, 0x00030003}, store.get(ref1));
+
+            PredicateIntervalStore.Intervals intervals = new PredicateIntervalStore.Intervals();
+            store.read(ref1, intervals);
+            int[] buffer = intervals.array();
+            assertEquals(3, intervals.length());
+            assertEquals(0x00030003, intervals.get(2));
+            store.read(ref2, intervals);
+            assertSame(buffer, intervals.array());
+            assertEquals(1, intervals.length());
+            assertEquals(0x0001ffff, intervals.get(0));
+        }
+    }
+
     private static void testInsertAndRetrieve(int... intervals) {
         PredicateIntervalStore.Builder builder = new PredicateIntervalStore.Builder();
         int ref = builder.insert(Ints.asList(intervals));
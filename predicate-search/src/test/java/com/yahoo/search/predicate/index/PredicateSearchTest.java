@@ -206,6 +206,18 @@ public class PredicateSearchTest {
         assertEquals(Arrays.asList(new Hit(0)).toString(), search.stream().collect(toList()).toString());
     }
 
+    @Test
+    public void requireThatSearchCanBeLimitedToARangeOfDocuments() {
+        PredicateSearch search = createPredicateSearch(
+                new byte[]{1, 1, 1, 1},
+                postingList(SubqueryBitmap.ALL_SUBQUERIES,
+                        entry(0, 0x000100ff),
+                        entry(1, 0x000100ff),
+                        entry(2, 0x000100ff),
+                        entry(3, 0x000100ff)));
+        assertEquals(Arrays.asList(new Hit(1), new Hit(2)).toString(), search.stream(1, 3).collect(toList()).toString());
+    }
+
     private static PredicateSearch createPredicateSearch(byte[] minFeatures, PostingList... postingLists) {
         byte[] nPostingListsForDocument = new byte[minFeatures.length];
         short[] intervalEnds = new short[minFeatures.length];
@@ -1,13 +1,24 @@
 // Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.search.predicate.index;
 
+import com.yahoo.search.predicate.serialization.MappedFileReader;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 
 import static com.yahoo.search.predicate.serialization.SerializationTestHelper.assertSerializationDeserializationMatches;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 
 /**
  * @author <a href="mailto:magnarn@yahoo-inc.com">Magnar Nedland</a>
@@ -18,6 +29,9 @@ public class SimpleIndexTest {
     private static final long KEY = 0x12345L;
     private static final int DOC_ID = 42;
 
+    @Rule
+    public TemporaryFolder tmpFolder = new TemporaryFolder();
+
     @Test
     public void requireThatValuesCanBeInserted() {
         SimpleIndex.Builder builder = new SimpleIndex.Builder();
@@ -62,4 +76,33 @@ public class SimpleIndexTest {
         SimpleIndex index = builder.build();
         assertSerializationDeserializationMatches(index, SimpleIndex::writeToOutputStream, SimpleIndex::fromInputStream);
     }
+
+    @Test
+    public void requireThatMappedIndexCachesAtMostTheGivenNumberOfPostings() throws IOException {
+        SimpleIndex.Builder builder = new SimpleIndex.Builder();
+        builder.insert(KEY, new Posting(DOC_ID, 10));
+        builder.insert(KEY, new Posting(DOC_ID + 1, 20));
+        builder.insert(KEY + 1, new Posting(DOC_ID, 30));
+        builder.insert(KEY + 2, new Posting(DOC_ID + 2, 40));
+        File file = tmpFolder.newFile();
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(file))) {
+            builder.build().writeMappableToOutputStream(out);
+        }
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            MappedSimpleIndex index = MappedSimpleIndex.map(new MappedFileReader(channel), 3);
+            SimpleIndex.Entry entry = index.getPostingList(KEY);
+            assertArrayEquals(new int[] {DOC_ID, DOC_ID + 1}, entry.docIds);
+            assertArrayEquals(new int[] {10, 20}, entry.dataRefs);
+            assertSame(entry, index.getPostingList(KEY));
+            assertEquals(30, index.getPostingList(KEY + 1).dataRefs[0]);
+            assertEquals(3, index.getCachedPostings());
+
+            assertEquals(40, index.getPostingList(KEY + 2).dataRefs[0]); // Evicts the least recently used key
+            assertEquals(2, index.getCachedPostings());
+            assertArrayEquals(entry.docIds, index.getPostingList(KEY).docIds);
+            assertNull(index.getPostingList(KEY + 3));
+        }
+    }
+
 }
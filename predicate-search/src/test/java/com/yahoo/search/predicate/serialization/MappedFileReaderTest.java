@@ -0,0 +1,68 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.predicate.serialization;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author agent
+ */
+public class MappedFileReaderTest {
+
+    @Rule
+    public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+    @Test
+    public void require_that_sections_larger_than_a_chunk_are_mapped_in_several_chunks() throws IOException {
+        File file = tmpFolder.newFile();
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(file))) {
+            out.writeInt(7);
+            for (int i = 0; i < 7; i++) {
+                out.writeLong(-i);
+            }
+            for (int i = 0; i < 13; i++) {
+                out.writeInt(i * 10);
+            }
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            MappedFileReader reader = new MappedFileReader(channel, 16);
+            MappedLongs longs = reader.mapLongs(reader.readInt());
+            MappedInts ints = reader.mapInts(13);
+            assertEquals(7, longs.size());
+            for (int i = 0; i < 7; i++) {
+                assertEquals(-i, longs.get(i));
+            }
+            assertEquals(13, ints.size());
+            for (int i = 0; i < 13; i++) {
+                assertEquals(i * 10, ints.get(i));
+            }
+            int[] copied = new int[11];
+            ints.view().get(1, copied, 1, 10);
+            assertArrayEquals(new int[]{0, 10, 20, 30, 40, 50, 60, 70, 80, 90, 100}, copied);
+        }
+    }
+
+    @Test(expected = EOFException.class)
+    public void require_that_sections_beyond_the_end_of_file_are_rejected() throws IOException {
+        File file = tmpFolder.newFile();
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(file))) {
+            out.writeInt(1);
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            new MappedFileReader(channel).mapInts(2);
+        }
+    }
+
+}
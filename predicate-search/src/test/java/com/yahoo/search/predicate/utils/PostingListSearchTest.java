@@ -56,4 +56,20 @@ public class PostingListSearchTest {
         assertEquals(1227, PostingListSearch.interpolationSearch(values, 1, length, 2453));
         assertEquals(1228, PostingListSearch.interpolationSearch(values, 1, length, 2454));
     }
+
+    @Test
+    public void require_that_galloping_search_find_index_of_first_element_higher() {
+        int length = 1000;
+        int[] values = new int[length];
+        for (int i = 0; i < length; i++) {
+            values[i] = 2 * i;
+        }
+        assertEquals(0, PostingListSearch.gallopingSearch(values, 0, length, -1));
+        assertEquals(1, PostingListSearch.gallopingSearch(values, 0, length, 0));
+        assertEquals(11, PostingListSearch.gallopingSearch(values, 10, length, 20));
+        assertEquals(11, PostingListSearch.gallopingSearch(values, 10, length, 21));
+        assertEquals(500, PostingListSearch.gallopingSearch(values, 10, length, 998));
+        assertEquals(600, PostingListSearch.gallopingSearch(values, 10, 600, 1500));
+        assertEquals(length, PostingListSearch.gallopingSearch(values, 10, length, 10000));
+    }
 }
@@ -0,0 +1,238 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.searchlib.rankingexpression.evaluation;
+
+import com.yahoo.searchlib.rankingexpression.RankingExpression;
+import com.yahoo.searchlib.rankingexpression.evaluation.gbdtoptimization.GBDTForestNode;
+import com.yahoo.searchlib.rankingexpression.evaluation.gbdtoptimization.GBDTNode;
+import com.yahoo.searchlib.rankingexpression.rule.ArithmeticNode;
+import com.yahoo.searchlib.rankingexpression.rule.ArithmeticOperator;
+import com.yahoo.searchlib.rankingexpression.rule.ComparisonNode;
+import com.yahoo.searchlib.rankingexpression.rule.ConstantNode;
+import com.yahoo.searchlib.rankingexpression.rule.EmbracedNode;
+import com.yahoo.searchlib.rankingexpression.rule.ExpressionNode;
+import com.yahoo.searchlib.rankingexpression.rule.FunctionNode;
+import com.yahoo.searchlib.rankingexpression.rule.IfNode;
+import com.yahoo.searchlib.rankingexpression.rule.NegativeNode;
+import com.yahoo.searchlib.rankingexpression.rule.ReferenceNode;
+import com.yahoo.searchlib.rankingexpression.rule.SetMembershipNode;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A ranking expression compiled for fast evaluation over an array of feature values.
+ * Each node of the expression is replaced by a node specialized to its operation which computes
+ * primitive doubles directly, and decision trees optimized by the GBDT optimizers are decoded
+ * into flat arrays. Subexpressions which cannot be compiled, such as tensor functions,
+ * are evaluated by the interpreter.
+ * <p>
+ * The feature values are passed as a double array indexed by {@link #getIndex}. Instances are
+ * immutable and may be used by any number of threads at the same time.
+ *
+ * @author agent
+ */
+public final class CompiledExpression {
+
+    /** The name of the ranking expression this was compiled from */
+    private final String name;
+
+    private final Map<String, Integer> nameToIndex;
+
+    private final CompiledNode root;
+
+    /** The number of subexpressions which are interpreted */
+    private final int interpretedCount;
+
+    /**
+     * Compiles an expression, with features indexed in the same order as in a
+     * {@link DoubleOnlyArrayContext} created from this expression.
+     */
+    public CompiledExpression(RankingExpression expression) {
+        this(expression, new DoubleOnlyArrayContext(expression, true));
+    }
+
+    /**
+     * Compiles an expression using the feature indexes of the given context.
+     * If the expression is optimized, this must be the context which was used to optimize it.
+     *
+     * @param expression the expression to compile
+     * @param context the context assigning an index to each feature of the expression
+     * @throws IllegalArgumentException if the expression references a feature which is not known to the context
+     */
+    public CompiledExpression(RankingExpression expression, AbstractArrayContext context) {
+        this.name = expression.getName();
+        this.nameToIndex = context.nameToIndex();
+        Compiler compiler = new Compiler(nameToIndex);
+        this.root = compiler.compile(expression.getRoot());
+        this.interpretedCount = compiler.interpretedCount;
+    }
+
+    /**
+     * Returns the index of a feature in the array of values to evaluate.
+     *
+     * @throws IllegalArgumentException if this name is not known to this expression
+     */
+    public int getIndex(String name) {
+        Integer index = nameToIndex.get(name);
+        if (index == null)
+            throw new IllegalArgumentException("Value '" + name + "' is not known to " + this);
+        return index;
+    }
+
+    /** Returns the names of the features of this expression */
+    public Set<String> names() { return nameToIndex.keySet(); }
+
+    /** Returns the number of feature values needed to evaluate this */
+    public int size() { return nameToIndex.size(); }
+
+    /** Returns the number of subexpressions of this which are evaluated by the interpreter */
+    public int interpretedCount() { return interpretedCount; }
+
+    /**
+     * Evaluates this expression.
+     *
+     * @param features the value of each feature, at the index returned by {@link #getIndex}
+     * @return the value of this expression
+     * @throws UnsupportedOperationException if the expression does not evaluate to a double
+     */
+    public double evaluate(double[] features) {
+        if (features.length < nameToIndex.size())
+            throw new IllegalArgumentException("Expected " + nameToIndex.size() + " feature values but got " + features.length);
+        return root.evaluate(features);
+    }
+
+    /** Compiles the nodes of a single expression */
+    private static final class Compiler {
+
+        private final Map<String, Integer> nameToIndex;
+
+        /** The number of subexpressions which are interpreted */
+        private int interpretedCount = 0;
+
+        Compiler(Map<String, Integer> nameToIndex) {
+            this.nameToIndex = nameToIndex;
+        }
+
+        private CompiledNode compile(ExpressionNode node) {
+            if (node instanceof ConstantNode) {
+                Value value = ((ConstantNode)node).getValue();
+                if (value instanceof DoubleCompatibleValue)
+                    return new CompiledNode.Constant(value.asDouble());
+            }
+            else if (node instanceof ReferenceNode) {
+                ReferenceNode reference = (ReferenceNode)node;
+                if (reference.getArguments().expressions().isEmpty()) {
+                    Integer index = nameToIndex.get(reference.toString());
+                    if (index == null)
+                        throw new IllegalArgumentException("Feature '" + reference + "' is not known to the given context");
+                    return new CompiledNode.Feature(index);
+                }
+            }
+            else if (node instanceof EmbracedNode) {
+                return compile(((EmbracedNode)node).getValue());
+            }
+            else if (node instanceof NegativeNode) {
+                return new CompiledNode.Negate(compile(((NegativeNode)node).getValue()));
+            }
+            else if (node instanceof ArithmeticNode) {
+                return compileArithmetic((ArithmeticNode)node);
+            }
+            else if (node instanceof FunctionNode) {
+                FunctionNode function = (FunctionNode)node;
+                List<ExpressionNode> arguments = function.children();
+                CompiledNode x = arguments.size() > 0 ? compile(arguments.get(0)) : new CompiledNode.Constant(0);
+                CompiledNode y = arguments.size() > 1 ? compile(arguments.get(1)) : new CompiledNode.Constant(0);
+                return new CompiledNode.Call(function.getFunction(), x, y);
+            }
+            else if (node instanceof ComparisonNode) {
+                return compileComparison((ComparisonNode)node);
+            }
+            else if (node instanceof SetMembershipNode) {
+                CompiledNode compiled = compileSetMembership((SetMembershipNode)node);
+                if (compiled != null) return compiled;
+            }
+            else if (node instanceof IfNode) {
+                IfNode ifNode = (IfNode)node;
+                return new CompiledNode.If(compile(ifNode.getCondition()),
+                                           compile(ifNode.getTrueExpression()),
+                                           compile(ifNode.getFalseExpression()));
+            }
+            else if (node instanceof GBDTForestNode) {
+                return new CompiledNode.Trees(CompiledTrees.fromForest(((GBDTForestNode)node).values()));
+            }
+            else if (node instanceof GBDTNode) {
+                return new CompiledNode.Trees(CompiledTrees.fromTree(((GBDTNode)node).values()));
+            }
+            interpretedCount++;
+            return new CompiledNode.Interpreted(node, nameToIndex);
+        }
+
+        /** Compiles to a tree of binary operations with the same precedence rules as {@link ArithmeticNode#evaluate} */
+        private CompiledNode compileArithmetic(ArithmeticNode node) {
+            Iterator<ExpressionNode> child = node.children().iterator();
+            Deque<ArithmeticOperator> operators = new ArrayDeque<>();
+            Deque<CompiledNode> operands = new ArrayDeque<>();
+            operators.push(ArithmeticOperator.PLUS);
+            operands.push(compile(child.next()));
+            for (Iterator<ArithmeticOperator> it = node.operators().iterator(); it.hasNext() && child.hasNext();) {
+                ArithmeticOperator op = it.next();
+                while (operators.peek().hasPrecedenceOver(op))
+                    reduce(operators, operands);
+                operators.push(op);
+                operands.push(compile(child.next()));
+            }
+            while (operands.size() > 1)
+                reduce(operators, operands);
+            return operands.pop();
+        }
+
+        private void reduce(Deque<ArithmeticOperator> operators, Deque<CompiledNode> operands) {
+            ArithmeticOperator op = operators.pop();
+            CompiledNode right = operands.pop();
+            CompiledNode left = operands.pop();
+            switch (op) {
+                case PLUS: operands.push(new CompiledNode.Add(left, right)); break;
+                case MINUS: operands.push(new CompiledNode.Subtract(left, right)); break;
+                case MULTIPLY: operands.push(new CompiledNode.Multiply(left, right)); break;
+                case DIVIDE: operands.push(new CompiledNode.Divide(left, right)); break;
+                default: throw new IllegalArgumentException("Unknown operator " + op);
+            }
+        }
+
+        private CompiledNode compileComparison(ComparisonNode node) {
+            CompiledNode left = compile(node.getLeftCondition());
+            CompiledNode right = compile(node.getRightCondition());
+            if (left instanceof CompiledNode.Feature && right instanceof CompiledNode.Constant)
+                return new CompiledNode.CompareFeature(((CompiledNode.Feature)left).index(), node.getOperator(),
+                                                       ((CompiledNode.Constant)right).value());
+            return new CompiledNode.Compare(left, node.getOperator(), right);
+        }
+
+        /**
+         * Compiles a set membership test on a feature and a set of numbers, or returns null
+         * if this test depends on the value types of the interpreter.
+         */
+        private CompiledNode compileSetMembership(SetMembershipNode node) {
+            if ( ! (node.getTestValue() instanceof ReferenceNode)) return null;
+            double[] setValues = new double[node.getSetValues().size()];
+            for (int i = 0; i < setValues.length; i++) {
+                ExpressionNode setValue = node.getSetValues().get(i);
+                if ( ! (setValue instanceof ConstantNode)) return null;
+                if ( ! (((ConstantNode)setValue).getValue() instanceof DoubleValue)) return null;
+                setValues[i] = ((ConstantNode)setValue).getValue().asDouble();
+            }
+            return new CompiledNode.In(compile(node.getTestValue()), setValues);
+        }
+
+    }
+
+    @Override
+    public String toString() {
+        return "compiled ranking expression '" + name + "' [" + nameToIndex.size() + " variables]";
+    }
+
+}
@@ -0,0 +1,157 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.searchlib.rankingexpression.evaluation;
+
+import com.yahoo.searchlib.rankingexpression.rule.ExpressionNode;
+import com.yahoo.searchlib.rankingexpression.rule.Function;
+import com.yahoo.searchlib.rankingexpression.rule.TruthOperator;
+
+import java.util.Map;
+
+/**
+ * A node of a compiled ranking expression. Each subclass is specialized to a single operation
+ * and evaluates directly over the feature array, without creating any intermediate values.
+ * Nodes may be evaluated by multiple threads at the same time.
+ *
+ * @author agent
+ */
+abstract class CompiledNode {
+
+    /** Evaluates this node over the given feature values. Booleans are represented as 1 and 0. */
+    abstract double evaluate(double[] features);
+
+    static final class Constant extends CompiledNode {
+        private final double value;
+        Constant(double value) { this.value = value; }
+        double value() { return value; }
+        @Override double evaluate(double[] features) { return value; }
+    }
+
+    static final class Feature extends CompiledNode {
+        private final int index;
+        Feature(int index) { this.index = index; }
+        int index() { return index; }
+        @Override double evaluate(double[] features) { return features[index]; }
+    }
+
+    static final class Negate extends CompiledNode {
+        private final CompiledNode value;
+        Negate(CompiledNode value) { this.value = value; }
+        @Override double evaluate(double[] features) { return - value.evaluate(features); }
+    }
+
+    static final class Add extends CompiledNode {
+        private final CompiledNode left, right;
+        Add(CompiledNode left, CompiledNode right) { this.left = left; this.right = right; }
+        @Override double evaluate(double[] features) { return left.evaluate(features) + right.evaluate(features); }
+    }
+
+    static final class Subtract extends CompiledNode {
+        private final CompiledNode left, right;
+        Subtract(CompiledNode left, CompiledNode right) { this.left = left; this.right = right; }
+        @Override double evaluate(double[] features) { return left.evaluate(features) - right.evaluate(features); }
+    }
+
+    static final class Multiply extends CompiledNode {
+        private final CompiledNode left, right;
+        Multiply(CompiledNode left, CompiledNode right) { this.left = left; this.right = right; }
+        @Override double evaluate(double[] features) { return left.evaluate(features) * right.evaluate(features); }
+    }
+
+    static final class Divide extends CompiledNode {
+        private final CompiledNode left, right;
+        Divide(CompiledNode left, CompiledNode right) { this.left = left; this.right = right; }
+        @Override double evaluate(double[] features) { return left.evaluate(features) / right.evaluate(features); }
+    }
+
+    static final class Call extends CompiledNode {
+        private final Function function;
+        private final CompiledNode x, y;
+        Call(Function function, CompiledNode x, CompiledNode y) { this.function = function; this.x = x; this.y = y; }
+        @Override double evaluate(double[] features) { return function.evaluate(x.evaluate(features), y.evaluate(features)); }
+    }
+
+    static final class Compare extends CompiledNode {
+        private final TruthOperator operator;
+        private final CompiledNode left, right;
+        Compare(CompiledNode left, TruthOperator operator, CompiledNode right) {
+            this.left = left;
+            this.operator = operator;
+            this.right = right;
+        }
+        @Override double evaluate(double[] features) {
+            return operator.evaluate(left.evaluate(features), right.evaluate(features)) ? 1 : 0;
+        }
+    }
+
+    /** A comparison of a feature against a constant, which is the condition of most decision trees */
+    static final class CompareFeature extends CompiledNode {
+        private final TruthOperator operator;
+        private final int index;
+        private final double constant;
+        CompareFeature(int index, TruthOperator operator, double constant) {
+            this.index = index;
+            this.operator = operator;
+            this.constant = constant;
+        }
+        @Override double evaluate(double[] features) {
+            return operator.evaluate(features[index], constant) ? 1 : 0;
+        }
+    }
+
+    static final class In extends CompiledNode {
+        private final CompiledNode testValue;
+        private final double[] setValues;
+        In(CompiledNode testValue, double[] setValues) { this.testValue = testValue; this.setValues = setValues; }
+        @Override double evaluate(double[] features) {
+            double value = testValue.evaluate(features);
+            for (double setValue : setValues) {
+                if (setValue == value) return 1;
+            }
+            return 0;
+        }
+    }
+
+    static final class If extends CompiledNode {
+        private final CompiledNode condition, trueExpression, falseExpression;
+        If(CompiledNode condition, CompiledNode trueExpression, CompiledNode falseExpression) {
+            this.condition = condition;
+            this.trueExpression = trueExpression;
+            this.falseExpression = falseExpression;
+        }
+        @Override double evaluate(double[] features) {
+            return condition.evaluate(features) != 0 ? trueExpression.evaluate(features) : falseExpression.evaluate(features);
+        }
+    }
+
+    /** Decision trees flattened to primitive arrays, see {@link CompiledTrees} */
+    static final class Trees extends CompiledNode {
+        private final CompiledTrees trees;
+        Trees(CompiledTrees trees) { this.trees = trees; }
+        @Override double evaluate(double[] features) { return trees.evaluate(features); }
+    }
+
+    /**
+     * A subexpression which cannot be compiled, typically because it is tensor valued.
+     * This is evaluated by the interpreter with a context reading the feature array.
+     * Each thread reuses its own context, rather than creating one per evaluation.
+     */
+    static final class Interpreted extends CompiledNode {
+        private final ExpressionNode node;
+        private final ThreadLocal<FeatureArrayContext> context;
+        Interpreted(ExpressionNode node, Map<String, Integer> nameToIndex) {
+            this.node = node;
+            this.context = ThreadLocal.withInitial(() -> new FeatureArrayContext(nameToIndex));
+        }
+        @Override double evaluate(double[] features) {
+            FeatureArrayContext context = this.context.get();
+            context.setFeatures(features);
+            try {
+                return node.evaluate(context).asDouble();
+            }
+            finally {
+                context.setFeatures(null); // Don't keep the caller's array
+            }
+        }
+    }
+
+}
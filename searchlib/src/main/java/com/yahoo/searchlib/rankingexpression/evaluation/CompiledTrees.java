@@ -0,0 +1,189 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.searchlib.rankingexpression.evaluation;
+
+import com.yahoo.searchlib.rankingexpression.evaluation.gbdtoptimization.GBDTNode;
+
+import java.util.Arrays;
+
+/**
+ * A sum of decision trees decoded from the GBDT optimizer encoding into plain arrays of nodes.
+ * Nodes are stored in depth first order with the true branch of each condition following the
+ * condition directly, such that evaluating a tree is a loop over array lookups which needs no
+ * decoding of opcodes and offsets from doubles at evaluation time.
+ *
+ * @author agent
+ */
+final class CompiledTrees {
+
+    private static final byte LEAF = 0;
+    private static final byte LESS = 1;
+    private static final byte EQUAL = 2;
+    private static final byte IN = 3;
+
+    /** The first node of each tree */
+    private final int[] roots;
+
+    /** The opcode of each node */
+    private final byte[] opcodes;
+
+    /** The feature index tested by each condition, or the start of its set in setValues for IN */
+    private final int[] features;
+
+    /** The leaf value or the constant compared with, or the set size for IN */
+    private final double[] values;
+
+    /** The node of the false branch of each condition */
+    private final int[] falseBranches;
+
+    /** The features tested by IN conditions */
+    private final int[] setFeatures;
+
+    /** The values of the sets of all IN conditions */
+    private final double[] setValues;
+
+    private CompiledTrees(Builder builder) {
+        roots = Arrays.copyOf(builder.roots, builder.rootCount);
+        opcodes = Arrays.copyOf(builder.opcodes, builder.nodeCount);
+        features = Arrays.copyOf(builder.features, builder.nodeCount);
+        values = Arrays.copyOf(builder.values, builder.nodeCount);
+        falseBranches = Arrays.copyOf(builder.falseBranches, builder.nodeCount);
+        setFeatures = Arrays.copyOf(builder.setFeatures, builder.nodeCount);
+        setValues = Arrays.copyOf(builder.setValues, builder.setValueCount);
+    }
+
+    /** Creates a single tree from the values of a {@link GBDTNode} */
+    static CompiledTrees fromTree(double[] tree) {
+        Builder builder = new Builder();
+        builder.addTree(tree, 0);
+        return new CompiledTrees(builder);
+    }
+
+    /** Creates a forest from the values of a {@link com.yahoo.searchlib.rankingexpression.evaluation.gbdtoptimization.GBDTForestNode} */
+    static CompiledTrees fromForest(double[] forest) {
+        Builder builder = new Builder();
+        int pc = 0;
+        while (pc < forest.length) {
+            int treeLength = (int)forest[pc++];
+            builder.addTree(forest, pc);
+            pc += treeLength;
+        }
+        return new CompiledTrees(builder);
+    }
+
+    /** Returns the number of trees in this */
+    int size() { return roots.length; }
+
+    /** Returns the sum of all the trees of this evaluated over the given features */
+    double evaluate(double[] features) {
+        double sum = 0;
+        for (int root : roots)
+            sum += evaluateTree(root, features);
+        return sum;
+    }
+
+    private double evaluateTree(int node, double[] input) {
+        while (true) {
+            boolean comparisonIsTrue;
+            switch (opcodes[node]) {
+                case LEAF:
+                    return values[node];
+                case LESS:
+                    comparisonIsTrue = input[features[node]] < values[node];
+                    break;
+                case EQUAL:
+                    comparisonIsTrue = input[features[node]] == values[node];
+                    break;
+                default: // IN
+                    comparisonIsTrue = isInSet(input[setFeatures[node]], features[node], (int)values[node]);
+            }
+            node = comparisonIsTrue ? node + 1 : falseBranches[node];
+        }
+    }
+
+    private boolean isInSet(double testValue, int start, int length) {
+        for (int i = start; i < start + length; i++) {
+            if (setValues[i] == testValue) return true;
+        }
+        return false;
+    }
+
+    private static final class Builder {
+
+        private int[] roots = new int[16];
+        private byte[] opcodes = new byte[256];
+        private int[] features = new int[256];
+        private double[] values = new double[256];
+        private int[] falseBranches = new int[256];
+        private int[] setFeatures = new int[256];
+        private double[] setValues = new double[16];
+        private int rootCount = 0;
+        private int nodeCount = 0;
+        private int setValueCount = 0;
+
+        void addTree(double[] encoded, int start) {
+            if (rootCount == roots.length)
+                roots = Arrays.copyOf(roots, roots.length * 2);
+            roots[rootCount++] = nodeCount;
+            addNode(encoded, start);
+        }
+
+        /** Adds the subtree at the given position of the GBDT encoding, see {@link GBDTNode} */
+        private void addNode(double[] encoded, int pc) {
+            int node = newNode();
+            double nextValue = encoded[pc++];
+            if (nextValue < GBDTNode.MAX_LEAF_VALUE) {
+                opcodes[node] = LEAF;
+                values[node] = nextValue;
+                return;
+            }
+
+            int offset = (int)nextValue - GBDTNode.MAX_LEAF_VALUE;
+            if (offset < GBDTNode.MAX_VARIABLES) {
+                opcodes[node] = LESS;
+                features[node] = offset;
+                values[node] = encoded[pc++];
+            }
+            else if (offset < GBDTNode.MAX_VARIABLES * 2) {
+                opcodes[node] = EQUAL;
+                features[node] = offset - GBDTNode.MAX_VARIABLES;
+                values[node] = encoded[pc++];
+            }
+            else {
+                int setSize = (int)encoded[pc++];
+                opcodes[node] = IN;
+                setFeatures[node] = offset - GBDTNode.MAX_VARIABLES * 2;
+                features[node] = addSetValues(encoded, pc, setSize);
+                values[node] = setSize;
+                pc += setSize;
+            }
+
+            int falseBranchStart = pc + (int)encoded[pc];
+            addNode(encoded, pc + 1); // the true branch follows directly
+            falseBranches[node] = nodeCount;
+            addNode(encoded, falseBranchStart);
+        }
+
+        private int newNode() {
+            if (nodeCount == opcodes.length) {
+                int capacity = opcodes.length * 2;
+                opcodes = Arrays.copyOf(opcodes, capacity);
+                features = Arrays.copyOf(features, capacity);
+                values = Arrays.copyOf(values, capacity);
+                falseBranches = Arrays.copyOf(falseBranches, capacity);
+                setFeatures = Arrays.copyOf(setFeatures, capacity);
+            }
+            return nodeCount++;
+        }
+
+        private int addSetValues(double[] encoded, int start, int count) {
+            while (setValueCount + count > setValues.length)
+                setValues = Arrays.copyOf(setValues, setValues.length * 2);
+            System.arraycopy(encoded, start, setValues, setValueCount, count);
+            int setStart = setValueCount;
+            setValueCount += count;
+            return setStart;
+        }
+
+    }
+
+}
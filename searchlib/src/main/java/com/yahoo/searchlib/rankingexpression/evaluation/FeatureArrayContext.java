@@ -0,0 +1,51 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.searchlib.rankingexpression.evaluation;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A read only context over the feature array of an evaluation of a compiled expression.
+ * This is used to interpret the parts of a compiled expression which are not compiled.
+ * Instances are reused for the evaluations of a single thread.
+ *
+ * @author agent
+ */
+final class FeatureArrayContext extends Context {
+
+    private final Map<String, Integer> nameToIndex;
+    private double[] features;
+
+    FeatureArrayContext(Map<String, Integer> nameToIndex) {
+        this.nameToIndex = nameToIndex;
+    }
+
+    /** Sets the feature values of the next evaluation */
+    void setFeatures(double[] features) {
+        this.features = features;
+    }
+
+    @Override
+    public Value get(String name) {
+        Integer index = nameToIndex.get(name);
+        if (index == null)
+            throw new IllegalArgumentException("Feature '" + name + "' is not known to the given context");
+        return new DoubleValue(features[index]);
+    }
+
+    @Override
+    public Value get(int index) {
+        return new DoubleValue(features[index]);
+    }
+
+    @Override
+    public double getDouble(int index) {
+        return features[index];
+    }
+
+    @Override
+    public Set<String> names() {
+        return nameToIndex.keySet();
+    }
+
+}
@@ -0,0 +1,146 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.searchlib.rankingexpression.evaluation;
+
+import com.yahoo.searchlib.rankingexpression.RankingExpression;
+import com.yahoo.searchlib.rankingexpression.evaluation.gbdtoptimization.GBDTForestOptimizer;
+import com.yahoo.searchlib.rankingexpression.parser.ParseException;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests that compiled expressions evaluate to the same values as the interpreter
+ *
+ * @author agent
+ */
+public class CompiledExpressionTestCase {
+
+    private static final String gbdt =
+            "if (LW_NEWS_SEARCHES_RATIO < 1.72971, 0.0697159, if (LW_USERS < 0.10496, if (SEARCHES < 0.0329127, 0.151257, 0.117501), if (SUGG_OVERLAP < 18.5, 0.0897622, 0.0756903))) + \n" +
+            "if (LW_NEWS_SEARCHES_RATIO < 1.73156, if (NEWS_USERS < 0.0737993, -0.00481646, 0.00110018), if (LW_USERS < 0.0844616, 0.0488919, if (SUGG_OVERLAP < 32.5, 0.0136917, 9.85328E-4))) + \n" +
+            "if (LW_NEWS_SEARCHES_RATIO < 1.74451, -0.00298257, if (LW_USERS < 0.116207, if (SEARCHES < 0.0329127, 0.0676105, 0.0340198), if (NUM_WORDS in [1, 2, 3], -8.55514E-5, 0.0112406))) + \n" +
+            "if (LW_NEWS_SEARCHES_RATIO < 1.72995, if (NEWS_USERS < 0.0737993, -0.00407515, 0.00139088), if (LW_USERS == 0.0509035, 0.0439466, if (LW_USERS < 0.325818, 0.0187156, 0.00236949)))";
+
+    @Test
+    public void testCompiledEvaluation() throws ParseException {
+        assertCompiled("0.5", 0);
+        assertCompiled("-a + b", 0);
+        assertCompiled("2*3+4*5-a/b", 0);
+        assertCompiled("a - b - c * 2 / b + c", 0);
+        assertCompiled("2*(a+3)*(b-4)/10", 0);
+        assertCompiled("if (a < b, c, -c)", 0);
+        assertCompiled("if (a in [1, 2, 3], b, c) + if (a == 3, 1, 0)", 0);
+        assertCompiled("if (a > b, if (b > 0, 1, 2), 3)", 0);
+        assertCompiled("if (a ~= b, 1, 2) + (a >= c) + (a != c)", 0);
+        assertCompiled("max(a, b) + min(a, c) * log(b) + pow(a, 2) + sigmoid(c)", 0);
+        assertCompiled("if (a, nonexisting + 1, 2)", 0);
+        assertCompiled("if (a in [\"foo\", 1], b, c) * 2", 1);
+    }
+
+    @Test
+    public void testCompiledGBDT() throws ParseException {
+        RankingExpression expression = new RankingExpression(gbdt);
+        assertCompiledEquals(expression, new CompiledExpression(expression));
+    }
+
+    @Test
+    public void testCompiledOptimizedGBDT() throws ParseException {
+        assertCompiledOptimized(false);
+        assertCompiledOptimized(true);
+    }
+
+    @Test
+    public void testUnknownFeature() throws ParseException {
+        CompiledExpression compiled = new CompiledExpression(new RankingExpression("a + b"));
+        assertEquals(2, compiled.size());
+        try {
+            compiled.getIndex("c");
+            fail("Expected exception");
+        }
+        catch (IllegalArgumentException e) {
+            assertEquals("Value 'c' is not known to compiled ranking expression '' [2 variables]", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testFeatureUnknownToContext() throws ParseException {
+        RankingExpression expression = new RankingExpression("a + c");
+        try {
+            new CompiledExpression(expression, new DoubleOnlyArrayContext(new RankingExpression("a + b"), true));
+            fail("Expected exception");
+        }
+        catch (IllegalArgumentException e) {
+            assertEquals("Feature 'c' is not known to the given context", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testFeatureUnknownToContextInInterpretedSubexpression() throws ParseException {
+        RankingExpression expression = new RankingExpression("if (c in [\"foo\", 1], a, b)");
+        CompiledExpression compiled = new CompiledExpression(expression, new DoubleOnlyArrayContext(new RankingExpression("a + b"), true));
+        assertEquals(1, compiled.interpretedCount());
+        try {
+            compiled.evaluate(new double[compiled.size()]);
+            fail("Expected exception");
+        }
+        catch (IllegalArgumentException e) {
+            assertEquals("Feature 'c' is not known to the given context", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testInterpretedEvaluationReadsEachFeatureArray() throws ParseException {
+        RankingExpression expression = new RankingExpression("if (a in [\"foo\", 1], b, c)");
+        CompiledExpression compiled = new CompiledExpression(expression);
+        assertEquals(1, compiled.interpretedCount());
+        double[] features = new double[compiled.size()];
+        features[compiled.getIndex("b")] = 2;
+        features[compiled.getIndex("c")] = 3;
+        assertEquals(3, compiled.evaluate(features), 0);
+        features[compiled.getIndex("a")] = 1;
+        assertEquals(2, compiled.evaluate(features), 0);
+
+        double[] otherFeatures = new double[compiled.size()];
+        otherFeatures[compiled.getIndex("c")] = 4;
+        assertEquals(4, compiled.evaluate(otherFeatures), 0);
+    }
+
+    private void assertCompiledOptimized(boolean forests) throws ParseException {
+        RankingExpression reference = new RankingExpression(gbdt);
+        RankingExpression optimized = new RankingExpression(gbdt);
+        DoubleOnlyArrayContext context = new DoubleOnlyArrayContext(optimized, true);
+        ExpressionOptimizer optimizer = new ExpressionOptimizer();
+        optimizer.getOptimizer(GBDTForestOptimizer.class).setEnabled(forests);
+        optimizer.optimize(optimized, context);
+
+        CompiledExpression compiled = new CompiledExpression(optimized, context);
+        assertEquals(0, compiled.interpretedCount());
+        assertCompiledEquals(reference, compiled);
+    }
+
+    private void assertCompiled(String expressionString, int interpretedCount) throws ParseException {
+        RankingExpression expression = new RankingExpression(expressionString);
+        CompiledExpression compiled = new CompiledExpression(expression);
+        assertEquals(interpretedCount, compiled.interpretedCount());
+        assertCompiledEquals(expression, compiled);
+    }
+
+    private void assertCompiledEquals(RankingExpression expression, CompiledExpression compiled) {
+        double[][] testValues = { { 0, 0, 0 }, { 1, 2, 3 }, { 3, 2, 1 }, { 1.73, 0.05, 0.0509035 },
+                                  { 1.8, 0.2, 0.03 }, { 1.8, 0.3, 40 }, { -1, 1, 0.5 } };
+        for (double[] values : testValues) {
+            MapContext context = new MapContext();
+            double[] features = new double[compiled.size()];
+            int i = 0;
+            for (String name : compiled.names()) {
+                double value = values[i++ % values.length];
+                context.put(name, value);
+                features[compiled.getIndex(name)] = value;
+            }
+            assertEquals(expression.toString(),
+                         expression.evaluate(context).asDouble(), compiled.evaluate(features), 0.000001);
+        }
+    }
+
+}
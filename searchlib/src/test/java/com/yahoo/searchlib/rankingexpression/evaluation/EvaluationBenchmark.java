@@ -152,6 +152,12 @@ public class EvaluationBenchmark {
         double forestTotal=benchmark(forestOptimized,forestContext,iterations,"Forest optimized");
         assertEqualish(total,forestTotal);
         System.out.println("-----------------------------------------------------------------------------------------------------");
+
+        // Compiled forest...................
+        CompiledExpression compiled = new CompiledExpression(forestOptimized, forestContext);
+        double compiledTotal = benchmarkCompiled(compiled, iterations, "Compiled forest");
+        assertEqualish(total, compiledTotal);
+        System.out.println("-----------------------------------------------------------------------------------------------------");
     }
 
     private double benchmark(RankingExpression gbdt, Context context, int iterations, String description) {
@@ -184,6 +190,38 @@ public class EvaluationBenchmark {
         return total;
     }
 
+    private double benchmarkCompiled(CompiledExpression compiled, int iterations, String description) {
+        oul("Running '" + description + "':");
+        out("   Warming up ...");
+        double total=0;
+        total+=benchmarkCompiledIterations(compiled,iterations/5);
+        oul("done");
+
+        out("   Running " + iterations + " of '" + description + "' ...");
+        long tStartTime=System.currentTimeMillis();
+        total+=benchmarkCompiledIterations(compiled,iterations);
+        long totalTime=System.currentTimeMillis()-tStartTime;
+        oul("done");
+        oul("   Total time running '" + description + "': " + totalTime + " ms (" + totalTime*1000/iterations + " microseconds/expression)");
+        return total;
+    }
+
+    private double benchmarkCompiledIterations(CompiledExpression compiled, int iterations) {
+        // As above, but binding values directly in the feature array of the compiled expression
+        double total=0;
+        double[] features = new double[compiled.size()];
+        int searchesRatio = compiled.getIndex("LW_NEWS_SEARCHES_RATIO");
+        int newsUsers = compiled.getIndex("NEWS_USERS");
+        if (compiled.names().contains("catid"))
+            features[compiled.getIndex("catid")] = 100300102;
+        for (int i=0; i<iterations; i++) {
+            features[searchesRatio] = (double)i;
+            features[newsUsers] = (double)i/1000*1000;
+            total+=compiled.evaluate(features);
+        }
+        return total;
+    }
+
     private Context copyForEvaluation(Context contextPrototype) {
         if (contextPrototype instanceof AbstractArrayContext) // optimized - contains name to index map
             return ((AbstractArrayContext)contextPrototype).clone();
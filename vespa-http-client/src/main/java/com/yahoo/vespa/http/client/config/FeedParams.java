@@ -172,8 +172,9 @@ public final class FeedParams {
         }
 
         /**
-         * Sets the maximum number of operations to be in-flight.
-         * @param maxInFlightRequests max number of operations.
+         * Sets the number of operations to be in-flight at the start. This is adjusted by the gateway latency,
+         * and may grow up to four times this while the gateway keeps up.
+         * @param maxInFlightRequests initial max number of operations.
          * @return this, for chaining
          */
         public Builder setMaxInFlightRequests(int maxInFlightRequests) {
@@ -33,5 +33,7 @@ public final class Headers {
     public static final String OUTSTANDING_REQUESTS = "X-Yahoo-Outstanding-Requests";
     public static final String HOSTNAME = "X-Yahoo-Hostname";
     public static final String SILENTUPGRADE = "X-Yahoo-Silent-Upgrade";
+    // The average latency in milliseconds of the document operations of the client, as seen by the gateway.
+    public static final String AVERAGE_LATENCY_MS = "X-Yahoo-Average-Latency-Ms";
 
 }
@@ -67,6 +67,7 @@ class ApacheGatewayConnection implements GatewayConnection {
     private String sessionId;
     private final String clientId;
     private int negotiatedVersion = -1;
+    private int serverLatencyMillis = -1;
     private final HttpClientFactory httpClientFactory;
     private final String shardingKey = UUID.randomUUID().toString().substring(0, 5);
 
@@ -111,6 +112,11 @@ class ApacheGatewayConnection implements GatewayConnection {
         return write(Collections.<Document>emptyList(), true /* drain */, false /* use compression */);
     }
 
+    @Override
+    public int getServerLatencyMillis() {
+        return serverLatencyMillis;
+    }
+
     @Override
     public boolean connect() {
         log.fine("Attempting to connect to " + endpoint);
@@ -263,9 +269,21 @@ class ApacheGatewayConnection implements GatewayConnection {
             httpPost.abort();
             throw e;
         }
+        serverLatencyMillis = parseServerLatency(response.getFirstHeader(Headers.AVERAGE_LATENCY_MS));
         return response.getEntity().getContent();
     }
 
+    private static int parseServerLatency(Header serverHeader) {
+        if (serverHeader == null) {
+            return -1; // Older gateways do not report latency
+        }
+        try {
+            return Integer.parseInt(serverHeader.getValue().trim());
+        } catch (NumberFormatException nfe) {
+            return -1;
+        }
+    }
+
     private void verifyServerResponseCode(StatusLine statusLine) throws ServerResponseException {
         // We use code 261-299 to report errors related to internal transitive errors that the tenants should not care
         // about to avoid masking more serious errors.
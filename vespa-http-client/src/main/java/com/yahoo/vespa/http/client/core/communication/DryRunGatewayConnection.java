@@ -42,6 +42,11 @@ public class DryRunGatewayConnection implements GatewayConnection {
         return writeOperations(new ArrayList<Document>());
     }
 
+    @Override
+    public int getServerLatencyMillis() {
+        return -1;
+    }
+
     @Override
     public boolean connect() {
         return true;
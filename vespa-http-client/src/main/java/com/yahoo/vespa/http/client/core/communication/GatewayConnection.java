@@ -14,6 +14,12 @@ public interface GatewayConnection {
 
     InputStream drain() throws ServerResponseException, IOException;
 
+    /**
+     * Returns the average document operation latency in milliseconds reported by the gateway in the last response,
+     * or -1 if it did not report it.
+     */
+    int getServerLatencyMillis();
+
     boolean connect();
 
     Endpoint getEndpoint();
@@ -30,6 +30,10 @@ import java.util.logging.Logger;
 class IOThread implements Runnable, AutoCloseable {
 
     private static Logger log = Logger.getLogger(IOThread.class.getName());
+
+    /** How far the in flight window may grow past the configured max in flight requests while the gateway keeps up */
+    private static final int MAX_IN_FLIGHT_GROWTH = 4;
+
     private final Endpoint endpoint;
     private final GatewayConnection client;
     private final DocumentQueue documentQueue;
@@ -39,7 +43,7 @@ class IOThread implements Runnable, AutoCloseable {
     private final CountDownLatch running = new CountDownLatch(1);
     private final CountDownLatch stopSignal = new CountDownLatch(1);
     private final int maxChunkSizeBytes;
-    private final int maxInFlightRequests;
+    private final InFlightWindow inFlightWindow;
     private final long localQueueTimeOut;
     private final GatewayThrottler gatewayThrottler;
 
@@ -53,6 +57,7 @@ class IOThread implements Runnable, AutoCloseable {
     private final AtomicInteger pendingDocumentStatusCount = new AtomicInteger(0);
     private final AtomicInteger successfullHandshakes = new AtomicInteger(0);
     private final AtomicInteger lastGatewayProcessTimeMillis = new AtomicInteger(0);
+    private final AtomicInteger inFlightWindowSize = new AtomicInteger(0);
 
     IOThread(
             EndpointResultQueue endpointResultQueue,
@@ -69,7 +74,9 @@ class IOThread implements Runnable, AutoCloseable {
         this.resultQueue = endpointResultQueue;
         this.clusterId = clusterId;
         this.maxChunkSizeBytes = maxChunkSizeBytes;
-        this.maxInFlightRequests = maxInFlightRequests;
+        this.inFlightWindow = new InFlightWindow(maxInFlightRequests,
+                                                 (int) Math.min(Integer.MAX_VALUE, (long) maxInFlightRequests * MAX_IN_FLIGHT_GROWTH));
+        this.inFlightWindowSize.set(inFlightWindow.size());
         this.gatewayThrottler = new GatewayThrottler(maxSleepTimeMs);
         thread = new Thread(this, "IOThread " + endpoint);
         thread.setDaemon(true);
@@ -91,6 +98,7 @@ class IOThread implements Runnable, AutoCloseable {
         public final int pendingDocumentStatusCount;
         public final int successfullHandshakes;
         public final int lastGatewayProcessTimeMillis;
+        public final int inFlightWindowSize;
 
         protected ConnectionStats(
                 final int wrongSessionDetectedCounter,
@@ -101,7 +109,8 @@ class IOThread implements Runnable, AutoCloseable {
                 final int statusReceivedCounter,
                 final int pendingDocumentStatusCount,
                 final int successfullHandshakes,
-                final int lastGatewayProcessTimeMillis) {
+                final int lastGatewayProcessTimeMillis,
+                final int inFlightWindowSize) {
             this.wrongSessionDetectedCounter = wrongSessionDetectedCounter;
             this.wrongVersionDetectedCounter = wrongVersionDetectedCounter;
             this.problemStatusCodeFromServerCounter = problemStatusCodeFromServerCounter;
@@ -111,6 +120,7 @@ class IOThread implements Runnable, AutoCloseable {
             this.pendingDocumentStatusCount = pendingDocumentStatusCount;
             this.successfullHandshakes = successfullHandshakes;
             this.lastGatewayProcessTimeMillis = lastGatewayProcessTimeMillis;
+            this.inFlightWindowSize = inFlightWindowSize;
         }
     }
 
@@ -127,7 +137,8 @@ class IOThread implements Runnable, AutoCloseable {
                 statusReceivedCounter.get(),
                 pendingDocumentStatusCount.get(),
                 successfullHandshakes.get(),
-                lastGatewayProcessTimeMillis.get());
+                lastGatewayProcessTimeMillis.get(),
+                inFlightWindowSize.get());
     }
 
     @Override
@@ -188,8 +199,9 @@ class IOThread implements Runnable, AutoCloseable {
             return docsForSendChunk;
         }
         int pendingSize = 1 + resultQueue.getPendingSize();
+        int maxInFlight = inFlightWindow.size();
         // see if we can get more documents without blocking
-        while (chunkSizeBytes < maxChunkSizeBytes && pendingSize < maxInFlightRequests) {
+        while (chunkSizeBytes < maxChunkSizeBytes && pendingSize < maxInFlight) {
             drainFirstDocumentsInQueueIfOld();
             Document d = documentQueue.poll();
             if (d == null) {
@@ -264,6 +276,8 @@ class IOThread implements Runnable, AutoCloseable {
 
         ProcessResponse processResponse = processResponse(serverResponse);
         lastGatewayProcessTimeMillis.set((int) (System.currentTimeMillis() - startTime));
+        inFlightWindow.update(client.getServerLatencyMillis(), processResponse.transitiveErrorCount);
+        inFlightWindowSize.set(inFlightWindow.size());
         return processResponse;
     }
 
@@ -271,8 +285,9 @@ class IOThread implements Runnable, AutoCloseable {
             throws ServerResponseException, IOException {
         final int pendingResultQueueSize = resultQueue.getPendingSize();
         pendingDocumentStatusCount.set(pendingResultQueueSize);
+        final int maxInFlight = inFlightWindow.size();
 
-        List<Document> nextDocsForFeeding = (pendingResultQueueSize > maxInFlightRequests)
+        List<Document> nextDocsForFeeding = (pendingResultQueueSize > maxInFlight)
               ? new ArrayList<>()       // The queue is full, will not send more documents.
               : getNextDocsForFeeding(maxWaitTimeMilliSecs, TimeUnit.MILLISECONDS);
 
@@ -284,7 +299,7 @@ class IOThread implements Runnable, AutoCloseable {
         }
         log.finest("Awaiting " + pendingResultQueueSize + " results.");
         ProcessResponse processResponse = feedDocumentAndProcessResults(nextDocsForFeeding);
-        if (pendingResultQueueSize > maxInFlightRequests && processResponse.processResultsCount == 0) {
+        if (pendingResultQueueSize > maxInFlight && processResponse.processResultsCount == 0) {
             try {
                 // Max outstanding document operations, no more results on server side, wait a bit
                 // before asking again.
@@ -0,0 +1,90 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.http.client.core.communication;
+
+/**
+ * The number of document operations a single connection may have in flight against a gateway.
+ *
+ * With the v3 protocol the results of operations are returned in the responses of later requests, so a connection
+ * is not limited to one batch per round trip, and many batches can be outstanding on the same connection.
+ * This window sets how many. It starts at an initial size and grows additively, up to a larger max size, while the
+ * document latency reported by the gateway stays close to the lowest latency seen. It shrinks multiplicatively when
+ * the latency builds up (operations are queueing in the gateway or backend) or the gateway returns transient errors.
+ * Gateways which do not report latency give no evidence that a larger window helps, so with those the window only
+ * grows back to its initial size.
+ *
+ * Not thread safe, this is owned by a single {@link IOThread}.
+ *
+ * @author agent
+ */
+class InFlightWindow {
+
+    /** Latency increases below this are considered noise */
+    private static final int LATENCY_SLACK_MS = 10;
+
+    private final int minSize;
+    private final int initialSize;
+    private final int maxSize;
+    private final int increment;
+    private int size;
+    private double baseLatencyMs = -1;
+
+    /**
+     * Creates a window which starts at its initial size.
+     *
+     * @param initialSize the number of operations allowed in flight at the start, at least 1
+     * @param maxSize the largest number of operations which will be allowed in flight, at least the initial size
+     */
+    InFlightWindow(int initialSize, int maxSize) {
+        this.initialSize = Math.max(1, initialSize);
+        this.maxSize = Math.max(this.initialSize, maxSize);
+        this.minSize = Math.max(1, this.initialSize / 16);
+        this.increment = Math.max(1, this.initialSize / 32);
+        this.size = this.initialSize;
+    }
+
+    /** Returns the number of operations which may currently be in flight */
+    int size() { return size; }
+
+    /**
+     * Adjusts the window after a response from the gateway.
+     *
+     * @param serverLatencyMs the average document operation latency reported by the gateway,
+     *                        or a negative number if the gateway did not report it
+     * @param transientErrors the number of transient errors in the response
+     */
+    void update(int serverLatencyMs, int transientErrors) {
+        if (transientErrors > 0) {
+            decrease();
+            return;
+        }
+        if (serverLatencyMs < 0) {
+            increase(initialSize);
+            return;
+        }
+
+        if (baseLatencyMs < 0 || serverLatencyMs < baseLatencyMs)
+            baseLatencyMs = serverLatencyMs;
+        else // let the base follow the latency slowly, in case the cluster got slower for other reasons
+            baseLatencyMs += (serverLatencyMs - baseLatencyMs) / 64;
+
+        if (serverLatencyMs > 2 * baseLatencyMs + LATENCY_SLACK_MS)
+            decrease();
+        else
+            increase(maxSize);
+    }
+
+    private void increase(int limit) {
+        if (size < limit)
+            size = Math.min(limit, size + increment);
+    }
+
+    private void decrease() {
+        size = Math.max(minSize, size / 2);
+    }
+
+    @Override
+    public String toString() {
+        return "in flight window of size " + size + " in [" + minSize + ", " + maxSize + "]";
+    }
+
+}
@@ -0,0 +1,73 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.http.client.core.communication;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.*;
+
+public class InFlightWindowTest {
+
+    @Test
+    public void startsAtInitialSize() {
+        InFlightWindow window = new InFlightWindow(640, 2560);
+        assertThat(window.size(), is(640));
+        window.update(-1, 0);
+        assertThat(window.size(), is(640));
+    }
+
+    @Test
+    public void shrinksOnTransientErrorsAndGrowsBack() {
+        InFlightWindow window = new InFlightWindow(640, 2560);
+        window.update(-1, 3);
+        assertThat(window.size(), is(320));
+        for (int i = 0; i < 100; i++) {
+            window.update(-1, 1);
+        }
+        assertThat(window.size(), is(40)); // Never below a 16th of the initial size
+        window.update(-1, 0);
+        assertThat(window.size(), is(60));
+        for (int i = 0; i < 100; i++) {
+            window.update(-1, 0);
+        }
+        assertThat(window.size(), is(640)); // Not past the initial size without latency reports
+    }
+
+    @Test
+    public void growsPastInitialSizeWhileServerLatencyStaysLow() {
+        InFlightWindow window = new InFlightWindow(640, 2560);
+        window.update(20, 0);
+        assertThat(window.size(), is(660));
+        for (int i = 0; i < 200; i++) {
+            window.update(22, 0);
+        }
+        assertThat(window.size(), is(2560));
+        window.update(200, 0);
+        assertThat(window.size(), is(1280));
+    }
+
+    @Test
+    public void shrinksWhenServerLatencyBuildsUp() {
+        InFlightWindow window = new InFlightWindow(640, 640);
+        window.update(20, 0);
+        window.update(25, 0);
+        assertThat(window.size(), is(640));
+        window.update(200, 0);
+        assertThat(window.size(), is(320));
+        window.update(200, 0);
+        assertThat(window.size(), is(160));
+        window.update(22, 0);
+        assertThat(window.size(), is(180));
+    }
+
+    @Test
+    public void handlesTinyWindows() {
+        InFlightWindow window = new InFlightWindow(0, 0);
+        assertThat(window.size(), is(1));
+        window.update(-1, 1);
+        assertThat(window.size(), is(1));
+        window.update(-1, 0);
+        assertThat(window.size(), is(1));
+    }
+
+}
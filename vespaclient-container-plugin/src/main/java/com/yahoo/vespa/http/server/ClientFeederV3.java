@@ -53,6 +53,8 @@ class ClientFeederV3 {
     private final Metric metric;
     private Instant prevOpsPerSecTime = Instant.now();
     private double operationsForOpsPerSec = 0d;
+    // Moving average of the latency of the operations of this client, reported back to let it size its window.
+    private double averageLatencyMillis = -1d;
 
     private final Object monitor = new Object();
     private final StreamReaderV3 streamReaderV3;
@@ -154,7 +156,8 @@ class ClientFeederV3 {
                     // NOP, we are already exiting the thread
                 }
             }
-            return new FeedResponse(200, replies, 3 /* protocol version */, clientId, outstandingOperations.get(), hostName);
+            return new FeedResponse(200, replies, 3 /* protocol version */, clientId, outstandingOperations.get(), hostName,
+                                    getAverageLatencyMillis());
         } finally {
             ongoingRequests.decrementAndGet();
             threadsAvailableForFeeding.incrementAndGet();
@@ -296,7 +299,8 @@ class ClientFeederV3 {
     }
 
     private void setMessageParameters(DocumentOperationMessageV3 msg, FeederSettings settings) {
-        msg.getMessage().setContext(new ReplyContext(msg.getOperationId(), feedReplies, DocumentOperationType.fromMessage(msg.getMessage())));
+        msg.getMessage().setContext(new ReplyContext(msg.getOperationId(), feedReplies,
+                DocumentOperationType.fromMessage(msg.getMessage()), this::replyLatency));
         if (settings.traceLevel != null) {
             msg.getMessage().getTrace().setLevel(settings.traceLevel);
         }
@@ -334,6 +338,22 @@ class ClientFeederV3 {
         log.log(level, s.toString());
     }
 
+    private void replyLatency(long latencyMillis) {
+        synchronized (monitor) {
+            if (averageLatencyMillis < 0) {
+                averageLatencyMillis = latencyMillis;
+            } else {
+                averageLatencyMillis += (latencyMillis - averageLatencyMillis) / 16;
+            }
+        }
+    }
+
+    private int getAverageLatencyMillis() {
+        synchronized (monitor) {
+            return (int) Math.round(averageLatencyMillis);
+        }
+    }
+
     private void updateOpsPerSec() {
         Instant now = Instant.now();
         synchronized (monitor) {
@@ -39,8 +39,10 @@ public class FeedReplyReader implements ReplyHandler {
             return;
         }
         ReplyContext context = (ReplyContext) o;
-        final double latencyInSeconds = (System.currentTimeMillis() - context.creationTime) / 1000.0d;
+        final long latencyInMillis = System.currentTimeMillis() - context.creationTime;
+        final double latencyInSeconds = latencyInMillis / 1000.0d;
         metric.set(MetricNames.LATENCY, latencyInSeconds, null);
+        context.latencyListener.accept(latencyInMillis);
 
         if (reply.hasErrors()) {
             Set<Integer> errorCodes = reply.getErrorCodes();
@@ -40,13 +40,17 @@ public class FeedResponse extends HttpResponse {
             int protocolVersion,
             String sessionId,
             int outstandingClientOperations,
-            String hostName) {
+            String hostName,
+            int averageLatencyMillis) {
         super(status);
         this.operations = operations;
         headers().add(Headers.SESSION_ID, sessionId);
         headers().add(Headers.VERSION, Integer.toString(protocolVersion));
         headers().add(Headers.OUTSTANDING_REQUESTS, Integer.toString(outstandingClientOperations));
         headers().add(Headers.HOSTNAME, hostName);
+        if (averageLatencyMillis >= 0) {
+            headers().add(Headers.AVERAGE_LATENCY_MS, Integer.toString(averageLatencyMillis));
+        }
     }
 
     @Override
@@ -5,6 +5,7 @@ import com.yahoo.documentapi.metrics.DocumentOperationType;
 import com.yahoo.vespa.http.client.core.OperationStatus;
 
 import java.util.concurrent.BlockingQueue;
+import java.util.function.LongConsumer;
 
 /**
  * Mapping between document ID and client session.
@@ -17,11 +18,19 @@ public class ReplyContext {
     public DocumentOperationType documentOperationType;
     public final BlockingQueue<OperationStatus> feedReplies;
     public final long creationTime;
+    /** Receives the latency in milliseconds of the operation when the reply arrives */
+    public final LongConsumer latencyListener;
 
     public ReplyContext(String docId, BlockingQueue<OperationStatus> feedReplies, DocumentOperationType documentOperationType) {
+        this(docId, feedReplies, documentOperationType, latencyMillis -> {});
+    }
+
+    public ReplyContext(String docId, BlockingQueue<OperationStatus> feedReplies, DocumentOperationType documentOperationType,
+                        LongConsumer latencyListener) {
         this.docId = docId;
         this.feedReplies = feedReplies;
         this.creationTime = System.currentTimeMillis();
+        this.latencyListener = latencyListener;
     }
 
 }
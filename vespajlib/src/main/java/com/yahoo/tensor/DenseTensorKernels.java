@@ -0,0 +1,370 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.tensor;
+
+import com.google.common.annotations.Beta;
+import com.yahoo.tensor.functions.Reduce;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.DoubleBinaryOperator;
+
+/**
+ * Tensor operations on indexed tensors implemented as loops over the value arrays of the tensors.
+ * Cells are addressed by the stride of each argument in each dimension of the result, where the stride is 0
+ * in dimensions the argument does not have, such that arguments are broadcast over the dimensions
+ * they are missing. The kernels produce the same cells as the general implementations of these operations,
+ * without creating addresses, iterators or boxed values.
+ * <p>
+ * All the kernels require non-empty arguments.
+ *
+ * @author agent
+ */
+@Beta
+public final class DenseTensorKernels {
+
+    /** The number of indexes of each dimension of a matrix product processed as a block, to stay within cache */
+    private static final int BLOCK_SIZE = 64;
+
+    private DenseTensorKernels() {}
+
+    /**
+     * Joins two indexed tensors.
+     *
+     * @param a the first argument
+     * @param b the second argument
+     * @param joinedType the type of the join of the two arguments
+     * @param combinator the function producing each joined value from a value of a and a value of b
+     * @return the joined tensor
+     */
+    public static IndexedTensor join(IndexedTensor a, IndexedTensor b, TensorType joinedType, DoubleBinaryOperator combinator) {
+        int[] sizes = joinedSizes(a, b, joinedType);
+        double[] aValues = a.values();
+        double[] bValues = b.values();
+        double[] result = new double[product(sizes)];
+        if (a.type().dimensionNames().equals(b.type().dimensionNames()) && a.dimensionSizes().equals(b.dimensionSizes())) {
+            for (int i = 0; i < result.length; i++)
+                result[i] = combinator.applyAsDouble(aValues[i], bValues[i]);
+        }
+        else if (result.length > 0) {
+            int last = sizes.length - 1;
+            int[] aStrides = strides(a, joinedType);
+            int[] bStrides = strides(b, joinedType);
+            int aStride = aStrides[last];
+            int bStride = bStrides[last];
+            int n = sizes[last];
+            Odometer outer = new Odometer(Arrays.copyOf(sizes, last), aStrides, bStrides);
+            int resultIndex = 0;
+            do {
+                for (int i = 0, ai = outer.aOffset, bi = outer.bOffset; i < n; i++, ai += aStride, bi += bStride)
+                    result[resultIndex++] = combinator.applyAsDouble(aValues[ai], bValues[bi]);
+            } while (outer.next());
+        }
+        return new IndexedTensor(joinedType, dimensionSizes(sizes), result);
+    }
+
+    /**
+     * Reduces an indexed tensor.
+     *
+     * @param argument the tensor to reduce
+     * @param reducedType the type of the result
+     * @param dimensions the dimensions to reduce, or the empty list to reduce all dimensions
+     * @param aggregator the aggregator to use
+     * @return the reduced tensor
+     */
+    public static IndexedTensor reduce(IndexedTensor argument, TensorType reducedType,
+                                       List<String> dimensions, Reduce.Aggregator aggregator) {
+        int rank = argument.type().dimensions().size();
+        int[] sizes = new int[rank];
+        int[] resultSizes = new int[reducedType.dimensions().size()];
+        int[] resultStrides = new int[rank]; // 0 in the reduced dimensions
+        for (int i = 0; i < rank; i++)
+            sizes[i] = argument.dimensionSizes().size(i);
+        for (int i = rank - 1, resultStride = 1, resultDimension = resultSizes.length - 1; i >= 0; i--) {
+            if (isReduced(argument.type().dimensions().get(i).name(), dimensions)) continue;
+            resultStrides[i] = resultStride;
+            resultSizes[resultDimension--] = sizes[i];
+            resultStride *= sizes[i];
+        }
+
+        double[] values = argument.values();
+        double[] result = new double[product(resultSizes)];
+        Arrays.fill(result, initialValue(aggregator));
+        int n = rank == 0 ? 1 : sizes[rank - 1];
+        int lastResultStride = rank == 0 ? 0 : resultStrides[rank - 1];
+        Odometer outer = new Odometer(Arrays.copyOf(sizes, Math.max(rank - 1, 0)), new int[rank], resultStrides);
+        int valueIndex = 0;
+        do {
+            accumulate(aggregator, values, valueIndex, n, result, outer.bOffset, lastResultStride);
+            valueIndex += n;
+        } while (outer.next());
+
+        int reducedCount = values.length / result.length;
+        if (aggregator == Reduce.Aggregator.avg)
+            for (int i = 0; i < result.length; i++) result[i] /= reducedCount;
+        else if (aggregator == Reduce.Aggregator.count)
+            Arrays.fill(result, reducedCount);
+        return new IndexedTensor(reducedType, dimensionSizes(resultSizes), result);
+    }
+
+    /**
+     * Returns the sum over the given dimensions of the product of two indexed tensors.
+     * This computes the same as reducing the join of the arguments by multiplication with the sum aggregator,
+     * without creating the joined tensor. This is a dot product if a and b are vectors, and a matrix product
+     * if they are matrices sharing the reduced dimension.
+     *
+     * @param a the first argument
+     * @param b the second argument
+     * @param joinedType the type of the join of the two arguments
+     * @param dimensions the dimensions to sum over, all of which must be present in the joined type,
+     *                   or the empty list to sum over all dimensions
+     * @param reducedType the type of the result
+     * @return the reduced tensor
+     */
+    public static IndexedTensor multiplyAndSum(IndexedTensor a, IndexedTensor b, TensorType joinedType,
+                                               List<String> dimensions, TensorType reducedType) {
+        int[] sizes = joinedSizes(a, b, joinedType);
+        int[] aStrides = strides(a, joinedType);
+        int[] bStrides = strides(b, joinedType);
+
+        List<Integer> kept = new ArrayList<>();
+        List<Integer> reduced = new ArrayList<>();
+        for (int i = 0; i < sizes.length; i++) {
+            if (isReduced(joinedType.dimensions().get(i).name(), dimensions))
+                reduced.add(i);
+            else
+                kept.add(i);
+        }
+        if (reduced.isEmpty())
+            return join(a, b, joinedType, (x, y) -> x * y);
+
+        int[] resultSizes = select(sizes, kept);
+        double[] result = new double[product(resultSizes)];
+        if (result.length > 0 && product(sizes) > 0) {
+            if (isMatrixProduct(a, b, kept, reduced, aStrides, bStrides))
+                matrixProduct(a, b, sizes, aStrides, bStrides, kept, reduced.get(0), result);
+            else
+                multiplyAndSum(a, b, sizes, aStrides, bStrides, kept, reduced, result);
+        }
+        return new IndexedTensor(reducedType, dimensionSizes(resultSizes), result);
+    }
+
+    /** Sums in the order of increasing reduced indexes, which produces the same value as the general reduce */
+    private static void multiplyAndSum(IndexedTensor a, IndexedTensor b, int[] sizes, int[] aStrides, int[] bStrides,
+                                       List<Integer> kept, List<Integer> reduced, double[] result) {
+        double[] aValues = a.values();
+        double[] bValues = b.values();
+        int last = reduced.get(reduced.size() - 1);
+        int aStride = aStrides[last];
+        int bStride = bStrides[last];
+        int n = sizes[last];
+        List<Integer> reducedPrefix = reduced.subList(0, reduced.size() - 1);
+        Odometer outer = new Odometer(select(sizes, kept), select(aStrides, kept), select(bStrides, kept));
+        Odometer inner = new Odometer(select(sizes, reducedPrefix), select(aStrides, reducedPrefix), select(bStrides, reducedPrefix));
+        int resultIndex = 0;
+        do {
+            double sum = 0;
+            inner.reset();
+            do {
+                for (int i = 0, ai = outer.aOffset + inner.aOffset, bi = outer.bOffset + inner.bOffset; i < n;
+                     i++, ai += aStride, bi += bStride)
+                    sum += aValues[ai] * bValues[bi];
+            } while (inner.next());
+            result[resultIndex++] = sum;
+        } while (outer.next());
+    }
+
+    /**
+     * Returns whether this is a product of a matrix or vector in a and a matrix or vector in b,
+     * summing over one dimension they share
+     */
+    private static boolean isMatrixProduct(IndexedTensor a, IndexedTensor b, List<Integer> kept, List<Integer> reduced,
+                                           int[] aStrides, int[] bStrides) {
+        if (a.type().dimensions().size() > 2 || b.type().dimensions().size() > 2) return false;
+        if (kept.isEmpty() || reduced.size() != 1) return false;
+        int k = reduced.get(0);
+        if (aStrides[k] == 0 || bStrides[k] == 0) return false;
+        for (int dimension : kept) // each kept dimension is in one of the arguments only
+            if ((aStrides[dimension] == 0) == (bStrides[dimension] == 0)) return false;
+        return kept.size() == 1 || (aStrides[kept.get(0)] == 0) != (aStrides[kept.get(1)] == 0);
+    }
+
+    /**
+     * Computes result[i,j] = sum over k of a[i,k] * b[k,j] in blocks of i, k and j, with the innermost loop
+     * along the dimension which is consecutive in the result. If there is only one kept dimension, i has size 1.
+     */
+    private static void matrixProduct(IndexedTensor a, IndexedTensor b, int[] sizes, int[] aStrides, int[] bStrides,
+                                      List<Integer> kept, int k, double[] result) {
+        int inner = kept.get(kept.size() - 1); // the dimension which is consecutive in the result
+        int outer = kept.size() == 2 ? kept.get(0) : -1;
+        if (aStrides[inner] != 0) { // inner is a dimension of a: swap the arguments
+            IndexedTensor tensor = a; a = b; b = tensor;
+            int[] strides = aStrides; aStrides = bStrides; bStrides = strides;
+        }
+        double[] aValues = a.values();
+        double[] bValues = b.values();
+        int ni = outer < 0 ? 1 : sizes[outer], nk = sizes[k], nj = sizes[inner];
+        int ai = outer < 0 ? 0 : aStrides[outer], ak = aStrides[k];
+        int bk = bStrides[k], bj = bStrides[inner];
+        for (int i0 = 0; i0 < ni; i0 += BLOCK_SIZE) {
+            int iEnd = Math.min(i0 + BLOCK_SIZE, ni);
+            for (int k0 = 0; k0 < nk; k0 += BLOCK_SIZE) {
+                int kEnd = Math.min(k0 + BLOCK_SIZE, nk);
+                for (int j0 = 0; j0 < nj; j0 += BLOCK_SIZE) {
+                    int jEnd = Math.min(j0 + BLOCK_SIZE, nj);
+                    for (int i = i0; i < iEnd; i++) {
+                        int resultRow = i * nj;
+                        for (int kk = k0; kk < kEnd; kk++) {
+                            double aValue = aValues[i * ai + kk * ak];
+                            int bRow = kk * bk;
+                            if (bj == 1) { // consecutive in b too, which is the common case
+                                for (int j = j0; j < jEnd; j++)
+                                    result[resultRow + j] += aValue * bValues[bRow + j];
+                            }
+                            else {
+                                for (int j = j0; j < jEnd; j++)
+                                    result[resultRow + j] += aValue * bValues[bRow + j * bj];
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private static void accumulate(Reduce.Aggregator aggregator, double[] values, int from, int count,
+                                   double[] result, int to, int toStride) {
+        switch (aggregator) {
+            case avg :
+            case sum :
+                for (int i = from; i < from + count; i++, to += toStride)
+                    result[to] += values[i];
+                break;
+            case prod :
+                for (int i = from; i < from + count; i++, to += toStride)
+                    result[to] *= values[i];
+                break;
+            case max :
+                for (int i = from; i < from + count; i++, to += toStride)
+                    if (values[i] > result[to]) result[to] = values[i];
+                break;
+            case min :
+                for (int i = from; i < from + count; i++, to += toStride)
+                    if (values[i] < result[to]) result[to] = values[i];
+                break;
+            case count :
+                break; // set from the number of reduced cells afterwards
+            default: throw new UnsupportedOperationException("Aggregator " + aggregator + " is not implemented");
+        }
+    }
+
+    /** Returns the value an aggregation starts from, which is the same as in the general reduce */
+    private static double initialValue(Reduce.Aggregator aggregator) {
+        switch (aggregator) {
+            case prod : return 1.0;
+            case max : return Double.NEGATIVE_INFINITY;
+            case min : return Double.MAX_VALUE;
+            default : return 0.0;
+        }
+    }
+
+    private static boolean isReduced(String dimension, List<String> dimensions) {
+        return dimensions.isEmpty() || dimensions.contains(dimension);
+    }
+
+    /** Returns the sizes of the join of two tensors, which is the smallest size in each shared dimension */
+    private static int[] joinedSizes(IndexedTensor a, IndexedTensor b, TensorType joinedType) {
+        int[] sizes = new int[joinedType.dimensions().size()];
+        for (int i = 0; i < sizes.length; i++) {
+            String dimension = joinedType.dimensions().get(i).name();
+            Optional<Integer> aIndex = a.type().indexOfDimension(dimension);
+            Optional<Integer> bIndex = b.type().indexOfDimension(dimension);
+            if (aIndex.isPresent() && bIndex.isPresent())
+                sizes[i] = Math.min(a.dimensionSizes().size(aIndex.get()), b.dimensionSizes().size(bIndex.get()));
+            else if (aIndex.isPresent())
+                sizes[i] = a.dimensionSizes().size(aIndex.get());
+            else
+                sizes[i] = b.dimensionSizes().size(bIndex.get());
+        }
+        return sizes;
+    }
+
+    /** Returns the stride of the given tensor in each dimension of the given type, which is 0 if the tensor lacks it */
+    private static int[] strides(IndexedTensor tensor, TensorType type) {
+        int[] strides = new int[type.dimensions().size()];
+        for (int i = 0; i < strides.length; i++) {
+            Optional<Integer> index = tensor.type().indexOfDimension(type.dimensions().get(i).name());
+            if ( ! index.isPresent()) continue;
+            int stride = 1;
+            for (int j = index.get() + 1; j < tensor.dimensionSizes().dimensions(); j++)
+                stride *= tensor.dimensionSizes().size(j);
+            strides[i] = stride;
+        }
+        return strides;
+    }
+
+    private static int[] select(int[] values, List<Integer> indexes) {
+        int[] selected = new int[indexes.size()];
+        for (int i = 0; i < selected.length; i++)
+            selected[i] = values[indexes.get(i)];
+        return selected;
+    }
+
+    private static int product(int[] sizes) {
+        int product = 1;
+        for (int size : sizes)
+            product *= size;
+        return product;
+    }
+
+    private static DimensionSizes dimensionSizes(int[] sizes) {
+        DimensionSizes.Builder builder = new DimensionSizes.Builder(sizes.length);
+        for (int i = 0; i < sizes.length; i++)
+            builder.set(i, sizes[i]);
+        return builder.build();
+    }
+
+    /**
+     * Iterates over all combinations of indexes of a set of dimensions, in the order of the value layout,
+     * while keeping track of the corresponding offsets into two value arrays
+     */
+    private static final class Odometer {
+
+        private final int[] sizes;
+        private final int[] indexes;
+        private final int[] aStrides;
+        private final int[] bStrides;
+
+        int aOffset = 0;
+        int bOffset = 0;
+
+        Odometer(int[] sizes, int[] aStrides, int[] bStrides) {
+            this.sizes = sizes;
+            this.indexes = new int[sizes.length];
+            this.aStrides = aStrides;
+            this.bStrides = bStrides;
+        }
+
+        void reset() {
+            Arrays.fill(indexes, 0);
+            aOffset = 0;
+            bOffset = 0;
+        }
+
+        /** Moves to the next combination of indexes, or returns false if all combinations have been visited */
+        boolean next() {
+            for (int d = sizes.length - 1; d >= 0; d--) {
+                aOffset += aStrides[d];
+                bOffset += bStrides[d];
+                if (++indexes[d] < sizes[d]) return true;
+                aOffset -= aStrides[d] * sizes[d];
+                bOffset -= bStrides[d] * sizes[d];
+                indexes[d] = 0;
+            }
+            return false;
+        }
+
+    }
+
+}
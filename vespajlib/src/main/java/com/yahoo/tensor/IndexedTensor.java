@@ -31,7 +31,7 @@ public class IndexedTensor implements Tensor {
     
     private final double[] values;
     
-    private IndexedTensor(TensorType type, DimensionSizes dimensionSizes, double[] values) {
+    IndexedTensor(TensorType type, DimensionSizes dimensionSizes, double[] values) {
         this.type = type;
         this.dimensionSizes = dimensionSizes;
         this.values = values;
@@ -119,6 +119,9 @@ public class IndexedTensor implements Tensor {
     }
 
     private double get(int valueIndex) { return values[valueIndex]; }
+
+    /** Returns a direct reference to the values of this in the internal layout. The returned array must not be modified. */
+    double[] values() { return values; }
     
     private static int toValueIndex(int[] indexes, DimensionSizes sizes) {
         if (indexes.length == 1) return indexes[0]; // for speed
@@ -4,6 +4,7 @@ package com.yahoo.tensor.functions;
 import com.google.common.annotations.Beta;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Sets;
+import com.yahoo.tensor.DenseTensorKernels;
 import com.yahoo.tensor.DimensionSizes;
 import com.yahoo.tensor.IndexedTensor;
 import com.yahoo.tensor.PartialAddress;
@@ -72,13 +73,16 @@ public class Join extends PrimitiveTensorFunction {
 
     @Override
     public Tensor evaluate(EvaluationContext context) {
-        Tensor a = argumentA.evaluate(context);
-        Tensor b = argumentB.evaluate(context);
+        return evaluate(argumentA.evaluate(context), argumentB.evaluate(context));
+    }
+
+    /** Returns the join of the given tensors, which are the evaluated arguments of this */
+    Tensor evaluate(Tensor a, Tensor b) {
         TensorType joinedType = new TensorType.Builder(a.type(), b.type()).build();
 
         // Choose join algorithm
-        if (hasSingleIndexedDimension(a) && hasSingleIndexedDimension(b) && a.type().dimensions().get(0).name().equals(b.type().dimensions().get(0).name()))
-            return indexedVectorJoin((IndexedTensor)a, (IndexedTensor)b, joinedType);
+        if (a instanceof IndexedTensor && b instanceof IndexedTensor && a.size() > 0 && b.size() > 0)
+            return DenseTensorKernels.join((IndexedTensor)a, (IndexedTensor)b, joinedType, combinator);
         else if (joinedType.dimensions().size() == a.type().dimensions().size() && joinedType.dimensions().size() == b.type().dimensions().size())
             return singleSpaceJoin(a, b, joinedType);
         else if (a.type().dimensions().containsAll(b.type().dimensions()))
@@ -88,20 +92,6 @@ public class Join extends PrimitiveTensorFunction {
         else
             return generalJoin(a, b, joinedType);
     }
-    
-    private boolean hasSingleIndexedDimension(Tensor tensor) {
-        return tensor.type().dimensions().size() == 1 && tensor.type().dimensions().get(0).isIndexed();
-    }
-    
-    private Tensor indexedVectorJoin(IndexedTensor a, IndexedTensor b, TensorType type) {
-        int joinedLength = Math.min(a.dimensionSizes().size(0), b.dimensionSizes().size(0));
-        Iterator<Double> aIterator = a.valueIterator();
-        Iterator<Double> bIterator = b.valueIterator();
-        IndexedTensor.Builder builder = IndexedTensor.Builder.of(type, new DimensionSizes.Builder(1).set(0, joinedLength).build());
-        for (int i = 0; i < joinedLength; i++)
-            builder.cell(combinator.applyAsDouble(aIterator.next(), bIterator.next()), i);
-        return builder.build();
-    }
 
     /** When both tensors have the same dimensions, at most one cell matches a cell in the other tensor */
     private Tensor singleSpaceJoin(Tensor a, Tensor b, TensorType joinedType) {
@@ -3,6 +3,7 @@ package com.yahoo.tensor.functions;
 
 import com.google.common.annotations.Beta;
 import com.google.common.collect.ImmutableList;
+import com.yahoo.tensor.DenseTensorKernels;
 import com.yahoo.tensor.IndexedTensor;
 import com.yahoo.tensor.Tensor;
 import com.yahoo.tensor.TensorAddress;
@@ -92,26 +93,37 @@ public class Reduce extends PrimitiveTensorFunction {
 
     @Override
     public Tensor evaluate(EvaluationContext context) {
-        Tensor argument = this.argument.evaluate(context);
+        if (aggregator == Aggregator.sum && argument instanceof Join &&
+            ((Join)argument).combinator() instanceof ScalarFunctions.Multiplication) {
+            // Sum of a product: Avoid creating the product of dense tensors
+            Join join = (Join)argument;
+            Tensor a = join.argumentA().evaluate(context);
+            Tensor b = join.argumentB().evaluate(context);
+            if (a instanceof IndexedTensor && b instanceof IndexedTensor && a.size() > 0 && b.size() > 0) {
+                TensorType joinedType = new TensorType.Builder(a.type(), b.type()).build();
+                if (joinedType.dimensionNames().containsAll(dimensions))
+                    return DenseTensorKernels.multiplyAndSum((IndexedTensor)a, (IndexedTensor)b, joinedType,
+                                                             dimensions, reducedType(joinedType));
+            }
+            return evaluate(join.evaluate(a, b));
+        }
+        return evaluate(this.argument.evaluate(context));
+    }
+
+    private Tensor evaluate(Tensor argument) {
         if ( ! dimensions.isEmpty() && ! argument.type().dimensionNames().containsAll(dimensions))
             throw new IllegalArgumentException("Cannot reduce " + argument + " over dimensions " + 
                                                dimensions + ": Not all those dimensions are present in this tensor");
 
+        if (argument instanceof IndexedTensor && argument.size() > 0)
+            return DenseTensorKernels.reduce((IndexedTensor)argument, reducedType(argument.type()), dimensions, aggregator);
+
         // Special case: Reduce all
         if (dimensions.isEmpty() || dimensions.size() == argument.type().dimensions().size())
-            if (argument.type().dimensions().size() == 1 && argument instanceof IndexedTensor)
-                return reduceIndexedVector((IndexedTensor)argument);
-            else
-                return reduceAllGeneral(argument);
-        
-        // Reduce type
-        TensorType.Builder builder = new TensorType.Builder();
-        for (TensorType.Dimension dimension : argument.type().dimensions())
-            if ( ! dimensions.contains(dimension.name())) // keep
-                builder.dimension(dimension);
-        TensorType reducedType = builder.build();
+            return reduceAllGeneral(argument);
         
         // Reduce cells
+        TensorType reducedType = reducedType(argument.type());
         Map<TensorAddress, ValueAggregator> aggregatingCells = new HashMap<>();
         for (Iterator<Tensor.Cell> i = argument.cellIterator(); i.hasNext(); ) {
             Map.Entry<TensorAddress, Double> cell = i.next();
@@ -125,6 +137,16 @@ public class Reduce extends PrimitiveTensorFunction {
         
         return reducedBuilder.build();
     }
+
+    /** Returns the type of the result of reducing a tensor of the given type */
+    private TensorType reducedType(TensorType argumentType) {
+        if (dimensions.isEmpty()) return TensorType.empty;
+        TensorType.Builder builder = new TensorType.Builder();
+        for (TensorType.Dimension dimension : argumentType.dimensions())
+            if ( ! dimensions.contains(dimension.name())) // keep
+                builder.dimension(dimension);
+        return builder.build();
+    }
     
     private TensorAddress reduceDimensions(TensorAddress address, TensorType argumentType, TensorType reducedType) {
         Set<Integer> indexesToRemove = new HashSet<>();
@@ -146,13 +168,6 @@ public class Reduce extends PrimitiveTensorFunction {
         return Tensor.Builder.of(TensorType.empty).cell((valueAggregator.aggregatedValue())).build();
     }
 
-    private Tensor reduceIndexedVector(IndexedTensor argument) {
-        ValueAggregator valueAggregator = ValueAggregator.ofType(aggregator);
-        for (int i = 0; i < argument.dimensionSizes().size(0); i++)
-            valueAggregator.aggregate(argument.get(i));
-        return Tensor.Builder.of(TensorType.empty).cell((valueAggregator.aggregatedValue())).build();
-    }
-
     private static abstract class ValueAggregator {
         
         private static ValueAggregator ofType(Aggregator aggregator) {
@@ -244,7 +259,7 @@ public class Reduce extends PrimitiveTensorFunction {
 
     private static class MaxAggregator extends ValueAggregator {
 
-        private double maxValue = Double.MIN_VALUE;
+        private double maxValue = Double.NEGATIVE_INFINITY;
 
         @Override
         public void aggregate(double value) {
@@ -0,0 +1,70 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.tensor;
+
+import com.yahoo.tensor.functions.Reduce;
+import com.yahoo.tensor.functions.ScalarFunctions;
+
+import java.util.Random;
+import java.util.function.Supplier;
+
+/**
+ * Microbenchmark of operations on dense tensors of shapes typical in machine learned models.
+ *
+ * @author agent
+ */
+public class DenseTensorBenchmark {
+
+    private final static Random random = new Random();
+
+    /** Returns the time in ms per evaluation of the given operation */
+    private static double benchmark(int iterations, Supplier<Tensor> operation) {
+        double sum = 0;
+        for (int i = 0; i < iterations; i++) // warmup
+            sum += operation.get().size();
+        System.gc();
+        long startTime = System.nanoTime();
+        for (int i = 0; i < iterations; i++)
+            sum += operation.get().size();
+        long totalTime = System.nanoTime() - startTime;
+        if (sum == 0) throw new IllegalStateException("Empty results");
+        return totalTime / 1000000.0 / iterations;
+    }
+
+    private static Tensor random(String type) {
+        IndexedTensor.BoundBuilder builder = (IndexedTensor.BoundBuilder)Tensor.Builder.of(TensorType.fromSpec(type));
+        int size = IndexedTensor.BoundBuilder.dimensionSizesOf(builder.type()).totalSize();
+        for (int i = 0; i < size; i++)
+            builder.cellByDirectIndex(i, random.nextDouble());
+        return builder.build();
+    }
+
+    private static void report(String name, double time) {
+        System.out.printf("%-40s time per operation: %10.4f ms\n", name, time);
+    }
+
+    public static void main(String[] args) {
+        Tensor vector1 = random("tensor(x[300])");
+        Tensor vector2 = random("tensor(x[300])");
+        report("Dot product, 300", benchmark(200000, () -> vector1.matmul(vector2, "x")));
+
+        Tensor input = random("tensor(x[256])");
+        Tensor weights = random("tensor(x[256],y[128])");
+        Tensor bias = random("tensor(y[128])");
+        report("Vector-matrix product, 256 x 256x128", benchmark(5000, () -> input.matmul(weights, "x")));
+        report("xw_plus_b, 256 x 256x128 + 128", benchmark(5000, () -> input.xwPlusB(weights, bias, "x")));
+
+        Tensor batch = random("tensor(i[32],x[256])");
+        report("Matrix product, 32x256 x 256x128", benchmark(500, () -> batch.matmul(weights, "x")));
+
+        Tensor square1 = random("tensor(i[128],x[128])");
+        Tensor square2 = random("tensor(x[128],y[128])");
+        report("Matrix product, 128x128 x 128x128", benchmark(100, () -> square1.matmul(square2, "x")));
+
+        Tensor activations = random("tensor(i[32],y[128])");
+        report("Broadcast add, 32x128 + 128", benchmark(5000, () -> activations.join(bias, ScalarFunctions.add())));
+        report("Map-like join, 32x128 * 32x128", benchmark(5000, () -> activations.join(activations, ScalarFunctions.multiply())));
+        report("Reduce sum over y, 32x128", benchmark(5000, () -> activations.reduce(Reduce.Aggregator.sum, "y")));
+        report("Reduce max over i, 32x128", benchmark(5000, () -> activations.reduce(Reduce.Aggregator.max, "i")));
+    }
+
+}
@@ -0,0 +1,134 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.tensor;
+
+import com.yahoo.tensor.functions.Reduce;
+import com.yahoo.tensor.functions.ScalarFunctions;
+import org.junit.Test;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that the dense kernels used for indexed tensors produce the same cells as the general
+ * implementations used for mapped tensors.
+ *
+ * @author agent
+ */
+public class DenseTensorKernelsTestCase {
+
+    private final Random random = new Random(1234);
+
+    @Test
+    public void testJoin() {
+        assertEquals(Tensor.from("tensor(x[3]):{ {x:0}:3, {x:1}:5, {x:2}:7 }"),
+                     Tensor.from("tensor(x[3]):{ {x:0}:1, {x:1}:2, {x:2}:3 }")
+                           .join(Tensor.from("tensor(x[3]):{ {x:0}:2, {x:1}:3, {x:2}:4 }"), ScalarFunctions.add()));
+        assertJoin("tensor(x[5])", "tensor(x[5])");
+        assertJoin("tensor(x[5])", "tensor(x[3])");
+        assertJoin("tensor(x[4],y[3])", "tensor(x[4],y[3])");
+        assertJoin("tensor(x[4],y[3])", "tensor(y[3])");
+        assertJoin("tensor(x[4])", "tensor(x[4],y[3])");
+        assertJoin("tensor(x[4],y[3])", "tensor(y[3],z[2])");
+        assertJoin("tensor(x[2],z[3])", "tensor(y[4])");
+        assertJoin("tensor()", "tensor(x[3],y[2])");
+    }
+
+    @Test
+    public void testReduce() {
+        for (Reduce.Aggregator aggregator : Reduce.Aggregator.values()) {
+            assertReduce("tensor(x[7])", aggregator);
+            assertReduce("tensor(x[4],y[3])", aggregator);
+            assertReduce("tensor(x[4],y[3])", aggregator, "x");
+            assertReduce("tensor(x[4],y[3])", aggregator, "y");
+            assertReduce("tensor(x[4],y[3],z[2])", aggregator, "y");
+            assertReduce("tensor(x[4],y[3],z[2])", aggregator, "x", "z");
+            assertReduce("tensor(x[4],y[3],z[2])", aggregator, "x", "y", "z");
+        }
+    }
+
+    @Test
+    public void testReduceMaxOfNegativeValues() {
+        Tensor tensor = Tensor.from("tensor(x[2],y[2]):{ {x:0,y:0}:-3, {x:0,y:1}:-1, {x:1,y:0}:-4, {x:1,y:1}:-2 }");
+        assertEquals(Tensor.from("tensor():{ {}:-1 }"), tensor.reduce(Reduce.Aggregator.max));
+        assertEquals(Tensor.from("tensor(y[2]):{ {y:0}:-3, {y:1}:-1 }"), tensor.reduce(Reduce.Aggregator.max, "x"));
+        assertEqualCells(mapped(tensor).reduce(Reduce.Aggregator.max, "y"), tensor.reduce(Reduce.Aggregator.max, "y"));
+    }
+
+    @Test
+    public void testMultiplyAndSum() {
+        assertEquals(Tensor.from("tensor():{ {}:20 }"),
+                     Tensor.from("tensor(x[3]):{ {x:0}:1, {x:1}:2, {x:2}:3 }")
+                           .matmul(Tensor.from("tensor(x[3]):{ {x:0}:2, {x:1}:3, {x:2}:4 }"), "x"));
+        assertMatmul("tensor(x[300])", "tensor(x[300])", "x");
+        assertMatmul("tensor(x[300])", "tensor(x[300],y[10])", "x");
+        assertMatmul("tensor(x[10],y[20])", "tensor(y[20],z[30])", "y");
+        assertMatmul("tensor(y[130],z[70])", "tensor(x[150],y[130])", "y");
+        assertMatmul("tensor(x[3],y[4],z[5])", "tensor(y[4],z[5])", "y");
+        assertMatmul("tensor(x[3],y[4],z[5])", "tensor(x[3],z[5])", "z");
+        assertMatmul("tensor(x[3],y[4])", "tensor(x[3],y[4])", "x");
+    }
+
+    @Test
+    public void testXwPlusB() {
+        Tensor x = random("tensor(i[1],x[20])");
+        Tensor w = random("tensor(x[20],y[8])");
+        Tensor b = random("tensor(y[8])");
+        assertEqualCells(mapped(x).xwPlusB(mapped(w), mapped(b), "x"), x.xwPlusB(w, b, "x"));
+    }
+
+    private void assertJoin(String aType, String bType) {
+        Tensor a = random(aType);
+        Tensor b = random(bType);
+        assertEqualCells(mapped(a).multiply(mapped(b)), a.join(b, ScalarFunctions.multiply()));
+        assertEqualCells(mapped(b).divide(mapped(a)), b.join(a, ScalarFunctions.divide()));
+    }
+
+    private void assertReduce(String type, Reduce.Aggregator aggregator, String ... dimensions) {
+        Tensor tensor = random(type);
+        assertEqualCells(mapped(tensor).reduce(aggregator, dimensions), tensor.reduce(aggregator, dimensions));
+    }
+
+    private void assertMatmul(String aType, String bType, String dimension) {
+        Tensor a = random(aType);
+        Tensor b = random(bType);
+        assertEqualCells(mapped(a).matmul(mapped(b), dimension), a.matmul(b, dimension));
+    }
+
+    private void assertEqualCells(Tensor expected, Tensor actual) {
+        assertTrue(actual instanceof IndexedTensor);
+        Map<TensorAddress, Double> actualCells = actual.cells();
+        assertEquals(expected.size(), actual.size());
+        for (Iterator<Tensor.Cell> i = expected.cellIterator(); i.hasNext(); ) {
+            Tensor.Cell cell = i.next();
+            assertTrue("Missing cell " + cell.getKey(), actualCells.containsKey(cell.getKey()));
+            assertEquals(cell.getValue(), actualCells.get(cell.getKey()), 0.000000001);
+        }
+    }
+
+    /** Returns an indexed tensor of the given type with random values */
+    private Tensor random(String type) {
+        IndexedTensor.BoundBuilder builder = (IndexedTensor.BoundBuilder)Tensor.Builder.of(TensorType.fromSpec(type));
+        int size = IndexedTensor.BoundBuilder.dimensionSizesOf(builder.type()).totalSize();
+        for (int i = 0; i < size; i++)
+            builder.cellByDirectIndex(i, random.nextDouble() + 0.5);
+        return builder.build();
+    }
+
+    /** Returns a mapped tensor having the same cells as the given tensor */
+    private Tensor mapped(Tensor tensor) {
+        TensorType.Builder typeBuilder = new TensorType.Builder();
+        for (TensorType.Dimension dimension : tensor.type().dimensions())
+            typeBuilder.mapped(dimension.name());
+        Tensor.Builder builder = Tensor.Builder.of(typeBuilder.build());
+        for (Iterator<Tensor.Cell> i = tensor.cellIterator(); i.hasNext(); ) {
+            Tensor.Cell cell = i.next();
+            builder.cell(cell.getKey(), cell.getValue());
+        }
+        return builder.build();
+    }
+
+}